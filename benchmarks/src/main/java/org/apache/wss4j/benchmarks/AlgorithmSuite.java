@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import org.apache.wss4j.common.WSS4JConstants;
+
+/**
+ * The algorithm suites the benchmarks are run with, modelled on the WS-SecurityPolicy algorithm
+ * suites of the same name.
+ */
+public enum AlgorithmSuite {
+
+    BASIC128(WSS4JConstants.AES_128, WSS4JConstants.SHA1, WSS4JConstants.RSA_SHA1, WSS4JConstants.ECDSA_SHA1),
+    BASIC256_SHA256(WSS4JConstants.AES_256, WSS4JConstants.SHA256, WSS4JConstants.RSA_SHA256, WSS4JConstants.ECDSA_SHA256),
+    BASIC256_GCM_SHA256(WSS4JConstants.AES_256_GCM, WSS4JConstants.SHA256, WSS4JConstants.RSA_SHA256,
+                        WSS4JConstants.ECDSA_SHA256);
+
+    private final String encryptionAlgorithm;
+    private final String digestAlgorithm;
+    private final String rsaSignatureAlgorithm;
+    private final String ecSignatureAlgorithm;
+
+    AlgorithmSuite(String encryptionAlgorithm, String digestAlgorithm,
+                   String rsaSignatureAlgorithm, String ecSignatureAlgorithm) {
+        this.encryptionAlgorithm = encryptionAlgorithm;
+        this.digestAlgorithm = digestAlgorithm;
+        this.rsaSignatureAlgorithm = rsaSignatureAlgorithm;
+        this.ecSignatureAlgorithm = ecSignatureAlgorithm;
+    }
+
+    public String getEncryptionAlgorithm() {
+        return encryptionAlgorithm;
+    }
+
+    public String getKeyTransportAlgorithm() {
+        return WSS4JConstants.KEYTRANSPORT_RSAOAEP;
+    }
+
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    public String getSignatureAlgorithm(KeyType keyType) {
+        return keyType == KeyType.EC ? ecSignatureAlgorithm : rsaSignatureAlgorithm;
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.net.URL;
+import java.util.Random;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Some utility methods and fixtures that are shared by the benchmarks. The keystores are those
+ * of the ws-security-common tests, so that the benchmarks do not need any files of their own.
+ */
+public final class BenchmarkUtils {
+
+    /**
+     * The keystore (on the classpath) that holds the RSA ("wss40") and EC ("wss40ec") keys, and
+     * the CA certificate that is needed to verify their certificates
+     */
+    public static final String KEYSTORE = "keys/wss40.jks";
+
+    /**
+     * The password of the keystore and of the private keys
+     */
+    public static final String PASSWORD = "security";
+
+    /**
+     * The Crypto properties (on the classpath) that correspond to the KEYSTORE
+     */
+    public static final String CRYPTO_PROPERTIES = "wss40.properties";
+
+    private static final String SOAP_HEADER =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<soapenv:Body>"
+        + "<ns1:echo xmlns:ns1=\"urn:wss4j:benchmark\">";
+
+    private static final String SOAP_FOOTER =
+        "</ns1:echo>"
+        + "</soapenv:Body>"
+        + "</soapenv:Envelope>";
+
+    private BenchmarkUtils() {
+        // complete
+    }
+
+    /**
+     * Create a SOAP 1.1 message with a Body of (approximately) the given size. The content is
+     * generated from a fixed seed, so that every run of a benchmark processes the same message.
+     * @param size the size of the message in bytes
+     * @return the SOAP message
+     */
+    public static String createSOAPMessage(int size) {
+        StringBuilder message = new StringBuilder(size + 256);
+        message.append(SOAP_HEADER);
+
+        Random random = new Random(size);
+        int item = 0;
+        while (message.length() + SOAP_FOOTER.length() < size) {
+            message.append("<ns1:item id=\"").append(item++).append("\">");
+            for (int i = 0; i < 64; i++) {
+                message.append((char) ('a' + random.nextInt(26)));
+            }
+            message.append("</ns1:item>");
+        }
+
+        message.append(SOAP_FOOTER);
+        return message.toString();
+    }
+
+    /**
+     * @return a new Crypto instance for the KEYSTORE
+     */
+    public static Crypto getCrypto() throws WSSecurityException {
+        return CryptoFactory.getInstance(CRYPTO_PROPERTIES);
+    }
+
+    /**
+     * @return the URL of the KEYSTORE
+     */
+    public static URL getKeyStoreURL() {
+        return BenchmarkUtils.class.getClassLoader().getResource(KEYSTORE);
+    }
+
+    /**
+     * @return a CallbackHandler that supplies the PASSWORD for every WSPasswordCallback
+     */
+    public static CallbackHandler getCallbackHandler() {
+        return new PasswordCallbackHandler();
+    }
+
+    private static final class PasswordCallbackHandler implements CallbackHandler {
+
+        @Override
+        public void handle(Callback[] callbacks) throws UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (callback instanceof WSPasswordCallback) {
+                    ((WSPasswordCallback) callback).setPassword(PASSWORD);
+                } else {
+                    throw new UnsupportedCallbackException(callback, "Unrecognized Callback");
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.common;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
+import org.apache.wss4j.common.derivedKey.ConversationConstants;
+import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the derivation of the key of a DerivedKeyToken (with the default WS-SecureConversation label)
+ * by DerivedKeyUtils#deriveKey, without a DerivedKeyCache ("derive"), and with a MemoryDerivedKeyCache
+ * that already holds the key ("cachedDerive"), i.e. for a DerivedKeyToken of a session that is received
+ * again. Run with e.g. "-t 1" and "-t max" to see how the cache scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivedKeyBenchmark {
+
+    private static final String LABEL =
+        ConversationConstants.DEFAULT_LABEL + ConversationConstants.DEFAULT_LABEL;
+
+    @Param({ConversationConstants.DerivationAlgorithm.P_SHA_1, ConversationConstants.DerivationAlgorithm.P_SHA_256})
+    private String algorithm;
+
+    @Param({"16", "32"})
+    private int length;
+
+    private byte[] secret;
+    private byte[] nonce;
+    private MemoryDerivedKeyCache cache;
+
+    @Setup
+    public void initialize() throws Exception {
+        Random random = new Random(length);
+        secret = new byte[32];
+        random.nextBytes(secret);
+        nonce = new byte[16];
+        random.nextBytes(nonce);
+        cache = new MemoryDerivedKeyCache();
+        DerivedKeyUtils.deriveKey(algorithm, LABEL, length, secret, nonce, 0, "session", cache);
+    }
+
+    @TearDown
+    public void close() {
+        cache.close();
+    }
+
+    @Benchmark
+    public byte[] derive() throws Exception {
+        return DerivedKeyUtils.deriveKey(algorithm, LABEL, length, secret, nonce, 0);
+    }
+
+    @Benchmark
+    public byte[] cachedDerive() throws Exception {
+        return DerivedKeyUtils.deriveKey(algorithm, LABEL, length, secret, nonce, 0, "session", cache);
+    }
+
+}
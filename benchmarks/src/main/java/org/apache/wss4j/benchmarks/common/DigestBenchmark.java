@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.common;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.derivedKey.P_SHA1;
+import org.apache.wss4j.common.util.DigestUtils;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the (SHA-1) digests that are computed for thumbprints, key identifiers and
+ * password digests, and the P_SHA1 key derivation. "cachedDigest" uses the per-thread MessageDigest
+ * instances of DigestUtils (as KeyUtils#generateDigest does), which is compared to creating a
+ * new MessageDigest for every digest, and to sharing a single MessageDigest under a lock. Run
+ * with e.g. "-t 1", "-t 4" and "-t max" to see how the throughput scales with the number of
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+    @Param({"20", "1024"})
+    private int inputSize;
+
+    private byte[] input;
+    private byte[] secret;
+    private MessageDigest sharedDigest;
+
+    @Setup
+    public void initialize() throws Exception {
+        Random random = new Random(inputSize);
+        input = new byte[inputSize];
+        random.nextBytes(input);
+        secret = new byte[32];
+        random.nextBytes(secret);
+        sharedDigest = MessageDigest.getInstance(DigestUtils.SHA1);
+    }
+
+    @Benchmark
+    public byte[] cachedDigest() throws Exception {
+        return KeyUtils.generateDigest(input);
+    }
+
+    @Benchmark
+    public byte[] newDigest() throws Exception {
+        return MessageDigest.getInstance(DigestUtils.SHA1).digest(input);
+    }
+
+    @Benchmark
+    public byte[] synchronizedDigest() {
+        synchronized (sharedDigest) {
+            return sharedDigest.digest(input);
+        }
+    }
+
+    @Benchmark
+    public byte[] pSHA1() throws Exception {
+        return new P_SHA1().createKey(secret, input, 0, 32);
+    }
+
+}
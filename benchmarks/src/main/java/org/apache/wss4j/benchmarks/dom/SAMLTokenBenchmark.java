@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.dom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.benchmarks.KeyType;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.common.SAML2CallbackHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSAMLToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks creating a (Sender Vouches) SAML 2 authentication assertion and adding it to a
+ * message with WSSecSAMLToken, and processing it with the WSSecurityEngine. If the assertion
+ * is signed, then it is signed with the RSA key, and its signature is verified when it is
+ * processed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SAMLTokenBenchmark {
+
+    @Param({"1024", "102400"})
+    private int messageSize;
+
+    @Param({"false", "true"})
+    private boolean signAssertion;
+
+    private Crypto crypto;
+    private SAML2CallbackHandler samlCallbackHandler;
+    private String message;
+    private String samlMessage;
+
+    private Document document;
+    private Document samlDocument;
+
+    @Setup(Level.Trial)
+    public void initialize() throws Exception {
+        WSSConfig.init();
+        crypto = BenchmarkUtils.getCrypto();
+
+        samlCallbackHandler = new SAML2CallbackHandler();
+        samlCallbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        samlCallbackHandler.setIssuer("www.example.com");
+        samlCallbackHandler.setSignAssertion(signAssertion);
+        samlCallbackHandler.setIssuerCrypto(crypto);
+        samlCallbackHandler.setIssuerName(KeyType.RSA.getAlias());
+        samlCallbackHandler.setIssuerPassword(BenchmarkUtils.PASSWORD);
+
+        message = BenchmarkUtils.createSOAPMessage(messageSize);
+        samlMessage = XMLUtils.prettyDocumentToString(addSAMLToken(SOAPUtil.toSOAPPart(message)));
+    }
+
+    @Setup(Level.Invocation)
+    public void parseMessages() throws Exception {
+        document = SOAPUtil.toSOAPPart(message);
+        samlDocument = SOAPUtil.toSOAPPart(samlMessage);
+    }
+
+    @Benchmark
+    public Document samlToken() throws Exception {
+        return addSAMLToken(document);
+    }
+
+    @Benchmark
+    public WSHandlerResult samlTokenProcessing() throws Exception {
+        RequestData data = new RequestData();
+        data.setSigVerCrypto(crypto);
+        data.setValidateSamlSubjectConfirmation(false);
+        return new WSSecurityEngine().processSecurityHeader(samlDocument, data);
+    }
+
+    private Document addSAMLToken(Document doc) throws Exception {
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(samlCallbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSAMLToken builder = new WSSecSAMLToken(secHeader);
+        return builder.build(samlAssertion);
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.dom;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.AlgorithmSuite;
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.benchmarks.KeyType;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks signing a SOAP Body with WSSecSignature, and verifying the signature with the
+ * WSSecurityEngine. The message is parsed before every invocation, and is not part of the
+ * measurement. Run with "-t" to measure the throughput with several threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    private int messageSize;
+
+    @Param({"BASIC128", "BASIC256_SHA256"})
+    private AlgorithmSuite algorithmSuite;
+
+    @Param({"RSA", "EC"})
+    private KeyType keyType;
+
+    private Crypto crypto;
+    private String message;
+    private String signedMessage;
+
+    private Document document;
+    private Document signedDocument;
+
+    @Setup(Level.Trial)
+    public void initialize() throws Exception {
+        WSSConfig.init();
+        crypto = BenchmarkUtils.getCrypto();
+        message = BenchmarkUtils.createSOAPMessage(messageSize);
+        signedMessage = XMLUtils.prettyDocumentToString(sign(SOAPUtil.toSOAPPart(message)));
+    }
+
+    @Setup(Level.Invocation)
+    public void parseMessages() throws Exception {
+        document = SOAPUtil.toSOAPPart(message);
+        signedDocument = SOAPUtil.toSOAPPart(signedMessage);
+    }
+
+    @Benchmark
+    public Document signature() throws Exception {
+        return sign(document);
+    }
+
+    @Benchmark
+    public WSHandlerResult verification() throws Exception {
+        RequestData data = new RequestData();
+        data.setSigVerCrypto(crypto);
+        return new WSSecurityEngine().processSecurityHeader(signedDocument, data);
+    }
+
+    private Document sign(Document doc) throws Exception {
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo(keyType.getAlias(), BenchmarkUtils.PASSWORD);
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setSignatureAlgorithm(algorithmSuite.getSignatureAlgorithm(keyType));
+        builder.setDigestAlgo(algorithmSuite.getDigestAlgorithm());
+        return builder.build(crypto);
+    }
+
+}
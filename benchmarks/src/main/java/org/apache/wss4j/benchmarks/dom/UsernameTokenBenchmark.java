@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.dom;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecUsernameToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks adding a UsernameToken with WSSecUsernameToken, and processing it with the
+ * WSSecurityEngine. No nonce ReplayCache is configured on the RequestData, as every invocation
+ * processes the same message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsernameTokenBenchmark {
+
+    @Param({"1024", "102400"})
+    private int messageSize;
+
+    @Param({WSConstants.PASSWORD_DIGEST, WSConstants.PASSWORD_TEXT})
+    private String passwordType;
+
+    private CallbackHandler callbackHandler;
+    private String message;
+    private String usernameTokenMessage;
+
+    private Document document;
+    private Document usernameTokenDocument;
+
+    @Setup(Level.Trial)
+    public void initialize() throws Exception {
+        WSSConfig.init();
+        callbackHandler = BenchmarkUtils.getCallbackHandler();
+        message = BenchmarkUtils.createSOAPMessage(messageSize);
+        usernameTokenMessage = XMLUtils.prettyDocumentToString(addUsernameToken(SOAPUtil.toSOAPPart(message)));
+    }
+
+    @Setup(Level.Invocation)
+    public void parseMessages() throws Exception {
+        document = SOAPUtil.toSOAPPart(message);
+        usernameTokenDocument = SOAPUtil.toSOAPPart(usernameTokenMessage);
+    }
+
+    @Benchmark
+    public Document usernameToken() throws Exception {
+        return addUsernameToken(document);
+    }
+
+    @Benchmark
+    public WSHandlerResult usernameTokenProcessing() throws Exception {
+        RequestData data = new RequestData();
+        data.setCallbackHandler(callbackHandler);
+        return new WSSecurityEngine().processSecurityHeader(usernameTokenDocument, data);
+    }
+
+    private Document addUsernameToken(Document doc) throws Exception {
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+        builder.setPasswordType(passwordType);
+        builder.setUserInfo("wernerd", BenchmarkUtils.PASSWORD);
+        return builder.build();
+    }
+
+}
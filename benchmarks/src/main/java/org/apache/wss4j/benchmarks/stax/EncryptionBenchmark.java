@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.AlgorithmSuite;
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.benchmarks.KeyType;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks encrypting a SOAP Body with OutboundWSSec, and decrypting it with InboundWSSec.
+ * The session key is transported with the RSA key, as there is no key agreement support for
+ * EC keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionBenchmark extends AbstractStAXBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    private int messageSize;
+
+    @Param({"BASIC128", "BASIC256_SHA256", "BASIC256_GCM_SHA256"})
+    private AlgorithmSuite algorithmSuite;
+
+    private OutboundWSSec outboundWSSec;
+    private InboundWSSec inboundWSSec;
+    private byte[] message;
+    private byte[] encryptedMessage;
+
+    @Setup(Level.Trial)
+    public void initialize() throws Exception {
+        WSSSecurityProperties outboundProperties = new WSSSecurityProperties();
+        outboundProperties.setActions(Collections.singletonList(WSSConstants.ENCRYPTION));
+        outboundProperties.loadEncryptionKeystore(BenchmarkUtils.getKeyStoreURL(), BenchmarkUtils.PASSWORD.toCharArray());
+        outboundProperties.setEncryptionUser(KeyType.RSA.getAlias());
+        outboundProperties.setEncryptionSymAlgorithm(algorithmSuite.getEncryptionAlgorithm());
+        outboundProperties.setEncryptionKeyTransportAlgorithm(algorithmSuite.getKeyTransportAlgorithm());
+        outboundWSSec = WSSec.getOutboundWSSec(outboundProperties);
+
+        WSSSecurityProperties inboundProperties = new WSSSecurityProperties();
+        inboundProperties.loadDecryptionKeystore(BenchmarkUtils.getKeyStoreURL(), BenchmarkUtils.PASSWORD.toCharArray());
+        inboundProperties.setCallbackHandler(BenchmarkUtils.getCallbackHandler());
+        inboundWSSec = WSSec.getInboundWSSec(inboundProperties);
+
+        message = BenchmarkUtils.createSOAPMessage(messageSize).getBytes(StandardCharsets.UTF_8);
+        encryptedMessage = processOutbound(outboundWSSec, message);
+    }
+
+    @Benchmark
+    public byte[] encryption() throws Exception {
+        return processOutbound(outboundWSSec, message);
+    }
+
+    @Benchmark
+    public int decryption() throws Exception {
+        return processInbound(inboundWSSec, encryptedMessage);
+    }
+
+}
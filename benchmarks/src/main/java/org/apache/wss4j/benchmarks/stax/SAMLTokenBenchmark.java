@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.benchmarks.KeyType;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.dom.common.SAML2CallbackHandler;
+import org.apache.wss4j.stax.ext.DocumentCreatorImpl;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.processor.input.SAMLTokenInputHandler;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Benchmarks building the DOM of a received SAML 2 assertion from its buffered StAX events, as the
+ * SAMLTokenInputHandler does before the assertion is unmarshalled by OpenSAML: in a single pass that
+ * tracks the namespaces in scope and merges adjacent character events ("buildDocument"), and with one
+ * parseXMLEvent call per event, which looks up the namespaces in the document ("parseXMLEvent").
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SAMLTokenBenchmark {
+
+    @Param({"AUTHN", "ATTR"})
+    private SAML2CallbackHandler.Statement statement;
+
+    @Param({"false", "true"})
+    private boolean signAssertion;
+
+    private final DocumentBuildingHandler handler = new DocumentBuildingHandler();
+    private WSSSecurityProperties securityProperties;
+    private Deque<XMLSecEvent> eventDeque;
+
+    @Setup
+    public void initialize() throws Exception {
+        WSSec.init();
+        Crypto crypto = BenchmarkUtils.getCrypto();
+
+        SAML2CallbackHandler samlCallbackHandler = new SAML2CallbackHandler();
+        samlCallbackHandler.setStatement(statement);
+        samlCallbackHandler.setIssuer("www.example.com");
+
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(samlCallbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        if (signAssertion) {
+            samlAssertion.signAssertion(
+                KeyType.RSA.getAlias(), BenchmarkUtils.PASSWORD, crypto, false
+            );
+        }
+        String assertion = samlAssertion.assertionToString();
+
+        securityProperties = new WSSSecurityProperties();
+        securityProperties.setDocumentCreator(new DocumentCreatorImpl());
+        eventDeque = getEvents(assertion);
+    }
+
+    @Benchmark
+    public Document buildDocument() throws Exception {
+        return handler.buildDocument(eventDeque, securityProperties);
+    }
+
+    @Benchmark
+    public Document parseXMLEvent() throws Exception {
+        Document document = securityProperties.getDocumentCreator().newDocument();
+        Node currentNode = document;
+        Iterator<XMLSecEvent> xmlSecEventIterator = eventDeque.descendingIterator();
+        while (xmlSecEventIterator.hasNext()) {
+            currentNode = handler.parseXMLEvent(xmlSecEventIterator.next(), currentNode, document);
+        }
+        return document;
+    }
+
+    /**
+     * Get the events of the assertion, in the order of the event queue of the InputProcessorChain
+     * (the first event last)
+     */
+    private static Deque<XMLSecEvent> getEvents(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+
+        Deque<XMLSecEvent> events = new ArrayDeque<>();
+        XMLSecStartElement parent = null;
+        while (xmlStreamReader.hasNext()) {
+            int eventType = xmlStreamReader.next();
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                break;
+            }
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parent);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                parent = xmlSecEvent.asStartElement();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                parent = parent.getParentXMLSecStartElement();
+            }
+            events.push(xmlSecEvent);
+        }
+        xmlStreamReader.close();
+        return events;
+    }
+
+    private static final class DocumentBuildingHandler extends SAMLTokenInputHandler {
+
+        Document buildDocument(Deque<XMLSecEvent> eventDeque, WSSSecurityProperties securityProperties)
+            throws Exception {
+            return parseStructure(eventDeque, 0, securityProperties);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.AlgorithmSuite;
+import org.apache.wss4j.benchmarks.BenchmarkUtils;
+import org.apache.wss4j.benchmarks.KeyType;
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks signing a SOAP Body with OutboundWSSec, and verifying the signature with
+ * InboundWSSec. Run with "-t" to measure the throughput with several threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark extends AbstractStAXBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    private int messageSize;
+
+    @Param({"BASIC128", "BASIC256_SHA256"})
+    private AlgorithmSuite algorithmSuite;
+
+    @Param({"RSA", "EC"})
+    private KeyType keyType;
+
+    private OutboundWSSec outboundWSSec;
+    private InboundWSSec inboundWSSec;
+    private byte[] message;
+    private byte[] signedMessage;
+
+    @Setup(Level.Trial)
+    public void initialize() throws Exception {
+        WSSSecurityProperties outboundProperties = new WSSSecurityProperties();
+        outboundProperties.setActions(Collections.singletonList(WSSConstants.SIGNATURE));
+        outboundProperties.loadSignatureKeyStore(BenchmarkUtils.getKeyStoreURL(), BenchmarkUtils.PASSWORD.toCharArray());
+        outboundProperties.setSignatureUser(keyType.getAlias());
+        outboundProperties.setSignatureAlgorithm(algorithmSuite.getSignatureAlgorithm(keyType));
+        outboundProperties.setSignatureDigestAlgorithm(algorithmSuite.getDigestAlgorithm());
+        outboundProperties.setCallbackHandler(BenchmarkUtils.getCallbackHandler());
+        outboundWSSec = WSSec.getOutboundWSSec(outboundProperties);
+
+        WSSSecurityProperties inboundProperties = new WSSSecurityProperties();
+        inboundProperties.loadSignatureVerificationKeystore(
+            BenchmarkUtils.getKeyStoreURL(), BenchmarkUtils.PASSWORD.toCharArray()
+        );
+        // The Basic Security Profile only allows RSA-SHA1 signatures
+        inboundProperties.addIgnoreBSPRule(BSPRule.R5421);
+        inboundWSSec = WSSec.getInboundWSSec(inboundProperties);
+
+        message = BenchmarkUtils.createSOAPMessage(messageSize).getBytes(StandardCharsets.UTF_8);
+        signedMessage = processOutbound(outboundWSSec, message);
+    }
+
+    @Benchmark
+    public byte[] signature() throws Exception {
+        return processOutbound(outboundWSSec, message);
+    }
+
+    @Benchmark
+    public int verification() throws Exception {
+        return processInbound(inboundWSSec, signedMessage);
+    }
+
+}
@@ -24,7 +24,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import javax.crypto.SecretKey;
@@ -33,6 +37,7 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.PasswordCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
 import javax.xml.crypto.dsig.SignatureMethod;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.stream.XMLInputFactory;
@@ -43,8 +48,12 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.kerby.kerberos.kerb.server.SimpleKdcServer;
+import org.apache.wss4j.common.cache.ConcurrentMemoryReplayCache;
+import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredential;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.spnego.SpnegoTokenContext;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -81,7 +90,10 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -111,6 +123,9 @@ public class KerberosTest {
         // System.setProperty("sun.security.krb5.debug", "true");
         System.setProperty("java.security.auth.login.config", basedir + "/target/test-classes/kerberos/kerberos.jaas");
         System.setProperty("java.security.krb5.conf", basedir + "/target/krb5.conf");
+        // Disable the replay cache of the GSS acceptor (which is read once per JVM), so that a replayed token
+        // reaches the ReplayCache of the KerberosServiceCredentialCache
+        System.setProperty("sun.security.krb5.rcache", "none");
 
         kerbyServer = new SimpleKdcServer();
 
@@ -215,6 +230,165 @@ public class KerberosTest {
         assertTrue(principal.getName().contains("alice"));
     }
 
+    /**
+     * Process several Kerberos tokens with a KerberosServiceCredentialCache, so that the service only
+     * logs in once.
+     */
+    @Test
+    public void testKerberosServiceCredentialCache() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = getPasswordCallbackHandler();
+        try (KerberosServiceCredentialCache serviceCredentialCache = new KerberosServiceCredentialCache()) {
+            WSSConfig wssConfig = WSSConfig.getNewInstance();
+            KerberosTokenValidator validator = new KerberosTokenValidator();
+            validator.setContextName("bob");
+            validator.setServiceName("bob@service.ws.apache.org");
+            validator.setServiceCredentialCache(serviceCredentialCache);
+            wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+            WSSecurityEngine secEngine = new WSSecurityEngine();
+            secEngine.setWssConfig(wssConfig);
+
+            for (int i = 0; i < 2; i++) {
+                Document doc = createKerberosTokenDocument(callbackHandler);
+                WSHandlerResult results =
+                    secEngine.processSecurityHeader(doc, null, callbackHandler, null);
+                WSSecurityEngineResult actionResult =
+                    results.getActionResults().get(WSConstants.BST).get(0);
+                Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+                assertTrue(principal instanceof KerberosPrincipal);
+                assertTrue(principal.getName().contains("alice"));
+            }
+
+            KerberosServiceCredential serviceCredential =
+                serviceCredentialCache.getCredential("bob", callbackHandler);
+            assertSame(serviceCredential, serviceCredentialCache.getCredential("bob", callbackHandler));
+            assertTrue(serviceCredential.getExpiry().isAfter(Instant.now()));
+
+            // A new login is done after the cache was cleared, and the old one is logged out
+            serviceCredentialCache.clear();
+            assertTrue(serviceCredential.getSubject().getPrivateCredentials().isEmpty());
+            assertNotSame(serviceCredential, serviceCredentialCache.getCredential("bob", callbackHandler));
+        }
+    }
+
+    /**
+     * A login whose tickets expire within the refresh margin is reused for the minimum lifetime, and a
+     * login that is replaced is not logged out while its tickets are valid.
+     */
+    @Test
+    public void testKerberosServiceCredentialCacheRefresh() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = getPasswordCallbackHandler();
+        try (KerberosServiceCredentialCache serviceCredentialCache = new KerberosServiceCredentialCache()) {
+            serviceCredentialCache.setRefreshMargin(Duration.ofDays(365L));
+            serviceCredentialCache.setMinLifetime(Duration.ofSeconds(1L));
+
+            Instant now = Instant.now();
+            KerberosServiceCredential serviceCredential =
+                serviceCredentialCache.getCredential("bob", callbackHandler);
+            assertFalse(serviceCredential.getSubject().getPrivateCredentials(KerberosTicket.class).isEmpty());
+            assertFalse(serviceCredential.getExpiry().isBefore(now.plusSeconds(1L)));
+            assertTrue(serviceCredential.getExpiry().isBefore(now.plusSeconds(60L)));
+            assertSame(serviceCredential, serviceCredentialCache.getCredential("bob", callbackHandler));
+
+            Thread.sleep(Duration.between(Instant.now(), serviceCredential.getExpiry()).toMillis() + 100L);
+
+            // The replaced login is kept for the threads that may still use it
+            KerberosServiceCredential newServiceCredential =
+                serviceCredentialCache.getCredential("bob", callbackHandler);
+            assertNotSame(serviceCredential, newServiceCredential);
+            assertFalse(serviceCredential.getSubject().getPrivateCredentials().isEmpty());
+            assertSame(newServiceCredential, serviceCredentialCache.getCredential("bob", callbackHandler));
+
+            // Clearing the cache logs out the replaced login as well
+            serviceCredentialCache.clear();
+            assertTrue(serviceCredential.getSubject().getPrivateCredentials().isEmpty());
+            assertTrue(newServiceCredential.getSubject().getPrivateCredentials().isEmpty());
+        }
+    }
+
+    /**
+     * Process the same Kerberos token twice with a KerberosServiceCredentialCache that detects replays.
+     */
+    @Test
+    public void testKerberosServiceCredentialCacheReplay() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        CallbackHandler callbackHandler = getPasswordCallbackHandler();
+        List<Instant> replayExpiries = new ArrayList<>();
+        List<Boolean> replayResults = new ArrayList<>();
+        try (KerberosServiceCredentialCache serviceCredentialCache = new KerberosServiceCredentialCache();
+            ReplayCache replayCache = new ConcurrentMemoryReplayCache() {
+                @Override
+                public boolean addIfAbsent(String identifier, Instant expiry) {
+                    replayExpiries.add(expiry);
+                    boolean added = super.addIfAbsent(identifier, expiry);
+                    replayResults.add(added);
+                    return added;
+                }
+            }) {
+            serviceCredentialCache.setReplayCache(replayCache);
+
+            WSSConfig wssConfig = WSSConfig.getNewInstance();
+            KerberosTokenValidator validator = new KerberosTokenValidator();
+            validator.setContextName("bob");
+            validator.setServiceName("bob@service.ws.apache.org");
+            validator.setServiceCredentialCache(serviceCredentialCache);
+            wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+            WSSecurityEngine secEngine = new WSSecurityEngine();
+            secEngine.setWssConfig(wssConfig);
+
+            Document doc = createKerberosTokenDocument(callbackHandler);
+            String message = XMLUtils.prettyDocumentToString(doc);
+
+            // A token that is not accepted is not recorded as a replay
+            KerberosTokenValidator otherValidator = new KerberosTokenValidator();
+            otherValidator.setContextName("bob");
+            otherValidator.setServiceName("eve@service.ws.apache.org");
+            otherValidator.setServiceCredentialCache(serviceCredentialCache);
+            WSSConfig otherWssConfig = WSSConfig.getNewInstance();
+            otherWssConfig.setValidator(WSConstants.BINARY_TOKEN, otherValidator);
+            WSSecurityEngine otherSecEngine = new WSSecurityEngine();
+            otherSecEngine.setWssConfig(otherWssConfig);
+            try {
+                otherSecEngine.processSecurityHeader(doc, null, callbackHandler, null);
+                fail("Failure expected on a Kerberos token for another service");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+
+            assertTrue(replayExpiries.isEmpty());
+
+            // The accepted token is recorded for twice the clock skew
+            Instant now = Instant.now();
+            secEngine.processSecurityHeader(SOAPUtil.toSOAPPart(message), null, callbackHandler, null);
+            assertEquals(1, replayExpiries.size());
+            assertTrue(!replayExpiries.get(0).isBefore(now.plus(KerberosServiceCredentialCache.DEFAULT_CLOCK_SKEW.multipliedBy(2L))));
+            assertEquals(Collections.singletonList(true), replayResults);
+
+            // The replayed token is rejected by the ReplayCache
+            try {
+                Document replayedDoc = SOAPUtil.toSOAPPart(message);
+                secEngine.processSecurityHeader(replayedDoc, null, callbackHandler, null);
+                fail("Failure expected on a replayed Kerberos token");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.INVALID_SECURITY, ex.getErrorCode());
+            }
+            assertEquals(Arrays.asList(true, false), replayResults);
+        }
+    }
+
     /**
      * Get and validate a SPNEGO token.
      */
@@ -839,6 +1013,77 @@ public class KerberosTest {
         }
     }
 
+    @Test
+    public void testKerberosSignatureInboundServiceCredentialCache() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        try (KerberosServiceCredentialCache serviceCredentialCache = new KerberosServiceCredentialCache()) {
+            for (int i = 0; i < 2; i++) {
+                Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+                WSSecHeader secHeader = new WSSecHeader(doc);
+                secHeader.insertSecurityHeader();
+
+                KerberosSecurity bst = new KerberosSecurity(doc);
+                bst.retrieveServiceTicket("alice", getPasswordCallbackHandler(), "bob@service.ws.apache.org");
+                bst.setID("Id-" + bst.hashCode());
+
+                WSSecSignature sign = new WSSecSignature(secHeader);
+                sign.setSignatureAlgorithm(SignatureMethod.HMAC_SHA1);
+                sign.setKeyIdentifierType(WSConstants.CUSTOM_SYMM_SIGNING);
+                sign.setCustomTokenId(bst.getID());
+                sign.setCustomTokenValueType(WSConstants.WSS_GSS_KRB_V5_AP_REQ);
+                sign.setSecretKey(bst.getSecretKey().getEncoded());
+                sign.build(null);
+                WSSecurityUtil.prependChildElement(secHeader.getSecurityHeaderElement(), bst.getElement());
+
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+                transformer.transform(new DOMSource(doc), new StreamResult(baos));
+
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                securityProperties.setCallbackHandler(new CallbackHandler() {
+                    @Override
+                    public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                        if (callbacks[0] instanceof PasswordCallback) {
+                            PasswordCallback passwordCallback = (PasswordCallback) callbacks[0];
+                            if (passwordCallback.getPrompt().contains("bob")) {
+                                passwordCallback.setPassword("bob".toCharArray());
+                            }
+                        } else if (callbacks[0] instanceof KerberosContextAndServiceNameCallback) {
+                            KerberosContextAndServiceNameCallback cb = (KerberosContextAndServiceNameCallback) callbacks[0];
+                            cb.setContextName("bob");
+                            cb.setServiceName("bob@service.ws.apache.org");
+                        }
+                    }
+                });
+                securityProperties.setKerberosServiceCredentialCache(serviceCredentialCache);
+
+                final List<KerberosTokenSecurityEvent> kerberosTokenSecurityEvents = new ArrayList<>();
+                InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+                SecurityEventListener securityEventListener = new SecurityEventListener() {
+                    @Override
+                    public void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
+                        if (securityEvent instanceof KerberosTokenSecurityEvent) {
+                            kerberosTokenSecurityEvents.add((KerberosTokenSecurityEvent) securityEvent);
+                        }
+                    }
+                };
+                XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(
+                        new ByteArrayInputStream(baos.toByteArray())), null, securityEventListener);
+                StAX2DOM.readDoc(dbf.newDocumentBuilder(), xmlStreamReader);
+
+                assertEquals(kerberosTokenSecurityEvents.size(), 1);
+                final KerberosTokenSecurityEvent kerberosTokenSecurityEvent = kerberosTokenSecurityEvents.get(0);
+                assertSame(serviceCredentialCache.getCredential("bob", null).getSubject(),
+                           kerberosTokenSecurityEvent.getSecurityToken().getSubject());
+                assertEquals(kerberosTokenSecurityEvent.getSecurityToken().getPrincipal().getName(), "alice@service.ws.apache.org");
+            }
+        }
+    }
+
     @Test
     public void testKerberosSignatureKIInbound() throws Exception {
         if (!runTests) {
@@ -1277,4 +1522,32 @@ public class KerberosTest {
         }
     }
 
+
+    private static CallbackHandler getPasswordCallbackHandler() {
+        return new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                if (callbacks[0] instanceof PasswordCallback) {
+                    PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                    if (passwordCallback.getPrompt().contains("alice")) {
+                        passwordCallback.setPassword("alice".toCharArray());
+                    } else if (passwordCallback.getPrompt().contains("bob")) {
+                        passwordCallback.setPassword("bob".toCharArray());
+                    }
+                }
+            }
+        };
+    }
+
+    private static Document createKerberosTokenDocument(CallbackHandler callbackHandler) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        KerberosSecurity bst = new KerberosSecurity(doc);
+        bst.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+        WSSecurityUtil.prependChildElement(secHeader.getSecurityHeaderElement(), bst.getElement());
+        return doc;
+    }
 }
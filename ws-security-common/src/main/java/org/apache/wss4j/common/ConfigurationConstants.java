@@ -909,6 +909,69 @@ public class ConfigurationConstants {
      */
     public static final String SAML_ONE_TIME_USE_CACHE_INSTANCE = "samlOneTimeUseCacheInstance";
 
+    /**
+     * This holds a reference to an EncryptedKeyCache instance used to cache the secret keys of the
+     * EncryptedKeys that have been decrypted, so that the private key operation is skipped when an
+     * EncryptedKey is received again, and EncryptedKeySHA1 references can be resolved against it.
+     * No cache is used by default.
+     */
+    public static final String ENCRYPTED_KEY_CACHE_INSTANCE = "encryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a SigningCredentialCache instance, which is used to load the private
+     * key and certificates of the signature user once, instead of for every outbound message.
+     * No cache is used by default.
+     */
+    public static final String SIGNING_CREDENTIAL_CACHE_INSTANCE = "signingCredentialCacheInstance";
+
+    /**
+     * This holds a reference to an OutboundSessionKeyCache instance. If it is set, the symmetric session
+     * key of an EncryptedKey is reused for the following messages to the same recipient, which refer to
+     * the EncryptedKey with an EncryptedKeySHA1 KeyIdentifier instead of carrying a new EncryptedKey.
+     * The recipient must cache the session key, e.g. via the ENCRYPTED_KEY_CACHE_INSTANCE property.
+     * No cache is used by default.
+     */
+    public static final String OUTBOUND_SESSION_KEY_CACHE_INSTANCE = "outboundSessionKeyCacheInstance";
+
+    /**
+     * This holds a reference to a VerifiedSamlAssertionCache instance. If it is set, the signature of a
+     * signed SAML Assertion is not verified again when exactly the same Assertion is received again,
+     * while the Conditions and the other time-sensitive checks are still done for every message.
+     * A cached Assertion is only used with the same signature verification Crypto, certificate
+     * constraints and revocation setting as it was verified with. No cache is used by default.
+     */
+    public static final String VERIFIED_SAML_ASSERTION_CACHE_INSTANCE = "verifiedSamlAssertionCacheInstance";
+
+    /**
+     * This holds a reference to an Instrumentation instance, which records the number, the duration and
+     * the processed bytes of the expensive operations of the security processing, e.g. the
+     * InMemoryInstrumentation or the JMXInstrumentation. By default nothing is recorded.
+     */
+    public static final String INSTRUMENTATION_INSTANCE = "instrumentationInstance";
+
+    /**
+     * This holds a reference to a KerberosServiceCredentialCache instance. If it is set, the JAAS login
+     * of the service that validates a received Kerberos token is done once and reused for the subsequent
+     * tokens, until shortly before the tickets of the service expire. By default a login is done for
+     * every received Kerberos token.
+     */
+    public static final String KERBEROS_SERVICE_CREDENTIAL_CACHE_INSTANCE = "kerberosServiceCredentialCacheInstance";
+
+    /**
+     * This holds a reference to a UsernameTokenKeyCache instance. If it is set, a key that is derived from
+     * the password of a received UsernameToken is cached, and reused when the same user sends the same
+     * Salt and Iteration again. No cache is used by default.
+     */
+    public static final String USERNAME_TOKEN_KEY_CACHE_INSTANCE = "usernameTokenKeyCacheInstance";
+
+    /**
+     * This holds a reference to a DerivedKeyCache instance. If it is set, the keys that are derived for the
+     * received DerivedKeyTokens are cached per session (i.e. per token that the DerivedKeyTokens refer to),
+     * and reused when a DerivedKeyToken with the same nonce, label, offset and length is received again.
+     * No cache is used by default.
+     */
+    public static final String DERIVED_KEY_CACHE_INSTANCE = "derivedKeyCacheInstance";
+
     /**
      * This holds a reference to a PasswordEncryptor instance, which is used to encrypt or
      * decrypt passwords in the Merlin Crypto implementation (or any custom Crypto implementations).
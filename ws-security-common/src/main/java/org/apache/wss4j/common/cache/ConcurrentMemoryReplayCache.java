@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory ReplayCache implementation for highly concurrent use. Identifiers are stored in a
+ * ConcurrentHashMap together with their expiry time, so that lookups do not block and insertions
+ * only contend with insertions of identifiers in the same bin. Expired identifiers are treated as
+ * absent when they are looked up, and are purged from the map by at most one thread at a time,
+ * at most once every "purge interval", rather than on every call. The default TTL is 5 minutes
+ * and the max TTL is 60 minutes.
+ */
+public class ConcurrentMemoryReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = MemoryReplayCache.DEFAULT_TTL;
+    public static final long MAX_TTL = MemoryReplayCache.MAX_TTL;
+    public static final long DEFAULT_PURGE_INTERVAL = 60L;
+
+    private final ConcurrentMap<String, Instant> cache = new ConcurrentHashMap<>();
+    private final long purgeIntervalMillis;
+    private final AtomicLong nextPurge;
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    public ConcurrentMemoryReplayCache() {
+        this(DEFAULT_PURGE_INTERVAL);
+    }
+
+    /**
+     * @param purgeInterval The minimum interval (in seconds) between two purges of expired identifiers
+     */
+    public ConcurrentMemoryReplayCache(long purgeInterval) {
+        if (purgeInterval <= 0) {
+            throw new IllegalArgumentException("The purgeInterval parameter must be greater than 0 (seconds)");
+        }
+        purgeIntervalMillis = purgeInterval * 1000L;
+        nextPurge = new AtomicLong(System.currentTimeMillis() + purgeIntervalMillis);
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, null);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || identifier.length() == 0) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        cache.put(identifier, getExpiry(now, expiry));
+        purgeIfRequired(now);
+    }
+
+    /**
+     * Add the given identifier to the cache if it is not already contained in the cache
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || identifier.length() == 0) {
+            return true;
+        }
+
+        Instant now = Instant.now();
+        Instant newExpiry = getExpiry(now, expiry);
+        try {
+            while (true) {
+                Instant existingExpiry = cache.putIfAbsent(identifier, newExpiry);
+                if (existingExpiry == null) {
+                    return true;
+                } else if (!existingExpiry.isBefore(now)) {
+                    return false;
+                } else if (cache.replace(identifier, existingExpiry, newExpiry)) {
+                    // The existing identifier had expired, but was not yet purged
+                    return true;
+                }
+                // Otherwise a concurrent call has modified the entry, so try again
+            }
+        } finally {
+            purgeIfRequired(now);
+        }
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || identifier.length() == 0) {
+            return false;
+        }
+
+        Instant expiry = cache.get(identifier);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry.isBefore(Instant.now())) {
+            cache.remove(identifier, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    private static Instant getExpiry(Instant now, Instant expiry) {
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(now.plusSeconds(MAX_TTL))) {
+            return now.plusSeconds(DEFAULT_TTL);
+        }
+        return expiry;
+    }
+
+    private void purgeIfRequired(Instant now) {
+        long currentTime = now.toEpochMilli();
+        if (currentTime < nextPurge.get() || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (currentTime >= nextPurge.get()) {
+                cache.values().removeIf(expiry -> expiry.isBefore(now));
+                nextPurge.set(currentTime + purgeIntervalMillis);
+            }
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void close() {
+        cache.clear();
+    }
+
+}
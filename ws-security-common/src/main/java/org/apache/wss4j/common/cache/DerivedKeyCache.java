@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache of the keys that are derived for the DerivedKeyTokens of a session, e.g. of a
+ * WS-SecureConversation security context. The keys are grouped by the identifier of the session,
+ * which is the identifier of the token that the DerivedKeyTokens refer to (see
+ * DerivedKeyUtils.getSessionId). Within a session, a key is only found again for exactly the same input
+ * of the key derivation, i.e. the algorithm, the secret of the session, the label, the nonce, the offset
+ * and the length. WSS4J does not manage the lifecycle of a security context, so an integrator that does
+ * (e.g. an STS or a WS-SecureConversation endpoint) should call remove when the SecurityContextToken of a
+ * session is cancelled or expires. Otherwise the keys of the session expire like any other key, and until
+ * then can only be found with the secret of the session.
+ */
+public interface DerivedKeyCache extends Closeable {
+
+    /**
+     * Get the identifier that the key derived from the given input is cached under within a session.
+     * It is computed once per key derivation, and passed to get and (on a miss) add.
+     * @param algorithm The key derivation algorithm
+     * @param label The label
+     * @param length The length of the derived key
+     * @param secret The secret to derive the key from
+     * @param nonce The nonce
+     * @param offset The offset
+     */
+    String getIdentifier(String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset)
+        throws WSSecurityException;
+
+    /**
+     * Add a derived key to the cache
+     * @param sessionId The identifier of the session (can be null)
+     * @param identifier The identifier of the input of the key derivation (see getIdentifier)
+     * @param derivedKey The derived key
+     */
+    void add(String sessionId, String identifier, byte[] derivedKey);
+
+    /**
+     * Return the key that was derived from the input with the given identifier, or null if it is not
+     * contained in the cache (anymore)
+     * @param sessionId The identifier of the session (can be null)
+     * @param identifier The identifier of the input of the key derivation (see getIdentifier)
+     */
+    byte[] get(String sessionId, String identifier);
+
+    /**
+     * Remove (and overwrite) the keys that were derived for a session. This is the hook to call when the
+     * SecurityContextToken of the session is cancelled or expires, so that its keys are not kept until
+     * they expire in the cache.
+     * @param sessionId The identifier of the session (see DerivedKeyUtils.getSessionId)
+     */
+    void remove(String sessionId);
+
+}
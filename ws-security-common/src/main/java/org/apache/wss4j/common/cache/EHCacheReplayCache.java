@@ -139,6 +139,24 @@ public class EHCacheReplayCache implements ReplayCache {
         return element != null;
     }
 
+    /**
+     * Add the given identifier to the cache if it is not already contained in the cache
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || identifier.length() == 0) {
+            return true;
+        }
+        if (cache == null) {
+            return true;
+        }
+
+        return cache.putIfAbsent(identifier, new EHCacheValue(identifier, expiry)) == null;
+    }
+
     // Only exposed for testing
     EHCacheValue get(String identifier) {
         return cache.get(identifier);
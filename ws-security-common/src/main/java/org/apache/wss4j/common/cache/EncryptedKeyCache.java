@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * A cache of the secret keys of the EncryptedKeys that a recipient has decrypted, indexed by the
+ * "EncryptedKeySHA1" identifier of the EncryptedKey, i.e. the Base64 encoded SHA-1 digest of the
+ * octets of its CipherValue. A client that sends the same EncryptedKey for a whole session then only
+ * costs one private key operation, and the EncryptedKeySHA1 references to it can be resolved without
+ * a CallbackHandler.
+ */
+public interface EncryptedKeyCache extends Closeable {
+
+    /**
+     * Add the given secret key to the cache. It will be cached for a default amount of time.
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     * @param secret The (decrypted) secret key of the EncryptedKey
+     */
+    void add(String identifier, byte[] secret);
+
+    /**
+     * Return the secret key of the EncryptedKey with the given identifier, or null if it is not
+     * contained in the cache (anymore)
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     */
+    byte[] get(String identifier);
+
+    /**
+     * Return the EncryptedKeySHA1 identifier of an EncryptedKey
+     * @param encryptedKey the octets of the CipherValue of the EncryptedKey
+     */
+    static String getIdentifier(byte[] encryptedKey) throws WSSecurityException {
+        return XMLUtils.encodeToString(KeyUtils.generateDigest(encryptedKey));
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import javax.security.auth.Subject;
+
+/**
+ * A cache of the successful JAAS logins of the JAASUsernameTokenValidator. When a UsernameToken with
+ * the same username and password is received again, the Subject of the previous login is used instead
+ * of logging in again. Failed logins are never cached. The cache is only consulted for the login
+ * itself, the Nonce and Created values of the UsernameToken are still checked for each message.
+ *
+ * Implementations must not store the password in clear text.
+ */
+public interface LoginCache extends Closeable {
+
+    /**
+     * Add the Subject of a successful login
+     * @param contextName The name of the JAAS LoginContext
+     * @param username The username that was used to log in
+     * @param password The password that was used to log in
+     * @param subject The authenticated Subject
+     */
+    void add(String contextName, String username, String password, Subject subject);
+
+    /**
+     * Return the Subject of a previous successful login with the given username and password, or null
+     * if there is no such login in the cache (anymore), in which case the login must be done as usual.
+     * @param contextName The name of the JAAS LoginContext
+     * @param username The username to log in with
+     * @param password The password to log in with
+     */
+    Subject get(String contextName, String username, String password);
+
+}
@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.DigestUtils;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * A simple in-memory DerivedKeyCache. Within a session, the derived keys are indexed by an HMAC-SHA256
+ * of the input of the key derivation, with a random key that is chosen for each cache instance, so that
+ * the cache does not hold the secrets of the sessions. The derived keys expire a fixed amount of time
+ * after they were added. The least recently used session is evicted when the maximum number of sessions
+ * is exceeded, and the least recently used key of a session is evicted when the maximum number of keys
+ * per session is exceeded. The derived keys are overwritten when they expire, are evicted, or the cache
+ * is closed. The default TTL is 5 minutes, the default maximum number of sessions is 1000 and
+ * the default maximum number of keys per session is 100.
+ */
+public class MemoryDerivedKeyCache implements DerivedKeyCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_SESSIONS = 1000;
+    public static final int DEFAULT_MAX_KEYS_PER_SESSION = 100;
+
+    // The session of the DerivedKeyTokens without a session identifier
+    private static final String DEFAULT_SESSION_ID = "";
+
+    private final Map<String, Map<String, CachedKey>> sessions;
+    private final long ttlMillis;
+    private final int maxKeysPerSession;
+    private final SecretKeySpec identifierKey;
+    // The Mac of the current thread, initialized with the identifierKey. The identifierKey is not
+    // the secret of a session, so it can be retained by the Mac.
+    private final ThreadLocal<Mac> identifierMac = new ThreadLocal<>();
+
+    public MemoryDerivedKeyCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_SESSIONS, DEFAULT_MAX_KEYS_PER_SESSION);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which a derived key is cached
+     * @param maxSessions The maximum number of sessions whose derived keys are cached
+     * @param maxKeysPerSession The maximum number of derived keys that are cached per session
+     */
+    public MemoryDerivedKeyCache(long ttl, final int maxSessions, int maxKeysPerSession) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("The maxSessions parameter must be greater than 0");
+        }
+        if (maxKeysPerSession <= 0) {
+            throw new IllegalArgumentException("The maxKeysPerSession parameter must be greater than 0");
+        }
+        ttlMillis = ttl * 1000L;
+        this.maxKeysPerSession = maxKeysPerSession;
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        identifierKey = new SecretKeySpec(keyBytes, DigestUtils.HMAC_SHA256);
+        sessions = new LinkedHashMap<String, Map<String, CachedKey>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, CachedKey>> eldest) {
+                if (size() > maxSessions) {
+                    clearSession(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void add(String sessionId, String identifier, byte[] derivedKey) {
+        if (identifier == null || derivedKey == null || derivedKey.length == 0) {
+            return;
+        }
+
+        CachedKey cachedKey = new CachedKey(derivedKey.clone(), System.currentTimeMillis() + ttlMillis);
+        synchronized (sessions) {
+            Map<String, CachedKey> session =
+                sessions.computeIfAbsent(getSessionId(sessionId), k -> createSession());
+            CachedKey previous = session.put(identifier, cachedKey);
+            if (previous != null) {
+                previous.clear();
+            }
+        }
+    }
+
+    @Override
+    public byte[] get(String sessionId, String identifier) {
+        byte[] derivedKey = null;
+        if (identifier != null) {
+            long currentTime = System.currentTimeMillis();
+            synchronized (sessions) {
+                Map<String, CachedKey> session = sessions.get(getSessionId(sessionId));
+                CachedKey cachedKey = session != null ? session.get(identifier) : null;
+                if (cachedKey != null && cachedKey.expiry < currentTime) {
+                    processTokenExpiry(currentTime);
+                } else if (cachedKey != null) {
+                    derivedKey = cachedKey.derivedKey.clone();
+                }
+            }
+        }
+        return derivedKey;
+    }
+
+    @Override
+    public void remove(String sessionId) {
+        synchronized (sessions) {
+            Map<String, CachedKey> session = sessions.remove(getSessionId(sessionId));
+            if (session != null) {
+                clearSession(session);
+            }
+        }
+    }
+
+    private static String getSessionId(String sessionId) {
+        return sessionId != null ? sessionId : DEFAULT_SESSION_ID;
+    }
+
+    private Map<String, CachedKey> createSession() {
+        return new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                if (size() > maxKeysPerSession) {
+                    eldest.getValue().clear();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The identifier is an HMAC-SHA256 of the input, with the random key of this cache. It returns null
+     * (i.e. the key is not cached) if there is no secret or nonce.
+     */
+    @Override
+    public String getIdentifier(String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset)
+        throws WSSecurityException {
+        if (secret == null || nonce == null) {
+            return null;
+        }
+        try {
+            Mac mac = identifierMac.get();
+            if (mac == null) {
+                mac = Mac.getInstance(DigestUtils.HMAC_SHA256);
+                mac.init(identifierKey);
+                identifierMac.set(mac);
+            }
+            update(mac, algorithm != null ? algorithm.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+            update(mac, label != null ? label.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+            mac.update(intToBytes(length));
+            update(mac, secret);
+            update(mac, nonce);
+            mac.update(intToBytes(offset));
+            return XMLUtils.encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    // The length is prepended, so that the concatenation of the inputs is unambiguous
+    private static void update(Mac mac, byte[] input) {
+        mac.update(intToBytes(input.length));
+        mac.update(input);
+    }
+
+    private static byte[] intToBytes(int value) {
+        return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+    }
+
+    private void processTokenExpiry(long currentTime) {
+        Iterator<Map<String, CachedKey>> sessionIterator = sessions.values().iterator();
+        while (sessionIterator.hasNext()) {
+            Map<String, CachedKey> session = sessionIterator.next();
+            Iterator<CachedKey> iterator = session.values().iterator();
+            while (iterator.hasNext()) {
+                CachedKey cachedKey = iterator.next();
+                if (cachedKey.expiry < currentTime) {
+                    cachedKey.clear();
+                    iterator.remove();
+                }
+            }
+            if (session.isEmpty()) {
+                sessionIterator.remove();
+            }
+        }
+    }
+
+    private static void clearSession(Map<String, CachedKey> session) {
+        for (CachedKey cachedKey : session.values()) {
+            cachedKey.clear();
+        }
+        session.clear();
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (sessions) {
+            int size = 0;
+            for (Map<String, CachedKey> session : sessions.values()) {
+                size += session.size();
+            }
+            return size;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (sessions) {
+            for (Map<String, CachedKey> session : sessions.values()) {
+                clearSession(session);
+            }
+            sessions.clear();
+        }
+    }
+
+    private static final class CachedKey {
+        private final byte[] derivedKey;
+        private final long expiry;
+
+        CachedKey(byte[] derivedKey, long expiry) {
+            this.derivedKey = derivedKey;
+            this.expiry = expiry;
+        }
+
+        void clear() {
+            Arrays.fill(derivedKey, (byte) 0);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A simple in-memory EncryptedKeyCache. The secret keys expire a fixed amount of time after they were
+ * added, and the least recently used secret key is evicted when the maximum number of entries is exceeded.
+ * The default TTL is 5 minutes and the default maximum number of entries is 1000.
+ */
+public class MemoryEncryptedKeyCache implements EncryptedKeyCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<String, CachedSecret> cache;
+    private final long ttlMillis;
+
+    public MemoryEncryptedKeyCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which a secret key is cached
+     * @param maxEntries The maximum number of secret keys that are cached
+     */
+    public MemoryEncryptedKeyCache(long ttl, final int maxEntries) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        ttlMillis = ttl * 1000L;
+        cache = new LinkedHashMap<String, CachedSecret>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSecret> eldest) {
+                if (size() > maxEntries) {
+                    eldest.getValue().clear();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Add the given secret key to the cache. It will be cached for the configured TTL.
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     * @param secret The (decrypted) secret key of the EncryptedKey
+     */
+    @Override
+    public void add(String identifier, byte[] secret) {
+        if (identifier == null || identifier.length() == 0 || secret == null || secret.length == 0) {
+            return;
+        }
+
+        CachedSecret cachedSecret = new CachedSecret(secret.clone(), System.currentTimeMillis() + ttlMillis);
+        synchronized (cache) {
+            CachedSecret previous = cache.put(identifier, cachedSecret);
+            if (previous != null) {
+                previous.clear();
+            }
+        }
+    }
+
+    /**
+     * Return the secret key of the EncryptedKey with the given identifier, or null if it is not
+     * contained in the cache (anymore)
+     * @param identifier The EncryptedKeySHA1 identifier of the EncryptedKey
+     */
+    @Override
+    public byte[] get(String identifier) {
+        byte[] secret = null;
+        if (identifier != null && identifier.length() != 0) {
+            long currentTime = System.currentTimeMillis();
+            synchronized (cache) {
+                CachedSecret cachedSecret = cache.get(identifier);
+                if (cachedSecret != null && cachedSecret.expiry < currentTime) {
+                    processTokenExpiry(currentTime);
+                } else if (cachedSecret != null) {
+                    secret = cachedSecret.secret.clone();
+                }
+            }
+        }
+        return secret;
+    }
+
+    private void processTokenExpiry(long currentTime) {
+        Iterator<CachedSecret> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            CachedSecret cachedSecret = iterator.next();
+            if (cachedSecret.expiry < currentTime) {
+                cachedSecret.clear();
+                iterator.remove();
+            }
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            for (CachedSecret cachedSecret : cache.values()) {
+                cachedSecret.clear();
+            }
+            cache.clear();
+        }
+    }
+
+    private static final class CachedSecret {
+        private final byte[] secret;
+        private final long expiry;
+
+        CachedSecret(byte[] secret, long expiry) {
+            this.secret = secret;
+            this.expiry = expiry;
+        }
+
+        void clear() {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+
+/**
+ * A simple in-memory LoginCache. Only a salted SHA-256 hash of the password is stored, where the salt
+ * is chosen randomly for each entry. A login expires a fixed amount of time after it was added, so
+ * that a changed password or a disabled account is taken into account after that time at the latest.
+ * The least recently used login is evicted when the maximum number of entries is exceeded. The default
+ * TTL is 5 minutes and the default maximum number of entries is 1000.
+ *
+ * The cached Subject is not returned itself, but a (read-only) copy of it, so that it cannot be
+ * modified by the processing of one message for the following messages.
+ */
+public class MemoryLoginCache implements LoginCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final int SALT_LENGTH = 16;
+
+    private final Map<List<String>, CachedLogin> cache;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+
+    public MemoryLoginCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which a login is cached at most
+     * @param maxEntries The maximum number of logins that are cached
+     */
+    public MemoryLoginCache(long ttl, final int maxEntries) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        ttlMillis = ttl * 1000L;
+        cache = new LinkedHashMap<List<String>, CachedLogin>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, CachedLogin> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public void add(String contextName, String username, String password, Subject subject) {
+        if (username == null || password == null || subject == null) {
+            return;
+        }
+
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        CachedLogin cachedLogin =
+            new CachedLogin(salt, hash(salt, password), copy(subject), System.currentTimeMillis() + ttlMillis);
+        synchronized (cache) {
+            cache.put(Arrays.asList(contextName, username), cachedLogin);
+        }
+    }
+
+    @Override
+    public Subject get(String contextName, String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+
+        CachedLogin cachedLogin;
+        long currentTime = System.currentTimeMillis();
+        synchronized (cache) {
+            cachedLogin = cache.get(Arrays.asList(contextName, username));
+            if (cachedLogin != null && cachedLogin.expiry < currentTime) {
+                processTokenExpiry(currentTime);
+                return null;
+            }
+        }
+
+        // Only use the cached login if the password is the same as the one that was used to log in
+        if (cachedLogin != null && MessageDigest.isEqual(cachedLogin.passwordHash, hash(cachedLogin.salt, password))) {
+            return copy(cachedLogin.subject);
+        }
+        return null;
+    }
+
+    private static byte[] hash(byte[] salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Subject copy(Subject subject) {
+        return new Subject(true, subject.getPrincipals(), subject.getPublicCredentials(),
+                           subject.getPrivateCredentials());
+    }
+
+    private void processTokenExpiry(long currentTime) {
+        Iterator<CachedLogin> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiry < currentTime) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static final class CachedLogin {
+        private final byte[] salt;
+        private final byte[] passwordHash;
+        private final Subject subject;
+        private final long expiry;
+
+        CachedLogin(byte[] salt, byte[] passwordHash, Subject subject, long expiry) {
+            this.salt = salt;
+            this.passwordHash = passwordHash;
+            this.subject = subject;
+            this.expiry = expiry;
+        }
+    }
+
+}
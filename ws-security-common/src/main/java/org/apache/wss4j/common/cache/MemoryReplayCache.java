@@ -90,6 +90,23 @@ public class MemoryReplayCache implements ReplayCache {
         return false;
     }
 
+    /**
+     * Add the given identifier to the cache if it is not already contained in the cache
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default expiry is used.
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        synchronized (cache) {
+            if (contains(identifier)) {
+                return false;
+            }
+            add(identifier, expiry);
+        }
+        return true;
+    }
+
     protected void processTokenExpiry() {
         Instant current = Instant.now();
         synchronized (cache) {
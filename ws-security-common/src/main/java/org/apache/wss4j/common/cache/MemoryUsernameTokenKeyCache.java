@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.DigestUtils;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * A simple in-memory UsernameTokenKeyCache. The derived keys are indexed by an HMAC-SHA256 of the
+ * username, the password, the Salt and the Iteration, with a random key that is chosen for each cache
+ * instance, so that the cache does not hold the passwords in the clear. Note that the HMAC key is held
+ * in memory as well, so anyone who can read the heap can use it to check guessed passwords against the
+ * cached identifiers, without the cost of the key derivation. The derived keys expire a fixed amount of
+ * time after they were added, and the least recently used key is evicted when the maximum number of
+ * entries is exceeded. The derived keys are overwritten when they expire, are evicted or the cache is
+ * closed. The default TTL is 5 minutes and the default maximum number of entries is 100.
+ */
+public class MemoryUsernameTokenKeyCache implements UsernameTokenKeyCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    private final Map<String, CachedKey> cache;
+    private final long ttlMillis;
+    private final SecretKeySpec identifierKey;
+
+    public MemoryUsernameTokenKeyCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which a derived key is cached
+     * @param maxEntries The maximum number of derived keys that are cached
+     */
+    public MemoryUsernameTokenKeyCache(long ttl, final int maxEntries) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        ttlMillis = ttl * 1000L;
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        identifierKey = new SecretKeySpec(keyBytes, DigestUtils.HMAC_SHA256);
+        cache = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                if (size() > maxEntries) {
+                    eldest.getValue().clear();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void add(String username, byte[] password, byte[] salt, int iteration, byte[] derivedKey)
+        throws WSSecurityException {
+        if (password == null || salt == null || derivedKey == null || derivedKey.length == 0) {
+            return;
+        }
+
+        String identifier = getIdentifier(username, password, salt, iteration);
+        CachedKey cachedKey = new CachedKey(derivedKey.clone(), System.currentTimeMillis() + ttlMillis);
+        synchronized (cache) {
+            CachedKey previous = cache.put(identifier, cachedKey);
+            if (previous != null) {
+                previous.clear();
+            }
+        }
+    }
+
+    @Override
+    public byte[] get(String username, byte[] password, byte[] salt, int iteration) throws WSSecurityException {
+        byte[] derivedKey = null;
+        if (password != null && salt != null) {
+            String identifier = getIdentifier(username, password, salt, iteration);
+            long currentTime = System.currentTimeMillis();
+            synchronized (cache) {
+                CachedKey cachedKey = cache.get(identifier);
+                if (cachedKey != null && cachedKey.expiry < currentTime) {
+                    processTokenExpiry(currentTime);
+                } else if (cachedKey != null) {
+                    derivedKey = cachedKey.derivedKey.clone();
+                }
+            }
+        }
+        return derivedKey;
+    }
+
+    private String getIdentifier(String username, byte[] password, byte[] salt, int iteration)
+        throws WSSecurityException {
+        try {
+            Mac mac = Mac.getInstance(DigestUtils.HMAC_SHA256);
+            mac.init(identifierKey);
+            update(mac, username != null ? username.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+            update(mac, password);
+            update(mac, salt);
+            mac.update(intToBytes(iteration));
+            return XMLUtils.encodeToString(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    // The length is prepended, so that the concatenation of the inputs is unambiguous
+    private static void update(Mac mac, byte[] input) {
+        mac.update(intToBytes(input.length));
+        mac.update(input);
+    }
+
+    private static byte[] intToBytes(int value) {
+        return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+    }
+
+    private void processTokenExpiry(long currentTime) {
+        Iterator<CachedKey> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            CachedKey cachedKey = iterator.next();
+            if (cachedKey.expiry < currentTime) {
+                cachedKey.clear();
+                iterator.remove();
+            }
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            for (CachedKey cachedKey : cache.values()) {
+                cachedKey.clear();
+            }
+            cache.clear();
+        }
+    }
+
+    private static final class CachedKey {
+        private final byte[] derivedKey;
+        private final long expiry;
+
+        CachedKey(byte[] derivedKey, long expiry) {
+            this.derivedKey = derivedKey;
+            this.expiry = expiry;
+        }
+
+        void clear() {
+            Arrays.fill(derivedKey, (byte) 0);
+        }
+    }
+
+}
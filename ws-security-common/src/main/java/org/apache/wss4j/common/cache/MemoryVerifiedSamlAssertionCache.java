@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+
+/**
+ * A simple in-memory VerifiedSamlAssertionCache. An Assertion expires at its NotOnOrAfter time, or a
+ * fixed amount of time after it was added, whichever is earlier. The least recently used Assertion is
+ * evicted when the maximum number of entries is exceeded. The same Assertion is cached separately for
+ * each SamlTrustContext that it was verified with. The default TTL is 5 minutes and the default
+ * maximum number of entries is 1000.
+ */
+public class MemoryVerifiedSamlAssertionCache implements VerifiedSamlAssertionCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<CacheKey, VerifiedAssertion> cache;
+    private final long ttlMillis;
+
+    public MemoryVerifiedSamlAssertionCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which an Assertion is cached at most
+     * @param maxEntries The maximum number of Assertions that are cached
+     */
+    public MemoryVerifiedSamlAssertionCache(long ttl, final int maxEntries) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maxEntries parameter must be greater than 0");
+        }
+        ttlMillis = ttl * 1000L;
+        cache = new LinkedHashMap<CacheKey, VerifiedAssertion>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, VerifiedAssertion> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public void add(SamlAssertionWrapper samlAssertion, SAMLKeyInfo signatureKeyInfo, SamlTrustContext trustContext)
+        throws WSSecurityException {
+        if (samlAssertion == null || !samlAssertion.isSigned() || signatureKeyInfo == null || trustContext == null) {
+            return;
+        }
+
+        long currentTime = System.currentTimeMillis();
+        long expiry = currentTime + ttlMillis;
+        Instant notOnOrAfter = samlAssertion.getNotOnOrAfter();
+        if (notOnOrAfter != null) {
+            expiry = Math.min(expiry, notOnOrAfter.toEpochMilli());
+        }
+        if (expiry <= currentTime) {
+            return;
+        }
+
+        VerifiedAssertion verifiedAssertion =
+            new VerifiedAssertion(VerifiedSamlAssertionCache.getDigest(samlAssertion), signatureKeyInfo, expiry);
+        CacheKey key = new CacheKey(VerifiedSamlAssertionCache.getIdentifier(samlAssertion), trustContext);
+        synchronized (cache) {
+            cache.put(key, verifiedAssertion);
+        }
+    }
+
+    @Override
+    public SAMLKeyInfo get(SamlAssertionWrapper samlAssertion, SamlTrustContext trustContext)
+        throws WSSecurityException {
+        if (samlAssertion == null || !samlAssertion.isSigned() || trustContext == null) {
+            return null;
+        }
+
+        CacheKey key = new CacheKey(VerifiedSamlAssertionCache.getIdentifier(samlAssertion), trustContext);
+        VerifiedAssertion verifiedAssertion;
+        long currentTime = System.currentTimeMillis();
+        synchronized (cache) {
+            verifiedAssertion = cache.get(key);
+            if (verifiedAssertion != null && verifiedAssertion.expiry < currentTime) {
+                processTokenExpiry(currentTime);
+                return null;
+            }
+        }
+
+        // Only use the cached Assertion if the received Assertion is exactly the same
+        if (verifiedAssertion != null
+            && MessageDigest.isEqual(verifiedAssertion.digest, VerifiedSamlAssertionCache.getDigest(samlAssertion))) {
+            return verifiedAssertion.signatureKeyInfo;
+        }
+        return null;
+    }
+
+    private void processTokenExpiry(long currentTime) {
+        Iterator<VerifiedAssertion> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiry < currentTime) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static final class CacheKey {
+        private final String identifier;
+        private final SamlTrustContext trustContext;
+
+        CacheKey(String identifier, SamlTrustContext trustContext) {
+            this.identifier = identifier;
+            this.trustContext = trustContext;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return identifier.equals(other.identifier) && trustContext.equals(other.trustContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * identifier.hashCode() + trustContext.hashCode();
+        }
+    }
+
+    private static final class VerifiedAssertion {
+        private final byte[] digest;
+        private final SAMLKeyInfo signatureKeyInfo;
+        private final long expiry;
+
+        VerifiedAssertion(byte[] digest, SAMLKeyInfo signatureKeyInfo, long expiry) {
+            this.digest = digest;
+            this.signatureKeyInfo = signatureKeyInfo;
+            this.expiry = expiry;
+        }
+    }
+
+}
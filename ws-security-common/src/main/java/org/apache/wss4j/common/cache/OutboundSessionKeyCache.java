@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of the symmetric session keys that a sender has encrypted for a recipient. The first message
+ * to a recipient carries the EncryptedKey as usual. The following messages are encrypted with the same
+ * session key and refer to the EncryptedKey of the first message with an EncryptedKeySHA1
+ * KeyIdentifier, which saves a public key operation per message.
+ *
+ * A session key is used for at most a fixed number of messages, and for at most a fixed amount of time
+ * after it was added. The recipient must still know the session key for this time, e.g. via an
+ * EncryptedKeyCache with a TTL that is at least as long. As the recipient only learns the session key
+ * from the first message, this mode should only be used when the messages are processed in the order
+ * in which they are sent. If the recipient rejects an EncryptedKeySHA1 reference, the session key
+ * should be removed from the cache, so that the next message carries a new EncryptedKey.
+ */
+public class OutboundSessionKeyCache implements Closeable {
+
+    public static final long DEFAULT_TTL = 60L;
+    public static final int DEFAULT_MAX_MESSAGES = 100;
+
+    private final Map<Recipient, CachedSessionKey> cache = new HashMap<>();
+    private final long ttlMillis;
+    private final int maxMessages;
+
+    public OutboundSessionKeyCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_MESSAGES);
+    }
+
+    /**
+     * @param ttl The time (in seconds) for which a session key is used
+     * @param maxMessages The maximum number of messages that are encrypted with a session key, including
+     * the message that carries the EncryptedKey
+     */
+    public OutboundSessionKeyCache(long ttl, int maxMessages) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("The ttl parameter must be greater than 0 (seconds)");
+        }
+        if (maxMessages <= 0) {
+            throw new IllegalArgumentException("The maxMessages parameter must be greater than 0");
+        }
+        this.ttlMillis = ttl * 1000L;
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Return the session key for the given recipient and symmetric encryption algorithm, and count the
+     * message that is encrypted with it. Return null if there is no session key that can be used for
+     * another message, in which case a new EncryptedKey must be sent and added to the cache.
+     * @param recipientCert The certificate of the recipient of the message
+     * @param symmetricAlgorithm The symmetric encryption algorithm of the message
+     */
+    public SessionKey get(X509Certificate recipientCert, String symmetricAlgorithm) {
+        if (recipientCert == null || symmetricAlgorithm == null) {
+            return null;
+        }
+        Recipient recipient = new Recipient(recipientCert, symmetricAlgorithm);
+        long currentTime = System.currentTimeMillis();
+        synchronized (cache) {
+            CachedSessionKey cachedSessionKey = cache.get(recipient);
+            if (cachedSessionKey == null) {
+                return null;
+            }
+            if (cachedSessionKey.expiry < currentTime || cachedSessionKey.messages >= maxMessages) {
+                cache.remove(recipient);
+                cachedSessionKey.clear();
+                return null;
+            }
+            cachedSessionKey.messages++;
+            return new SessionKey(cachedSessionKey.secret.clone(), cachedSessionKey.encryptedKeySHA1);
+        }
+    }
+
+    /**
+     * Add the session key of an EncryptedKey that was sent to the given recipient. The message that
+     * carries the EncryptedKey counts as the first message of the session key.
+     * @param recipientCert The certificate that the session key was encrypted for
+     * @param symmetricAlgorithm The symmetric encryption algorithm of the message
+     * @param secret The session key
+     * @param encryptedKeySHA1 The EncryptedKeySHA1 identifier of the EncryptedKey
+     */
+    public void add(X509Certificate recipientCert, String symmetricAlgorithm, byte[] secret, String encryptedKeySHA1) {
+        if (recipientCert == null || symmetricAlgorithm == null || secret == null || secret.length == 0
+            || encryptedKeySHA1 == null) {
+            return;
+        }
+        CachedSessionKey cachedSessionKey =
+            new CachedSessionKey(secret.clone(), encryptedKeySHA1, System.currentTimeMillis() + ttlMillis);
+        synchronized (cache) {
+            CachedSessionKey previous = cache.put(new Recipient(recipientCert, symmetricAlgorithm), cachedSessionKey);
+            if (previous != null) {
+                previous.clear();
+            }
+        }
+    }
+
+    /**
+     * Remove the session key for the given recipient and symmetric encryption algorithm, e.g. after the
+     * recipient failed to resolve an EncryptedKeySHA1 reference to it.
+     */
+    public void remove(X509Certificate recipientCert, String symmetricAlgorithm) {
+        if (recipientCert == null || symmetricAlgorithm == null) {
+            return;
+        }
+        synchronized (cache) {
+            CachedSessionKey previous = cache.remove(new Recipient(recipientCert, symmetricAlgorithm));
+            if (previous != null) {
+                previous.clear();
+            }
+        }
+    }
+
+    // Only exposed for testing
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (cache) {
+            for (CachedSessionKey cachedSessionKey : cache.values()) {
+                cachedSessionKey.clear();
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * A session key, together with the EncryptedKeySHA1 identifier of the EncryptedKey that it was sent in
+     */
+    public static final class SessionKey {
+        private final byte[] secret;
+        private final String encryptedKeySHA1;
+
+        SessionKey(byte[] secret, String encryptedKeySHA1) {
+            this.secret = secret;
+            this.encryptedKeySHA1 = encryptedKeySHA1;
+        }
+
+        public byte[] getSecret() {
+            return secret;
+        }
+
+        public String getEncryptedKeySHA1() {
+            return encryptedKeySHA1;
+        }
+    }
+
+    private static final class Recipient {
+        private final X509Certificate certificate;
+        private final String symmetricAlgorithm;
+
+        Recipient(X509Certificate certificate, String symmetricAlgorithm) {
+            this.certificate = certificate;
+            this.symmetricAlgorithm = symmetricAlgorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(certificate, symmetricAlgorithm);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Recipient)) {
+                return false;
+            }
+            Recipient other = (Recipient) obj;
+            return certificate.equals(other.certificate) && symmetricAlgorithm.equals(other.symmetricAlgorithm);
+        }
+    }
+
+    private static final class CachedSessionKey {
+        private final byte[] secret;
+        private final String encryptedKeySHA1;
+        private final long expiry;
+        private int messages = 1;
+
+        CachedSessionKey(byte[] secret, String encryptedKeySHA1, long expiry) {
+            this.secret = secret;
+            this.encryptedKeySHA1 = encryptedKeySHA1;
+            this.expiry = expiry;
+        }
+
+        void clear() {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+
+}
@@ -47,4 +47,22 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Add the given identifier to the cache if it is not already contained in the cache, as a single
+     * operation. This should be used rather than a call to "contains" followed by a call to "add" when
+     * checking for a replay, as otherwise two concurrent requests with the same identifier could both
+     * be accepted. The default implementation is not atomic, and should be overridden.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier. Can be null in which case, the default
+     *               expiry is used.
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    default boolean addIfAbsent(String identifier, Instant expiry) {
+        if (contains(identifier)) {
+            return false;
+        }
+        add(identifier, expiry);
+        return true;
+    }
+
 }
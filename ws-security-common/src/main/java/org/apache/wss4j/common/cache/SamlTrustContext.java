@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+
+/**
+ * The configuration that the signing credential of a SAML Assertion was trusted with: the signature
+ * verification Crypto, the subject and issuer DN constraints of the certificate, and whether revocation
+ * checking was enabled. A VerifiedSamlAssertionCache only returns an Assertion for the same trust context
+ * as it was verified with, so that a cache can be shared by endpoints with a different trust configuration.
+ *
+ * The Crypto is compared by identity, so that no cached Assertion is used if the Crypto is re-created
+ * (for example if a new keystore is loaded).
+ */
+public final class SamlTrustContext {
+
+    private final Crypto sigVerCrypto;
+    private final List<String> subjectCertConstraints;
+    private final List<String> issuerCertConstraints;
+    private final boolean revocationEnabled;
+
+    public SamlTrustContext(
+        Crypto sigVerCrypto,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints,
+        boolean revocationEnabled
+    ) {
+        this.sigVerCrypto = sigVerCrypto;
+        this.subjectCertConstraints = toStrings(subjectCertConstraints);
+        this.issuerCertConstraints = toStrings(issuerCertConstraints);
+        this.revocationEnabled = revocationEnabled;
+    }
+
+    private static List<String> toStrings(Collection<Pattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> strings = new ArrayList<>(patterns.size());
+        for (Pattern pattern : patterns) {
+            strings.add(pattern.flags() + ":" + pattern.pattern());
+        }
+        return strings;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SamlTrustContext)) {
+            return false;
+        }
+        SamlTrustContext other = (SamlTrustContext) obj;
+        return sigVerCrypto == other.sigVerCrypto
+            && revocationEnabled == other.revocationEnabled
+            && subjectCertConstraints.equals(other.subjectCertConstraints)
+            && issuerCertConstraints.equals(other.issuerCertConstraints);
+    }
+
+    @Override
+    public int hashCode() {
+        int hashcode = 17;
+        hashcode = 31 * hashcode + System.identityHashCode(sigVerCrypto);
+        hashcode = 31 * hashcode + (revocationEnabled ? 1 : 0);
+        hashcode = 31 * hashcode + subjectCertConstraints.hashCode();
+        return 31 * hashcode + issuerCertConstraints.hashCode();
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache of the keys that are derived from the password of a UsernameToken, as defined in the
+ * UsernameToken Profile 1.1 (section 4). The derivation of a key runs (at least) 1000 SHA-1 rounds,
+ * and a client that uses a UsernameToken to sign messages typically sends the same Salt and Iteration
+ * for a whole session. The keys are indexed by the username, the password, the Salt and the Iteration,
+ * so that a key is only found again for exactly the same input.
+ */
+public interface UsernameTokenKeyCache extends Closeable {
+
+    /**
+     * Add a derived key to the cache
+     * @param username The username of the UsernameToken
+     * @param password The password that the key was derived from
+     * @param salt The Salt value
+     * @param iteration The Iteration value
+     * @param derivedKey The derived key
+     */
+    void add(String username, byte[] password, byte[] salt, int iteration, byte[] derivedKey)
+        throws WSSecurityException;
+
+    /**
+     * Return the key that was derived from the given input, or null if it is not contained in the
+     * cache (anymore)
+     * @param username The username of the UsernameToken
+     * @param password The password to derive the key from
+     * @param salt The Salt value
+     * @param iteration The Iteration value
+     */
+    byte[] get(String username, byte[] password, byte[] salt, int iteration) throws WSSecurityException;
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Element;
+
+/**
+ * A cache of the signed SAML Assertions whose signature has been verified, and whose signing credential
+ * has been trusted. When the same Assertion is received again, its signature does not need to be verified
+ * again, and only the time-sensitive checks (Conditions, IssueInstant, AudienceRestrictions, OneTimeUse,
+ * AuthnStatements) are done.
+ *
+ * The Assertions are indexed by their ID, Issuer and SignatureValue (see getIdentifier). As these do not
+ * cover the signed content, a cached Assertion is only used if the digest of the whole Assertion
+ * (see getDigest) is the same as the digest of the Assertion that was verified.
+ *
+ * As a cached Assertion skips the trust validation of its signing credential, it is also only used for the
+ * same SamlTrustContext (signature verification Crypto, certificate constraints and revocation setting) as
+ * it was verified with. Any other trust checks, e.g. those of a custom Validator, are not covered by the
+ * SamlTrustContext, so a cache should not be shared by endpoints that are configured with different ones.
+ */
+public interface VerifiedSamlAssertionCache extends Closeable {
+
+    /**
+     * Add a signed Assertion whose signature has been verified, and whose signing credential has been trusted.
+     * It is cached until its NotOnOrAfter time at most.
+     * @param samlAssertion The verified Assertion
+     * @param signatureKeyInfo The SAMLKeyInfo of the credential that the signature was verified with
+     * @param trustContext The SamlTrustContext that the signing credential was trusted with
+     */
+    void add(SamlAssertionWrapper samlAssertion, SAMLKeyInfo signatureKeyInfo, SamlTrustContext trustContext)
+        throws WSSecurityException;
+
+    /**
+     * Return the SAMLKeyInfo of the signature of the given Assertion if it was verified before, or null if
+     * it is not contained in the cache (anymore) for the given SamlTrustContext, in which case the signature
+     * must be verified as usual.
+     * @param samlAssertion The signed Assertion
+     * @param trustContext The SamlTrustContext that the signing credential must have been trusted with
+     */
+    SAMLKeyInfo get(SamlAssertionWrapper samlAssertion, SamlTrustContext trustContext) throws WSSecurityException;
+
+    /**
+     * Return the identifier of a signed Assertion, which consists of its ID, Issuer and the Base64 encoded
+     * SHA-256 digest of its SignatureValue
+     */
+    static String getIdentifier(SamlAssertionWrapper samlAssertion) throws WSSecurityException {
+        MessageDigest messageDigest = getMessageDigest();
+        String signatureValue = XMLUtils.encodeToString(messageDigest.digest(samlAssertion.getSignatureValue()));
+        return samlAssertion.getId() + " " + samlAssertion.getIssuerString() + " " + signatureValue;
+    }
+
+    /**
+     * Return the SHA-256 digest of the canonicalized (inclusive, with comments) DOM Element of an Assertion
+     */
+    static byte[] getDigest(SamlAssertionWrapper samlAssertion) throws WSSecurityException {
+        Element element = samlAssertion.getElement();
+        if (element == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                                          new Object[] {"The SAML Assertion has no DOM Element"});
+        }
+        MessageDigest messageDigest = getMessageDigest();
+        try (OutputStream outputStream = new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest)) {
+            Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS).canonicalizeSubtree(element, outputStream);
+        } catch (XMLSecurityException | IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+        return messageDigest.digest();
+    }
+
+    private static MessageDigest getMessageDigest() throws WSSecurityException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+}
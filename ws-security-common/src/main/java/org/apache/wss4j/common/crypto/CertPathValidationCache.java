@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A size and time bounded cache of the certificate chains that have been successfully validated by
+ * a Crypto instance. The key is a SHA-256 digest of the encoded certificates, the revocation
+ * setting and the Subject/Issuer DN constraints that were used to validate the chain, so that a
+ * chain is only trusted without validation for exactly the same validation request. Failed
+ * validations are never cached.
+ *
+ * An entry expires after the configured TTL, or when a certificate of the chain expires,
+ * whichever is sooner. If the cache is full, the least recently used entry is evicted.
+ */
+final class CertPathValidationCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CertPathValidationCache.class);
+
+    private final long ttl;
+    private final Map<String, Instant> cache;
+
+    /**
+     * @param maxSize The maximum number of cached certificate chains
+     * @param ttl The time (in seconds) for which a validated certificate chain is cached
+     */
+    CertPathValidationCache(final int maxSize, long ttl) {
+        this.ttl = ttl;
+        cache = new LinkedHashMap<String, Instant>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Create the key for the given validation request
+     * @return the key, or null if no key could be created for the certificates
+     */
+    String createKey(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) {
+        if (certs == null || certs.length == 0) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (X509Certificate cert : certs) {
+                digest.update(cert.getEncoded());
+            }
+            digest.update(enableRevocation ? (byte) 1 : (byte) 0);
+            updateDigest(digest, subjectCertConstraints);
+            updateDigest(digest, issuerCertConstraints);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            LOG.debug("Error in creating the certificate path cache key: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, Collection<Pattern> patterns) {
+        // Separates the Subject constraints from the Issuer constraints
+        digest.update((byte) 0);
+        if (patterns != null) {
+            for (Pattern pattern : patterns) {
+                digest.update(pattern.pattern().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Integer.toString(pattern.flags()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+        }
+    }
+
+    /**
+     * @return true if a validation request with the given key was successful, and has not expired
+     */
+    boolean contains(String key) {
+        Instant now = Instant.now();
+        synchronized (cache) {
+            Instant expiry = cache.get(key);
+            if (expiry == null) {
+                return false;
+            }
+            if (!expiry.isAfter(now)) {
+                cache.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Record that the validation request with the given key was successful
+     */
+    void add(String key, X509Certificate[] certs) {
+        Instant expiry = Instant.now().plusSeconds(ttl);
+        for (X509Certificate cert : certs) {
+            Instant notAfter = cert.getNotAfter().toInstant();
+            if (notAfter.isBefore(expiry)) {
+                expiry = notAfter;
+            }
+        }
+        synchronized (cache) {
+            cache.put(key, expiry);
+        }
+    }
+
+}
@@ -0,0 +1,325 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An immutable index of the certificate (chains) contained in a KeyStore. Each entry of the
+ * KeyStore is keyed on the first certificate of its chain, in the same way as the search
+ * methods of Merlin, so that a lookup does not have to enumerate the aliases of the KeyStore
+ * and convert the DN, or compute the SKI or thumbprint, of every certificate. Where several
+ * entries match the same key, the first alias in the order of enumeration wins (or all of them
+ * are returned for a Subject DN).
+ *
+ * The aliases are read when the index is created. The individual indexes are then built the
+ * first time they are used, so that e.g. the SKI of every certificate is only computed if
+ * certificates are looked up by SKI. The index is a snapshot of the KeyStore at the time it
+ * was created, and so it must be recreated if the KeyStore is modified. It is safe to use by
+ * multiple threads concurrently.
+ */
+final class CertificateIndex {
+
+    private static final Certificate[] NO_CERTS = new Certificate[0];
+
+    private final CryptoBase crypto;
+    private final List<Entry> entries = new ArrayList<>();
+
+    // Each of these is built when it is first used. A race between two threads building
+    // the same index is harmless, as the index is only published once it is complete
+    private volatile Map<Object, List<Certificate[]>> subjectIndex;
+    private volatile Map<IssuerSerial, Certificate[]> issuerSerialIndex;
+    private volatile Map<ByteBuffer, Certificate[]> thumbprintIndex;
+    private volatile Map<ByteBuffer, Certificate[]> skiIndex;
+    private volatile Map<ByteBuffer, Certificate[]> skiExtensionIndex;
+    private volatile Map<PublicKey, Entry> publicKeyIndex;
+    private volatile Map<Certificate, String> aliasIndex;
+
+    /**
+     * @param store The KeyStore to index
+     * @param crypto The Crypto instance, which is used to convert DNs (see
+     *        CryptoBase#createBCX509Name) and get the SKI bytes of a certificate
+     * @throws KeyStoreException if a problem occurs accessing the KeyStore
+     */
+    CertificateIndex(KeyStore store, CryptoBase crypto) throws KeyStoreException {
+        this.crypto = crypto;
+        for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
+            String alias = e.nextElement();
+            Certificate[] certs = store.getCertificateChain(alias);
+            if (certs == null || certs.length == 0) {
+                // no cert chain, so lets check if getCertificate gives us a result.
+                Certificate cert = store.getCertificate(alias);
+                if (cert != null) {
+                    certs = new Certificate[]{cert};
+                }
+            }
+
+            if (certs != null && certs.length > 0) {
+                entries.add(new Entry(alias, certs));
+            }
+        }
+    }
+
+    /**
+     * Get the certificate chains whose (first) certificate has the given Subject DN.
+     * @param subjectName the converted Subject DN
+     * @return the matching certificate chains (never null)
+     */
+    List<Certificate[]> getBySubject(Object subjectName) {
+        Map<Object, List<Certificate[]>> index = subjectIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                X509Certificate cert = entry.getX509Certificate();
+                if (cert != null) {
+                    Object certName = crypto.createBCX509Name(cert.getSubjectX500Principal().getName());
+                    index.computeIfAbsent(certName, k -> new ArrayList<>(1)).add(entry.certs);
+                }
+            }
+            subjectIndex = index;
+        }
+
+        List<Certificate[]> certs = index.get(subjectName);
+        if (certs == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(certs);
+    }
+
+    /**
+     * Get the certificate chain whose (first) certificate has the given issuer and serial number.
+     * @param issuerName the converted Issuer DN
+     * @param serialNumber the serial number
+     * @return the matching certificate chain, or an empty array if there is no match
+     */
+    Certificate[] getByIssuerSerial(Object issuerName, BigInteger serialNumber) {
+        Map<IssuerSerial, Certificate[]> index = issuerSerialIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                X509Certificate cert = entry.getX509Certificate();
+                if (cert != null) {
+                    Object certName = crypto.createBCX509Name(cert.getIssuerX500Principal().getName());
+                    index.putIfAbsent(new IssuerSerial(certName, cert.getSerialNumber()), entry.certs);
+                }
+            }
+            issuerSerialIndex = index;
+        }
+        return index.getOrDefault(new IssuerSerial(issuerName, serialNumber), NO_CERTS);
+    }
+
+    /**
+     * Get the certificate chain whose (first) certificate has the given SHA-1 thumbprint.
+     * @param thumbprint the SHA-1 digest of the encoded certificate
+     * @return the matching certificate chain, or an empty array if there is no match
+     * @throws WSSecurityException if a certificate can't be encoded
+     */
+    Certificate[] getByThumbprint(byte[] thumbprint) throws WSSecurityException {
+        if (thumbprint == null) {
+            return NO_CERTS;
+        }
+        Map<ByteBuffer, Certificate[]> index = thumbprintIndex;
+        if (index == null) {
+            MessageDigest sha = null;
+            try {
+                sha = MessageDigest.getInstance("SHA1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+                );
+            }
+
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                X509Certificate cert = entry.getX509Certificate();
+                if (cert != null) {
+                    try {
+                        byte[] data = sha.digest(cert.getEncoded());
+                        index.putIfAbsent(ByteBuffer.wrap(data), entry.certs);
+                    } catch (CertificateEncodingException ex) {
+                        throw new WSSecurityException(
+                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+                        );
+                    }
+                }
+            }
+            thumbprintIndex = index;
+        }
+        return index.getOrDefault(ByteBuffer.wrap(thumbprint), NO_CERTS);
+    }
+
+    /**
+     * Get the certificate chain whose (first) certificate has the given SKI bytes, as returned
+     * by CryptoBase#getSKIBytesFromCert.
+     * @param skiBytes the SKI bytes
+     * @return the matching certificate chain, or an empty array if there is no match
+     * @throws WSSecurityException if the SKI bytes of a certificate can't be computed
+     */
+    Certificate[] getBySKI(byte[] skiBytes) throws WSSecurityException {
+        if (skiBytes == null) {
+            return NO_CERTS;
+        }
+        Map<ByteBuffer, Certificate[]> index = skiIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                X509Certificate cert = entry.getX509Certificate();
+                if (cert != null) {
+                    byte[] data = crypto.getSKIBytesFromCert(cert);
+                    index.putIfAbsent(ByteBuffer.wrap(data), entry.certs);
+                }
+            }
+            skiIndex = index;
+        }
+        return index.getOrDefault(ByteBuffer.wrap(skiBytes), NO_CERTS);
+    }
+
+    /**
+     * Get the certificate chain whose (first) certificate has a SubjectKeyIdentifier extension
+     * with the given value. This is used to find the issuer of a certificate via its
+     * AuthorityKeyIdentifier.
+     * @param keyIdentifier the value of the SubjectKeyIdentifier extension
+     * @return the matching certificate chain, or an empty array if there is no match
+     */
+    Certificate[] getBySubjectKeyIdentifier(byte[] keyIdentifier) {
+        if (keyIdentifier == null) {
+            return NO_CERTS;
+        }
+        Map<ByteBuffer, Certificate[]> index = skiExtensionIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                X509Certificate cert = entry.getX509Certificate();
+                if (cert != null) {
+                    byte[] subjectKeyIdentifier = BouncyCastleUtils.getSubjectKeyIdentifierBytes(cert);
+                    if (subjectKeyIdentifier != null) {
+                        index.putIfAbsent(ByteBuffer.wrap(subjectKeyIdentifier), entry.certs);
+                    }
+                }
+            }
+            skiExtensionIndex = index;
+        }
+        return index.getOrDefault(ByteBuffer.wrap(keyIdentifier), NO_CERTS);
+    }
+
+    /**
+     * Get the alias of the entry whose (first) certificate has the given PublicKey.
+     * @param publicKey the PublicKey
+     * @param x509Only whether the certificate must be an X509Certificate
+     * @return the alias, or null if there is no match
+     */
+    String getAliasByPublicKey(PublicKey publicKey, boolean x509Only) {
+        Map<PublicKey, Entry> index = publicKeyIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                index.putIfAbsent(entry.certs[0].getPublicKey(), entry);
+            }
+            publicKeyIndex = index;
+        }
+
+        Entry entry = index.get(publicKey);
+        if (entry == null || x509Only && entry.getX509Certificate() == null) {
+            return null;
+        }
+        return entry.alias;
+    }
+
+    /**
+     * Get the alias of the entry whose (first) certificate is the given certificate.
+     * @param cert the certificate
+     * @return the alias, or null if there is no match
+     */
+    String getAliasByCertificate(Certificate cert) {
+        Map<Certificate, String> index = aliasIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Entry entry : entries) {
+                index.putIfAbsent(entry.certs[0], entry.alias);
+            }
+            aliasIndex = index;
+        }
+        return index.get(cert);
+    }
+
+    private static final class Entry {
+        private final String alias;
+        private final Certificate[] certs;
+
+        Entry(String alias, Certificate[] certs) {
+            this.alias = alias;
+            this.certs = certs;
+        }
+
+        X509Certificate getX509Certificate() {
+            if (certs[0] instanceof X509Certificate) {
+                return (X509Certificate) certs[0];
+            }
+            return null;
+        }
+    }
+
+    private static final class IssuerSerial {
+        private final Object issuerName;
+        private final BigInteger serialNumber;
+
+        IssuerSerial(Object issuerName, BigInteger serialNumber) {
+            this.issuerName = issuerName;
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(issuerName, serialNumber);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IssuerSerial)) {
+                return false;
+            }
+            IssuerSerial other = (IssuerSerial) obj;
+            return Objects.equals(issuerName, other.issuerName)
+                && Objects.equals(serialNumber, other.serialNumber);
+        }
+    }
+
+}
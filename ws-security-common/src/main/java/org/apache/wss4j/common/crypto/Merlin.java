@@ -29,7 +29,6 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
@@ -39,7 +38,6 @@ import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
@@ -52,6 +50,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -119,6 +118,13 @@ public class Merlin extends CryptoBase {
      */
     public static final String X509_CRL_FILE = "x509crl.file";
 
+    /*
+     * Certificate path validation cache configuration
+     */
+    public static final String CERT_PATH_CACHE_SIZE = "cert.path.cache.size";
+    public static final String CERT_PATH_CACHE_TTL = "cert.path.cache.ttl";
+    public static final long DEFAULT_CERT_PATH_CACHE_TTL = 300L;
+
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final String COMMA_SEPARATOR = ",";
@@ -134,6 +140,9 @@ public class Merlin extends CryptoBase {
     private boolean certProviderHandlesNameConstraints = false;
     private boolean enablePrivateKeyCaching = true;
     private Map<String, PrivateKey> privateKeyCache = new ConcurrentHashMap<>();
+    private int certPathCacheSize;
+    private long certPathCacheTTL = DEFAULT_CERT_PATH_CACHE_TTL;
+    private volatile TrustState trustState;
 
     public Merlin() {
         // default constructor
@@ -204,6 +213,15 @@ public class Merlin extends CryptoBase {
                 properties.getProperty(prefix + CRYPTO_CERT_PROVIDER_HANDLES_NAME_CONSTRAINTS);
         if (cpNameConstraintsProp != null) {
             certProviderHandlesNameConstraints = Boolean.parseBoolean(cpNameConstraintsProp);
+            trustState = null;
+        }
+        String certPathCacheSizeProp = properties.getProperty(prefix + CERT_PATH_CACHE_SIZE);
+        if (certPathCacheSizeProp != null) {
+            setCertPathCacheSize(Integer.parseInt(certPathCacheSizeProp.trim()));
+        }
+        String certPathCacheTTLProp = properties.getProperty(prefix + CERT_PATH_CACHE_TTL);
+        if (certPathCacheTTLProp != null) {
+            setCertPathCacheTTL(Long.parseLong(certPathCacheTTLProp.trim()));
         }
 
         //
@@ -398,12 +416,16 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Set the Keystore on this Crypto instance
+     * Set the Keystore on this Crypto instance. The certificates of the Keystore are indexed
+     * when they are first needed. Entries that are added to or removed from the Keystore later
+     * are detected (by its size), but an entry that is replaced under an existing alias is only
+     * visible after clearCache() is called.
      *
      * @param keyStore the Keystore to set
      */
     public void setKeyStore(KeyStore keyStore) {
         keystore = keyStore;
+        trustState = null;
     }
 
     /**
@@ -416,12 +438,16 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Set the trust store on this Crypto instance
+     * Set the trust store on this Crypto instance. The certificates of the trust store are indexed
+     * when they are first needed. Entries that are added to or removed from the trust store later
+     * are detected (by its size), but an entry that is replaced under an existing alias is only
+     * visible after clearCache() is called.
      *
      * @param trustStore the trust store to set
      */
     public void setTrustStore(KeyStore trustStore) {
         truststore = trustStore;
+        trustState = null;
     }
 
     /**
@@ -432,6 +458,7 @@ public class Merlin extends CryptoBase {
      */
     public void setCRLCertStore(CertStore crlCertStore) {
         this.crlCertStore = crlCertStore;
+        trustState = null;
     }
 
     /**
@@ -592,12 +619,13 @@ public class Merlin extends CryptoBase {
     public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
         String identifier = null;
 
-        if (keystore != null) {
-            identifier = getIdentifier(cert, keystore);
+        TrustState state = getTrustState();
+        if (state.keystoreIndex != null) {
+            identifier = state.keystoreIndex.getAliasByCertificate(cert);
         }
 
-        if (identifier == null && truststore != null) {
-            identifier = getIdentifier(cert, truststore);
+        if (identifier == null && state.truststoreIndex != null) {
+            identifier = state.truststoreIndex.getAliasByCertificate(cert);
         }
 
         return identifier;
@@ -623,7 +651,7 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(certificate, keystore);
+        String identifier = getKeyStoreIndex().getAliasByCertificate(certificate);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for certificate";
@@ -662,7 +690,7 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(publicKey, keystore);
+        String identifier = getKeyStoreIndex().getAliasByPublicKey(publicKey, false);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for corresponding public key";
@@ -796,15 +824,7 @@ public class Merlin extends CryptoBase {
         if (certs.length == 1) {
 
             Object subject = convertSubjectToPrincipal(issuerString);
-
-            if (keystore != null) {
-                foundIssuingCertChains = getCertificates(subject, keystore, false);
-            }
-
-            //If we can't find the issuer in the keystore then look at the truststore
-            if ((foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()) && truststore != null) {
-                foundIssuingCertChains = getCertificates(subject, truststore, true);
-            }
+            foundIssuingCertChains = getCertificates(subject);
 
             if (foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()
                 || foundIssuingCertChains.get(0).length < 1) {
@@ -828,21 +848,7 @@ public class Merlin extends CryptoBase {
         );
 
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
-
-            // Verify the trust path using the above settings
+            // Verify the trust path using the TrustAnchors of the keystore/truststore
             String provider = getCryptoProvider();
             CertPathValidator validator = null;
             if (provider == null || provider.length() == 0) {
@@ -851,7 +857,7 @@ public class Merlin extends CryptoBase {
                 validator = CertPathValidator.getInstance("PKIX", provider);
             }
 
-            PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            PKIXParameters param = getPKIXParameters(enableRevocation);
 
             // Generate cert path
             if (foundIssuingCertChains != null && !foundIssuingCertChains.isEmpty()) {
@@ -886,8 +892,7 @@ public class Merlin extends CryptoBase {
             }
         } catch (NoSuchProviderException | NoSuchAlgorithmException
             | CertificateException | InvalidAlgorithmParameterException
-            | java.security.cert.CertPathValidatorException
-            | KeyStoreException e) {
+            | java.security.cert.CertPathValidatorException e) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILURE, e, "certpath"
                 );
@@ -899,14 +904,48 @@ public class Merlin extends CryptoBase {
         }
     }
 
+    /**
+     * Evaluate whether a given certificate chain should be trusted. If the certificate path
+     * cache is enabled (see CERT_PATH_CACHE_SIZE), then the successful validation of a chain is
+     * cached, and the same chain is trusted without validation for the same revocation setting
+     * and constraints until the cache entry expires, or until the keystore, truststore or CRL
+     * CertStore is replaced. Note that this means that a revoked certificate might be trusted
+     * until the cache entry expires.
+     *
+     * @param certs Certificate chain to validate
+     * @param enableRevocation whether to enable CRL verification or not
+     * @param subjectCertConstraints A set of constraints on the Subject DN of the certificates
+     * @param issuerCertConstraints A set of constraints on the Issuer DN of the certificates
+     *
+     * @throws WSSecurityException if the certificate chain is invalid
+     */
     @Override
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        CertPathValidationCache cache = null;
+        String cacheKey = null;
+        if (certPathCacheSize > 0) {
+            cache = getTrustState().certPathValidationCache;
+            if (cache != null) {
+                cacheKey = cache.createKey(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+            }
+            if (cacheKey != null && cache.contains(cacheKey)) {
+                LOG.debug(
+                    "Cached trust for certificate with {}", certs[0].getSubjectX500Principal().getName()
+                );
+                return;
+            }
+        }
+
         verifyTrust(certs, enableRevocation, subjectCertConstraints);
         if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (cacheKey != null) {
+            cache.add(cacheKey, certs);
+        }
     }
 
     // Separated out to allow subclasses to override it
@@ -922,6 +961,146 @@ public class Merlin extends CryptoBase {
         return param;
     }
 
+    /**
+     * Get the PKIXParameters with which to validate a certificate path. The TrustAnchors are
+     * taken from the truststore, and from the keystore if there is no truststore (or if the
+     * truststore is the JDK CA certs). The parameters are created via createPKIXParameters
+     * once for the current keystore, truststore and CRL CertStore, and a copy of them is
+     * returned for every call, so that the caller can modify it.
+     *
+     * @param enableRevocation whether to enable CRL verification or not
+     * @return the PKIXParameters with which to validate a certificate path
+     * @throws WSSecurityException if the TrustAnchors can't be read from the keystore/truststore
+     * @throws InvalidAlgorithmParameterException if no TrustAnchors are available
+     */
+    protected PKIXParameters getPKIXParameters(boolean enableRevocation)
+        throws WSSecurityException, InvalidAlgorithmParameterException {
+        TrustState state = getTrustState();
+        Set<TrustAnchor> trustAnchors = state.trustAnchors;
+        if (trustAnchors == null) {
+            // Concurrent callers might both create the TrustAnchors, which is harmless
+            trustAnchors = createTrustAnchors(state);
+            state.setTrustAnchors(trustAnchors,
+                                  createPKIXParametersOrNull(trustAnchors, false),
+                                  createPKIXParametersOrNull(trustAnchors, true));
+        }
+
+        PKIXParameters param =
+            enableRevocation ? state.revocationPKIXParameters : state.pkixParameters;
+        if (param == null) {
+            // This will throw the same exception as when the template was created
+            return createPKIXParameters(trustAnchors, enableRevocation);
+        }
+        return (PKIXParameters) param.clone();
+    }
+
+    /**
+     * Get the index of the keystore, which must not be null
+     */
+    CertificateIndex getKeyStoreIndex() throws WSSecurityException {
+        TrustState state = getTrustState();
+        if (state.keystoreIndex == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                                          new Object[] {"The keystore is null"});
+        }
+        return state.keystoreIndex;
+    }
+
+
+    /**
+     * Get the current trust snapshot, creating it if the keystore, truststore or CRL
+     * CertStore has been replaced, or if entries were added to or removed from the keystore
+     * or truststore, since it was created.
+     */
+    private TrustState getTrustState() throws WSSecurityException {
+        TrustState state = trustState;
+        if (state == null || !state.isCurrent(keystore, truststore, crlCertStore, loadCACerts)
+            || state.keystoreSize != size(keystore) || state.truststoreSize != size(truststore)) {
+            // Concurrent callers might both create a new snapshot, which is harmless
+            state = createTrustState();
+            trustState = state;
+        }
+        return state;
+    }
+
+    private static int size(KeyStore keyStore) {
+        if (keyStore == null) {
+            return -1;
+        }
+        try {
+            return keyStore.size();
+        } catch (KeyStoreException e) {
+            return -1;
+        }
+    }
+
+    private TrustState createTrustState() throws WSSecurityException {
+        KeyStore currentKeystore = keystore;
+        KeyStore currentTruststore = truststore;
+        // Taken before the indexes are built, so that a concurrent modification leads to a rebuild
+        int keystoreSize = size(currentKeystore);
+        int truststoreSize = size(currentTruststore);
+
+        try {
+            CertificateIndex keystoreIndex = null;
+            if (currentKeystore != null) {
+                keystoreIndex = new CertificateIndex(currentKeystore, this);
+            }
+            CertificateIndex truststoreIndex = null;
+            if (currentTruststore != null) {
+                truststoreIndex = new CertificateIndex(currentTruststore, this);
+            }
+
+            CertPathValidationCache certPathValidationCache = null;
+            if (certPathCacheSize > 0) {
+                certPathValidationCache = new CertPathValidationCache(certPathCacheSize, certPathCacheTTL);
+            }
+
+            return new TrustState(currentKeystore, currentTruststore, crlCertStore, loadCACerts,
+                                  keystoreSize, truststoreSize,
+                                  keystoreIndex, truststoreIndex, certPathValidationCache);
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
+            );
+        }
+    }
+
+    private Set<TrustAnchor> createTrustAnchors(TrustState state) throws WSSecurityException {
+        try {
+            Set<TrustAnchor> set = new HashSet<>();
+            if (state.truststore != null) {
+                addTrustAnchors(set, state.truststore);
+            }
+
+            //
+            // Add certificates from the keystore - only if there is no TrustStore, apart from
+            // the case that the truststore is the JDK CA certs. This behaviour is preserved
+            // for backwards compatibility reasons
+            //
+            if (state.keystore != null && (state.truststore == null || state.loadCACerts)) {
+                addTrustAnchors(set, state.keystore);
+            }
+            return Collections.unmodifiableSet(set);
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "certpath"
+            );
+        }
+    }
+
+    private PKIXParameters createPKIXParametersOrNull(
+        Set<TrustAnchor> trustAnchors, boolean enableRevocation
+    ) {
+        try {
+            return createPKIXParameters(trustAnchors, enableRevocation);
+        } catch (InvalidAlgorithmParameterException e) {
+            // e.g. there are no TrustAnchors - this is reported when a cert path is validated
+            LOG.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Evaluate whether a given public key should be trusted.
      *
@@ -940,8 +1119,9 @@ public class Merlin extends CryptoBase {
         // Search the keystore for the transmitted public key (direct trust). If not found
         // then search the truststore for the transmitted public key (direct trust)
         //
-        if (!findPublicKeyInKeyStore(publicKey, keystore, false)
-            && !findPublicKeyInKeyStore(publicKey, truststore, true)) {
+        TrustState state = getTrustState();
+        if (!findPublicKeyInKeyStore(publicKey, state.keystoreIndex, false)
+            && !findPublicKeyInKeyStore(publicKey, state.truststoreIndex, true)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
     }
@@ -973,14 +1153,16 @@ public class Merlin extends CryptoBase {
         } catch (IllegalArgumentException ex) {
             issuerName = createBCX509Name(issuer);
         }
+        LOG.debug("Searching for cert with issuer {} and serial {}", issuerName, serialNumber);
+        TrustState state = getTrustState();
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(issuerName, serialNumber, keystore, false);
+        if (state.keystoreIndex != null) {
+            certs = state.keystoreIndex.getByIssuerSerial(issuerName, serialNumber);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(issuerName, serialNumber, truststore, true);
+        if ((certs == null || certs.length == 0) && state.truststoreIndex != null) {
+            certs = state.truststoreIndex.getByIssuerSerial(issuerName, serialNumber);
         }
 
         if (certs == null || certs.length == 0) {
@@ -990,60 +1172,6 @@ public class Merlin extends CryptoBase {
         return Arrays.copyOf(certs, certs.length, X509Certificate[].class);
     }
 
-    /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
-     * @param issuerRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
-     * @return an X509 Certificate (chain)
-     * @throws WSSecurityException
-     */
-    private Certificate[] getCertificates(
-        Object issuerRDN,
-        BigInteger serialNumber,
-        KeyStore store,
-        boolean truststore
-    ) throws WSSecurityException {
-        String keystore = "keystore";
-        if (truststore) {
-            keystore = "truststore";
-        }
-        LOG.debug("Searching {} for cert with issuer {} and serial {}", keystore, issuerRDN, serialNumber);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    LOG.debug("Keystore alias {} has issuer {} and serial {}", alias,
-                              x509cert.getIssuerX500Principal().getName(), x509cert.getSerialNumber());
-                    if (x509cert.getSerialNumber().compareTo(serialNumber) == 0) {
-                        Object certName =
-                            createBCX509Name(x509cert.getIssuerX500Principal().getName());
-                        if (certName.equals(issuerRDN)) {
-                            LOG.debug("Issuer Serial match found using keystore alias {}", alias);
-                            return certs;
-                        }
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
-        }
-
-        LOG.debug("No issuer serial match found in {}", keystore);
-        return new Certificate[]{};
-    }
-
     /**
      * Get an X509 Certificate (chain) according to a given Thumbprint.
      *
@@ -1052,26 +1180,20 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
-
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
-            );
-        }
+        LOG.debug("Searching for cert using a SHA-1 thumbprint");
+        TrustState state = getTrustState();
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(thumbprint, keystore, sha, false);
+        if (state.keystoreIndex != null) {
+            certs = state.keystoreIndex.getByThumbprint(thumbprint);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(thumbprint, truststore, sha, true);
+        if ((certs == null || certs.length == 0) && state.truststoreIndex != null) {
+            certs = state.truststoreIndex.getByThumbprint(thumbprint);
         }
 
         if (certs == null || certs.length == 0) {
+            LOG.debug("No thumbprint match found");
             return new X509Certificate[0];
         }
 
@@ -1079,60 +1201,29 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
-     * @param thumbprint
-     * @param store The KeyStore
-     * @return an X509 Certificate (chain)
-     * @throws WSSecurityException
+     * Get the X509 Certificates of the keystore, or else of the truststore, whose Subject Key
+     * Identifier extension matches the given (Authority) Key Identifier.
+     *
+     * @param keyIdentifierBytes The key identifier bytes
+     * @return the X509 certificates that were found (can be empty)
      */
-    private Certificate[] getCertificates(
-        byte[] thumbprint,
-        KeyStore store,
-        MessageDigest sha,
-        boolean truststore
-    ) throws WSSecurityException {
-        String keystore = "keystore";
-        if (truststore) {
-            keystore = "truststore";
+    X509Certificate[] getX509CertificatesByKeyIdentifier(byte[] keyIdentifierBytes) throws WSSecurityException {
+        TrustState state = getTrustState();
+        Certificate[] certs = null;
+        if (state.keystoreIndex != null) {
+            certs = state.keystoreIndex.getBySubjectKeyIdentifier(keyIdentifierBytes);
         }
-        LOG.debug("Searching {} for cert using a SHA-1 thumbprint", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
 
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    try {
-                        sha.update(x509cert.getEncoded());
-                    } catch (CertificateEncodingException ex) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                        );
-                    }
-                    byte[] data = sha.digest();
+        //If we can't find the issuer in the keystore then look at the truststore
+        if ((certs == null || certs.length == 0) && state.truststoreIndex != null) {
+            certs = state.truststoreIndex.getBySubjectKeyIdentifier(keyIdentifierBytes);
+        }
 
-                    if (Arrays.equals(data, thumbprint)) {
-                        LOG.debug("Thumbprint match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        if (certs == null || certs.length == 0) {
+            return new X509Certificate[0];
         }
 
-        LOG.debug("No thumbprint match found in {}", keystore);
-        return new Certificate[]{};
+        return Arrays.copyOf(certs, certs.length, X509Certificate[].class);
     }
 
     /**
@@ -1142,71 +1233,26 @@ public class Merlin extends CryptoBase {
      * @return the X509 certificate (chain) that was found (can be null)
      */
     private X509Certificate[] getX509CertificatesSKI(byte[] skiBytes) throws WSSecurityException {
+        LOG.debug("Searching for cert using Subject Key Identifier bytes");
+        TrustState state = getTrustState();
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(skiBytes, keystore, false);
+        if (state.keystoreIndex != null) {
+            certs = state.keystoreIndex.getBySKI(skiBytes);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(skiBytes, truststore, true);
+        if ((certs == null || certs.length == 0) && state.truststoreIndex != null) {
+            certs = state.truststoreIndex.getBySKI(skiBytes);
         }
 
         if (certs == null || certs.length == 0) {
+            LOG.debug("No SKI match found");
             return new X509Certificate[0];
         }
 
         return Arrays.copyOf(certs, certs.length, X509Certificate[].class);
     }
 
-    /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
-     * @param skiBytes
-     * @param store The KeyStore
-     * @return an X509 Certificate (chain)
-     * @throws WSSecurityException
-     */
-    private Certificate[] getCertificates(
-        byte[] skiBytes,
-        KeyStore store,
-        boolean truststore
-    ) throws WSSecurityException {
-        String keystore = "keystore";
-        if (truststore) {
-            keystore = "truststore";
-        }
-        LOG.debug("Searching {} for cert using Subject Key Identifier bytes", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    byte[] data = getSKIBytesFromCert(x509cert);
-                    if (data.length == skiBytes.length && Arrays.equals(data, skiBytes)) {
-                        LOG.debug("SKI match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
-        }
-
-        LOG.debug("No SKI match found in {}", keystore);
-        return new Certificate[]{};
-    }
-
     /**
      * Get an X509 Certificate (chain) according to a given DN of the subject of the certificate
      *
@@ -1217,17 +1263,8 @@ public class Merlin extends CryptoBase {
     private X509Certificate[] getX509CertificatesSubjectDN(String subjectDN) throws WSSecurityException {
         Object subject = convertSubjectToPrincipal(subjectDN);
 
-        List<Certificate[]> certs = null;
-        if (keystore != null) {
-            certs = getCertificates(subject, keystore, false);
-        }
-
-        //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.isEmpty()) && truststore != null) {
-            certs = getCertificates(subject, truststore, true);
-        }
-
-        if (certs == null || certs.isEmpty()) {
+        List<Certificate[]> certs = getCertificates(subject);
+        if (certs.isEmpty()) {
             return new X509Certificate[0];
         }
 
@@ -1301,8 +1338,8 @@ public class Merlin extends CryptoBase {
     /**
      * Find the Public Key in a keystore.
      */
-    private boolean findPublicKeyInKeyStore(PublicKey publicKey, KeyStore keyStoreToSearch, boolean truststore) {
-        if (keyStoreToSearch == null) {
+    private boolean findPublicKeyInKeyStore(PublicKey publicKey, CertificateIndex index, boolean truststore) {
+        if (index == null) {
             return false;
         }
         String keystore = "keystore";
@@ -1310,26 +1347,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for public key {}", keystore, publicKey);
-        try {
-            for (Enumeration<String> e = keyStoreToSearch.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = keyStoreToSearch.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = keyStoreToSearch.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate
-                    && publicKey.equals(((X509Certificate)certs[0]).getPublicKey())) {
-                    LOG.debug("PublicKey match found using keystore alias {}", alias);
-                    return true;
-                }
-            }
-        } catch (KeyStoreException e) {
-            return false;
+        String alias = index.getAliasByPublicKey(publicKey, true);
+        if (alias != null) {
+            LOG.debug("PublicKey match found using keystore alias {}", alias);
+            return true;
         }
 
         LOG.debug("No PublicKey match found in {}", keystore);
@@ -1337,50 +1358,27 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore. If multiple
-     * certs match the Subject DN, then multiple cert chains are returned.
+     * Get the X509 Certificate (chains) of the subject argument in the keystore, or else in the
+     * truststore. If multiple certs match the Subject DN, then multiple cert chains are returned.
      * @param subjectRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
-     * @return an X509 Certificate (chain)
+     * @return the X509 Certificate (chains)
      * @throws WSSecurityException
      */
-    private List<Certificate[]> getCertificates(Object subjectRDN, KeyStore store, boolean truststore)
-        throws WSSecurityException {
-        String keystore = "keystore";
-        if (truststore) {
-            keystore = "truststore";
+    private List<Certificate[]> getCertificates(Object subjectRDN) throws WSSecurityException {
+        LOG.debug("Searching for cert with Subject {}", subjectRDN);
+        TrustState state = getTrustState();
+        List<Certificate[]> foundCerts = Collections.emptyList();
+        if (state.keystoreIndex != null) {
+            foundCerts = state.keystoreIndex.getBySubject(subjectRDN);
         }
-        LOG.debug("Searching {} for cert with Subject {}", keystore, subjectRDN);
-        List<Certificate[]> foundCerts = new ArrayList<>();
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X500Principal foundRDN = ((X509Certificate)certs[0]).getSubjectX500Principal();
-                    Object certName = createBCX509Name(foundRDN.getName());
 
-                    if (subjectRDN.equals(certName)) {
-                        LOG.debug("Subject certificate match found using keystore alias {}", alias);
-                        foundCerts.add(certs);
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        //If we can't find the issuer in the keystore then look at the truststore
+        if (foundCerts.isEmpty() && state.truststoreIndex != null) {
+            foundCerts = state.truststoreIndex.getBySubject(subjectRDN);
         }
 
         if (foundCerts.isEmpty()) {
-            LOG.debug("No Subject match found in {}", keystore);
+            LOG.debug("No Subject match found");
         }
         return foundCerts;
     }
@@ -1439,63 +1437,6 @@ public class Merlin extends CryptoBase {
         }
     }
 
-    /**
-     * Get an implementation-specific identifier that corresponds to the X509Certificate. In
-     * this case, the identifier is the KeyStore alias.
-     * @param cert The X509Certificate corresponding to the returned identifier
-     * @param store The KeyStore to search
-     * @return An implementation-specific identifier that corresponds to the X509Certificate
-     */
-    private String getIdentifier(X509Certificate cert, KeyStore store)
-        throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].equals(cert)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
-        }
-        return null;
-    }
-
-    private String getIdentifier(PublicKey publicKey, KeyStore store)
-        throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].getPublicKey().equals(publicKey)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
-        }
-        return null;
-    }
-
     /**
      * Get a password from the CallbackHandler
      * @param identifier The identifier to give to the Callback
@@ -1546,6 +1487,7 @@ public class Merlin extends CryptoBase {
         if (enablePrivateKeyCaching) {
             privateKeyCache.clear();
         }
+        trustState = null;
     }
 
     public boolean isEnablePrivateKeyCaching() {
@@ -1555,4 +1497,87 @@ public class Merlin extends CryptoBase {
     public void setEnablePrivateKeyCaching(boolean enablePrivateKeyCaching) {
         this.enablePrivateKeyCaching = enablePrivateKeyCaching;
     }
+
+    public int getCertPathCacheSize() {
+        return certPathCacheSize;
+    }
+
+    /**
+     * Set the maximum number of successfully validated certificate chains to cache. The
+     * default is 0, which means that certificate chains are validated every time.
+     * @param certPathCacheSize the maximum number of certificate chains to cache
+     */
+    public void setCertPathCacheSize(int certPathCacheSize) {
+        this.certPathCacheSize = certPathCacheSize;
+        trustState = null;
+    }
+
+    public long getCertPathCacheTTL() {
+        return certPathCacheTTL;
+    }
+
+    /**
+     * Set the time (in seconds) for which a successfully validated certificate chain is cached.
+     * The default is 300 seconds.
+     * @param certPathCacheTTL the time (in seconds) for which a certificate chain is cached
+     */
+    public void setCertPathCacheTTL(long certPathCacheTTL) {
+        this.certPathCacheTTL = certPathCacheTTL;
+        trustState = null;
+    }
+
+    /**
+     * A snapshot of the trust configuration, i.e. indexes of the certificates in the keystore and
+     * truststore, and the TrustAnchors and PKIXParameters to validate a certificate path with
+     * (which are only created when a certificate path is first validated), and the cache of
+     * validated certificate paths if it is enabled. It is created once and shared by all threads
+     * until the keystore, truststore or CRL CertStore is replaced, or the number of entries of the
+     * keystore or truststore changes. Other modifications made to a KeyStore after it was set on
+     * this Crypto instance (replacing the entry of an existing alias) are not visible until
+     * clearCache() is called.
+     */
+    private static final class TrustState {
+        private final KeyStore keystore;
+        private final KeyStore truststore;
+        private final CertStore crlCertStore;
+        private final boolean loadCACerts;
+        private final int keystoreSize;
+        private final int truststoreSize;
+        private final CertificateIndex keystoreIndex;
+        private final CertificateIndex truststoreIndex;
+        private final CertPathValidationCache certPathValidationCache;
+        private PKIXParameters pkixParameters;
+        private PKIXParameters revocationPKIXParameters;
+        // Written last, so that the PKIXParameters are visible once this is not null
+        private volatile Set<TrustAnchor> trustAnchors;
+
+        TrustState(KeyStore keystore, KeyStore truststore, CertStore crlCertStore, boolean loadCACerts,
+                   int keystoreSize, int truststoreSize,
+                   CertificateIndex keystoreIndex, CertificateIndex truststoreIndex,
+                   CertPathValidationCache certPathValidationCache) {
+            this.keystore = keystore;
+            this.truststore = truststore;
+            this.crlCertStore = crlCertStore;
+            this.loadCACerts = loadCACerts;
+            this.keystoreSize = keystoreSize;
+            this.truststoreSize = truststoreSize;
+            this.keystoreIndex = keystoreIndex;
+            this.truststoreIndex = truststoreIndex;
+            this.certPathValidationCache = certPathValidationCache;
+        }
+
+        void setTrustAnchors(Set<TrustAnchor> trustAnchors, PKIXParameters pkixParameters,
+                             PKIXParameters revocationPKIXParameters) {
+            this.pkixParameters = pkixParameters;
+            this.revocationPKIXParameters = revocationPKIXParameters;
+            this.trustAnchors = trustAnchors;
+        }
+
+        // The fields of Merlin are protected, and so might be set directly by a subclass
+        boolean isCurrent(KeyStore currentKeystore, KeyStore currentTruststore,
+                          CertStore currentCrlCertStore, boolean currentLoadCACerts) {
+            return keystore == currentKeystore && truststore == currentTruststore
+                && crlCertStore == currentCrlCertStore && loadCACerts == currentLoadCACerts;
+        }
+    }
 }
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * The private key and certificate chain of an alias that are used to sign outbound messages, as
+ * returned by a {@link SigningCredentialCache}. The Base64 encoded values that are written into the
+ * BinarySecurityToken and KeyIdentifier of a signature are computed the first time that they are
+ * requested, and then shared by all the messages that are signed with this credential.
+ */
+public final class SigningCredential {
+
+    private final PrivateKey privateKey;
+    private final X509Certificate[] certificates;
+    private final String alias;
+    private final String password;
+    private final KeyStore keyStore;
+
+    // These are computed lazily. Concurrent callers might compute the same value twice, which is harmless
+    private volatile String encodedCertificate;
+    private volatile byte[] pkiPath;
+    private volatile String ski;
+    private volatile String thumbprint;
+
+    SigningCredential(PrivateKey privateKey, X509Certificate[] certificates, String alias,
+                      String password, KeyStore keyStore) {
+        this.privateKey = privateKey;
+        this.certificates = certificates;
+        this.alias = alias;
+        this.password = password;
+        this.keyStore = keyStore;
+    }
+
+    public PrivateKey getPrivateKey() {
+        return privateKey;
+    }
+
+    public X509Certificate[] getCertificates() {
+        return certificates.clone();
+    }
+
+    /**
+     * @return the Base64 encoding of the signing certificate
+     */
+    public String getEncodedCertificate() throws WSSecurityException {
+        String value = encodedCertificate;
+        if (value == null) {
+            try {
+                value = XMLUtils.encodeToString(certificates[0].getEncoded());
+            } catch (CertificateEncodingException e) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+                );
+            }
+            encodedCertificate = value;
+        }
+        return value;
+    }
+
+    /**
+     * @param crypto the Crypto instance to encode the certificate chain with
+     * @return the certificate chain encoded as a PkiPath
+     */
+    public byte[] getPKIPath(Crypto crypto) throws WSSecurityException {
+        byte[] value = pkiPath;
+        if (value == null) {
+            value = crypto.getBytesFromCertificates(certificates);
+            pkiPath = value;
+        }
+        return value.clone();
+    }
+
+    /**
+     * @param crypto the Crypto instance to read the SKI bytes from the certificate with
+     * @return the Base64 encoding of the Subject Key Identifier of the signing certificate
+     */
+    public String getSKI(Crypto crypto) throws WSSecurityException {
+        String value = ski;
+        if (value == null) {
+            value = XMLUtils.encodeToString(crypto.getSKIBytesFromCert(certificates[0]));
+            ski = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return the Base64 encoding of the SHA-1 thumbprint of the signing certificate
+     */
+    public String getThumbprint() throws WSSecurityException {
+        String value = thumbprint;
+        if (value == null) {
+            try {
+                value = XMLUtils.encodeToString(KeyUtils.generateDigest(certificates[0].getEncoded()));
+            } catch (CertificateEncodingException e) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+                );
+            }
+            thumbprint = value;
+        }
+        return value;
+    }
+
+    /**
+     * Return true if this credential was loaded with the given password, and the keystore of the
+     * given Crypto instance has not changed since
+     */
+    boolean isCurrent(Crypto crypto, String currentPassword) {
+        if (password == null ? currentPassword != null : !password.equals(currentPassword)) {
+            return false;
+        }
+        if (crypto instanceof Merlin) {
+            KeyStore currentKeyStore = ((Merlin) crypto).getKeyStore();
+            if (currentKeyStore == null || currentKeyStore != keyStore) {
+                return false;
+            }
+            try {
+                // Detects that the entry of the alias was replaced, e.g. after a key rollover
+                Certificate certificate = currentKeyStore.getCertificate(alias);
+                return certificates[0].equals(certificate);
+            } catch (KeyStoreException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
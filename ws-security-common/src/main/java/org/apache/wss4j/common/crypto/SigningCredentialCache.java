@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A cache of the private keys and certificate chains that are used to sign outbound messages, so
+ * that the keystore is only accessed once per Crypto instance and alias, instead of for every
+ * message. An instance of this class is meant to be shared by all the messages of an endpoint.
+ *
+ * A cached credential is reloaded if it is requested with a different password, if the keystore of
+ * a Merlin Crypto instance is replaced, or if the certificate that is stored under the alias in that
+ * keystore changes. Other changes to the keystore are not detected, in which case {@link #clear()}
+ * must be called.
+ */
+public class SigningCredentialCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SigningCredentialCache.class);
+
+    // The Crypto instances are weakly referenced, so that they can still be garbage collected
+    private final Map<Crypto, Map<String, SigningCredential>> credentials =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Get the signing credential for the given alias.
+     * @param crypto the Crypto instance to load the private key and certificates from
+     * @param alias the alias of the private key
+     * @param password the password of the private key
+     * @return the (cached) signing credential
+     * @throws WSSecurityException if no private key or certificates could be found for the alias
+     */
+    public SigningCredential getCredential(
+        Crypto crypto, String alias, String password
+    ) throws WSSecurityException {
+        if (crypto == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noSigCryptoFile");
+        }
+        Map<String, SigningCredential> aliases =
+            credentials.computeIfAbsent(crypto, k -> new ConcurrentHashMap<>());
+        String key = alias == null ? "" : alias;
+
+        SigningCredential credential = aliases.get(key);
+        if (credential == null || !credential.isCurrent(crypto, password)) {
+            // Concurrent callers might both load the credential, which is harmless
+            credential = loadCredential(crypto, alias, password);
+            aliases.put(key, credential);
+        } else {
+            LOG.debug("Using the cached signing credential of {}", alias);
+        }
+        return credential;
+    }
+
+    /**
+     * Remove all the cached credentials, e.g. after the content of a keystore was changed
+     */
+    public void clear() {
+        credentials.clear();
+    }
+
+    /**
+     * Remove all the cached credentials of the given Crypto instance
+     */
+    public void clear(Crypto crypto) {
+        credentials.remove(crypto);
+    }
+
+    private static SigningCredential loadCredential(
+        Crypto crypto, String alias, String password
+    ) throws WSSecurityException {
+        // Read the keystore before the entry, so that a concurrent change is detected later on
+        KeyStore keyStore = null;
+        if (crypto instanceof Merlin) {
+            keyStore = ((Merlin) crypto).getKeyStore();
+        }
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        X509Certificate[] certificates = crypto.getX509Certificates(cryptoType);
+        if (certificates == null || certificates.length == 0) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "noUserCertsFound", new Object[] {alias, "signature"}
+            );
+        }
+        PrivateKey privateKey = crypto.getPrivateKey(alias, password);
+        return new SigningCredential(privateKey, certificates, alias, password, keyStore);
+    }
+
+}
@@ -181,6 +181,13 @@ public final class ConversationConstants {
         String P_SHA_1_2005_12 =
             "http://docs.oasis-open.org/ws-sx/ws-secureconversation/200512/dk/p_sha1";
 
+        /**
+         * P_SHA-256 is not defined by WS-SecureConversation, so it is identified by a WSS4J specific URI,
+         * and must only be used if both parties support it
+         */
+        String P_SHA_256 =
+            "http://ws.apache.org/wss4j/dk/p_sha256";
+
         byte[] createKey(byte[] secret, byte[] seed, int offset, long length)
             throws WSSecurityException;
     }
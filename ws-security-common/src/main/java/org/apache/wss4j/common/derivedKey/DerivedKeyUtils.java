@@ -20,7 +20,9 @@ package org.apache.wss4j.common.derivedKey;
 
 import java.nio.charset.StandardCharsets;
 
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
 
 public final class DerivedKeyUtils {
 
@@ -57,4 +59,43 @@ public final class DerivedKeyUtils {
         }
         return algo.createKey(secret, seed, offset, keyLength);
     }
+
+    /**
+     * Get the identifier of the session of a DerivedKeyToken for a DerivedKeyCache, i.e. the identifier of
+     * the token that its SecurityTokenReference refers to: the URI of the Reference (without a leading '#'),
+     * or else the value of the KeyIdentifier. The same identifier is used by the DOM and the StAX code.
+     *
+     * @param referenceURI The URI of the Reference of the SecurityTokenReference (can be null)
+     * @param keyIdentifierValue The value of the KeyIdentifier of the SecurityTokenReference (can be null)
+     */
+    public static String getSessionId(String referenceURI, String keyIdentifierValue) {
+        if (referenceURI != null) {
+            return XMLUtils.getIDFromReference(referenceURI);
+        }
+        return keyIdentifierValue;
+    }
+
+    /**
+     * Derive a key, where the key is taken from the given DerivedKeyCache if it was derived from the
+     * same input before in the same session, and added to it otherwise.
+     *
+     * @param sessionId The identifier of the session, i.e. of the token that the DerivedKeyToken refers to
+     *        (see getSessionId)
+     * @param keyCache The DerivedKeyCache (can be null)
+     * @throws WSSecurityException
+     */
+    public static byte[] deriveKey(String algorithm, String label, int length, byte[] secret, byte[] nonce, int offset,
+                                   String sessionId, DerivedKeyCache keyCache) throws WSSecurityException {
+        if (keyCache == null) {
+            return deriveKey(algorithm, label, length, secret, nonce, offset);
+        }
+
+        String identifier = keyCache.getIdentifier(algorithm, label, length, secret, nonce, offset);
+        byte[] derivedKey = keyCache.get(sessionId, identifier);
+        if (derivedKey == null) {
+            derivedKey = deriveKey(algorithm, label, length, secret, nonce, offset);
+            keyCache.add(sessionId, identifier, derivedKey);
+        }
+        return derivedKey;
+    }
 }
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.derivedKey;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.DestroyFailedException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ <pre>
+ P_hash DEFINITION
+ =================
+ <b>P_hash(secret, seed)</b> =
+ HMAC_hash(secret, A(1) + seed) +
+ HMAC_hash(secret, A(2) + seed) +
+ HMAC_hash(secret, A(3) + seed) + ...
+ <i>Where + indicates concatenation.</i>
+ <br>
+ A() is defined as:
+ A(0) = seed
+ A(i) = HMAC_hash(secret, A(i-1))
+ <br>
+ <i>Source : RFC 2246 - The TLS Protocol Version 1.0
+ Section 5. HMAC and the pseudorandom function</i>
+ </pre>
+ The Mac instances are pooled per thread, as looking up a Mac via the JCE providers costs more than
+ the few HMAC operations of deriving a key. A Mac is initialized with a fixed, non-secret key before
+ it is returned to the pool, so that the pool does not retain the secret. The intermediate values are
+ computed into reused buffers that are cleared after use.
+ */
+public abstract class P_Hash implements DerivationAlgorithm {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(P_Hash.class);
+
+    // The idle Mac instances of the current thread, keyed on the algorithm
+    private static final ThreadLocal<Map<String, Mac>> MACS = ThreadLocal.withInitial(HashMap::new);
+
+    // The (non-secret) key that a Mac is initialized with when it is returned to the pool
+    private static final byte[] RELEASED_KEY = new byte[1];
+
+    private final String macAlgorithm;
+
+    /**
+     * @param macAlgorithm The JCE name of the HMAC algorithm, e.g. "HmacSHA1"
+     */
+    protected P_Hash(String macAlgorithm) {
+        this.macAlgorithm = macAlgorithm;
+    }
+
+    @Override
+    public byte[] createKey(byte[] secret, byte[] seed, int offset, long length)
+            throws WSSecurityException {
+
+        Mac mac = null;
+        try {
+            mac = getMac();
+
+            byte[] tempBytes = pHash(secret, seed, mac, offset + (int) length);
+
+            byte[] key = new byte[(int) length];
+
+            System.arraycopy(tempBytes, offset, key, 0, key.length);
+            Arrays.fill(tempBytes, (byte) 0);
+
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "errorInKeyDerivation");
+        } finally {
+            release(mac);
+        }
+    }
+
+    private Mac getMac() throws GeneralSecurityException {
+        Mac mac = MACS.get().remove(macAlgorithm);
+        if (mac == null) {
+            mac = Mac.getInstance(macAlgorithm);
+        }
+        return mac;
+    }
+
+    /**
+     * Return a Mac to the pool of the current thread, once the secret that it was initialized with is
+     * replaced by the non-secret RELEASED_KEY. A Mac that cannot be re-initialized is discarded.
+     */
+    private void release(Mac mac) {
+        if (mac != null) {
+            try {
+                mac.init(new SecretKeySpec(RELEASED_KEY, macAlgorithm));
+                MACS.get().put(macAlgorithm, mac);
+            } catch (GeneralSecurityException e) {
+                LOG.debug("Error releasing Mac: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * P_hash as defined in RFC 2246 for TLS.
+     *
+     * @param secret is the key for the HMAC
+     * @param seed the seed value to start the generation - A(0)
+     * @param mac the HMAC algorithm
+     * @param required number of bytes to generate
+     * @return a byte array that contains a secret key
+     * @throws GeneralSecurityException
+     */
+    private byte[] pHash(byte[] secret, byte[] seed, Mac mac, int required)
+            throws GeneralSecurityException {
+
+        byte[] out = new byte[required];
+        int offset = 0;
+        int macLength = mac.getMacLength();
+        byte[] a = new byte[macLength];
+        byte[] tmp = new byte[macLength];
+
+        SecretKeySpec key = new SecretKeySpec(secret, macAlgorithm);
+        mac.init(key);
+
+        // A(1)
+        mac.update(seed);
+        mac.doFinal(a, 0);
+
+        int bytesRequired = required;
+        while (bytesRequired > 0) {
+            mac.update(a);
+            mac.update(seed);
+            mac.doFinal(tmp, 0);
+            int tocpy = Math.min(bytesRequired, macLength);
+            System.arraycopy(tmp, 0, out, offset, tocpy);
+            offset += tocpy;
+            bytesRequired -= tocpy;
+            if (bytesRequired > 0) {
+                // A(i + 1)
+                mac.update(a);
+                mac.doFinal(a, 0);
+            }
+        }
+        Arrays.fill(a, (byte) 0);
+        Arrays.fill(tmp, (byte) 0);
+
+        try {
+            key.destroy();
+        } catch (DestroyFailedException e) {
+            LOG.debug("Error destroying key: {}", e.getMessage());
+        }
+        return out;
+    }
+}
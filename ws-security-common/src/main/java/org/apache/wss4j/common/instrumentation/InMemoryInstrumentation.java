@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.instrumentation;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An Instrumentation that keeps the OperationStatistics of each recorded operation in memory.
+ */
+public class InMemoryInstrumentation implements Instrumentation {
+
+    private final ConcurrentMap<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void record(String operation, long durationNanos, long bytes) {
+        statistics.computeIfAbsent(operation, k -> new OperationStatistics()).record(durationNanos, bytes);
+    }
+
+    /**
+     * @param operation the name of the operation
+     * @return the OperationStatistics of the given operation, or null if it was not recorded
+     */
+    public OperationStatistics getStatistics(String operation) {
+        return statistics.get(operation);
+    }
+
+    /**
+     * @return the OperationStatistics of all recorded operations, sorted by the operation name
+     */
+    public Map<String, OperationStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statistics));
+    }
+
+    /**
+     * Reset the statistics of all operations
+     */
+    public void reset() {
+        for (OperationStatistics operationStatistics : statistics.values()) {
+            operationStatistics.reset();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.instrumentation;
+
+/**
+ * An SPI to record how often the (expensive) operations of the inbound and outbound security
+ * processing are executed, how long they take, and how many bytes they process. The operations
+ * are identified by name (see the constants below). The default implementation is the
+ * NoOpInstrumentation, which records nothing.
+ *
+ * The operations are timed as follows:
+ * <pre>
+ * long start = instrumentation.start();
+ * ...
+ * instrumentation.stop(Instrumentation.SIGNATURE_VERIFICATION, start);
+ * </pre>
+ * Implementations must be thread-safe.
+ */
+public interface Instrumentation {
+
+    /**
+     * The processing of a whole inbound security header
+     */
+    String SECURITY_HEADER = "inbound.securityHeader";
+
+    /**
+     * The prefix of the processing of an inbound security header element. The local name of the
+     * element (e.g. "Signature") is appended to it.
+     */
+    String PROCESSOR_PREFIX = "inbound.processor.";
+
+    /**
+     * The unmarshalling of a Signature element
+     */
+    String SIGNATURE_UNMARSHAL = "signature.unmarshal";
+
+    /**
+     * The resolution of the key of a Signature from its KeyInfo
+     */
+    String SIGNATURE_KEY_RESOLUTION = "signature.keyResolution";
+
+    /**
+     * The validation of the trust in the credential of a Signature
+     */
+    String SIGNATURE_TRUST_VALIDATION = "signature.trustValidation";
+
+    /**
+     * The validation of the References of a Signature (i.e. the digesting of the referenced data),
+     * which follows the verification of its SignatureValue
+     */
+    String SIGNATURE_DIGEST = "signature.digest";
+
+    /**
+     * The verification of the SignatureValue of a Signature over its SignedInfo
+     */
+    String SIGNATURE_VERIFICATION = "signature.verification";
+
+    /**
+     * The resolution of the certificate or public key of an EncryptedKey from its KeyInfo
+     */
+    String ENCRYPTED_KEY_KEY_RESOLUTION = "encryptedKey.keyResolution";
+
+    /**
+     * The decryption of the secret key of an EncryptedKey, including the retrieval of the private key
+     */
+    String ENCRYPTED_KEY_DECRYPTION = "encryptedKey.decryption";
+
+    /**
+     * The decryption of an EncryptedData element. The processed bytes are the (Base64 decoded) bytes of the CipherValue.
+     */
+    String ENCRYPTED_DATA_DECRYPTION = "encryptedData.decryption";
+
+    /**
+     * The streaming of a whole inbound message through the StAX inbound chain, i.e. the time from the
+     * creation of the XMLStreamReader until its end of the document was read
+     */
+    String STAX_INBOUND_MESSAGE = "stax.inbound.message";
+
+    /**
+     * The streaming of a whole outbound message through the StAX outbound chain, i.e. the time from the
+     * creation of the XMLStreamWriter until it was closed. The processed bytes are the bytes written to
+     * the OutputStream (if any).
+     */
+    String STAX_OUTBOUND_MESSAGE = "stax.outbound.message";
+
+    /**
+     * @return whether this Instrumentation records anything. If not, the callers can skip any
+     *         preparation of the recorded values.
+     */
+    boolean isEnabled();
+
+    /**
+     * Record an execution of an operation.
+     * @param operation the name of the operation
+     * @param durationNanos the duration of the execution in nanoseconds
+     * @param bytes the number of bytes that were processed by the execution, or 0 if not applicable
+     */
+    void record(String operation, long durationNanos, long bytes);
+
+    /**
+     * @return the start time (in nanoseconds) of an operation that is timed, which is passed to stop
+     */
+    default long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record an execution of an operation that was started at the given time.
+     * @param operation the name of the operation
+     * @param start the value returned by start
+     */
+    default void stop(String operation, long start) {
+        stop(operation, start, 0L);
+    }
+
+    /**
+     * Record an execution of an operation that was started at the given time.
+     * @param operation the name of the operation
+     * @param start the value returned by start
+     * @param bytes the number of bytes that were processed by the execution
+     */
+    default void stop(String operation, long start, long bytes) {
+        record(operation, System.nanoTime() - start, bytes);
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.instrumentation;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An InMemoryInstrumentation that exposes the OperationStatistics as an MXBean. It is registered
+ * in the platform MBeanServer under the name "org.apache.wss4j:type=Instrumentation,name=" followed
+ * by the name given to the constructor.
+ */
+public class JMXInstrumentation extends InMemoryInstrumentation implements InstrumentationMXBean {
+
+    public static final String OBJECT_NAME_PREFIX = "org.apache.wss4j:type=Instrumentation,name=";
+
+    private final ObjectName objectName;
+    private final MBeanServer mbeanServer;
+
+    public JMXInstrumentation(String name) throws WSSecurityException {
+        this(name, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JMXInstrumentation(String name, MBeanServer mbeanServer) throws WSSecurityException {
+        try {
+            objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+        } catch (JMException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+        }
+        this.mbeanServer = mbeanServer;
+    }
+
+    /**
+     * Register this MXBean in the MBeanServer
+     */
+    public void register() throws WSSecurityException {
+        try {
+            mbeanServer.registerMBean(this, objectName);
+        } catch (JMException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+        }
+    }
+
+    /**
+     * Unregister this MXBean from the MBeanServer, if it is registered
+     */
+    public void unregister() throws WSSecurityException {
+        try {
+            if (mbeanServer.isRegistered(objectName)) {
+                mbeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+        }
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+}
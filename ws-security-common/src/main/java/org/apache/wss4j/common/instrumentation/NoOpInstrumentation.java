@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.instrumentation;
+
+/**
+ * The default Instrumentation, which records nothing and does not read the clock.
+ */
+public final class NoOpInstrumentation implements Instrumentation {
+
+    public static final NoOpInstrumentation INSTANCE = new NoOpInstrumentation();
+
+    private NoOpInstrumentation() {
+        // complete
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void record(String operation, long durationNanos, long bytes) {
+        // complete
+    }
+
+    @Override
+    public long start() {
+        return 0L;
+    }
+
+    @Override
+    public void stop(String operation, long start) {
+        // complete
+    }
+
+    @Override
+    public void stop(String operation, long start, long bytes) {
+        // complete
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.instrumentation;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of an operation that is recorded by the InMemoryInstrumentation: the number of
+ * executions, their total and maximum duration, the number of processed bytes, and a latency
+ * histogram. The histogram counts the executions per duration bucket, where the upper bounds of
+ * the buckets are given by getHistogramBounds, and the last bucket counts the executions that
+ * took longer than the last bound.
+ */
+public class OperationStatistics {
+
+    private static final long[] HISTOGRAM_BOUNDS_MICROS = {
+        10L, 50L, 100L, 500L, 1000L, 5000L, 10000L, 50000L, 100000L, 500000L, 1000000L
+    };
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalTimeNanos = new LongAdder();
+    private final LongAccumulator maxTimeNanos = new LongAccumulator(Long::max, 0L);
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder[] histogram = new LongAdder[HISTOGRAM_BOUNDS_MICROS.length + 1];
+
+    public OperationStatistics() {
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record an execution of the operation
+     * @param durationNanos the duration of the execution in nanoseconds
+     * @param processedBytes the number of bytes that were processed by the execution
+     */
+    public void record(long durationNanos, long processedBytes) {
+        count.increment();
+        totalTimeNanos.add(durationNanos);
+        maxTimeNanos.accumulate(durationNanos);
+        if (processedBytes > 0) {
+            bytes.add(processedBytes);
+        }
+
+        long durationMicros = durationNanos / 1000L;
+        int bucket = 0;
+        while (bucket < HISTOGRAM_BOUNDS_MICROS.length && durationMicros > HISTOGRAM_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        histogram[bucket].increment();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalTimeNanos() {
+        return totalTimeNanos.sum();
+    }
+
+    public long getMaxTimeNanos() {
+        return maxTimeNanos.get();
+    }
+
+    public long getMeanTimeNanos() {
+        long currentCount = count.sum();
+        return currentCount == 0 ? 0L : totalTimeNanos.sum() / currentCount;
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return the number of executions per duration bucket
+     */
+    public long[] getHistogram() {
+        long[] values = new long[histogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            values[i] = histogram[i].sum();
+        }
+        return values;
+    }
+
+    /**
+     * @return the upper bounds (in microseconds) of the duration buckets of the histogram
+     */
+    public long[] getHistogramBounds() {
+        return HISTOGRAM_BOUNDS_MICROS.clone();
+    }
+
+    void reset() {
+        count.reset();
+        totalTimeNanos.reset();
+        maxTimeNanos.reset();
+        bytes.reset();
+        for (LongAdder bucket : histogram) {
+            bucket.reset();
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginContext;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.GSSName;
+import org.ietf.jgss.Oid;
+
+/**
+ * The credentials of a Kerberos service that were obtained by a single JAAS login, as cached by the
+ * KerberosServiceCredentialCache: the Subject of the service and the GSS acceptor credentials that were
+ * created for it.
+ */
+public class KerberosServiceCredential {
+
+    private static final String JGSS_KERBEROS_TICKET_OID = "1.2.840.113554.1.2.2";
+
+    private final LoginContext loginContext;
+    private final Subject subject;
+    private final Instant expiry;
+    private final Map<String, GSSCredential> acceptorCredentials = new HashMap<>();
+
+    public KerberosServiceCredential(LoginContext loginContext, Instant expiry) {
+        this.loginContext = loginContext;
+        this.subject = loginContext.getSubject();
+        this.expiry = expiry;
+    }
+
+    /**
+     * @return the Subject that was obtained by the JAAS login
+     */
+    public Subject getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the time after which the login must not be used any more
+     */
+    public Instant getExpiry() {
+        return expiry;
+    }
+
+    LoginContext getLoginContext() {
+        return loginContext;
+    }
+
+    /**
+     * Get the GSS acceptor credential of the given service. It is created with the Subject on the first
+     * call, and reused for all subsequent calls.
+     * @param serviceName the name of the service
+     * @param isUsernameServiceNameForm whether the service name is in the "username" form
+     * @return the GSS acceptor credential of the given service
+     * @throws WSSecurityException if the credential can't be created
+     */
+    public synchronized GSSCredential getAcceptorCredential(
+        String serviceName, boolean isUsernameServiceNameForm
+    ) throws WSSecurityException {
+        String key = serviceName + (isUsernameServiceNameForm ? "#username" : "#hostbased");
+        GSSCredential credential = acceptorCredentials.get(key);
+        if (credential == null) {
+            PrivilegedExceptionAction<GSSCredential> action = () -> {
+                GSSManager gssManager = GSSManager.getInstance();
+                GSSName gssService = gssManager.createName(serviceName, isUsernameServiceNameForm
+                                                           ? GSSName.NT_USER_NAME : GSSName.NT_HOSTBASED_SERVICE);
+                return gssManager.createCredential(
+                    gssService, GSSCredential.DEFAULT_LIFETIME, new Oid(JGSS_KERBEROS_TICKET_OID),
+                    GSSCredential.ACCEPT_ONLY
+                );
+            };
+            try {
+                credential = Subject.doAs(subject, action);
+            } catch (PrivilegedActionException e) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE, e.getException(), "kerberosTicketValidationError"
+                );
+            }
+            acceptorCredentials.put(key, credential);
+        }
+        return credential;
+    }
+
+}
@@ -0,0 +1,353 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.kerberos;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * A thread-safe cache of the credentials of a Kerberos service, which is shared by the validators of the
+ * received Kerberos tokens. Instead of a JAAS login (which re-reads the keytab or re-authenticates to the
+ * KDC) for every received token, the login is done once per JAAS login context name and the principal and
+ * keytab that its login modules are configured with, and the Subject and the GSS acceptor credentials are
+ * reused until shortly before the tickets of the Subject expire. A login that does not obtain any ticket
+ * (e.g. a keytab based acceptor login) is reused for a maximum lifetime, and a login is always reused for a
+ * minimum lifetime, even if the KDC issues tickets that expire sooner. A login that is replaced may still be
+ * used by the threads that obtained it before, so it is only logged out once its tickets have expired, and
+ * not before the refresh margin has passed since it was replaced.
+ *
+ * Optionally, a ReplayCache can be configured to reject a Kerberos AP-REQ token that was already accepted
+ * before. As the service accepts an authenticator whose time is within the clock skew of its own time, an
+ * accepted token is stored for twice the clock skew.
+ */
+public class KerberosServiceCredentialCache implements Closeable {
+
+    /**
+     * The default time before the expiry of the tickets at which the login is renewed
+     */
+    public static final Duration DEFAULT_REFRESH_MARGIN = Duration.ofMinutes(5L);
+
+    /**
+     * The default maximum lifetime of a login that did not obtain any ticket
+     */
+    public static final Duration DEFAULT_MAX_LIFETIME = Duration.ofHours(1L);
+
+    /**
+     * The default minimum lifetime of a login
+     */
+    public static final Duration DEFAULT_MIN_LIFETIME = Duration.ofMinutes(1L);
+
+    /**
+     * The default clock skew of Kerberos, which determines the time for which an accepted Kerberos token
+     * is stored in the ReplayCache
+     */
+    public static final Duration DEFAULT_CLOCK_SKEW = Duration.ofMinutes(5L);
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceCredentialCache.class);
+
+    private final Map<String, KerberosServiceCredential> credentials = new ConcurrentHashMap<>();
+    private Duration refreshMargin = DEFAULT_REFRESH_MARGIN;
+    // The logins that were replaced, and the time at which they are logged out
+    private final Map<KerberosServiceCredential, Instant> retiredCredentials = new IdentityHashMap<>();
+    private volatile Instant nextLogout;
+    private Duration maxLifetime = DEFAULT_MAX_LIFETIME;
+    private Duration minLifetime = DEFAULT_MIN_LIFETIME;
+    private Duration clockSkew = DEFAULT_CLOCK_SKEW;
+    private ReplayCache replayCache;
+
+    /**
+     * Get the credentials of the service of the given JAAS login context name. A new login is done if
+     * there are no cached credentials, or if they are about to expire.
+     * @param contextName the JAAS login context name
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     * @return the credentials of the service
+     * @throws WSSecurityException if the login fails
+     */
+    public KerberosServiceCredential getCredential(
+        String contextName, CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        Instant logoutTime = nextLogout;
+        if (logoutTime != null && !Instant.now().isBefore(logoutTime)) {
+            logoutRetiredCredentials();
+        }
+
+        String key = getKey(contextName);
+        KerberosServiceCredential credential = credentials.get(key);
+        if (credential != null && isValid(credential)) {
+            return credential;
+        }
+
+        synchronized (this) {
+            credential = credentials.get(key);
+            if (credential == null || !isValid(credential)) {
+                KerberosServiceCredential expiredCredential = credential;
+                credential = login(contextName, callbackHandler);
+                credentials.put(key, credential);
+                if (expiredCredential != null) {
+                    retire(expiredCredential);
+                }
+            }
+            return credential;
+        }
+    }
+
+    /**
+     * Check that the given Kerberos token has not been accepted before, and record it as accepted. This must
+     * only be called once the token has been accepted by the GSS context of the service, so that a token
+     * that is rejected does not cause a later valid one to be rejected as a replay. This does nothing if no
+     * ReplayCache is configured.
+     * @param token the accepted Kerberos token
+     * @throws WSSecurityException if the token has been accepted before
+     */
+    public void checkReplay(byte[] token) throws WSSecurityException {
+        if (replayCache == null) {
+            return;
+        }
+        String identifier = XMLUtils.encodeToString(KeyUtils.generateDigest(token));
+        if (!replayCache.addIfAbsent(identifier, Instant.now().plus(clockSkew.multipliedBy(2L)))) {
+            LOG.debug("A replay attack has been detected on a Kerberos token");
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.INVALID_SECURITY, "kerberosTicketValidationError"
+            );
+        }
+    }
+
+    /**
+     * Log out and remove all cached credentials, including the replaced ones, so that the next call of
+     * getCredential does a new login. It must only be called when the credentials are no longer in use.
+     */
+    public synchronized void clear() {
+        for (KerberosServiceCredential credential : credentials.values()) {
+            logout(credential);
+        }
+        credentials.clear();
+        for (KerberosServiceCredential credential : retiredCredentials.keySet()) {
+            logout(credential);
+        }
+        retiredCredentials.clear();
+        nextLogout = null;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    public Duration getRefreshMargin() {
+        return refreshMargin;
+    }
+
+    /**
+     * Set the time before the expiry of the tickets at which the login is renewed
+     * @param refreshMargin the time before the expiry of the tickets at which the login is renewed
+     */
+    public void setRefreshMargin(Duration refreshMargin) {
+        this.refreshMargin = refreshMargin;
+    }
+
+    public Duration getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Set the maximum lifetime of a login that did not obtain any ticket
+     * @param maxLifetime the maximum lifetime of a login that did not obtain any ticket
+     */
+    public void setMaxLifetime(Duration maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public Duration getMinLifetime() {
+        return minLifetime;
+    }
+
+    /**
+     * Set the minimum lifetime of a login, i.e. the time for which a login is reused even if the KDC issues
+     * tickets that expire within the refresh margin
+     * @param minLifetime the minimum lifetime of a login
+     */
+    public void setMinLifetime(Duration minLifetime) {
+        this.minLifetime = minLifetime;
+    }
+
+    public Duration getClockSkew() {
+        return clockSkew;
+    }
+
+    /**
+     * Set the clock skew of Kerberos. An accepted Kerberos token is stored in the ReplayCache for twice
+     * the clock skew.
+     * @param clockSkew the clock skew of Kerberos
+     */
+    public void setClockSkew(Duration clockSkew) {
+        this.clockSkew = clockSkew;
+    }
+
+    public ReplayCache getReplayCache() {
+        return replayCache;
+    }
+
+    /**
+     * Set the ReplayCache that is used to detect a replayed Kerberos token. It can be null (the default),
+     * in which case no replay detection is done.
+     * @param replayCache the ReplayCache that is used to detect a replayed Kerberos token
+     */
+    public void setReplayCache(ReplayCache replayCache) {
+        this.replayCache = replayCache;
+    }
+
+    /**
+     * The login depends on the principal and keytab that the login modules of the login context are
+     * configured with, and not only on its name, as the JAAS configuration may be replaced.
+     */
+    private static String getKey(String contextName) {
+        StringBuilder key = new StringBuilder(contextName);
+        try {
+            AppConfigurationEntry[] entries = Configuration.getConfiguration().getAppConfigurationEntry(contextName);
+            if (entries != null) {
+                for (AppConfigurationEntry entry : entries) {
+                    Map<String, ?> options = entry.getOptions();
+                    key.append('|').append(entry.getLoginModuleName())
+                        .append('|').append(options.get("principal"))
+                        .append('|').append(options.get("keyTab"));
+                }
+            }
+        } catch (SecurityException ex) {
+            LOG.debug(ex.getMessage(), ex);
+        }
+        return key.toString();
+    }
+
+    private static void logout(KerberosServiceCredential credential) {
+        try {
+            credential.getLoginContext().logout();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Keep a replaced login until its tickets have expired, but at least for the refresh margin, as other
+     * threads may still be accepting a token with it
+     */
+    private void retire(KerberosServiceCredential credential) {
+        Instant logoutTime = Instant.now().plus(refreshMargin);
+        Instant ticketEndTime = getTicketEndTime(credential.getSubject());
+        if (ticketEndTime != null && ticketEndTime.isAfter(logoutTime)) {
+            logoutTime = ticketEndTime;
+        }
+        retiredCredentials.put(credential, logoutTime);
+        if (nextLogout == null || logoutTime.isBefore(nextLogout)) {
+            nextLogout = logoutTime;
+        }
+    }
+
+    private synchronized void logoutRetiredCredentials() {
+        Instant now = Instant.now();
+        Instant next = null;
+        Iterator<Map.Entry<KerberosServiceCredential, Instant>> iterator = retiredCredentials.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<KerberosServiceCredential, Instant> entry = iterator.next();
+            if (now.isBefore(entry.getValue())) {
+                if (next == null || entry.getValue().isBefore(next)) {
+                    next = entry.getValue();
+                }
+            } else {
+                logout(entry.getKey());
+                iterator.remove();
+            }
+        }
+        nextLogout = next;
+    }
+
+    /**
+     * Get the time at which the first ticket of the given Subject expires, or null if it has no ticket
+     */
+    private static Instant getTicketEndTime(Subject subject) {
+        Instant ticketEndTime = null;
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            Date endTime = ticket.getEndTime();
+            if (endTime != null && (ticketEndTime == null || endTime.toInstant().isBefore(ticketEndTime))) {
+                ticketEndTime = endTime.toInstant();
+            }
+        }
+        return ticketEndTime;
+    }
+
+    private boolean isValid(KerberosServiceCredential credential) {
+        return Instant.now().isBefore(credential.getExpiry());
+    }
+
+    private KerberosServiceCredential login(
+        String contextName, CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        LoginContext loginContext = null;
+        try {
+            if (callbackHandler != null) {
+                loginContext = new LoginContext(contextName, callbackHandler);
+            } else {
+                loginContext = new LoginContext(contextName);
+            }
+            loginContext.login();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+        LOG.debug("Successfully authenticated the service of the login context {}", contextName);
+
+        // Renew the login before the first ticket of the Subject expires, but not before the minimum lifetime
+        Instant now = Instant.now();
+        Instant expiry = now.plus(maxLifetime);
+        Instant ticketEndTime = getTicketEndTime(loginContext.getSubject());
+        if (ticketEndTime != null && ticketEndTime.minus(refreshMargin).isBefore(expiry)) {
+            expiry = ticketEndTime.minus(refreshMargin);
+            Instant minExpiry = now.plus(minLifetime);
+            if (expiry.isBefore(minExpiry)) {
+                LOG.debug("The tickets of the login context {} expire within the refresh margin", contextName);
+                expiry = minExpiry;
+            }
+        }
+        return new KerberosServiceCredential(loginContext, expiry);
+    }
+
+}
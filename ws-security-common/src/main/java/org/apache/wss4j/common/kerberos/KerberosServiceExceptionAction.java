@@ -57,13 +57,24 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
     private String serviceName;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private GSSCredential acceptorCredential;
 
     public KerberosServiceExceptionAction(byte[] ticket, String serviceName, boolean isUsernameServiceNameForm,
                                           boolean spnego) {
+        this(ticket, serviceName, isUsernameServiceNameForm, spnego, null);
+    }
+
+    /**
+     * @param acceptorCredential a (cached) GSS acceptor credential of the service, which is used instead
+     *        of creating a new one. It can be null. It is not used for SPNEGO.
+     */
+    public KerberosServiceExceptionAction(byte[] ticket, String serviceName, boolean isUsernameServiceNameForm,
+                                          boolean spnego, GSSCredential acceptorCredential) {
         this.ticket = ticket;
         this.serviceName = serviceName;
         this.isUsernameServiceNameForm = isUsernameServiceNameForm;
         this.spnego = spnego;
+        this.acceptorCredential = acceptorCredential;
     }
 
 
@@ -80,6 +91,8 @@ public class KerberosServiceExceptionAction implements PrivilegedExceptionAction
         if (spnego) {
             Oid oid = new Oid(JGSS_SPNEGO_TICKET_OID);
             secContext = gssManager.createContext(gssService, oid, null, GSSContext.DEFAULT_LIFETIME);
+        } else if (acceptorCredential != null) {
+            secContext = gssManager.createContext(acceptorCredential);
         } else {
             Oid oid = new Oid(JGSS_KERBEROS_TICKET_OID);
             GSSCredential credentials =
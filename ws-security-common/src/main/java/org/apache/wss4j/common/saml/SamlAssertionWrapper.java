@@ -25,6 +25,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.wss4j.common.cache.SamlTrustContext;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -99,6 +101,11 @@ public class SamlAssertionWrapper {
      */
     private SAMLKeyInfo signatureKeyInfo;
 
+    /**
+     * Whether the signature on the Assertion was verified before, according to a VerifiedSamlAssertionCache
+     */
+    private boolean signatureVerifiedFromCache;
+
     /**
      * Default Canonicalization algorithm used for signing.
      */
@@ -643,6 +650,37 @@ public class SamlAssertionWrapper {
         }
     }
 
+    /**
+     * Check whether the signature of this assertion was verified before, and its signing credential
+     * trusted with the given SamlTrustContext, according to the given cache. If so, the SAMLKeyInfo of
+     * the signature is set from the cache, and the signature does not need to be verified again.
+     *
+     * @param cache the VerifiedSamlAssertionCache, which may be null
+     * @param trustContext the SamlTrustContext that the signing credential must have been trusted with
+     * @return true if the signature was verified before
+     * @throws WSSecurityException
+     */
+    public boolean verifySignatureFromCache(VerifiedSamlAssertionCache cache, SamlTrustContext trustContext)
+        throws WSSecurityException {
+        if (cache != null && isSigned()) {
+            SAMLKeyInfo samlKeyInfo = cache.get(this, trustContext);
+            if (samlKeyInfo != null) {
+                signatureKeyInfo = samlKeyInfo;
+                signatureVerifiedFromCache = true;
+            }
+        }
+        return signatureVerifiedFromCache;
+    }
+
+    /**
+     * Return whether the signature of this assertion was verified before, according to a
+     * VerifiedSamlAssertionCache (see the verifySignatureFromCache method)
+     * @return whether the signature of this assertion was verified before
+     */
+    public boolean isSignatureVerifiedFromCache() {
+        return signatureVerifiedFromCache;
+    }
+
     /**
      * Validate the signature of the Assertion against the Profile. This does not actually
      * verify the signature itself (see the verifySignature method for this)
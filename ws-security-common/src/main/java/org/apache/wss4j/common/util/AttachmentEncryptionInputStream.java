@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+/**
+ * An InputStream that encrypts an attachment on demand, while it is read. It returns the IV of the
+ * (initialized) Cipher, followed by the encryption of the given (canonicalized) MIME headers, if any,
+ * and of the attachment content. The content is read and encrypted in chunks of a bounded size, and
+ * the input and output buffers are reused, so that the memory that is needed does not depend on the
+ * size of the attachment.
+ */
+final class AttachmentEncryptionInputStream extends InputStream {
+
+    static final int CHUNK_SIZE = 8192;
+
+    private final Cipher cipher;
+    private final InputStream in;
+    private final byte[] inBuffer;
+    private byte[] outBuffer;
+    private int outPos;
+    private int outLength;
+    private boolean finished;
+
+    /**
+     * @param cipher the Cipher, initialized for encryption
+     * @param headers the canonicalized MIME headers to encrypt before the content, or null
+     * @param in the content of the attachment
+     * @param chunkSize the number of bytes of the content that are encrypted at a time
+     */
+    AttachmentEncryptionInputStream(Cipher cipher, byte[] headers, InputStream in, int chunkSize)
+        throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.cipher = cipher;
+        this.in = in;
+        this.inBuffer = new byte[chunkSize];
+
+        byte[] iv = cipher.getIV();
+        int ivLength = iv == null ? 0 : iv.length;
+        int headersLength = headers == null ? 0 : headers.length;
+        outBuffer = new byte[Math.max(ivLength + cipher.getOutputSize(headersLength), cipher.getOutputSize(chunkSize))];
+        if (ivLength > 0) {
+            System.arraycopy(iv, 0, outBuffer, 0, ivLength);
+        }
+        outLength = ivLength;
+        if (headersLength > 0) {
+            try {
+                outLength += cipher.update(headers, 0, headersLength, outBuffer, ivLength);
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return outBuffer[outPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, outLength - outPos);
+        System.arraycopy(outBuffer, outPos, b, off, count);
+        outPos += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return outLength - outPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Encrypt the next chunk of the content, if all the bytes of the previous chunk were read
+     * @return whether there are bytes to read
+     */
+    private boolean fill() throws IOException {
+        while (outPos >= outLength) {
+            if (finished) {
+                return false;
+            }
+            outPos = 0;
+            try {
+                int read = in.read(inBuffer);
+                if (read == -1) {
+                    finished = true;
+                    ensureCapacity(cipher.getOutputSize(0));
+                    outLength = cipher.doFinal(outBuffer, 0);
+                } else {
+                    ensureCapacity(cipher.getOutputSize(read));
+                    outLength = cipher.update(inBuffer, 0, read, outBuffer, 0);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int length) {
+        if (outBuffer.length < length) {
+            outBuffer = new byte[length];
+        }
+    }
+
+}
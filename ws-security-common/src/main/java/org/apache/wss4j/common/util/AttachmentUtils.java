@@ -25,7 +25,6 @@ import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.XMLCipherUtil;
-import org.apache.xml.security.stax.impl.util.MultiInputStream;
 import org.apache.xml.security.utils.JavaUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -562,57 +561,75 @@ public final class AttachmentUtils {
     public static InputStream setupAttachmentEncryptionStream(
             Cipher cipher, boolean complete, Attachment attachment,
             Map<String, String> headers) throws WSSecurityException {
+        return setupAttachmentEncryptionStream(cipher, complete, attachment, headers,
+                                               AttachmentEncryptionInputStream.CHUNK_SIZE);
+    }
 
-        final InputStream attachmentInputStream;    //NOPMD
+    /**
+     * Set up a stream that encrypts the attachment while it is read. The attachment content is
+     * never buffered as a whole, but read and encrypted in chunks of the given size. Only the tests
+     * use a chunk size other than AttachmentEncryptionInputStream.CHUNK_SIZE.
+     * @param cipher the Cipher, initialized for encryption
+     * @param complete whether the MIME headers are encrypted along with the content (the "Element"
+     *                 modifier). The encrypted headers are removed from the given headers.
+     * @param attachment the attachment to encrypt
+     * @param headers the MIME headers of the attachment
+     * @param chunkSize the number of bytes of the content that are encrypted at a time
+     * @return the IV followed by the encrypted (headers and) content
+     */
+    static InputStream setupAttachmentEncryptionStream(
+            Cipher cipher, boolean complete, Attachment attachment,
+            Map<String, String> headers, int chunkSize) throws WSSecurityException {
 
+        byte[] canonicalHeaders = null;
         if (complete) {
-            try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                OutputStreamWriter outputStreamWriter = new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.US_ASCII)) {
-
-                Iterator<Map.Entry<String, String>> iterator = headers.entrySet().iterator();
-                while (iterator.hasNext()) {
-                    Map.Entry<String, String> next = iterator.next();
-                    String key = next.getKey();
-                    String value = next.getValue();
-                    //5.5.2 Encryption Processing Rules
-                    //When encryption includes MIME headers, only the headers listed in this specification
-                    //for the Attachment-Complete-Signature-Transform (Section 5.3.2) are to be included in
-                    //the encryption. If a header listed in the profile is present it MUST be included in
-                    //the encryption. If a header is not listed in this profile, then it MUST NOT be
-                    //included in the encryption.
-                    if (AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION.equals(key)
-                        || AttachmentUtils.MIME_HEADER_CONTENT_DISPOSITION.equals(key)
-                        || AttachmentUtils.MIME_HEADER_CONTENT_ID.equals(key)
-                        || AttachmentUtils.MIME_HEADER_CONTENT_LOCATION.equals(key)
-                        || AttachmentUtils.MIME_HEADER_CONTENT_TYPE.equals(key)) {
-                        iterator.remove();
-                        outputStreamWriter.write(key);
-                        outputStreamWriter.write(':');
-                        outputStreamWriter.write(value);
-                        outputStreamWriter.write("\r\n");
-                    }
+            StringBuilder stringBuilder = new StringBuilder();
+            Iterator<Map.Entry<String, String>> iterator = headers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, String> next = iterator.next();
+                String key = next.getKey();
+                //5.5.2 Encryption Processing Rules
+                //When encryption includes MIME headers, only the headers listed in this specification
+                //for the Attachment-Complete-Signature-Transform (Section 5.3.2) are to be included in
+                //the encryption. If a header listed in the profile is present it MUST be included in
+                //the encryption. If a header is not listed in this profile, then it MUST NOT be
+                //included in the encryption.
+                if (AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION.equals(key)
+                    || AttachmentUtils.MIME_HEADER_CONTENT_DISPOSITION.equals(key)
+                    || AttachmentUtils.MIME_HEADER_CONTENT_ID.equals(key)
+                    || AttachmentUtils.MIME_HEADER_CONTENT_LOCATION.equals(key)
+                    || AttachmentUtils.MIME_HEADER_CONTENT_TYPE.equals(key)) {
+                    iterator.remove();
+                    stringBuilder.append(key).append(':').append(next.getValue()).append("\r\n");
                 }
-                outputStreamWriter.write("\r\n");
-                outputStreamWriter.close();
-                attachmentInputStream = new MultiInputStream(
-                        new ByteArrayInputStream(byteArrayOutputStream.toByteArray()),
-                        attachment.getSourceStream()
-                );
-            } catch (IOException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, e);
             }
-        } else {
-            attachmentInputStream = attachment.getSourceStream();
+            stringBuilder.append("\r\n");
+            canonicalHeaders = stringBuilder.toString().getBytes(StandardCharsets.US_ASCII);
         }
 
-        final ByteArrayInputStream ivInputStream = new ByteArrayInputStream(cipher.getIV());
-        final CipherInputStream cipherInputStream = new CipherInputStream(attachmentInputStream, cipher);   //NOPMD
-
-        return new MultiInputStream(ivInputStream, cipherInputStream);
+        try {
+            return new AttachmentEncryptionInputStream(cipher, canonicalHeaders, attachment.getSourceStream(), chunkSize);
+        } catch (IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, e);
+        }
     }
 
     public static byte[] getBytesFromAttachment(
         String xopUri, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
+    ) throws WSSecurityException {
+        Attachment attachment = getAttachment(xopUri, attachmentCallbackHandler, removeAttachments);
+        try (InputStream inputStream = attachment.getSourceStream()) {
+            return JavaUtils.getBytesFromStream(inputStream);
+        } catch (IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+        }
+    }
+
+    /**
+     * Get the attachment that the given xop:Include href refers to, without reading its content.
+     */
+    public static Attachment getAttachment(
+        String xopUri, CallbackHandler attachmentCallbackHandler, boolean removeAttachments
     ) throws WSSecurityException {
         if (attachmentCallbackHandler == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
@@ -635,10 +652,7 @@ public final class AttachmentUtils {
                     "empty", new Object[] {"Attachment not found: " + xopUri}
                 );
             }
-            Attachment attachment = attachments.get(0);
-            try (InputStream inputStream = attachment.getSourceStream()) {
-                return JavaUtils.getBytesFromStream(inputStream);
-            }
+            return attachments.get(0);
         } catch (UnsupportedCallbackException | IOException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
         }
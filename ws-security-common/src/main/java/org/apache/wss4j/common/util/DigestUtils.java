@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * Per-thread caches of MessageDigest instances, keyed on the (JCE) algorithm name.
+ * MessageDigest instances are not thread-safe, so rather than creating a new instance
+ * for every digest (which requires a lookup via the JCE providers), or sharing a single instance
+ * under a lock (which serializes all threads), an instance is borrowed from a cache of the
+ * current thread and returned to it after use. Borrowing and returning an instance does not
+ * require any synchronization, and so scales with the number of threads. Each thread holds at
+ * most one idle instance per algorithm. Only JDK classes are held by the cache of a thread.
+ *
+ * A borrowed instance must be returned via {@link #release(MessageDigest)} by the same thread,
+ * and must not be used after it has been returned. It is reset when it is returned. If an
+ * instance is borrowed again before it has been returned (e.g. by a nested call), then a new
+ * instance is created. Mac instances are deliberately not cached, as they would retain the
+ * (secret) key they were last initialised with.
+ */
+public final class DigestUtils {
+
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+    public static final String HMAC_SHA1 = "HmacSHA1";
+    public static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+
+    private DigestUtils() {
+        // complete
+    }
+
+    /**
+     * Generate a SHA-1 digest of the input bytes.
+     * @param inputBytes the bytes to digest
+     * @return the digest of the input bytes
+     * @throws WSSecurityException
+     */
+    public static byte[] sha1(byte[] inputBytes) throws WSSecurityException {
+        return digest(SHA1, inputBytes);
+    }
+
+    /**
+     * Generate a SHA-256 digest of the input bytes.
+     * @param inputBytes the bytes to digest
+     * @return the digest of the input bytes
+     * @throws WSSecurityException
+     */
+    public static byte[] sha256(byte[] inputBytes) throws WSSecurityException {
+        return digest(SHA256, inputBytes);
+    }
+
+    /**
+     * Generate a digest of the concatenation of the input bytes with the given algorithm.
+     * @param algorithm the JCE name of the digest algorithm, e.g. "SHA-1"
+     * @param inputBytes the bytes to digest
+     * @return the digest of the input bytes
+     * @throws WSSecurityException if the algorithm is not supported
+     */
+    public static byte[] digest(String algorithm, byte[]... inputBytes) throws WSSecurityException {
+        MessageDigest digest = getMessageDigest(algorithm);
+        try {
+            for (byte[] input : inputBytes) {
+                digest.update(input);
+            }
+            return digest.digest();
+        } finally {
+            release(digest);
+        }
+    }
+
+    /**
+     * Borrow a MessageDigest for the given algorithm from the cache of the current thread, or create
+     * a new one if there is no idle instance. It must be returned via {@link #release(MessageDigest)} after use.
+     * @param algorithm the JCE name of the digest algorithm, e.g. "SHA-1"
+     * @return a MessageDigest that is ready for use
+     * @throws WSSecurityException if the algorithm is not supported
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws WSSecurityException {
+        MessageDigest digest = DIGESTS.get().remove(algorithm);
+        if (digest != null) {
+            return digest;
+        }
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                                          new Object[] {"Error in generating digest"}
+            );
+        }
+    }
+
+    /**
+     * Return a MessageDigest that was obtained via {@link #getMessageDigest(String)} to the cache of
+     * the current thread.
+     * @param digest the MessageDigest (can be null)
+     */
+    public static void release(MessageDigest digest) {
+        if (digest != null) {
+            digest.reset();
+            DIGESTS.get().put(digest.getAlgorithm(), digest);
+        }
+    }
+
+}
@@ -30,7 +30,6 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.util.HashMap;
@@ -44,11 +43,6 @@ public final class KeyUtils {
 
     public static final String RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
 
-    /**
-     * A cached MessageDigest object
-     */
-    private static MessageDigest digest;
-
     static {
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5, 128);
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_RIPEMD160, 160);
@@ -227,22 +221,13 @@ public final class KeyUtils {
     }
 
     /**
-     * Generate a (SHA1) digest of the input bytes. The MessageDigest instance that backs this
-     * method is cached for efficiency.
+     * Generate a (SHA1) digest of the input bytes. The MessageDigest instances that back this
+     * method are cached per thread for efficiency (see DigestUtils).
      * @param inputBytes the bytes to digest
      * @return the digest of the input bytes
      * @throws WSSecurityException
      */
-    public static synchronized byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
-        try {
-            if (digest == null) {
-                digest = MessageDigest.getInstance("SHA-1");
-            }
-            return digest.digest(inputBytes);
-        } catch (Exception e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
-                                          new Object[] {"Error in generating digest"}
-            );
-        }
+    public static byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+        return DigestUtils.sha1(inputBytes);
     }
 }
@@ -21,13 +21,14 @@ package org.apache.wss4j.common.util;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
 
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
@@ -58,34 +59,69 @@ public final class UsernameTokenUtil {
         byte[] salt,
         int iteration
     ) throws WSSecurityException {
-        byte[] pwSalt = new byte[salt.length + password.length];
-        System.arraycopy(password, 0, pwSalt, 0, password.length);
-        System.arraycopy(salt, 0, pwSalt, password.length, salt.length);
+        int iter = iteration;
+        if (iter <= 0) {
+            iter = DEFAULT_ITERATION;
+        }
 
-        MessageDigest sha = null;
+        MessageDigest sha = DigestUtils.getMessageDigest(DigestUtils.SHA1);
         try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            LOG.debug(e.getMessage(), e);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
-            );
+            //
+            // Make the first hash round with start value
+            //
+            sha.update(password);
+            sha.update(salt);
+            byte[] k = sha.digest();
+            //
+            // Perform the 1st up to iteration-1 hash rounds, digesting into the same array
+            //
+            for (int i = 1; i < iter; i++) {
+                sha.update(k);
+                sha.digest(k, 0, k.length);
+            }
+            return k;
+        } catch (DigestException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        } finally {
+            DigestUtils.release(sha);
+        }
+    }
+
+    /**
+     * This static method generates a derived key as defined in WSS Username
+     * Token Profile. The key is taken from the given UsernameTokenKeyCache if it
+     * was derived from the same input before, and added to it otherwise.
+     *
+     * @param username The username of the UsernameToken
+     * @param password The password to include in the key generation
+     * @param salt The Salt value
+     * @param iteration The Iteration value. If zero (0) is given the method uses the
+     *                  default value
+     * @param keyCache The UsernameTokenKeyCache (can be null)
+     * @return Returns the derived key a byte array
+     * @throws WSSecurityException
+     */
+    public static byte[] generateDerivedKey(
+        String username,
+        byte[] password,
+        byte[] salt,
+        int iteration,
+        UsernameTokenKeyCache keyCache
+    ) throws WSSecurityException {
+        if (keyCache == null) {
+            return generateDerivedKey(password, salt, iteration);
         }
-        //
-        // Make the first hash round with start value
-        //
-        byte[] k = sha.digest(pwSalt);
-        //
-        // Perform the 1st up to iteration-1 hash rounds
-        //
+
         int iter = iteration;
         if (iter <= 0) {
             iter = DEFAULT_ITERATION;
         }
-        for (int i = 1; i < iter; i++) {
-            k = sha.digest(k);
+        byte[] derivedKey = keyCache.get(username, password, salt, iter);
+        if (derivedKey == null) {
+            derivedKey = generateDerivedKey(password, salt, iter);
+            keyCache.add(username, password, salt, iter, derivedKey);
         }
-        return k;
+        return derivedKey;
     }
 
     /**
@@ -160,18 +196,8 @@ public final class UsernameTokenUtil {
         try {
             byte[] b1 = nonce != null ? nonce : new byte[0];
             byte[] b2 = created != null ? created.getBytes(StandardCharsets.UTF_8) : new byte[0];
-            byte[] b3 = password;
-            byte[] b4 = new byte[b1.length + b2.length + b3.length];
-            int offset = 0;
-            System.arraycopy(b1, 0, b4, offset, b1.length);
-            offset += b1.length;
-
-            System.arraycopy(b2, 0, b4, offset, b2.length);
-            offset += b2.length;
-
-            System.arraycopy(b3, 0, b4, offset, b3.length);
-
-            return KeyUtils.generateDigest(b4);
+            // Digest the parts directly rather than concatenating them first
+            return DigestUtils.digest(DigestUtils.SHA1, b1, b2, password);
         } catch (Exception e) {
             LOG.debug(e.getMessage(), e);
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "decoding.general");
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wss4j.common.derivedKey.ConversationConstants;
+import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the MemoryDerivedKeyCache
+ */
+public class DerivedKeyCacheTest {
+
+    private static final String ALGORITHM = ConversationConstants.DerivationAlgorithm.P_SHA_1_2005_12;
+    private static final byte[] SECRET = "secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NONCE = "nonce".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache()) {
+            byte[] derivedKey = new byte[] {1, 2, 3, 4};
+            add(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 0, derivedKey);
+            assertArrayEquals(derivedKey, get(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 0));
+
+            // All of the input must be the same
+            assertNull(get(cache, "other", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertNull(get(cache, "session", ALGORITHM, "label", 32, SECRET, NONCE, 0));
+            assertNull(get(cache, "session", ALGORITHM, null, 16, SECRET, NONCE, 0));
+            assertNull(get(cache, "session", ALGORITHM, null, 32, NONCE, NONCE, 0));
+            assertNull(get(cache, "session", ALGORITHM, null, 32, SECRET, SECRET, 0));
+            assertNull(get(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 32));
+
+            // The cache holds a copy of the derived key, and returns copies of it
+            derivedKey[0] = 0;
+            get(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 0)[1] = 0;
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, get(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 0));
+        }
+    }
+
+    @Test
+    public void testDeriveKey() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache()) {
+            byte[] expected = DerivedKeyUtils.deriveKey(ALGORITHM, null, 32, SECRET, NONCE, 0);
+
+            assertArrayEquals(expected, DerivedKeyUtils.deriveKey(ALGORITHM, null, 32, SECRET, NONCE, 0, "session", cache));
+            assertEquals(1, cache.size());
+            assertArrayEquals(expected, get(cache, "session", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertArrayEquals(expected, DerivedKeyUtils.deriveKey(ALGORITHM, null, 32, SECRET, NONCE, 0, "session", cache));
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache()) {
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {1});
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 32, new byte[] {2});
+            add(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {3});
+            add(cache, null, ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {4});
+            assertEquals(4, cache.size());
+
+            assertArrayEquals(new byte[] {1}, get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertArrayEquals(new byte[] {3}, get(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertArrayEquals(new byte[] {4}, get(cache, null, ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertNull(get(cache, "c", ALGORITHM, null, 32, SECRET, NONCE, 0));
+        }
+    }
+
+    @Test
+    public void testRemoveSession() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache()) {
+            byte[] key = new byte[] {1, 2, 3};
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0, key);
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 32, new byte[] {4});
+            add(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {5});
+            assertEquals(3, cache.size());
+
+            cache.remove("a");
+            assertEquals(1, cache.size());
+            assertNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 32));
+            assertArrayEquals(new byte[] {5}, get(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            // The cache only holds a copy of the key
+            assertArrayEquals(new byte[] {1, 2, 3}, key);
+
+            cache.remove("unknown");
+            cache.remove(null);
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testSessionId() throws Exception {
+        assertEquals("sct-1", DerivedKeyUtils.getSessionId("#sct-1", null));
+        assertEquals("urn:uuid:1234", DerivedKeyUtils.getSessionId("urn:uuid:1234", "ignored"));
+        assertEquals("keyIdentifier", DerivedKeyUtils.getSessionId(null, "keyIdentifier"));
+        assertNull(DerivedKeyUtils.getSessionId(null, null));
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache(60L, 2, 2)) {
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {1});
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 32, new byte[] {2});
+            // The first key of "a" is now used more recently than the second one
+            assertNotNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 64, new byte[] {3});
+            assertEquals(2, cache.size());
+            assertNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 32));
+
+            add(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {4});
+            // Session "a" is now used more recently than session "b"
+            assertNotNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            add(cache, "c", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {5});
+            assertNull(get(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            assertArrayEquals(new byte[] {3}, get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 64));
+            assertArrayEquals(new byte[] {5}, get(cache, "c", ALGORITHM, null, 32, SECRET, NONCE, 0));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (MemoryDerivedKeyCache cache = new MemoryDerivedKeyCache(1L, 10, 10)) {
+            add(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {1});
+            add(cache, "b", ALGORITHM, null, 32, SECRET, NONCE, 0, new byte[] {2});
+            assertNotNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+
+            Thread.sleep(1100L);
+            assertNull(get(cache, "a", ALGORITHM, null, 32, SECRET, NONCE, 0));
+            // All the expired entries are purged
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private static void add(DerivedKeyCache cache, String sessionId, String algorithm, String label, int length,
+                            byte[] secret, byte[] nonce, int offset, byte[] derivedKey) throws WSSecurityException {
+        cache.add(sessionId, cache.getIdentifier(algorithm, label, length, secret, nonce, offset), derivedKey);
+    }
+
+    private static byte[] get(DerivedKeyCache cache, String sessionId, String algorithm, String label, int length,
+                              byte[] secret, byte[] nonce, int offset) throws WSSecurityException {
+        return cache.get(sessionId, cache.getIdentifier(algorithm, label, length, secret, nonce, offset));
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the MemoryEncryptedKeyCache
+ */
+public class EncryptedKeyCacheTest {
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        try (MemoryEncryptedKeyCache cache = new MemoryEncryptedKeyCache()) {
+            byte[] encryptedKey = "encrypted".getBytes(StandardCharsets.UTF_8);
+            String identifier = EncryptedKeyCache.getIdentifier(encryptedKey);
+            assertEquals(XMLUtils.encodeToString(KeyUtils.generateDigest(encryptedKey)), identifier);
+
+            byte[] secret = new byte[] {1, 2, 3, 4};
+            cache.add(identifier, secret);
+            assertArrayEquals(secret, cache.get(identifier));
+            assertNull(cache.get("unknown"));
+            assertNull(cache.get(null));
+
+            // The cache holds a copy of the secret key, and returns copies of it
+            secret[0] = 0;
+            cache.get(identifier)[1] = 0;
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.get(identifier));
+
+            // Empty secret keys are not cached
+            cache.add("empty", new byte[0]);
+            assertNull(cache.get("empty"));
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        try (MemoryEncryptedKeyCache cache = new MemoryEncryptedKeyCache(60L, 2)) {
+            cache.add("a", new byte[] {1});
+            cache.add("b", new byte[] {2});
+            // "a" is now used more recently than "b"
+            assertArrayEquals(new byte[] {1}, cache.get("a"));
+            cache.add("c", new byte[] {3});
+
+            assertEquals(2, cache.size());
+            assertNull(cache.get("b"));
+            assertArrayEquals(new byte[] {1}, cache.get("a"));
+            assertArrayEquals(new byte[] {3}, cache.get("c"));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (MemoryEncryptedKeyCache cache = new MemoryEncryptedKeyCache(1L, 10)) {
+            cache.add("a", new byte[] {1});
+            cache.add("b", new byte[] {2});
+            assertArrayEquals(new byte[] {1}, cache.get("a"));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get("a"));
+            // All the expired entries are purged
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        MemoryEncryptedKeyCache cache = new MemoryEncryptedKeyCache();
+        cache.add("a", new byte[] {1});
+        cache.close();
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.Principal;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some unit tests for the MemoryLoginCache
+ */
+public class LoginCacheTest {
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        try (MemoryLoginCache cache = new MemoryLoginCache()) {
+            Subject subject = createSubject("alice");
+            cache.add("context", "alice", "password", subject);
+
+            Subject cachedSubject = cache.get("context", "alice", "password");
+            assertNotNull(cachedSubject);
+            assertNotSame(subject, cachedSubject);
+            assertEquals(1, cachedSubject.getPrincipals().size());
+            assertTrue(cachedSubject.getPrincipals().containsAll(subject.getPrincipals()));
+
+            // The cached Subject cannot be modified
+            assertTrue(cachedSubject.isReadOnly());
+            assertThrows(IllegalStateException.class,
+                () -> cachedSubject.getPrincipals().add(new CustomTokenPrincipal("bob")));
+
+            // The password, the username and the context name must match
+            assertNull(cache.get("context", "alice", "wrong"));
+            assertNull(cache.get("context", "bob", "password"));
+            assertNull(cache.get("otherContext", "alice", "password"));
+            assertNull(cache.get("context", "alice", null));
+
+            // A new login replaces the previous one of the same user
+            cache.add("context", "alice", "newPassword", createSubject("alice"));
+            assertEquals(1, cache.size());
+            assertNull(cache.get("context", "alice", "password"));
+            assertNotNull(cache.get("context", "alice", "newPassword"));
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        try (MemoryLoginCache cache = new MemoryLoginCache(60L, 2)) {
+            cache.add("context", "a", "password", createSubject("a"));
+            cache.add("context", "b", "password", createSubject("b"));
+            // "a" is now used more recently than "b"
+            assertNotNull(cache.get("context", "a", "password"));
+            cache.add("context", "c", "password", createSubject("c"));
+
+            assertEquals(2, cache.size());
+            assertNull(cache.get("context", "b", "password"));
+            assertNotNull(cache.get("context", "a", "password"));
+            assertNotNull(cache.get("context", "c", "password"));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (MemoryLoginCache cache = new MemoryLoginCache(1L, 10)) {
+            cache.add("context", "a", "password", createSubject("a"));
+            cache.add("context", "b", "password", createSubject("b"));
+            assertNotNull(cache.get("context", "a", "password"));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get("context", "a", "password"));
+            // All the expired entries are purged
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private static Subject createSubject(String name) {
+        Subject subject = new Subject();
+        Principal principal = new CustomTokenPrincipal(name);
+        subject.getPrincipals().add(principal);
+        return subject;
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the OutboundSessionKeyCache
+ */
+public class OutboundSessionKeyCacheTest {
+
+    private static final String AES_128 = "http://www.w3.org/2001/04/xmlenc#aes128-cbc";
+    private static final String AES_256 = "http://www.w3.org/2001/04/xmlenc#aes256-cbc";
+
+    private X509Certificate recipient;
+    private X509Certificate otherRecipient;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+        recipient = getCertificate(crypto, "wss40");
+        otherRecipient = getCertificate(crypto, "wss40dsa");
+    }
+
+    @Test
+    public void testMaxMessages() throws Exception {
+        try (OutboundSessionKeyCache cache = new OutboundSessionKeyCache(60L, 3)) {
+            assertNull(cache.get(recipient, AES_128));
+            cache.add(recipient, AES_128, new byte[] {1, 2, 3}, "sha1");
+
+            // The session key is only used for the same recipient and algorithm
+            assertNull(cache.get(otherRecipient, AES_128));
+            assertNull(cache.get(recipient, AES_256));
+
+            // The message with the EncryptedKey counts as the first message
+            for (int i = 0; i < 2; i++) {
+                OutboundSessionKeyCache.SessionKey sessionKey = cache.get(recipient, AES_128);
+                assertNotNull(sessionKey);
+                assertArrayEquals(new byte[] {1, 2, 3}, sessionKey.getSecret());
+                assertEquals("sha1", sessionKey.getEncryptedKeySHA1());
+            }
+            assertNull(cache.get(recipient, AES_128));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (OutboundSessionKeyCache cache = new OutboundSessionKeyCache(1L, 100)) {
+            cache.add(recipient, AES_128, new byte[] {1}, "sha1");
+            assertNotNull(cache.get(recipient, AES_128));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get(recipient, AES_128));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testRemoveAndClose() throws Exception {
+        OutboundSessionKeyCache cache = new OutboundSessionKeyCache();
+        cache.add(recipient, AES_128, new byte[] {1}, "sha1");
+        cache.add(otherRecipient, AES_128, new byte[] {2}, "sha1-2");
+        cache.remove(recipient, AES_128);
+        assertNull(cache.get(recipient, AES_128));
+        assertEquals(1, cache.size());
+
+        cache.close();
+        assertNull(cache.get(otherRecipient, AES_128));
+        assertEquals(0, cache.size());
+    }
+
+    private static X509Certificate getCertificate(Crypto crypto, String alias) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return crypto.getX509Certificates(cryptoType)[0];
+    }
+
+}
@@ -23,7 +23,14 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -50,6 +57,68 @@ public class ReplayCacheTest {
         }
     }
 
+    @Test
+    public void testConcurrentMemoryReplayCache() throws InterruptedException, IOException {
+        try (ReplayCache replayCache = new ConcurrentMemoryReplayCache()) {
+            testReplayCacheInstance(replayCache);
+        }
+    }
+
+    @Test
+    public void testAddIfAbsent() throws Exception {
+        try (ReplayCache replayCache = new MemoryReplayCache()) {
+            testAddIfAbsent(replayCache);
+        }
+        try (ReplayCache replayCache = new ConcurrentMemoryReplayCache()) {
+            testAddIfAbsent(replayCache);
+        }
+        try (ReplayCache replayCache = new EHCacheReplayCache("xyz", tempDir)) {
+            testAddIfAbsent(replayCache);
+        }
+    }
+
+    @Test
+    public void testConcurrentAddIfAbsent() throws Exception {
+        try (ReplayCache replayCache = new ConcurrentMemoryReplayCache()) {
+            final String id = UUID.randomUUID().toString();
+            final AtomicInteger added = new AtomicInteger();
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(executor.submit(() -> {
+                        startLatch.await();
+                        if (replayCache.addIfAbsent(id, null)) {
+                            added.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                startLatch.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(1, added.get());
+        }
+    }
+
+    @Test
+    public void testConcurrentMemoryReplayCachePurge() throws Exception {
+        try (ConcurrentMemoryReplayCache replayCache = new ConcurrentMemoryReplayCache(1L)) {
+            replayCache.add(UUID.randomUUID().toString(), Instant.now().plusSeconds(1L));
+            assertEquals(1, replayCache.size());
+            Thread.sleep(1250L);
+
+            // Adding another identifier purges the expired identifier
+            replayCache.add(UUID.randomUUID().toString());
+            assertEquals(1, replayCache.size());
+        }
+    }
+
     @Test
     public void testEhCacheReplayCache() throws Exception {
         try (ReplayCache replayCache = new EHCacheReplayCache("xyz", tempDir)) {
@@ -180,6 +249,20 @@ public class ReplayCacheTest {
                 new EHCacheReplayCache("abc", tempDir, 10, 10, false));
     }
 
+    private void testAddIfAbsent(ReplayCache replayCache) throws InterruptedException {
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, null));
+        assertFalse(replayCache.addIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+
+        // An expired identifier can be added again
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, Instant.now().plusSeconds(1L)));
+        assertFalse(replayCache.addIfAbsent(id, Instant.now().plusSeconds(1L)));
+        Thread.sleep(1250L);
+        assertTrue(replayCache.addIfAbsent(id, null));
+    }
+
     private void testReplayCacheInstance(ReplayCache replayCache) throws InterruptedException, IOException {
 
         // Test default TTL caches OK
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.wss4j.common.util.UsernameTokenUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the MemoryUsernameTokenKeyCache
+ */
+public class UsernameTokenKeyCacheTest {
+
+    private static final byte[] PASSWORD = "security".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        try (MemoryUsernameTokenKeyCache cache = new MemoryUsernameTokenKeyCache()) {
+            byte[] salt = UsernameTokenUtil.generateSalt(true);
+            byte[] derivedKey = new byte[] {1, 2, 3, 4};
+            cache.add("wernerd", PASSWORD, salt, 1000, derivedKey);
+            assertArrayEquals(derivedKey, cache.get("wernerd", PASSWORD, salt, 1000));
+
+            // All of the input must be the same
+            assertNull(cache.get("alice", PASSWORD, salt, 1000));
+            assertNull(cache.get("wernerd", "other".getBytes(StandardCharsets.UTF_8), salt, 1000));
+            assertNull(cache.get("wernerd", PASSWORD, UsernameTokenUtil.generateSalt(true), 1000));
+            assertNull(cache.get("wernerd", PASSWORD, salt, 1001));
+            assertNull(cache.get("wernerd", null, salt, 1000));
+
+            // The cache holds a copy of the derived key, and returns copies of it
+            derivedKey[0] = 0;
+            cache.get("wernerd", PASSWORD, salt, 1000)[1] = 0;
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.get("wernerd", PASSWORD, salt, 1000));
+        }
+    }
+
+    @Test
+    public void testGenerateDerivedKey() throws Exception {
+        try (MemoryUsernameTokenKeyCache cache = new MemoryUsernameTokenKeyCache()) {
+            byte[] salt = UsernameTokenUtil.generateSalt(true);
+            byte[] expected = UsernameTokenUtil.generateDerivedKey(PASSWORD, salt, 1000);
+
+            assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey("wernerd", PASSWORD, salt, 1000, cache));
+            assertEquals(1, cache.size());
+            assertArrayEquals(expected, cache.get("wernerd", PASSWORD, salt, 1000));
+            assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey("wernerd", PASSWORD, salt, 1000, cache));
+            assertEquals(1, cache.size());
+
+            // An Iteration of 0 means the default Iteration
+            assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey("wernerd", PASSWORD, salt, 0, cache));
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        try (MemoryUsernameTokenKeyCache cache = new MemoryUsernameTokenKeyCache(60L, 2)) {
+            byte[] salt = UsernameTokenUtil.generateSalt(true);
+            cache.add("a", PASSWORD, salt, 1000, new byte[] {1});
+            cache.add("b", PASSWORD, salt, 1000, new byte[] {2});
+            // "a" is now used more recently than "b"
+            assertNotNull(cache.get("a", PASSWORD, salt, 1000));
+            cache.add("c", PASSWORD, salt, 1000, new byte[] {3});
+
+            assertEquals(2, cache.size());
+            assertNull(cache.get("b", PASSWORD, salt, 1000));
+            assertArrayEquals(new byte[] {1}, cache.get("a", PASSWORD, salt, 1000));
+            assertArrayEquals(new byte[] {3}, cache.get("c", PASSWORD, salt, 1000));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (MemoryUsernameTokenKeyCache cache = new MemoryUsernameTokenKeyCache(1L, 10)) {
+            byte[] salt = UsernameTokenUtil.generateSalt(true);
+            cache.add("a", PASSWORD, salt, 1000, new byte[] {1});
+            cache.add("b", PASSWORD, salt, 1000, new byte[] {2});
+            assertNotNull(cache.get("a", PASSWORD, salt, 1000));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get("a", PASSWORD, salt, 1000));
+            // All the expired entries are purged
+            assertEquals(0, cache.size());
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.WSS4JConstants;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.AuthenticationStatementBean;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.bean.SubjectBean;
+import org.apache.wss4j.common.saml.bean.Version;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some unit tests for the MemoryVerifiedSamlAssertionCache
+ */
+public class VerifiedSamlAssertionCacheTest {
+
+    private Crypto crypto;
+    private SAMLKeyInfo samlKeyInfo;
+    private SamlTrustContext trustContext;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        OpenSAMLUtil.initSamlEngine();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+        samlKeyInfo = new SAMLKeyInfo(certs);
+        trustContext = new SamlTrustContext(crypto, null, null, false);
+    }
+
+    @Test
+    public void testSameAssertion() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Element element = createSignedAssertion("alice", 300);
+            assertNull(cache.get(new SamlAssertionWrapper(element), trustContext));
+
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, trustContext);
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(element), trustContext));
+
+            SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(element);
+            assertTrue(samlAssertion.verifySignatureFromCache(cache, trustContext));
+            assertTrue(samlAssertion.isSignatureVerifiedFromCache());
+            assertSame(samlKeyInfo, samlAssertion.getSignatureKeyInfo());
+
+            // Another Assertion is not found
+            SamlAssertionWrapper otherAssertion = new SamlAssertionWrapper(createSignedAssertion("alice", 300));
+            assertFalse(otherAssertion.verifySignatureFromCache(cache, trustContext));
+            assertNull(otherAssertion.getSignatureKeyInfo());
+        }
+    }
+
+    @Test
+    public void testTrustContext() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Element element = createSignedAssertion("alice", 300);
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, trustContext);
+
+            // The same trust configuration
+            Collection<Pattern> constraints = Collections.singletonList(Pattern.compile(".*CN=Colm.*"));
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(element),
+                                              new SamlTrustContext(crypto, Collections.emptyList(), null, false)));
+
+            // Another Crypto, certificate constraints or revocation setting
+            Crypto otherCrypto = CryptoFactory.getInstance("wss40.properties");
+            assertNull(cache.get(new SamlAssertionWrapper(element),
+                                 new SamlTrustContext(otherCrypto, null, null, false)));
+            assertNull(cache.get(new SamlAssertionWrapper(element),
+                                 new SamlTrustContext(crypto, constraints, null, false)));
+            assertNull(cache.get(new SamlAssertionWrapper(element),
+                                 new SamlTrustContext(crypto, null, constraints, false)));
+            assertNull(cache.get(new SamlAssertionWrapper(element),
+                                 new SamlTrustContext(crypto, null, null, true)));
+            assertFalse(new SamlAssertionWrapper(element).verifySignatureFromCache(cache, null));
+
+            // The Assertion is cached separately for each trust configuration
+            SamlTrustContext constrainedContext = new SamlTrustContext(crypto, constraints, null, false);
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, constrainedContext);
+            assertEquals(2, cache.size());
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(element),
+                                              new SamlTrustContext(crypto, constraints, null, false)));
+        }
+    }
+
+    @Test
+    public void testModifiedAssertion() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Element element = createSignedAssertion("alice", 300);
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, trustContext);
+
+            // The ID, Issuer and SignatureValue are unchanged, but the content is not
+            Element nameID = (Element)element.getElementsByTagNameNS(WSS4JConstants.SAML2_NS, "NameID").item(0);
+            nameID.setTextContent("eve");
+            assertNull(cache.get(new SamlAssertionWrapper(element), trustContext));
+        }
+    }
+
+    @Test
+    public void testUnsignedAssertion() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(createAssertionCallback("alice", 300));
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            samlAssertion = new SamlAssertionWrapper(samlAssertion.toDOM(doc));
+
+            cache.add(samlAssertion, samlKeyInfo, trustContext);
+            assertEquals(0, cache.size());
+            assertFalse(samlAssertion.verifySignatureFromCache(cache, trustContext));
+        }
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache(1L, 100)) {
+            Element element = createSignedAssertion("alice", 300);
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, trustContext);
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(element), trustContext));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get(new SamlAssertionWrapper(element), trustContext));
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    public void testNotOnOrAfter() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            // The Assertion is cached until its NotOnOrAfter time only, and not for the whole TTL
+            Element element = createSignedAssertion("alice", 1);
+            cache.add(new SamlAssertionWrapper(element), samlKeyInfo, trustContext);
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(element), trustContext));
+
+            Thread.sleep(1100L);
+            assertNull(cache.get(new SamlAssertionWrapper(element), trustContext));
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        try (MemoryVerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache(60L, 2)) {
+            Element first = createSignedAssertion("alice", 300);
+            Element second = createSignedAssertion("bob", 300);
+            Element third = createSignedAssertion("carol", 300);
+            cache.add(new SamlAssertionWrapper(first), samlKeyInfo, trustContext);
+            cache.add(new SamlAssertionWrapper(second), samlKeyInfo, trustContext);
+
+            // Access the first Assertion, so that the second one is evicted
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(first), trustContext));
+            cache.add(new SamlAssertionWrapper(third), samlKeyInfo, trustContext);
+
+            assertEquals(2, cache.size());
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(first), trustContext));
+            assertNull(cache.get(new SamlAssertionWrapper(second), trustContext));
+            assertSame(samlKeyInfo, cache.get(new SamlAssertionWrapper(third), trustContext));
+
+            cache.close();
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private Element createSignedAssertion(String subjectName, long tokenPeriodSeconds) throws Exception {
+        SamlAssertionWrapper samlAssertion =
+            new SamlAssertionWrapper(createAssertionCallback(subjectName, tokenPeriodSeconds));
+        samlAssertion.signAssertion("wss40", "security", crypto, false);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        return samlAssertion.toDOM(doc);
+    }
+
+    private static SAMLCallback createAssertionCallback(String subjectName, long tokenPeriodSeconds) {
+        SAMLCallback samlCallback = new SAMLCallback();
+        samlCallback.setSamlVersion(Version.SAML_20);
+        samlCallback.setIssuer("www.example.com");
+
+        SubjectBean subjectBean = new SubjectBean(subjectName, null, SAML2Constants.CONF_BEARER);
+        samlCallback.setSubject(subjectBean);
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodSeconds(tokenPeriodSeconds);
+        samlCallback.setConditions(conditions);
+
+        AuthenticationStatementBean authBean = new AuthenticationStatementBean();
+        authBean.setAuthenticationMethod("Password");
+        samlCallback.setAuthenticationStatementData(Collections.singletonList(authBean));
+        return samlCallback;
+    }
+
+}
@@ -21,13 +21,25 @@ package org.apache.wss4j.common.crypto;
 
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.Loader;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Some tests for the Merlin Crypto provider
@@ -77,6 +89,162 @@ public class MerlinTest {
         assertNotNull(pkcs12Crypto.getX509Certificates(cryptoType));
     }
 
+    @Test
+    public void testTrustStoreReplacement() throws Exception {
+        X509Certificate[] certs = new X509Certificate[] {getCertificates(jksCrypto, "wss40")[0]};
+
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks", "security"));
+        for (int i = 0; i < 2; i++) {
+            crypto.verifyTrust(certs, false, null, null);
+        }
+
+        // The trust state must be discarded when the truststore is replaced
+        crypto.setTrustStore(loadKeyStore("keys/wss40badca.jks", "security"));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(certs, false, null, null));
+
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks", "security"));
+        crypto.verifyTrust(certs, false, null, null);
+    }
+
+    @Test
+    public void testTrustStoreModification() throws Exception {
+        X509Certificate[] certs = new X509Certificate[] {getCertificates(jksCrypto, "wss40")[0]};
+
+        Merlin crypto = new Merlin();
+        KeyStore trustStore = loadKeyStore("keys/wss40badca.jks", "security");
+        crypto.setTrustStore(trustStore);
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(certs, false, null, null));
+
+        // An entry added to the truststore that is already set must be taken into account
+        KeyStore caStore = loadKeyStore("keys/wss40CA.jks", "security");
+        for (String alias : Collections.list(caStore.aliases())) {
+            trustStore.setCertificateEntry("added-" + alias, caStore.getCertificate(alias));
+        }
+        crypto.verifyTrust(certs, false, null, null);
+
+        // And so must an entry that is removed
+        for (String alias : Collections.list(caStore.aliases())) {
+            trustStore.deleteEntry("added-" + alias);
+        }
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(certs, false, null, null));
+    }
+
+    @Test
+    public void testKeyStoreReplacement() throws Exception {
+        X509Certificate cert = getCertificates(jksCrypto, "wss40")[0];
+
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks", "security"));
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+        assertEquals(0, crypto.getX509Certificates(cryptoType).length);
+
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks", "security"));
+        X509Certificate[] foundCerts = crypto.getX509Certificates(cryptoType);
+        assertEquals(cert, foundCerts[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(cert.getSubjectX500Principal().getName());
+        // wss40 and wss40dsa have the same Subject DN
+        assertEquals(cert.getSubjectX500Principal(),
+                     crypto.getX509Certificates(cryptoType)[0].getSubjectX500Principal());
+
+        // Direct trust
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, Collections.emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void testCertificateLookups() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks", "security"));
+        crypto.setTrustStore(loadKeyStore("keys/wss40.jks", "security"));
+
+        // wss40 is only in the truststore
+        X509Certificate cert = getCertificates(jksCrypto, "wss40")[0];
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        cryptoType.setBytes(MessageDigest.getInstance("SHA-1").digest(cert.getEncoded()));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+        cryptoType.setBytes(crypto.getSKIBytesFromCert(cert));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType.setBytes(new byte[20]);
+        assertEquals(0, crypto.getX509Certificates(cryptoType).length);
+
+        assertEquals("wss40", crypto.getX509Identifier(cert));
+        crypto.verifyTrust(cert.getPublicKey());
+
+        X509Certificate serverCert = getCertificates(crypto, "wss40_server")[0];
+        assertEquals("wss40_server", crypto.getX509Identifier(serverCert));
+        assertNotNull(crypto.getPrivateKey(serverCert.getPublicKey(), callbacks -> {
+            ((WSPasswordCallback) callbacks[0]).setPassword("security");
+        }));
+
+        // The keystore is replaced, so wss40_server is not found any more
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks", "security"));
+        assertNull(crypto.getX509Identifier(serverCert));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(serverCert.getPublicKey()));
+    }
+
+    @Test
+    public void testCertPathCache() throws Exception {
+        X509Certificate[] certs = new X509Certificate[] {getCertificates(jksCrypto, "wss40")[0]};
+
+        AtomicInteger validations = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            protected void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
+                                       Collection<Pattern> subjectCertConstraints) throws WSSecurityException {
+                validations.incrementAndGet();
+                super.verifyTrust(certs, enableRevocation, subjectCertConstraints);
+            }
+        };
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks", "security"));
+
+        // The cache is disabled by default
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(2, validations.get());
+
+        crypto.setCertPathCacheSize(10);
+        validations.set(0);
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, validations.get());
+
+        // Different constraints require another validation
+        Collection<Pattern> subjectConstraints = Collections.singletonList(Pattern.compile(".*CN=Colm.*"));
+        crypto.verifyTrust(certs, false, subjectConstraints, null);
+        crypto.verifyTrust(certs, false, subjectConstraints, null);
+        assertEquals(2, validations.get());
+
+        // Failures are not cached
+        Collection<Pattern> badConstraints = Collections.singletonList(Pattern.compile(".*CN=Bob.*"));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(certs, false, badConstraints, null));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(certs, false, badConstraints, null));
+        assertEquals(4, validations.get());
+
+        // The cache is discarded when the CRL CertStore is replaced
+        crypto.setCRLCertStore(null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(5, validations.get());
+
+        // An expired entry requires another validation
+        crypto.setCertPathCacheTTL(0L);
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(7, validations.get());
+    }
+
+    private static X509Certificate[] getCertificates(Merlin crypto, String alias) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return crypto.getX509Certificates(cryptoType);
+    }
+
     private static KeyStore loadKeyStore(String path, String password) throws Exception {
         KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
         ClassLoader loader = Loader.getClassLoader(MerlinTest.class);
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.Loader;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Some tests for the SigningCredentialCache
+ */
+public class SigningCredentialCacheTest {
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testCachedCredential() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setKeyStore(loadKeyStore());
+        SigningCredentialCache cache = new SigningCredentialCache();
+
+        SigningCredential credential = cache.getCredential(crypto, "wss40", "security");
+        assertSame(credential, cache.getCredential(crypto, "wss40", "security"));
+        assertEquals(1, crypto.privateKeyLookups.get());
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        assertArrayEquals(crypto.getX509Certificates(cryptoType), credential.getCertificates());
+        assertEquals(crypto.getPrivateKey("wss40", "security"), credential.getPrivateKey());
+
+        // The derived values
+        assertEquals(XMLUtils.encodeToString(credential.getCertificates()[0].getEncoded()),
+                     credential.getEncodedCertificate());
+        assertEquals(XMLUtils.encodeToString(crypto.getSKIBytesFromCert(credential.getCertificates()[0])),
+                     credential.getSKI(crypto));
+        assertEquals(XMLUtils.encodeToString(KeyUtils.generateDigest(credential.getCertificates()[0].getEncoded())),
+                     credential.getThumbprint());
+        assertArrayEquals(crypto.getBytesFromCertificates(credential.getCertificates()),
+                          credential.getPKIPath(crypto));
+
+        cache.clear();
+        assertNotEquals(credential, cache.getCredential(crypto, "wss40", "security"));
+    }
+
+    @Test
+    public void testPassword() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setKeyStore(loadKeyStore());
+        SigningCredentialCache cache = new SigningCredentialCache();
+
+        cache.getCredential(crypto, "wss40", "security");
+        // A credential is not returned for a different password
+        assertThrows(WSSecurityException.class, () -> cache.getCredential(crypto, "wss40", "wrong"));
+        assertEquals(2, crypto.privateKeyLookups.get());
+    }
+
+    @Test
+    public void testKeyStoreChanges() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        KeyStore keyStore = loadKeyStore();
+        crypto.setKeyStore(keyStore);
+        SigningCredentialCache cache = new SigningCredentialCache();
+
+        SigningCredential credential = cache.getCredential(crypto, "wss40", "security");
+
+        // Replace the keystore
+        crypto.setKeyStore(loadKeyStore());
+        SigningCredential newCredential = cache.getCredential(crypto, "wss40", "security");
+        assertNotEquals(credential, newCredential);
+        assertSame(newCredential, cache.getCredential(crypto, "wss40", "security"));
+        assertEquals(2, crypto.privateKeyLookups.get());
+
+        // Replace the key of the alias in the keystore
+        keyStore = crypto.getKeyStore();
+        Key dsaKey = keyStore.getKey("wss40DSA", "security".toCharArray());
+        Certificate[] dsaChain = keyStore.getCertificateChain("wss40DSA");
+        keyStore.setKeyEntry("wss40", dsaKey, "security".toCharArray(), dsaChain);
+
+        credential = cache.getCredential(crypto, "wss40", "security");
+        assertEquals(3, crypto.privateKeyLookups.get());
+        assertEquals(dsaKey, credential.getPrivateKey());
+        assertEquals(dsaChain[0], credential.getCertificates()[0]);
+    }
+
+    private static KeyStore loadKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        ClassLoader loader = Loader.getClassLoader(SigningCredentialCacheTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+
+    private static class CountingMerlin extends Merlin {
+        private final AtomicInteger privateKeyLookups = new AtomicInteger();
+
+        CountingMerlin() {
+            // Otherwise Merlin returns the private key that it cached for the alias
+            setEnablePrivateKeyCaching(false);
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String identifier, String password) throws WSSecurityException {
+            privateKeyLookups.incrementAndGet();
+            return super.getPrivateKey(identifier, password);
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some unit tests for the Instrumentation implementations
+ */
+public class InstrumentationTest {
+
+    @Test
+    public void testNoOpInstrumentation() {
+        Instrumentation instrumentation = NoOpInstrumentation.INSTANCE;
+        assertFalse(instrumentation.isEnabled());
+        long start = instrumentation.start();
+        instrumentation.stop(Instrumentation.SIGNATURE_VERIFICATION, start, 100L);
+    }
+
+    @Test
+    public void testInMemoryInstrumentation() {
+        InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+        assertTrue(instrumentation.isEnabled());
+        assertNull(instrumentation.getStatistics(Instrumentation.SIGNATURE_VERIFICATION));
+
+        instrumentation.record(Instrumentation.SIGNATURE_VERIFICATION, 5_000L, 0L);
+        instrumentation.record(Instrumentation.SIGNATURE_VERIFICATION, 2_000_000L, 0L);
+        instrumentation.record(Instrumentation.ENCRYPTED_DATA_DECRYPTION, 20_000L, 1024L);
+
+        OperationStatistics statistics = instrumentation.getStatistics(Instrumentation.SIGNATURE_VERIFICATION);
+        assertEquals(2L, statistics.getCount());
+        assertEquals(2_005_000L, statistics.getTotalTimeNanos());
+        assertEquals(2_000_000L, statistics.getMaxTimeNanos());
+        assertEquals(1_002_500L, statistics.getMeanTimeNanos());
+        assertEquals(0L, statistics.getBytes());
+
+        // 5 micros falls in the first bucket, 2000 micros in the bucket bounded by 5000 micros
+        long[] histogram = statistics.getHistogram();
+        assertEquals(statistics.getHistogramBounds().length + 1, histogram.length);
+        assertEquals(1L, histogram[0]);
+        assertEquals(1L, histogram[5]);
+
+        assertEquals(1024L, instrumentation.getStatistics(Instrumentation.ENCRYPTED_DATA_DECRYPTION).getBytes());
+        assertEquals(2, instrumentation.getStatistics().size());
+
+        instrumentation.reset();
+        assertEquals(0L, statistics.getCount());
+        assertEquals(0L, statistics.getMaxTimeNanos());
+        assertArrayEquals(new long[histogram.length], statistics.getHistogram());
+    }
+
+    @Test
+    public void testHistogramOverflow() {
+        InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+        instrumentation.record(Instrumentation.SECURITY_HEADER, 5_000_000_000L, 0L);
+
+        long[] histogram = instrumentation.getStatistics(Instrumentation.SECURITY_HEADER).getHistogram();
+        assertEquals(1L, histogram[histogram.length - 1]);
+    }
+
+    @Test
+    public void testStartStop() {
+        InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+        long start = instrumentation.start();
+        instrumentation.stop(Instrumentation.SECURITY_HEADER, start);
+        instrumentation.stop(Instrumentation.SECURITY_HEADER, start, 10L);
+
+        OperationStatistics statistics = instrumentation.getStatistics(Instrumentation.SECURITY_HEADER);
+        assertEquals(2L, statistics.getCount());
+        assertEquals(10L, statistics.getBytes());
+        assertTrue(statistics.getTotalTimeNanos() >= 0L);
+    }
+
+    @Test
+    public void testJMXInstrumentation() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        JMXInstrumentation instrumentation = new JMXInstrumentation("test", mbeanServer);
+        instrumentation.register();
+        try {
+            assertTrue(mbeanServer.isRegistered(instrumentation.getObjectName()));
+
+            instrumentation.record(Instrumentation.SIGNATURE_VERIFICATION, 1_000L, 0L);
+
+            TabularData statistics =
+                (TabularData) mbeanServer.getAttribute(instrumentation.getObjectName(), "Statistics");
+            assertEquals(1, statistics.size());
+            CompositeData row = statistics.get(new Object[] {Instrumentation.SIGNATURE_VERIFICATION});
+            assertNotNull(row);
+            CompositeData value = (CompositeData) row.get("value");
+            assertEquals(1L, value.get("count"));
+
+            mbeanServer.invoke(instrumentation.getObjectName(), "reset", null, null);
+            Map<String, OperationStatistics> current = instrumentation.getStatistics();
+            assertEquals(0L, current.get(Instrumentation.SIGNATURE_VERIFICATION).getCount());
+        } finally {
+            instrumentation.unregister();
+        }
+        assertFalse(mbeanServer.isRegistered(instrumentation.getObjectName()));
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.WSS4JConstants;
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.encryption.XMLCipherUtil;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.utils.JavaUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for the streaming encryption and decryption of attachments.
+ */
+public class AttachmentUtilsTest {
+
+    static {
+        org.apache.xml.security.Init.init();
+    }
+
+    @Test
+    public void testContentOnlyEncryption() throws Exception {
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+
+        for (String algorithm : new String[] {WSS4JConstants.AES_128, WSS4JConstants.AES_128_GCM}) {
+            for (int chunkSize : new int[] {1, 15, 16, AttachmentEncryptionInputStream.CHUNK_SIZE}) {
+                SecretKey key = createKey();
+                Cipher cipher = createCipher(algorithm, key);
+                byte[] iv = cipher.getIV();
+
+                Map<String, String> headers = createHeaders();
+                InputStream encryptionStream =
+                    AttachmentUtils.setupAttachmentEncryptionStream(
+                        cipher, false, createAttachment(content), headers, chunkSize);
+                byte[] encrypted = JavaUtils.getBytesFromStream(encryptionStream);
+                assertEquals(createHeaders(), headers);
+
+                // The same as a single-shot encryption
+                Cipher referenceCipher = Cipher.getInstance(JCEMapper.translateURItoJCEID(algorithm));
+                referenceCipher.init(Cipher.ENCRYPT_MODE, key,
+                                     XMLCipherUtil.constructBlockCipherParameters(algorithm, iv));
+                byte[] expected = referenceCipher.doFinal(content);
+                assertEquals(iv.length + expected.length, encrypted.length);
+                // The ISO10126 padding of CBC is random, so only the last block differs
+                int compared = WSS4JConstants.AES_128.equals(algorithm) ? expected.length - 16 : expected.length;
+                for (int i = 0; i < compared; i++) {
+                    assertEquals(expected[i], encrypted[iv.length + i]);
+                }
+
+                assertArrayEquals(content, decrypt(algorithm, key, encrypted, null));
+            }
+        }
+    }
+
+    @Test
+    public void testCompleteEncryption() throws Exception {
+        byte[] content = "Some attachment content".getBytes(StandardCharsets.UTF_8);
+
+        for (int chunkSize : new int[] {1, 7, AttachmentEncryptionInputStream.CHUNK_SIZE}) {
+            SecretKey key = createKey();
+            Cipher cipher = createCipher(WSS4JConstants.AES_128_GCM, key);
+
+            Map<String, String> headers = createHeaders();
+            InputStream encryptionStream =
+                AttachmentUtils.setupAttachmentEncryptionStream(
+                    cipher, true, createAttachment(content), headers, chunkSize);
+            // The encrypted headers are removed
+            assertFalse(headers.containsKey(AttachmentUtils.MIME_HEADER_CONTENT_TYPE));
+            assertTrue(headers.containsKey("X-Custom"));
+
+            // Read the stream one byte at a time
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            int ch;
+            while ((ch = encryptionStream.read()) != -1) {
+                encrypted.write(ch);
+            }
+            encryptionStream.close();
+
+            Map<String, String> decryptedHeaders = new HashMap<>();
+            assertArrayEquals(content,
+                              decrypt(WSS4JConstants.AES_128_GCM, key, encrypted.toByteArray(), decryptedHeaders));
+            assertEquals("text/plain", decryptedHeaders.get(AttachmentUtils.MIME_HEADER_CONTENT_TYPE));
+            assertEquals("<attachment>", decryptedHeaders.get(AttachmentUtils.MIME_HEADER_CONTENT_ID));
+            assertFalse(decryptedHeaders.containsKey("X-Custom"));
+        }
+    }
+
+    private static byte[] decrypt(
+        String algorithm, SecretKey key, byte[] encrypted, Map<String, String> headers
+    ) throws Exception {
+        Cipher cipher = Cipher.getInstance(JCEMapper.translateURItoJCEID(algorithm));
+        try (InputStream decryptionStream =
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                algorithm, cipher, key, new ByteArrayInputStream(encrypted))) {
+            if (headers != null) {
+                AttachmentUtils.readAndReplaceEncryptedAttachmentHeaders(headers, decryptionStream);
+            }
+            return JavaUtils.getBytesFromStream(decryptionStream);
+        }
+    }
+
+    private static SecretKey createKey() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        return keyGenerator.generateKey();
+    }
+
+    private static Cipher createCipher(String algorithm, SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(JCEMapper.translateURItoJCEID(algorithm));
+        byte[] iv = XMLSecurityConstants.generateBytes(JCEMapper.getIVLengthFromURI(algorithm) / 8);
+        AlgorithmParameterSpec paramSpec = XMLCipherUtil.constructBlockCipherParameters(algorithm, iv);
+        cipher.init(Cipher.ENCRYPT_MODE, key, paramSpec);
+        return cipher;
+    }
+
+    private static Map<String, String> createHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_TYPE, "text/plain");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_ID, "<attachment>");
+        headers.put("X-Custom", "value");
+        return headers;
+    }
+
+    private static Attachment createAttachment(byte[] content) {
+        Attachment attachment = new Attachment();
+        attachment.setId("attachment");
+        attachment.setMimeType("text/plain");
+        attachment.setSourceStream(new ByteArrayInputStream(content));
+        return attachment;
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.derivedKey.P_SHA1;
+import org.apache.wss4j.common.derivedKey.P_SHA256;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Some tests for the cached MessageDigest instances of DigestUtils, and the
+ * utility methods that use them.
+ */
+public class DigestUtilsTest {
+
+    @Test
+    public void testDigests() throws Exception {
+        byte[] input = "Some input".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(input), DigestUtils.sha1(input));
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(input), KeyUtils.generateDigest(input));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(input), DigestUtils.sha256(input));
+        // A cached instance is reset before it is reused
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(input), DigestUtils.sha1(input));
+
+        assertThrows(WSSecurityException.class, () -> DigestUtils.digest("UnknownAlgorithm", input));
+    }
+
+    @Test
+    public void testPasswordDigest() throws Exception {
+        byte[] nonce = UsernameTokenUtil.generateNonce(16);
+        String created = "2024-01-01T00:00:00Z";
+        byte[] password = "security".getBytes(StandardCharsets.UTF_8);
+
+        MessageDigest sha = MessageDigest.getInstance("SHA-1");
+        sha.update(nonce);
+        sha.update(created.getBytes(StandardCharsets.UTF_8));
+        sha.update(password);
+        assertArrayEquals(sha.digest(), UsernameTokenUtil.doRawPasswordDigest(nonce, created, password));
+    }
+
+    @Test
+    public void testDerivedKey() throws Exception {
+        byte[] salt = UsernameTokenUtil.generateSalt(true);
+        byte[] password = "security".getBytes(StandardCharsets.UTF_8);
+
+        MessageDigest sha = MessageDigest.getInstance("SHA-1");
+        sha.update(password);
+        sha.update(salt);
+        byte[] expected = sha.digest();
+        for (int i = 1; i < 500; i++) {
+            expected = sha.digest(expected);
+        }
+        assertArrayEquals(expected, UsernameTokenUtil.generateDerivedKey(password, salt, 500));
+    }
+
+    @Test
+    public void testPSHA1() throws Exception {
+        byte[] secret = "secret".getBytes(StandardCharsets.UTF_8);
+        byte[] seed = "seed".getBytes(StandardCharsets.UTF_8);
+
+        // A(1) = HMAC(secret, seed), P_SHA1 = HMAC(secret, A(1) + seed) + ...
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret, "HmacSHA1"));
+        byte[] a1 = mac.doFinal(seed);
+        mac.update(a1);
+        byte[] expected = mac.doFinal(seed);
+
+        byte[] key = new P_SHA1().createKey(secret, seed, 0, 16);
+        byte[] expectedKey = new byte[16];
+        System.arraycopy(expected, 0, expectedKey, 0, 16);
+        assertArrayEquals(expectedKey, key);
+    }
+
+    @Test
+    public void testPHashMultipleBlocks() throws Exception {
+        byte[] secret = "secret".getBytes(StandardCharsets.UTF_8);
+        byte[] seed = "seed".getBytes(StandardCharsets.UTF_8);
+
+        // 48 bytes require three HMAC-SHA1 blocks, and two HMAC-SHA256 blocks
+        assertArrayEquals(pHash("HmacSHA1", secret, seed, 8, 40), new P_SHA1().createKey(secret, seed, 8, 40));
+        assertArrayEquals(pHash("HmacSHA256", secret, seed, 8, 40), new P_SHA256().createKey(secret, seed, 8, 40));
+    }
+
+    @Test
+    public void testPHashPooledMac() throws Exception {
+        byte[] seed = "seed".getBytes(StandardCharsets.UTF_8);
+
+        // The Mac that is reused by the current thread must be initialized with the secret of each derivation
+        for (String secret : new String[] {"secret", "other secret", "secret"}) {
+            byte[] secretBytes = secret.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(pHash("HmacSHA1", secretBytes, seed, 0, 32), new P_SHA1().createKey(secretBytes, seed, 0, 32));
+            assertArrayEquals(pHash("HmacSHA256", secretBytes, seed, 0, 32),
+                              new P_SHA256().createKey(secretBytes, seed, 0, 32));
+        }
+    }
+
+    private static byte[] pHash(String algorithm, byte[] secret, byte[] seed, int offset, int length)
+        throws Exception {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(secret, algorithm));
+        byte[] out = new byte[0];
+        byte[] a = seed;
+        while (out.length < offset + length) {
+            a = mac.doFinal(a);
+            mac.update(a);
+            byte[] block = mac.doFinal(seed);
+            byte[] newOut = new byte[out.length + block.length];
+            System.arraycopy(out, 0, newOut, 0, out.length);
+            System.arraycopy(block, 0, newOut, out.length, block.length);
+            out = newOut;
+        }
+        byte[] key = new byte[length];
+        System.arraycopy(out, offset, key, 0, length);
+        return key;
+    }
+
+    @Test
+    public void testConcurrentDigests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    MessageDigest sha = MessageDigest.getInstance("SHA-1");
+                    for (int j = 0; j < 1000; j++) {
+                        byte[] input = ("Input " + thread + " " + j).getBytes(StandardCharsets.UTF_8);
+                        assertArrayEquals(sha.digest(input), KeyUtils.generateDigest(input));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
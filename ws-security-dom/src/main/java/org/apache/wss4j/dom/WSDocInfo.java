@@ -43,6 +43,7 @@ import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.callback.IndexedDOMCallbackLookup;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -332,6 +333,17 @@ public class WSDocInfo {
         return callbackLookup;
     }
 
+    /**
+     * Notify this object that an Element has been inserted into the document as a result of
+     * decryption, so that the CallbackLookup can find the Element (and any Ids it contains)
+     * @param element The decrypted Element
+     */
+    public void addDecryptedElement(Element element) {
+        if (element != null && callbackLookup instanceof IndexedDOMCallbackLookup) {
+            ((IndexedDOMCallbackLookup)callbackLookup).updateIndex(element);
+        }
+    }
+
     /**
      * @return the wsse header being processed
      */
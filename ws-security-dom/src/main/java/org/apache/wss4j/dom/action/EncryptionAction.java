@@ -28,11 +28,13 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandler;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
@@ -45,6 +47,7 @@ public class EncryptionAction implements Action {
         wsEncrypt.setIdAllocator(reqData.getWssConfig().getIdAllocator());
         wsEncrypt.setWsDocInfo(reqData.getWsDocInfo());
         wsEncrypt.setExpandXopInclude(reqData.isExpandXopInclude());
+        wsEncrypt.setEncryptionExecutor(reqData.getEncryptionExecutor());
 
         EncryptionActionToken encryptionToken = null;
         if (actionToken instanceof EncryptionActionToken) {
@@ -112,6 +115,24 @@ public class EncryptionAction implements Action {
             wsEncrypt.setCustomEKKeyInfoElement(pwcb.getKeyInfoReference());
         }
 
+        // See if the session key of an EncryptedKey that was sent to the same recipient can be reused
+        OutboundSessionKeyCache sessionKeyCache = reqData.getOutboundSessionKeyCache(); //NOPMD
+        X509Certificate sessionKeyCert = null;
+        if (sessionKeyCache != null && ephemeralKey == null && encryptionToken.isEncSymmetricEncryptionKey()
+            && encryptionToken.getTokenId() == null && encryptionToken.getTokenType() == null) {
+            sessionKeyCert = getEncryptionCertificate(encryptionToken);
+            wsEncrypt.setUseThisCert(sessionKeyCert);
+            OutboundSessionKeyCache.SessionKey sessionKey =
+                sessionKeyCache.get(sessionKeyCert, wsEncrypt.getSymmetricEncAlgorithm());
+            if (sessionKey != null) {
+                wsEncrypt.setEncryptSymmKey(false);
+                wsEncrypt.setKeyIdentifierType(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER);
+                wsEncrypt.setCustomReferenceValue(sessionKey.getEncryptedKeySHA1());
+                ephemeralKey = sessionKey.getSecret();
+                sessionKeyCert = null;
+            }
+        }
+
         SecretKey symmetricKey = null;
         if (ephemeralKey != null) {
             symmetricKey = KeyUtils.prepareSecretKey(wsEncrypt.getSymmetricEncAlgorithm(), ephemeralKey);
@@ -136,5 +157,28 @@ public class EncryptionAction implements Action {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
                                           new Object[] {"Error during encryption: "});
         }
+
+        if (sessionKeyCert != null) {
+            sessionKeyCache.add(sessionKeyCert, wsEncrypt.getSymmetricEncAlgorithm(),
+                                symmetricKey.getEncoded(), wsEncrypt.getEncryptedKeySHA1());
+        }
+    }
+
+    private X509Certificate getEncryptionCertificate(EncryptionActionToken encryptionToken)
+        throws WSSecurityException {
+        if (encryptionToken.getCertificate() != null) {
+            return encryptionToken.getCertificate();
+        }
+        X509Certificate[] certs = null;
+        if (encryptionToken.getCrypto() != null) {
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+            cryptoType.setAlias(encryptionToken.getUser());
+            certs = encryptionToken.getCrypto().getX509Certificates(cryptoType);
+        }
+        if (certs == null || certs.length == 0) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noUserCertsFound",
+                                          new Object[] {encryptionToken.getUser(), "encryption"});
+        }
+        return certs[0];
     }
 }
@@ -62,7 +62,9 @@ public class SignatureAction implements Action {
         wsSign.setAddInclusivePrefixes(reqData.isAddInclusivePrefixes());
         wsSign.setWsDocInfo(reqData.getWsDocInfo());
         wsSign.setExpandXopInclude(reqData.isExpandXopInclude());
+        wsSign.setSignatureExecutor(reqData.getSignatureExecutor());
         wsSign.setSignatureProvider(reqData.getSignatureProvider());
+        wsSign.setSigningCredentialCache(reqData.getSigningCredentialCache());
 
         if (signatureToken.getKeyIdentifierId() != 0) {
             wsSign.setKeyIdentifierType(signatureToken.getKeyIdentifierId());
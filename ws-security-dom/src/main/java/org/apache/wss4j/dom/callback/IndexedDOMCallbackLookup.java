@@ -0,0 +1,327 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.crypto.dom.DOMCryptoContext;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This class locates Elements that are referenced via an Id using an index of the document,
+ * rather than searching the whole tree for every reference. The index of wsu:Id/Id and
+ * SAML ID/AssertionID values is built in a single pass over the document the first time it
+ * is needed. Elements that share the same Id are all recorded in the index, so that the check
+ * for multiple elements with the same Id (which guards against wrapping attacks) does not
+ * require another search of the tree.
+ *
+ * Elements that are inserted into the document after the index was built (for example as a
+ * result of decryption) must be added to the index via {@link #updateIndex(Element)}. This is
+ * done by the WSS4J processors via WSDocInfo#addDecryptedElement. As a safeguard against
+ * modifications that were not reported, the index is rebuilt from the document once if an
+ * Id is not found. This is done at most once per instance, so that a message with many
+ * unresolvable references does not cause a walk of the whole tree for each of them.
+ *
+ * An instance of this class is intended to be used for the processing of a single message,
+ * and is not thread-safe.
+ */
+public class IndexedDOMCallbackLookup extends DOMCallbackLookup {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(IndexedDOMCallbackLookup.class);
+
+    private final Document doc;
+
+    // wsu:Id + Id (no namespace) -> Element(s)
+    private Map<String, List<Element>> idIndex;
+    // SAML ID + AssertionID -> Element(s)
+    private Map<String, List<Element>> samlIdIndex;
+    private boolean rebuiltOnMiss;
+    private int indexBuildCount;
+
+    public IndexedDOMCallbackLookup(Document doc) {
+        super(doc);
+        this.doc = doc;
+    }
+
+    /**
+     * Get the DOM element that corresponds to the given id and ValueType reference. The Id can
+     * be a wsu:Id or else an Id attribute, or a SAML Id when the ValueType refers to a SAML
+     * Assertion. The implementation is also responsible to register the retrieved Element on the
+     * DOMCryptoContext argument, so that the XML Signature implementation can find the Element.
+     *
+     * @param id The id of the element to locate
+     * @param valueType The ValueType attribute of the element to locate (can be null)
+     * @param checkMultipleElements If true then return null if there are multiple elements
+     *        with the same Id
+     * @param context The DOMCryptoContext to store the Element in
+     * @return the located element
+     * @throws WSSecurityException
+     */
+    @Override
+    public Element getAndRegisterElement(
+        String id, String valueType, boolean checkMultipleElements, DOMCryptoContext context
+    ) throws WSSecurityException {
+        String idToMatch = XMLUtils.getIDFromReference(id);
+        if (idToMatch == null) {
+            return null;
+        }
+
+        //
+        // Try the SOAP Body first
+        //
+        Element bodyElement = getSOAPBody();
+        if (bodyElement != null) {
+            String cId = bodyElement.getAttributeNS(WSConstants.WSU_NS, "Id");
+            if (cId.equals(idToMatch)) {
+                if (context != null) {
+                    context.setIdAttributeNS(bodyElement, WSConstants.WSU_NS, "Id");
+                }
+                return bodyElement;
+            }
+        }
+
+        boolean samlValueType = WSConstants.WSS_SAML_KI_VALUE_TYPE.equals(valueType)
+            || WSConstants.WSS_SAML2_KI_VALUE_TYPE.equals(valueType)
+            || valueType == null || valueType.length() == 0;
+
+        if (idIndex == null) {
+            buildIndex();
+        }
+        Element foundElement = findIndexedElement(idToMatch, samlValueType, checkMultipleElements);
+        if (foundElement == null && !rebuiltOnMiss) {
+            // The document may have been modified in a way that we were not told about, so
+            // rebuild the index from the current document (once) and try again
+            rebuiltOnMiss = true;
+            buildIndex();
+            foundElement = findIndexedElement(idToMatch, samlValueType, checkMultipleElements);
+        }
+
+        if (foundElement != null && context != null) {
+            if (foundElement.hasAttributeNS(WSConstants.WSU_NS, "Id")
+                && idToMatch.equals(foundElement.getAttributeNS(WSConstants.WSU_NS, "Id"))) {
+                context.setIdAttributeNS(foundElement, WSConstants.WSU_NS, "Id");
+            }
+            if (foundElement.hasAttributeNS(null, "Id")
+                && idToMatch.equals(foundElement.getAttributeNS(null, "Id"))) {
+                context.setIdAttributeNS(foundElement, null, "Id");
+            }
+            if (foundElement.hasAttributeNS(null, "ID")
+                && idToMatch.equals(foundElement.getAttributeNS(null, "ID"))) {
+                context.setIdAttributeNS(foundElement, null, "ID");
+            }
+            if (foundElement.hasAttributeNS(null, "AssertionID")
+                && idToMatch.equals(foundElement.getAttributeNS(null, "AssertionID"))) {
+                context.setIdAttributeNS(foundElement, null, "AssertionID");
+            }
+        }
+
+        return foundElement;
+    }
+
+    /**
+     * Add the given Element and its descendants to the index. This must be called when
+     * an Element is inserted into the document after the index has been built, for example
+     * when an EncryptedData Element is replaced by the decrypted content. Entries for
+     * Elements that have been removed from the document are discarded when they are
+     * next looked up.
+     *
+     * @param element The root of the subtree that was inserted into the document
+     */
+    public void updateIndex(Element element) {
+        if (idIndex == null || element == null) {
+            // The index will be built from the current state of the document when first needed
+            return;
+        }
+        indexSubtree(element);
+    }
+
+    /**
+     * Only exposed for testing
+     */
+    int getIndexBuildCount() {
+        return indexBuildCount;
+    }
+
+    private void buildIndex() {
+        indexBuildCount++;
+        idIndex = new HashMap<>();
+        samlIdIndex = new HashMap<>();
+        Element documentElement = doc.getDocumentElement();
+        if (documentElement != null) {
+            indexSubtree(documentElement);
+        }
+    }
+
+    private void indexSubtree(Element root) {
+        //
+        // Depth-first-loop traversal of the subtree, in document order
+        //
+        Node node = root;
+        while (node != null) {
+            if (Node.ELEMENT_NODE == node.getNodeType() && node.hasAttributes()) {
+                indexElement((Element) node);
+            }
+
+            Node nextNode = node.getFirstChild();
+            // no child, so go to the next sibling, or to the parent if there are no more
+            // siblings, until we are back at the root of the subtree
+            while (nextNode == null && node != root) {
+                nextNode = node.getNextSibling();
+                if (nextNode == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = nextNode;
+        }
+    }
+
+    private void indexElement(Element element) {
+        String wsuId = element.getAttributeNS(WSConstants.WSU_NS, "Id");
+        if (wsuId.length() != 0) {
+            addToIndex(idIndex, wsuId, element);
+        }
+        String plainId = element.getAttributeNS(null, "Id");
+        if (plainId.length() != 0 && !plainId.equals(wsuId)) {
+            addToIndex(idIndex, plainId, element);
+        }
+
+        String samlId = element.getAttributeNS(null, "ID");
+        if (samlId.length() != 0) {
+            addToIndex(samlIdIndex, samlId, element);
+        }
+        String assertionId = element.getAttributeNS(null, "AssertionID");
+        if (assertionId.length() != 0 && !assertionId.equals(samlId)) {
+            addToIndex(samlIdIndex, assertionId, element);
+        }
+    }
+
+    private static void addToIndex(Map<String, List<Element>> index, String id, Element element) {
+        List<Element> elements = index.get(id);
+        if (elements == null) {
+            elements = new ArrayList<>(1);
+            index.put(id, elements);
+        } else {
+            // The same Element may be indexed again via updateIndex
+            for (Element indexedElement : elements) {
+                if (indexedElement == element) {
+                    return;
+                }
+            }
+        }
+        elements.add(element);
+    }
+
+    private Element findIndexedElement(String id, boolean samlValueType, boolean checkMultipleElements) {
+        Element foundElement = findElementById(id, checkMultipleElements);
+        //
+        // Try to find a SAML Assertion Element if the ValueType corresponds to a SAML Assertion
+        // (or is empty)
+        //
+        if (foundElement == null && samlValueType) {
+            foundElement = findSAMLAssertionElementById(id);
+        }
+        return foundElement;
+    }
+
+    private Element findElementById(String id, boolean checkMultipleElements) {
+        List<Element> elements = getIndexedElements(idIndex, id, false);
+        if (elements.isEmpty()) {
+            return null;
+        }
+        if (elements.size() == 1) {
+            return elements.get(0);
+        }
+        if (checkMultipleElements) {
+            LOG.warn("Multiple elements with the same 'Id' attribute value!");
+            return null;
+        }
+        // Return the first matching Element in document order, as per the non-indexed lookup
+        return XMLUtils.findElementById(doc.getDocumentElement(), id, false);
+    }
+
+    private Element findSAMLAssertionElementById(String id) {
+        List<Element> elements = getIndexedElements(samlIdIndex, id, true);
+        if (elements.isEmpty()) {
+            return null;
+        }
+        if (elements.size() > 1) {
+            LOG.warn("Multiple elements with the same 'ID' attribute value!");
+            return null;
+        }
+        return elements.get(0);
+    }
+
+    /**
+     * Get the indexed Elements for the given Id, discarding any that are no longer part of
+     * the document or that no longer carry the Id.
+     */
+    private List<Element> getIndexedElements(
+        Map<String, List<Element>> index, String id, boolean samlId
+    ) {
+        List<Element> elements = index.get(id);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        Iterator<Element> iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            Element element = iterator.next();
+            if (!isAttached(element) || !hasId(element, id, samlId)) {
+                iterator.remove();
+            }
+        }
+        if (elements.isEmpty()) {
+            index.remove(id);
+        }
+        return elements;
+    }
+
+    private static boolean hasId(Element element, String id, boolean samlId) {
+        if (samlId) {
+            return id.equals(element.getAttributeNS(null, "ID"))
+                || id.equals(element.getAttributeNS(null, "AssertionID"));
+        }
+        return id.equals(element.getAttributeNS(WSConstants.WSU_NS, "Id"))
+            || id.equals(element.getAttributeNS(null, "Id"));
+    }
+
+    private static boolean isAttached(Node node) {
+        Node parent = node.getParentNode();
+        while (parent != null) {
+            if (Node.DOCUMENT_NODE == parent.getNodeType()) {
+                return true;
+            }
+            parent = parent.getParentNode();
+        }
+        return false;
+    }
+
+}
@@ -23,8 +23,12 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.Security;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.xml.XMLConstants;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.namespace.QName;
@@ -237,6 +241,24 @@ public final class WSSConfig {
         DEFAULT_VALIDATORS = java.util.Collections.unmodifiableMap(tmp);
     }
 
+    /**
+     * The default actions, processors and validators are thread-safe, and so a single
+     * instance of each of them is shared by all WSSConfig instances. Other classes are
+     * instantiated on every lookup, as they might not be thread-safe. The same applies to
+     * default validators that can be configured (e.g. the SamlAssertionValidator), as
+     * configuring a shared instance would affect every WSSConfig.
+     */
+    private static final Set<Class<?>> SHARED_CLASSES;
+    static {
+        final Set<Class<?>> tmp = new HashSet<>();
+        tmp.addAll(DEFAULT_ACTIONS.values());
+        tmp.addAll(DEFAULT_PROCESSORS.values());
+        tmp.addAll(DEFAULT_VALIDATORS.values());
+        tmp.remove(org.apache.wss4j.dom.validate.SamlAssertionValidator.class);
+        SHARED_CLASSES = java.util.Collections.unmodifiableSet(tmp);
+    }
+    private static final Map<Class<?>, Object> SHARED_INSTANCES = new ConcurrentHashMap<>();
+
     /**
      * a static boolean flag that determines whether default JCE providers
      * should be added at the time of construction.
@@ -290,6 +312,12 @@ public final class WSSConfig {
      */
     private final Map<QName, Object> processorMap = new HashMap<>(DEFAULT_PROCESSORS);
 
+    /**
+     * The known processors, keyed by namespace and then by local name, so that a processor
+     * can be found for a DOM Element without creating a QName.
+     */
+    private final Map<String, Map<String, Object>> processorsByNamespace = new HashMap<>();
+
     /**
      * The known validators. This map is of the form <QName, Class<?>> or
      * <QName, Validator>.
@@ -310,7 +338,9 @@ public final class WSSConfig {
     }
 
     private WSSConfig() {
-        // complete
+        for (Map.Entry<QName, Object> entry : processorMap.entrySet()) {
+            indexProcessor(entry.getKey(), entry.getValue());
+        }
     }
 
     public static synchronized void init() {
@@ -423,13 +453,7 @@ public final class WSSConfig {
         final Object actionObject = actionMap.get(action);
 
         if (actionObject instanceof Class<?>) {
-            try {
-                return (Action)((Class<?>)actionObject).getDeclaredConstructor().newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)actionObject).getName()});
-            }
+            return (Action)getInstance((Class<?>)actionObject);
         } else if (actionObject instanceof Action) {
             return (Action)actionObject;
         }
@@ -446,6 +470,7 @@ public final class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Processor processor) {
         Object result = processorMap.put(el, processor);
+        indexProcessor(el, processor);
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -461,6 +486,7 @@ public final class WSSConfig {
      */
     public Class<?> setProcessor(QName el, Class<?> clazz) {
         Object result = processorMap.put(el, clazz);
+        indexProcessor(el, clazz);
         if (result instanceof Class<?>) {
             return (Class<?>)result;
         } else if (result instanceof Processor) {
@@ -513,13 +539,7 @@ public final class WSSConfig {
         final Object validatorObject = validatorMap.get(el);
 
         if (validatorObject instanceof Class<?>) {
-            try {
-                return (Validator)((Class<?>)validatorObject).getDeclaredConstructor().newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                    "unableToLoadClass", new Object[] {((Class<?>)validatorObject).getName()});
-            }
+            return (Validator)getInstance((Class<?>)validatorObject);
         } else if (validatorObject instanceof Validator) {
             return (Validator)validatorObject;
         }
@@ -534,22 +554,70 @@ public final class WSSConfig {
      *              specified QName.
      */
     public Processor getProcessor(QName el) throws WSSecurityException {
-        final Object processorObject = processorMap.get(el);
+        return getProcessor(processorMap.get(el));
+    }
+
+    /**
+     * @param namespaceURI the namespace of an element in a SOAP security header (can be null)
+     * @param localName the local name of an element in a SOAP security header
+     * @return      the SOAP processor associated with the specified namespace and
+     *              local name. This operation returns null if there is no processor
+     *              associated with the specified namespace and local name.
+     */
+    public Processor getProcessor(String namespaceURI, String localName) throws WSSecurityException {
+        Map<String, Object> processors =
+            processorsByNamespace.get(namespaceURI == null ? XMLConstants.NULL_NS_URI : namespaceURI);
+        if (processors == null) {
+            return null;
+        }
+        return getProcessor(processors.get(localName));
+    }
 
+    private static Processor getProcessor(Object processorObject) throws WSSecurityException {
         if (processorObject instanceof Class<?>) {
-            try {
-                return (Processor)((Class<?>)processorObject).getDeclaredConstructor().newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)processorObject).getName()});
-            }
+            return (Processor)getInstance((Class<?>)processorObject);
         } else if (processorObject instanceof Processor) {
             return (Processor)processorObject;
         }
         return null;
     }
 
+    private void indexProcessor(QName el, Object processorObject) {
+        Map<String, Object> processors =
+            processorsByNamespace.computeIfAbsent(el.getNamespaceURI(), k -> new HashMap<>());
+        if (processorObject == null) {
+            processors.remove(el.getLocalPart());
+        } else {
+            processors.put(el.getLocalPart(), processorObject);
+        }
+    }
+
+    /**
+     * Get an instance of the given action, processor or validator class. A shared instance
+     * is returned for the (thread-safe) default classes, otherwise a new instance is created.
+     */
+    private static Object getInstance(Class<?> clazz) throws WSSecurityException {
+        try {
+            if (SHARED_CLASSES.contains(clazz)) {
+                Object instance = SHARED_INSTANCES.get(clazz);
+                if (instance == null) {
+                    // Concurrent callers might both create an instance, but only one is kept
+                    instance = clazz.getDeclaredConstructor().newInstance();
+                    Object existingInstance = SHARED_INSTANCES.putIfAbsent(clazz, instance);
+                    if (existingInstance != null) {
+                        instance = existingInstance;
+                    }
+                }
+                return instance;
+            }
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
+                    "unableToLoadClass", new Object[] {clazz.getName()});
+        }
+    }
+
     public WSTimeSource getCurrentTime() {
         if (currentTime != null) {
             return currentTime;
@@ -25,15 +25,15 @@ import java.util.List;
 import java.util.Map;
 
 import javax.security.auth.callback.CallbackHandler;
-import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
-import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.callback.IndexedDOMCallbackLookup;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.dom.processor.Processor;
@@ -307,7 +307,7 @@ public class WSSecurityEngine {
         WSDocInfo wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
         CallbackLookup callbackLookupToUse = callbackLookup;
         if (callbackLookupToUse == null) {
-            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument());
+            callbackLookupToUse = new IndexedDOMCallbackLookup(securityHeader.getOwnerDocument());
         }
         wsDocInfo.setCallbackLookup(callbackLookupToUse);
         wsDocInfo.setCrypto(requestData.getSigVerCrypto());
@@ -315,6 +315,8 @@ public class WSSecurityEngine {
         requestData.setWsDocInfo(wsDocInfo);
 
         final WSSConfig cfg = getWssConfig();
+        final Instrumentation instrumentation = requestData.getInstrumentation();
+        long headerStart = instrumentation.start();
         Node node = securityHeader.getFirstChild();
 
         List<WSSecurityEngineResult> returnResults = new LinkedList<>();
@@ -322,12 +324,14 @@ public class WSSecurityEngine {
         while (node != null) {
             Node nextSibling = node.getNextSibling();
             if (Node.ELEMENT_NODE == node.getNodeType()) {
-                QName el = new QName(node.getNamespaceURI(), node.getLocalName());
+                String namespaceURI = node.getNamespaceURI();
+                String localName = node.getLocalName();
 
                 // Check for multiple timestamps
-                if (foundTimestamp && el.equals(WSConstants.TIMESTAMP)) {
-                    requestData.getBSPEnforcer().handleBSPRule(BSPRule.R3227);
-                } else if (el.equals(WSConstants.TIMESTAMP)) {
+                if (WSConstants.TIMESTAMP_TOKEN_LN.equals(localName) && WSConstants.WSU_NS.equals(namespaceURI)) {
+                    if (foundTimestamp) {
+                        requestData.getBSPEnforcer().handleBSPRule(BSPRule.R3227);
+                    }
                     foundTimestamp = true;
                 }
                 //
@@ -335,9 +339,13 @@ public class WSSecurityEngine {
                 // store it for later retrieval. The token processor may store some
                 // information about the processed token
                 //
-                Processor p = cfg.getProcessor(el);
+                Processor p = cfg.getProcessor(namespaceURI, localName);
                 if (p != null) {
+                    long start = instrumentation.start();
                     List<WSSecurityEngineResult> results = p.handleToken((Element) node, requestData);
+                    if (instrumentation.isEnabled()) {
+                        instrumentation.stop(Instrumentation.PROCESSOR_PREFIX + localName, start);
+                    }
                     if (!results.isEmpty()) {
                         returnResults.addAll(0, results);
                     }
@@ -373,6 +381,7 @@ public class WSSecurityEngine {
         }
 
         wsDocInfo.clear();
+        instrumentation.stop(Instrumentation.SECURITY_HEADER, headerStart);
 
         return handlerResult;
     }
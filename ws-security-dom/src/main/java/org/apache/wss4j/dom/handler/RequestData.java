@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.CallbackHandler;
@@ -36,11 +37,19 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.NoOpInstrumentation;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -75,6 +84,13 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private SigningCredentialCache signingCredentialCache;
+    private OutboundSessionKeyCache outboundSessionKeyCache;
+    private VerifiedSamlAssertionCache verifiedSamlAssertionCache;
+    private Instrumentation instrumentation = NoOpInstrumentation.INSTANCE;
+    private UsernameTokenKeyCache usernameTokenKeyCache;
+    private DerivedKeyCache derivedKeyCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -94,6 +110,8 @@ public class RequestData {
     private boolean requireTimestampExpires;
     private boolean storeBytesInAttachment;
     private Serializer encryptionSerializer;
+    private Executor encryptionExecutor;
+    private Executor signatureExecutor;
     private WSDocInfo wsDocInfo;
     private Provider signatureProvider;
 
@@ -446,6 +464,109 @@ public class RequestData {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache for the secret keys of decrypted EncryptedKeys
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache newCache) {
+        encryptedKeyCache = newCache;
+    }
+
+    /**
+     * Get the cache for the secret keys of decrypted EncryptedKeys
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for the private key and certificates of the signature user
+     */
+    public void setSigningCredentialCache(SigningCredentialCache signingCredentialCache) {
+        this.signingCredentialCache = signingCredentialCache;
+    }
+
+    /**
+     * Get the cache for the private key and certificates of the signature user
+     */
+    public SigningCredentialCache getSigningCredentialCache() {
+        return signingCredentialCache;
+    }
+
+    /**
+     * Set the cache for the session keys that are reused for outbound encryption
+     */
+    public void setOutboundSessionKeyCache(OutboundSessionKeyCache outboundSessionKeyCache) {
+        this.outboundSessionKeyCache = outboundSessionKeyCache;
+    }
+
+    /**
+     * Get the cache for the session keys that are reused for outbound encryption
+     */
+    public OutboundSessionKeyCache getOutboundSessionKeyCache() {
+        return outboundSessionKeyCache;
+    }
+
+    /**
+     * Set the cache for the signed SAML Assertions whose signature has been verified
+     */
+    public void setVerifiedSamlAssertionCache(VerifiedSamlAssertionCache verifiedSamlAssertionCache) {
+        this.verifiedSamlAssertionCache = verifiedSamlAssertionCache;
+    }
+
+    /**
+     * Get the cache for the signed SAML Assertions whose signature has been verified
+     */
+    public VerifiedSamlAssertionCache getVerifiedSamlAssertionCache() {
+        return verifiedSamlAssertionCache;
+    }
+
+    /**
+     * Set the Instrumentation that records the expensive operations of the security processing
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            this.instrumentation = NoOpInstrumentation.INSTANCE;
+        } else {
+            this.instrumentation = instrumentation;
+        }
+    }
+
+    /**
+     * Get the Instrumentation that records the expensive operations of the security processing.
+     * This is the NoOpInstrumentation by default.
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Set the cache for the keys that are derived from the password of a UsernameToken
+     */
+    public void setUsernameTokenKeyCache(UsernameTokenKeyCache usernameTokenKeyCache) {
+        this.usernameTokenKeyCache = usernameTokenKeyCache;
+    }
+
+    /**
+     * Get the cache for the keys that are derived from the password of a UsernameToken
+     */
+    public UsernameTokenKeyCache getUsernameTokenKeyCache() {
+        return usernameTokenKeyCache;
+    }
+
+    /**
+     * Set the cache for the keys that are derived for the DerivedKeyTokens of a session
+     */
+    public void setDerivedKeyCache(DerivedKeyCache derivedKeyCache) {
+        this.derivedKeyCache = derivedKeyCache;
+    }
+
+    /**
+     * Get the cache for the keys that are derived for the DerivedKeyTokens of a session
+     */
+    public DerivedKeyCache getDerivedKeyCache() {
+        return derivedKeyCache;
+    }
+
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -745,6 +866,31 @@ public class RequestData {
         this.encryptionSerializer = encryptionSerializer;
     }
 
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the message parts concurrently. The default is null, which
+     * means that the parts are encrypted one after another.
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
+
+    public Executor getSignatureExecutor() {
+        return signatureExecutor;
+    }
+
+    /**
+     * Set an Executor to compute (when signing) or verify (when processing a Signature) the
+     * digests of the References concurrently. The default is null, which means that the
+     * References are digested one after another.
+     */
+    public void setSignatureExecutor(Executor signatureExecutor) {
+        this.signatureExecutor = signatureExecutor;
+    }
+
     public boolean isAddUsernameTokenCreated() {
         return addUsernameTokenCreated;
     }
@@ -85,7 +85,79 @@ public abstract class WSHandler {
             WSDocInfo wsDocInfo = new WSDocInfo(doc);
             reqData.setWsDocInfo(wsDocInfo);
         }
+        reqData.setSoapConstants(WSSecurityUtil.getSOAPConstants(doc.getDocumentElement()));
+
+        decodeSenderParameters(reqData, actions);
 
+        boolean mu =
+            decodeBooleanConfigValue(reqData.getMsgContext(), WSHandlerConstants.MUST_UNDERSTAND, true);
+        performSenderActions(doc, reqData, actions, mu, isRequest);
+    }
+
+    /**
+     * Performs all defined security actions to set-up the SOAP request, using a precompiled
+     * handler configuration instead of decoding the configuration for every message.
+     *
+     * @param doc   the request as DOM document
+     * @param reqData a data storage to pass values around between methods
+     * @param configuration the precompiled configuration of this handler, see
+     *                      {@link #newSenderConfiguration(List, Object)}
+     * @throws WSSecurityException
+     */
+    protected void doSenderAction(
+            Document doc,
+            RequestData reqData,
+            WSHandlerConfiguration configuration,
+            boolean isRequest
+    ) throws WSSecurityException {
+
+        if (reqData.getWssConfig() == null) {
+            reqData.setWssConfig(configuration.getWssConfig());
+        }
+
+        if (reqData.getWsDocInfo() == null) {
+            WSDocInfo wsDocInfo = new WSDocInfo(doc);
+            reqData.setWsDocInfo(wsDocInfo);
+        }
+        reqData.setSoapConstants(WSSecurityUtil.getSOAPConstants(doc.getDocumentElement()));
+
+        if (reqData.getSignatureToken() != null || reqData.getEncryptionToken() != null) {
+            // The configuration can't be merged into the action tokens of the request
+            decodeSenderParameters(reqData, configuration.getActions());
+        } else {
+            configuration.applySenderParameters(reqData);
+            handleSpecialUser(reqData);
+        }
+
+        performSenderActions(
+            doc, reqData, configuration.getActions(), configuration.isMustUnderstand(), isRequest
+        );
+    }
+
+    /**
+     * Compiles the configuration of this handler for sending messages. The configuration is
+     * read from the options of this handler and the given (endpoint) message context once,
+     * so per-message changes of the configuration are not seen by the returned object. The
+     * Crypto instances and the password CallbackHandler are loaded once as well.
+     *
+     * @param actions the actions to perform
+     * @param msgContext the message context to read the configuration from, may be null
+     * @return the configuration to pass to {@link #doSenderAction(Document, RequestData,
+     *         WSHandlerConfiguration, boolean)}
+     * @throws WSSecurityException if the configuration is invalid
+     */
+    public WSHandlerConfiguration newSenderConfiguration(
+        List<HandlerAction> actions, Object msgContext
+    ) throws WSSecurityException {
+        return WSHandlerConfiguration.newSenderConfiguration(this, actions, msgContext);
+    }
+
+    /**
+     * Decode the configuration of the given sender actions into the RequestData.
+     */
+    void decodeSenderParameters(
+        RequestData reqData, List<HandlerAction> actions
+    ) throws WSSecurityException {
         Object mc = reqData.getMsgContext();
         reqData.setEncodePasswords(
             decodeBooleanConfigValue(mc, WSHandlerConstants.USE_ENCODED_PASSWORDS, false)
@@ -104,12 +176,6 @@ public abstract class WSHandler {
         String actor = getString(WSHandlerConstants.ACTOR, mc);
         reqData.setActor(actor);
 
-        boolean mu = decodeBooleanConfigValue(mc, WSHandlerConstants.MUST_UNDERSTAND, true);
-        WSSecHeader secHeader = new WSSecHeader(actor, mu, doc);
-        secHeader.insertSecurityHeader();
-        reqData.setSecHeader(secHeader);
-        reqData.setSoapConstants(WSSecurityUtil.getSOAPConstants(doc.getDocumentElement()));
-
         // Load CallbackHandler
         if (reqData.getCallbackHandler() == null) {
             CallbackHandler passwordCallbackHandler = getPasswordCallbackHandler(reqData);
@@ -173,6 +239,20 @@ public abstract class WSHandler {
                 decodeEncryptionParameter(reqData);
             }
         }
+    }
+
+    private void performSenderActions(
+        Document doc,
+        RequestData reqData,
+        List<HandlerAction> actions,
+        boolean mustUnderstand,
+        boolean isRequest
+    ) throws WSSecurityException {
+        WSSConfig wssConfig = reqData.getWssConfig();
+
+        WSSecHeader secHeader = new WSSecHeader(reqData.getActor(), mustUnderstand, doc);
+        secHeader.insertSecurityHeader();
+        reqData.setSecHeader(secHeader);
 
         /*
          * If after all the parsing no Signature parts defined, set here a
@@ -303,6 +383,52 @@ public abstract class WSHandler {
             reqData.setWssConfig(wssConfig);
         }
 
+        decodeReceiverParameters(actions, reqData);
+    }
+
+    /**
+     * Sets up the RequestData for processing a received message, using a precompiled handler
+     * configuration instead of decoding the configuration for every message.
+     *
+     * @param configuration the precompiled configuration of this handler, see
+     *                      {@link #newReceiverConfiguration(List, Object)}
+     * @param reqData a data storage to pass values around between methods
+     * @throws WSSecurityException
+     */
+    protected void doReceiverAction(WSHandlerConfiguration configuration, RequestData reqData)
+        throws WSSecurityException {
+
+        if (reqData.getWssConfig() == null) {
+            reqData.setWssConfig(configuration.getWssConfig());
+        }
+
+        configuration.applyReceiverParameters(reqData);
+    }
+
+    /**
+     * Compiles the configuration of this handler for receiving messages. The configuration is
+     * read from the options of this handler and the given (endpoint) message context once,
+     * so per-message changes of the configuration are not seen by the returned object. The
+     * Crypto instances and the password CallbackHandler are loaded, and the AlgorithmSuite is
+     * decoded (see {@link #decodeAlgorithmSuite(RequestData)}), once as well.
+     *
+     * @param actions the actions that are expected
+     * @param msgContext the message context to read the configuration from, may be null
+     * @return the configuration to pass to {@link #doReceiverAction(WSHandlerConfiguration,
+     *         RequestData)}
+     * @throws WSSecurityException if the configuration is invalid
+     */
+    public WSHandlerConfiguration newReceiverConfiguration(
+        List<Integer> actions, Object msgContext
+    ) throws WSSecurityException {
+        return WSHandlerConfiguration.newReceiverConfiguration(this, actions, msgContext);
+    }
+
+    /**
+     * Decode the configuration of the given receiver actions into the RequestData.
+     */
+    void decodeReceiverParameters(List<Integer> actions, RequestData reqData)
+        throws WSSecurityException {
         Object mc = reqData.getMsgContext();
         boolean enableSigConf =
             decodeBooleanConfigValue(mc, WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION, false);
@@ -1274,7 +1400,7 @@ public abstract class WSHandler {
     }
 
     @SuppressWarnings("unchecked")
-    private void handleSpecialUser(RequestData reqData) {
+    void handleSpecialUser(RequestData reqData) {
         EncryptionActionToken actionToken = reqData.getEncryptionToken();
         if (actionToken == null
             || !WSHandlerConstants.USE_REQ_SIG_CERT.equals(actionToken.getUser())) {
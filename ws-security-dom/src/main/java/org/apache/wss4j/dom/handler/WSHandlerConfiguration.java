@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.EncryptionActionToken;
+import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.SignatureEncryptionActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.SOAP11Constants;
+import org.apache.wss4j.dom.SOAP12Constants;
+import org.apache.wss4j.dom.SOAPConstants;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+
+/**
+ * An immutable, precompiled WSHandler configuration. It holds the parsed actions, and the
+ * decoded parameters (including the loaded Crypto instances and password CallbackHandler) of
+ * a WSHandler, so that they can be applied to the RequestData of every message without
+ * parsing the configuration strings, or instantiating CallbackHandlers via reflection, again.
+ *
+ * The configuration is created via WSHandler#newSenderConfiguration or
+ * WSHandler#newReceiverConfiguration, by running the normal decoding of the WSHandler once.
+ * The action tokens are copied for every message, as the actions modify them.
+ *
+ * The WSSConfig and the AlgorithmSuite of the configuration are shared by all the messages it
+ * is applied to (unless the RequestData of a message already has its own), and so must not be
+ * modified once the configuration is created.
+ */
+public final class WSHandlerConfiguration {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(WSHandlerConfiguration.class);
+
+    private static final SOAPConstants SOAP11_CONSTANTS = new SOAP11Constants();
+    private static final SOAPConstants SOAP12_CONSTANTS = new SOAP12Constants();
+
+    // Used as the username when decoding, so that the decoding does not fail if the user is
+    // only set on the RequestData of the message
+    private static final String USERNAME_PLACEHOLDER = "username";
+
+    private final WSSConfig wssConfig;
+    private final List<HandlerAction> actions;
+    private final List<Integer> receiverActions;
+    private final RequestData soap11Parameters;
+    private final RequestData soap12Parameters;
+
+    // The decoding that is done for the sender actions
+    private final boolean mustUnderstand;
+    private final boolean encryptionBeforeSignature;
+    private final boolean decodeUsernameToken;
+    private final boolean pwTypeSet;
+    private final boolean derivedKeyIterationsSet;
+    private final boolean decodeSignature;
+    private final boolean decodeEncryption;
+    private final boolean signatureUserSet;
+    private final boolean encryptionUserSet;
+
+    private WSHandlerConfiguration(
+        WSSConfig wssConfig, List<HandlerAction> actions, List<Integer> receiverActions,
+        RequestData soap11Parameters, RequestData soap12Parameters,
+        boolean mustUnderstand, boolean encryptionBeforeSignature,
+        boolean decodeUsernameToken, boolean pwTypeSet, boolean derivedKeyIterationsSet,
+        boolean decodeSignature, boolean decodeEncryption,
+        boolean signatureUserSet, boolean encryptionUserSet
+    ) {
+        this.wssConfig = wssConfig;
+        this.actions = actions;
+        this.receiverActions = receiverActions;
+        this.soap11Parameters = soap11Parameters;
+        this.soap12Parameters = soap12Parameters;
+        this.mustUnderstand = mustUnderstand;
+        this.encryptionBeforeSignature = encryptionBeforeSignature;
+        this.decodeUsernameToken = decodeUsernameToken;
+        this.pwTypeSet = pwTypeSet;
+        this.derivedKeyIterationsSet = derivedKeyIterationsSet;
+        this.decodeSignature = decodeSignature;
+        this.decodeEncryption = decodeEncryption;
+        this.signatureUserSet = signatureUserSet;
+        this.encryptionUserSet = encryptionUserSet;
+    }
+
+    static WSHandlerConfiguration newSenderConfiguration(
+        WSHandler handler, List<HandlerAction> actions, Object msgContext
+    ) throws WSSecurityException {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        List<HandlerAction> actionList = Collections.unmodifiableList(new ArrayList<>(actions));
+
+        // The parameters only differ in the (default) namespace of the parts for SOAP 1.1 and 1.2
+        RequestData soap11Parameters =
+            decodeSenderParameters(handler, actionList, msgContext, wssConfig, SOAP11_CONSTANTS, null);
+        RequestData soap12Parameters =
+            decodeSenderParameters(handler, actionList, msgContext, wssConfig, SOAP12_CONSTANTS,
+                                   soap11Parameters.getCallbackHandler());
+
+        boolean encryptionBeforeSignature = false;
+        boolean encryptionFound = false;
+        boolean decodeUsernameToken = false;
+        boolean pwTypeSet = handler.getString(WSHandlerConstants.PASSWORD_TYPE, msgContext) != null;
+        boolean noPassword = false;
+        boolean decodeSignature = false;
+        boolean decodeEncryption = false;
+        for (HandlerAction action : actionList) {
+            if (action.getActionToken() != null) {
+                continue;
+            }
+            int actionToDo = action.getAction();
+            if (actionToDo == WSConstants.UT || actionToDo == WSConstants.UT_NOPASSWORD) {
+                decodeUsernameToken = true;
+                noPassword |= actionToDo == WSConstants.UT_NOPASSWORD;
+            } else if (actionToDo == WSConstants.UT_SIGN) {
+                decodeUsernameToken = true;
+                decodeSignature = true;
+            } else if (actionToDo == WSConstants.SIGN || actionToDo == WSConstants.DKT_SIGN) {
+                decodeSignature = true;
+                encryptionBeforeSignature |= encryptionFound;
+            } else if (actionToDo == WSConstants.ST_SIGNED) {
+                decodeSignature = true;
+            } else if (actionToDo == WSConstants.ENCR || actionToDo == WSConstants.DKT_ENCR) {
+                decodeEncryption = true;
+                encryptionFound = true;
+            }
+        }
+
+        String derivedKeyIterations = handler.getString(WSHandlerConstants.DERIVED_KEY_ITERATIONS, msgContext);
+        return new WSHandlerConfiguration(
+            wssConfig, actionList, Collections.emptyList(), soap11Parameters, soap12Parameters,
+            handler.decodeBooleanConfigValue(msgContext, WSHandlerConstants.MUST_UNDERSTAND, true),
+            encryptionBeforeSignature,
+            decodeUsernameToken,
+            decodeUsernameToken && pwTypeSet || noPassword,
+            decodeUsernameToken && isInteger(derivedKeyIterations),
+            decodeSignature,
+            decodeEncryption,
+            handler.getString(WSHandlerConstants.SIGNATURE_USER, msgContext) != null,
+            handler.getString(WSHandlerConstants.ENCRYPTION_USER, msgContext) != null
+        );
+    }
+
+    private static RequestData decodeSenderParameters(
+        WSHandler handler, List<HandlerAction> actions, Object msgContext,
+        WSSConfig wssConfig, SOAPConstants soapConstants, CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        RequestData parameters = new RequestData();
+        parameters.setMsgContext(msgContext);
+        parameters.setWssConfig(wssConfig);
+        parameters.setSoapConstants(soapConstants);
+        parameters.setCallbackHandler(callbackHandler);
+        parameters.setUsername(USERNAME_PLACEHOLDER);
+        handler.decodeSenderParameters(parameters, actions);
+        return parameters;
+    }
+
+    static WSHandlerConfiguration newReceiverConfiguration(
+        WSHandler handler, List<Integer> actions, Object msgContext
+    ) throws WSSecurityException {
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        List<Integer> actionList = Collections.unmodifiableList(new ArrayList<>(actions));
+
+        RequestData parameters = new RequestData();
+        parameters.setMsgContext(msgContext);
+        parameters.setWssConfig(wssConfig);
+        handler.decodeReceiverParameters(actionList, parameters);
+        handler.decodeAlgorithmSuite(parameters);
+
+        return new WSHandlerConfiguration(
+            wssConfig, Collections.emptyList(), actionList, parameters, parameters,
+            true, false, false, false, false, false, false, false, false
+        );
+    }
+
+    private static boolean isInteger(String value) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            Integer.parseInt(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Apply the decoded sender parameters to the RequestData of a message, which must not
+     * have any action tokens yet.
+     */
+    void applySenderParameters(RequestData reqData) throws WSSecurityException {
+        RequestData parameters = soap11Parameters;
+        if (reqData.getSoapConstants() != null
+            && WSConstants.URI_SOAP12_ENV.equals(reqData.getSoapConstants().getEnvelopeURI())) {
+            parameters = soap12Parameters;
+        }
+
+        reqData.setEncodePasswords(parameters.isEncodePasswords());
+        reqData.setPrecisionInMilliSeconds(parameters.isPrecisionInMilliSeconds());
+        reqData.setAddInclusivePrefixes(parameters.isAddInclusivePrefixes());
+        reqData.setEnableSignatureConfirmation(parameters.isEnableSignatureConfirmation());
+        reqData.setTimeStampTTL(parameters.getTimeStampTTL());
+        reqData.setActor(parameters.getActor());
+
+        if (reqData.getCallbackHandler() == null) {
+            reqData.setCallbackHandler(parameters.getCallbackHandler());
+        }
+        if (!reqData.isStoreBytesInAttachment()) {
+            reqData.setStoreBytesInAttachment(parameters.isStoreBytesInAttachment());
+        } else if (encryptionBeforeSignature) {
+            LOG.warn("Turning off storeBytesInAttachment as we have encryption before signature."
+                     + " The danger here is that the actual encryption bytes will not be signed");
+            reqData.setStoreBytesInAttachment(false);
+        }
+
+        if (decodeUsernameToken) {
+            if (pwTypeSet) {
+                reqData.setPwType(parameters.getPwType());
+            }
+            reqData.setAddUsernameTokenNonce(parameters.isAddUsernameTokenNonce());
+            reqData.setAddUsernameTokenCreated(parameters.isAddUsernameTokenCreated());
+            if (parameters.isUseDerivedKeyForMAC()) {
+                reqData.setUseDerivedKeyForMAC(true);
+            }
+            if (derivedKeyIterationsSet) {
+                reqData.setDerivedKeyIterations(parameters.getDerivedKeyIterations());
+            }
+        }
+
+        if (decodeSignature || decodeEncryption) {
+            reqData.setUse200512Namespace(parameters.isUse200512Namespace());
+        }
+        if (decodeSignature) {
+            SignatureActionToken signatureToken = new SignatureActionToken();
+            copySignatureToken(parameters.getSignatureToken(), signatureToken);
+            if (!signatureUserSet) {
+                signatureToken.setUser(reqData.getUsername());
+            }
+            reqData.setSignatureToken(signatureToken);
+
+            if (!reqData.isExpandXopInclude()) {
+                reqData.setExpandXopInclude(parameters.isExpandXopInclude());
+            }
+        }
+        if (decodeEncryption) {
+            EncryptionActionToken encryptionToken = new EncryptionActionToken();
+            copyEncryptionToken(parameters.getEncryptionToken(), encryptionToken);
+            if (!encryptionUserSet) {
+                encryptionToken.setUser(reqData.getUsername());
+            }
+            if (encryptionToken.isEncSymmetricEncryptionKey() && encryptionToken.getUser() == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                        "empty",
+                        new Object[] {"WSHandler: Encryption: no username"});
+            }
+            reqData.setEncryptionToken(encryptionToken);
+        }
+    }
+
+    /**
+     * Apply the decoded receiver parameters, including the AlgorithmSuite, to the RequestData of a message.
+     */
+    void applyReceiverParameters(RequestData reqData) {
+        RequestData parameters = soap11Parameters;
+
+        reqData.setEnableSignatureConfirmation(parameters.isEnableSignatureConfirmation());
+        reqData.setTimeStampStrict(parameters.isTimeStampStrict());
+        reqData.setRequiredPasswordType(parameters.getRequiredPasswordType());
+
+        reqData.setTimeStampTTL(parameters.getTimeStampTTL());
+        reqData.setTimeStampFutureTTL(parameters.getTimeStampFutureTTL());
+        reqData.setUtTTL(parameters.getUtTTL());
+        reqData.setUtFutureTTL(parameters.getUtFutureTTL());
+
+        reqData.setHandleCustomPasswordTypes(parameters.isHandleCustomPasswordTypes());
+        reqData.setEncodePasswords(parameters.isEncodePasswords());
+        reqData.setAllowNamespaceQualifiedPasswordTypes(parameters.isAllowNamespaceQualifiedPasswordTypes());
+        reqData.setAllowUsernameTokenNoPassword(parameters.isAllowUsernameTokenNoPassword());
+        reqData.setValidateSamlSubjectConfirmation(parameters.isValidateSamlSubjectConfirmation());
+        if (parameters.isDisableBSPEnforcement()) {
+            reqData.setDisableBSPEnforcement(true);
+        }
+
+        if (reqData.getCallbackHandler() == null) {
+            reqData.setCallbackHandler(parameters.getCallbackHandler());
+        }
+
+        if (receiverActions.contains(WSConstants.SIGN) || receiverActions.contains(WSConstants.ST_SIGNED)
+            || receiverActions.contains(WSConstants.ST_UNSIGNED)) {
+            if (reqData.getSigVerCrypto() == null) {
+                reqData.setSigVerCrypto(parameters.getSigVerCrypto());
+            }
+            reqData.setEnableRevocation(parameters.isRevocationEnabled());
+            Collection<Pattern> subjectCertConstraints = parameters.getSubjectCertConstraints();
+            if (subjectCertConstraints != null && !subjectCertConstraints.isEmpty()) {
+                reqData.setSubjectCertConstraints(subjectCertConstraints);
+            }
+            Collection<Pattern> issuerCertConstraints = parameters.getIssuerDNPatterns();
+            if (issuerCertConstraints != null && !issuerCertConstraints.isEmpty()) {
+                reqData.setIssuerDNPatterns(issuerCertConstraints);
+            }
+            reqData.setExpandXopInclude(parameters.isExpandXopInclude());
+        }
+
+        if (receiverActions.contains(WSConstants.ENCR)) {
+            if (reqData.getDecCrypto() == null) {
+                reqData.setDecCrypto(parameters.getDecCrypto());
+            }
+            reqData.setAllowRSA15KeyTransportAlgorithm(parameters.isAllowRSA15KeyTransportAlgorithm());
+        }
+        reqData.setRequireSignedEncryptedDataElements(parameters.isRequireSignedEncryptedDataElements());
+        reqData.setRequireTimestampExpires(parameters.isRequireTimestampExpires());
+
+        if (reqData.getAlgorithmSuite() == null) {
+            reqData.setAlgorithmSuite(parameters.getAlgorithmSuite());
+        }
+    }
+
+    private static void copySignatureToken(SignatureActionToken from, SignatureActionToken to)
+        throws WSSecurityException {
+        copyToken(from, to);
+        to.setSignatureAlgorithm(from.getSignatureAlgorithm());
+        to.setC14nAlgorithm(from.getC14nAlgorithm());
+        to.setUseSingleCert(from.isUseSingleCert());
+    }
+
+    private static void copyEncryptionToken(EncryptionActionToken from, EncryptionActionToken to)
+        throws WSSecurityException {
+        copyToken(from, to);
+        to.setSymmetricAlgorithm(from.getSymmetricAlgorithm());
+        to.setKeyTransportAlgorithm(from.getKeyTransportAlgorithm());
+        to.setMgfAlgorithm(from.getMgfAlgorithm());
+        to.setEncSymmetricEncryptionKey(from.isEncSymmetricEncryptionKey());
+        to.setGetSymmetricKeyFromCallbackHandler(from.isGetSymmetricKeyFromCallbackHandler());
+    }
+
+    private static void copyToken(SignatureEncryptionActionToken from, SignatureEncryptionActionToken to)
+        throws WSSecurityException {
+        to.setUser(from.getUser());
+        Crypto crypto = from.getCrypto();
+        if (crypto != null) {
+            to.setCrypto(crypto);
+        }
+        to.setKeyIdentifierId(from.getKeyIdentifierId());
+        to.setDigestAlgorithm(from.getDigestAlgorithm());
+        to.setDerivedKeyTokenReference(from.getDerivedKeyTokenReference());
+        to.setDerivedKeyLength(from.getDerivedKeyLength());
+        to.setDerivedKeyIdentifier(from.getDerivedKeyIdentifier());
+        to.setIncludeToken(from.isIncludeToken());
+        for (WSEncryptionPart part : from.getParts()) {
+            to.getParts().add(copyPart(part));
+        }
+    }
+
+    private static WSEncryptionPart copyPart(WSEncryptionPart part) {
+        WSEncryptionPart copy;
+        if (part.getName() != null) {
+            copy = new WSEncryptionPart(part.getName(), part.getNamespace(), part.getEncModifier());
+        } else {
+            copy = new WSEncryptionPart(part.getId(), part.getEncModifier());
+        }
+        copy.setId(part.getId());
+        copy.setXpath(part.getXpath());
+        copy.setRequired(part.isRequired());
+        return copy;
+    }
+
+    /**
+     * @return the WSSConfig instance to use for messages that do not have one set. The instance
+     *         is shared by all these messages, and so must not be modified.
+     */
+    public WSSConfig getWssConfig() {
+        return wssConfig;
+    }
+
+    /**
+     * @return the (unmodifiable) list of sender actions
+     */
+    public List<HandlerAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * @return the (unmodifiable) list of receiver actions
+     */
+    public List<Integer> getReceiverActions() {
+        return receiverActions;
+    }
+
+    /**
+     * @return whether the security header must be understood
+     */
+    public boolean isMustUnderstand() {
+        return mustUnderstand;
+    }
+
+}
@@ -19,12 +19,20 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -70,6 +78,9 @@ import org.w3c.dom.NodeList;
  */
 public class Encryptor {
 
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(Encryptor.class);
+
     private Document doc;
     private WSSecHeader securityHeader;
     private WsuIdAllocator idAllocator;
@@ -79,6 +90,7 @@ public class Encryptor {
     private Serializer encryptionSerializer;
     private boolean expandXopInclude;
     private WSDocInfo wsDocInfo;
+    private Executor encryptionExecutor;
 
     public List<String> doEncryption(
         KeyInfo keyInfo,
@@ -102,12 +114,18 @@ public class Encryptor {
         }
 
         List<String> encDataRef = new ArrayList<>();
+        boolean encrypted = encryptionExecutor != null && !expandXopInclude && !storeBytesInAttachment
+            && encryptInParallel(keyInfo, secretKey, encryptionAlgorithm, references, encDataRef);
+
         WSEncryptionPart attachmentEncryptionPart = null;
         for (WSEncryptionPart encPart : references) {
             if (encPart.getId() != null && encPart.getId().startsWith("cid:")) {
                 attachmentEncryptionPart = encPart;
                 continue;
             }
+            if (encrypted) {
+                continue;
+            }
 
             //
             // Get the data to encrypt.
@@ -211,6 +229,167 @@ public class Encryptor {
         return encDataRef;
     }
 
+    /**
+     * Encrypt the (non-attachment) parts using the encryptionExecutor. The Elements are looked up,
+     * serialized and replaced by their EncryptedData Elements on the calling thread, in the same
+     * order as the serial encryption, as the DOM must not be accessed concurrently. Only the
+     * encryption itself runs on the executor. Returns false without modifying the document if the
+     * Elements to encrypt overlap, as they then have to be encrypted one after another.
+     */
+    private boolean encryptInParallel(
+        KeyInfo keyInfo,
+        SecretKey secretKey,
+        String encryptionAlgorithm,
+        List<WSEncryptionPart> references,
+        List<String> encDataRef
+    ) throws WSSecurityException {
+        if (callbackLookup == null) {
+            callbackLookup = new DOMCallbackLookup(doc);
+        }
+
+        Map<WSEncryptionPart, List<Element>> elementsByPart = new IdentityHashMap<>();
+        Set<Element> allElements = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (WSEncryptionPart encPart : references) {
+            if (encPart.getId() != null && encPart.getId().startsWith("cid:")) {
+                continue;
+            }
+            List<Element> elementsToEncrypt =
+                WSSecurityUtil.findElements(encPart, callbackLookup);
+            if (elementsToEncrypt == null || elementsToEncrypt.isEmpty()) {
+                if (!encPart.isRequired()) {
+                    continue;
+                }
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "noEncElement",
+                    new Object[] {"{" + encPart.getNamespace() + "}" + encPart.getName()});
+            }
+            for (Element elementToEncrypt : elementsToEncrypt) {
+                if (!allElements.add(elementToEncrypt)) {
+                    return false;
+                }
+            }
+            elementsByPart.put(encPart, elementsToEncrypt);
+        }
+        for (Element elementToEncrypt : allElements) {
+            Node parent = elementToEncrypt.getParentNode();
+            while (parent != null) {
+                if (allElements.contains(parent)) {
+                    return false;
+                }
+                parent = parent.getParentNode();
+            }
+        }
+
+        Serializer serializer = encryptionSerializer;
+        if (serializer == null) {
+            try {
+                serializer = new TransformSerializer(true);
+            } catch (Exception ex) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+            }
+        }
+
+        List<FutureTask<XMLCipher>> tasks = new ArrayList<>();
+        for (WSEncryptionPart encPart : references) {
+            List<Element> elementsToEncrypt = elementsByPart.get(encPart);
+            if (elementsToEncrypt == null) {
+                continue;
+            }
+            for (Element elementToEncrypt : elementsToEncrypt) {
+                String id = prepareElement(elementToEncrypt, encPart.getEncModifier());
+                boolean content = "Content".equals(encPart.getEncModifier());
+                byte[] serializedOctets = serialize(serializer, elementToEncrypt, content);
+
+                String type = content ? EncryptionConstants.TYPE_CONTENT : EncryptionConstants.TYPE_ELEMENT;
+                FutureTask<XMLCipher> task =
+                    new FutureTask<>(() -> encryptOctets(serializedOctets, type, id, encryptionAlgorithm, secretKey, keyInfo));
+                try {
+                    encryptionExecutor.execute(task);
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Encrypting {} on the calling thread: {}", id, ex.getMessage());
+                    task.run();
+                }
+                tasks.add(task);
+            }
+        }
+
+        int i = 0;
+        for (WSEncryptionPart encPart : references) {
+            List<Element> elementsToEncrypt = elementsByPart.get(encPart);
+            if (elementsToEncrypt == null) {
+                continue;
+            }
+            for (Element elementToEncrypt : elementsToEncrypt) {
+                XMLCipher xmlCipher = getResult(tasks.get(i++));
+                EncryptedData encData = xmlCipher.getEncryptedData();
+                Element encryptedElement = xmlCipher.martial(doc, encData);
+                if ("Content".equals(encPart.getEncModifier())) {
+                    Node child = elementToEncrypt.getFirstChild();
+                    while (child != null) {
+                        Node sibling = child.getNextSibling();
+                        elementToEncrypt.removeChild(child);
+                        child = sibling;
+                    }
+                    elementToEncrypt.appendChild(encryptedElement);
+                } else {
+                    elementToEncrypt.getParentNode().replaceChild(encryptedElement, elementToEncrypt);
+                }
+                encPart.setEncId(encData.getId());
+                encDataRef.add("#" + encData.getId());
+            }
+        }
+        return true;
+    }
+
+    private static byte[] serialize(Serializer serializer, Element elementToEncrypt, boolean content)
+        throws WSSecurityException {
+        try {
+            if (content) {
+                return serializer.serializeToByteArray(elementToEncrypt.getChildNodes());
+            }
+            return serializer.serializeToByteArray(elementToEncrypt);
+        } catch (Exception ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        }
+    }
+
+    /**
+     * Encrypt the serialized octets of an Element (or its content) with a new XMLCipher. This
+     * method doesn't access the DOM, and so it can run concurrently.
+     */
+    private XMLCipher encryptOctets(
+        byte[] serializedOctets,
+        String type,
+        String id,
+        String encryptionAlgorithm,
+        SecretKey secretKey,
+        KeyInfo keyInfo
+    ) throws Exception {
+        XMLCipher xmlCipher = XMLCipher.getInstance(encryptionAlgorithm);
+        xmlCipher.init(XMLCipher.ENCRYPT_MODE, secretKey);
+        EncryptedData encData = xmlCipher.getEncryptedData();
+        encData.setId(id);
+        encData.setKeyInfo(keyInfo);
+        xmlCipher.encryptData(doc, type, new ByteArrayInputStream(serializedOctets));
+        return xmlCipher;
+    }
+
+    private static XMLCipher getResult(FutureTask<XMLCipher> task) throws WSSecurityException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, (Exception)cause);
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        }
+    }
+
     private Element findMatchingExpandedElement(Element element) {
         Element matchingElement = null;
 
@@ -446,18 +625,8 @@ public class Encryptor {
     ) throws WSSecurityException {
 
         boolean content = "Content".equals(modifier);
-        //
-        // Encrypt data, and set necessary attributes in xenc:EncryptedData
-        //
-        String xencEncryptedDataId = idAllocator.createId("ED-", elementToEncrypt);
         try {
-            if ("Header".equals(modifier)) {
-                String soapNamespace = WSSecurityUtil.getSOAPNamespace(doc.getDocumentElement());
-                if (elementToEncrypt.getParentNode().getNamespaceURI().equals(soapNamespace)
-                    && WSConstants.ELEM_HEADER.equals(elementToEncrypt.getParentNode().getLocalName())) {
-                    createEncryptedHeaderElement(securityHeader, elementToEncrypt, idAllocator);
-                }
-            }
+            String xencEncryptedDataId = prepareElement(elementToEncrypt, modifier);
 
             xmlCipher.init(XMLCipher.ENCRYPT_MODE, secretKey);
             EncryptedData encData = xmlCipher.getEncryptedData();
@@ -472,6 +641,25 @@ public class Encryptor {
         }
     }
 
+    /**
+     * Allocate the Id of the EncryptedData Element, and wrap a SOAP header to encrypt in an
+     * EncryptedHeader Element if required.
+     */
+    private String prepareElement(Element elementToEncrypt, String modifier) {
+        //
+        // Encrypt data, and set necessary attributes in xenc:EncryptedData
+        //
+        String xencEncryptedDataId = idAllocator.createId("ED-", elementToEncrypt);
+        if ("Header".equals(modifier)) {
+            String soapNamespace = WSSecurityUtil.getSOAPNamespace(doc.getDocumentElement());
+            if (elementToEncrypt.getParentNode().getNamespaceURI().equals(soapNamespace)
+                && WSConstants.ELEM_HEADER.equals(elementToEncrypt.getParentNode().getLocalName())) {
+                createEncryptedHeaderElement(securityHeader, elementToEncrypt, idAllocator);
+            }
+        }
+        return xencEncryptedDataId;
+    }
+
     private static void createEncryptedHeaderElement(
         WSSecHeader securityHeader,
         Element elementToEncrypt,
@@ -591,4 +779,16 @@ public class Encryptor {
         this.wsDocInfo = wsDocInfo;
     }
 
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the parts concurrently. The default is null, which means that the
+     * parts are encrypted one after another on the calling thread.
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
+
 }
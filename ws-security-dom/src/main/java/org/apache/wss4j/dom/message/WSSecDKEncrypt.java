@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.message;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.crypto.SecretKey;
 
@@ -51,6 +52,8 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
 
     private Serializer encryptionSerializer;
 
+    private Executor encryptionExecutor;
+
     public WSSecDKEncrypt(WSSecHeader securityHeader) {
         super(securityHeader);
     }
@@ -139,6 +142,7 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
         encryptor.setAttachmentCallbackHandler(attachmentCallbackHandler);
         encryptor.setStoreBytesInAttachment(storeBytesInAttachment);
         encryptor.setEncryptionSerializer(encryptionSerializer);
+        encryptor.setEncryptionExecutor(encryptionExecutor);
         encryptor.setWsDocInfo(getWsDocInfo());
         List<String> encDataRefs =
             encryptor.doEncryption(keyInfo, key, symEncAlgo, references, attachmentEncryptedDataElements);
@@ -232,4 +236,16 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
     public void setEncryptionSerializer(Serializer encryptionSerializer) {
         this.encryptionSerializer = encryptionSerializer;
     }
+
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the parts concurrently. The default is null, which means that
+     * the parts are encrypted one after another.
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
 }
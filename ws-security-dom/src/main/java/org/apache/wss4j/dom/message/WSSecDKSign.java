@@ -245,7 +245,9 @@ public class WSSecDKSign extends WSSecDerivedKeyBase {
             SignatureMethod signatureMethod =
                 signatureFactory.newSignatureMethod(sigAlgo, null);
             SignedInfo signedInfo =
-                signatureFactory.newSignedInfo(c14nMethod, signatureMethod, referenceList);
+                signatureFactory.newSignedInfo(
+                    c14nMethod, signatureMethod, digestReferences(referenceList, signatureFactory)
+                );
 
             sig = signatureFactory.newXMLSignature(
                     signedInfo,
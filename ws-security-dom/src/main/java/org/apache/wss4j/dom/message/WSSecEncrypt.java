@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.message;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -75,6 +76,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
     private List<Element> attachmentEncryptedDataElements;
 
     private Serializer encryptionSerializer;
+    private Executor encryptionExecutor;
 
     /**
      * Algorithm to be used with the ephemeral key
@@ -205,6 +207,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         encryptor.setAttachmentCallbackHandler(attachmentCallbackHandler);
         encryptor.setStoreBytesInAttachment(storeBytesInAttachment);
         encryptor.setEncryptionSerializer(getEncryptionSerializer());
+        encryptor.setEncryptionExecutor(encryptionExecutor);
         encryptor.setExpandXopInclude(isExpandXopInclude());
         encryptor.setWsDocInfo(getWsDocInfo());
         List<String> encDataRefs =
@@ -454,6 +457,18 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         this.encryptionSerializer = encryptionSerializer;
     }
 
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the parts concurrently. The default is null, which means that
+     * the parts are encrypted one after another.
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
+
     /**
      * Set the name of the symmetric encryption algorithm to use.
      *
@@ -46,6 +46,8 @@ import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.WSS4JConstants;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.SigningCredential;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.token.DOMX509Data;
@@ -109,6 +111,8 @@ public class WSSecSignature extends WSSecSignatureBase {
     private boolean addInclusivePrefixes = true;
     private Element customKeyInfoElement;
     private Provider signatureProvider;
+    private SigningCredentialCache signingCredentialCache;
+    private SigningCredential signingCredential;
 
     public WSSecSignature(WSSecHeader securityHeader) {
         super(securityHeader);
@@ -226,11 +230,21 @@ public class WSSecSignature extends WSSecSignatureBase {
                     break;
 
                 case WSConstants.X509_KEY_IDENTIFIER:
-                secRef.setKeyIdentifier(certs[0]);
+                if (signingCredential != null) {
+                    secRef.setKeyIdentifier(
+                        SecurityTokenReference.X509_V3_TYPE, signingCredential.getEncodedCertificate(), true
+                    );
+                } else {
+                    secRef.setKeyIdentifier(certs[0]);
+                }
                 break;
 
             case WSConstants.SKI_KEY_IDENTIFIER:
-                secRef.setKeyIdentifierSKI(certs[0], crypto);
+                if (signingCredential != null && certs[0].getVersion() == 3) {
+                    secRef.setKeyIdentifier(SecurityTokenReference.SKI_URI, signingCredential.getSKI(crypto), true);
+                } else {
+                    secRef.setKeyIdentifierSKI(certs[0], crypto);
+                }
 
                 if (includeSignatureToken) {
                     addBST(certs);
@@ -238,7 +252,11 @@ public class WSSecSignature extends WSSecSignatureBase {
                 break;
 
             case WSConstants.THUMBPRINT_IDENTIFIER:
-                secRef.setKeyIdentifierThumb(certs[0]);
+                if (signingCredential != null) {
+                    secRef.setKeyIdentifier(SecurityTokenReference.THUMB_URI, signingCredential.getThumbprint(), true);
+                } else {
+                    secRef.setKeyIdentifierThumb(certs[0]);
+                }
 
                 if (includeSignatureToken) {
                     addBST(certs);
@@ -468,7 +486,7 @@ public class WSSecSignature extends WSSecSignatureBase {
             byte[] certBytes = null;
             if (!useSingleCert) {
                 bstToken.setAttributeNS(null, "ValueType", PKIPathSecurity.PKI_TYPE);
-                certBytes = crypto.getBytesFromCertificates(certs);
+                certBytes = getPKIPath(certs);
             } else {
                 bstToken.setAttributeNS(null, "ValueType", X509Security.X509_V3_TYPE);
                 try {
@@ -488,7 +506,7 @@ public class WSSecSignature extends WSSecSignatureBase {
             BinarySecurity binarySecurity = null;
             if (!useSingleCert) {
                 binarySecurity = new PKIPathSecurity(getDocument());
-                ((PKIPathSecurity) binarySecurity).setX509Certificates(certs, crypto);
+                binarySecurity.setToken(getPKIPath(certs));
             } else {
                 binarySecurity = new X509Security(getDocument());
                 ((X509Security) binarySecurity).setX509Certificate(certs[0]);
@@ -504,6 +522,13 @@ public class WSSecSignature extends WSSecSignatureBase {
         bstAddedToSecurityHeader = false;
     }
 
+    private byte[] getPKIPath(X509Certificate[] certs) throws WSSecurityException {
+        if (signingCredential != null) {
+            return signingCredential.getPKIPath(crypto);
+        }
+        return crypto.getBytesFromCertificates(certs);
+    }
+
     /**
      * Prepend the BinarySecurityToken to the elements already in the Security
      * header.
@@ -567,7 +592,9 @@ public class WSSecSignature extends WSSecSignatureBase {
     ) throws WSSecurityException {
         try {
             java.security.Key key;
-            if (secretKey == null) {
+            if (secretKey == null && signingCredential != null) {
+                key = signingCredential.getPrivateKey();
+            } else if (secretKey == null) {
                 key = crypto.getPrivateKey(user, password);
             } else {
                 key = KeyUtils.prepareSecretKey(sigAlgo, secretKey);
@@ -575,7 +602,9 @@ public class WSSecSignature extends WSSecSignatureBase {
             SignatureMethod signatureMethod =
                 signatureFactory.newSignatureMethod(sigAlgo, null);
             SignedInfo signedInfo =
-                signatureFactory.newSignedInfo(c14nMethod, signatureMethod, referenceList);
+                signatureFactory.newSignedInfo(
+                    c14nMethod, signatureMethod, digestReferences(referenceList, signatureFactory)
+                );
 
             sig = signatureFactory.newXMLSignature(
                     signedInfo,
@@ -854,12 +883,17 @@ public class WSSecSignature extends WSSecSignatureBase {
             || keyIdentifierType == WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER
             || keyIdentifierType == WSConstants.CUSTOM_KEY_IDENTIFIER)) {
             if (useThisCert == null) {
-                CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
-                cryptoType.setAlias(user);
                 if (crypto == null) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noSigCryptoFile");
                 }
-                certs = crypto.getX509Certificates(cryptoType);
+                if (signingCredentialCache != null && secretKey == null) {
+                    signingCredential = signingCredentialCache.getCredential(crypto, user, password);
+                    certs = signingCredential.getCertificates();
+                } else {
+                    CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+                    cryptoType.setAlias(user);
+                    certs = crypto.getX509Certificates(cryptoType);
+                }
             } else {
                 certs = new X509Certificate[] {useThisCert};
             }
@@ -926,6 +960,20 @@ public class WSSecSignature extends WSSecSignatureBase {
         this.signatureProvider = signatureProvider;
     }
 
+    public SigningCredentialCache getSigningCredentialCache() {
+        return signingCredentialCache;
+    }
+
+    /**
+     * Set a cache of the private key and certificates of the signature user, which is shared by
+     * the messages that are signed with the same Crypto instance. This is only used if no
+     * certificate was set via {@link #setX509Certificate(X509Certificate)}.
+     * @param signingCredentialCache the cache of the private key and certificates
+     */
+    public void setSigningCredentialCache(SigningCredentialCache signingCredentialCache) {
+        this.signingCredentialCache = signingCredentialCache;
+    }
+
     public String getKeyInfoUri() {
         return keyInfoUri;
     }
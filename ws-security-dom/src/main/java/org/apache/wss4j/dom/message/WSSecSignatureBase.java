@@ -24,6 +24,8 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.security.auth.callback.Callback;
 import javax.xml.crypto.XMLStructure;
@@ -50,6 +52,7 @@ import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * This is the base class for WS Security messages that are used for signature generation or
@@ -61,6 +64,7 @@ public class WSSecSignatureBase extends WSSecBase {
         org.slf4j.LoggerFactory.getLogger(WSSecSignatureBase.class);
 
     private List<Element> clonedElements = new ArrayList<>();
+    private Executor signatureExecutor;
 
     public WSSecSignatureBase(WSSecHeader securityHeader) {
         super(securityHeader);
@@ -344,6 +348,93 @@ public class WSSecSignatureBase extends WSSecBase {
         return transformParam;
     }
 
+    /**
+     * Compute the digests of the References concurrently with the signatureExecutor (if one is set),
+     * and return References which carry their digest values, so that they are not digested
+     * again when the Signature is computed. Only same-document References with a single exclusive
+     * canonicalization Transform are digested up front, the others are left to the Signature. If
+     * the referenced Elements overlap, or one of them contains the security header (and so depends
+     * on the Signature that is inserted there), the References are returned unchanged, and are all
+     * digested one after another by the Signature.
+     *
+     * @param referenceList The References to sign
+     * @param signatureFactory The XMLSignatureFactory to create the new References with
+     * @return the References to sign
+     * @throws WSSecurityException
+     */
+    protected List<javax.xml.crypto.dsig.Reference> digestReferences(
+        List<javax.xml.crypto.dsig.Reference> referenceList,
+        XMLSignatureFactory signatureFactory
+    ) throws WSSecurityException {
+        if (signatureExecutor == null || referenceList.size() < 2) {
+            return referenceList;
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<Element> elements = new ArrayList<>();
+        for (int i = 0; i < referenceList.size(); i++) {
+            javax.xml.crypto.dsig.Reference reference = referenceList.get(i);
+            if (reference.getType() != null || reference.getId() != null
+                || !SignatureUtils.hasExclusiveCanonicalizationTransformOnly(reference)) {
+                continue;
+            }
+            Element element = getWsDocInfo().getTokenElement(reference.getURI().substring(1));
+            if (element != null) {
+                indexes.add(i);
+                elements.add(element);
+            }
+        }
+        if (elements.size() < 2 || SignatureUtils.hasOverlappingElements(elements)) {
+            return referenceList;
+        }
+        if (getSecurityHeader() != null && getSecurityHeader().getSecurityHeaderElement() != null) {
+            Node node = getSecurityHeader().getSecurityHeaderElement();
+            while (node != null) {
+                if (elements.contains(node)) {
+                    return referenceList;
+                }
+                node = node.getParentNode();
+            }
+        }
+
+        // The DOM is not thread-safe, even for reads, so the Elements are canonicalized here, and
+        // only the digests are computed by the Executor
+        List<Callable<byte[]>> tasks = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            javax.xml.crypto.dsig.Reference reference = referenceList.get(indexes.get(i));
+            byte[] canonicalizedOctets = SignatureUtils.canonicalize(elements.get(i), reference);
+            tasks.add(() -> SignatureUtils.digest(reference, canonicalizedOctets));
+        }
+        List<byte[]> digestValues =
+            SignatureUtils.runConcurrently(signatureExecutor, tasks, WSSecurityException.ErrorCode.FAILED_SIGNATURE);
+
+        List<javax.xml.crypto.dsig.Reference> digestedReferenceList = new ArrayList<>(referenceList);
+        for (int i = 0; i < indexes.size(); i++) {
+            javax.xml.crypto.dsig.Reference reference = referenceList.get(indexes.get(i));
+            @SuppressWarnings("unchecked")
+            List<Transform> transforms = reference.getTransforms();
+            digestedReferenceList.set(
+                indexes.get(i),
+                signatureFactory.newReference(
+                    reference.getURI(), reference.getDigestMethod(), transforms, null, null, digestValues.get(i)
+                )
+            );
+        }
+        return digestedReferenceList;
+    }
+
+    public Executor getSignatureExecutor() {
+        return signatureExecutor;
+    }
+
+    /**
+     * Set an Executor to compute the digests of the References concurrently. The default is null,
+     * which means that the References are digested one after another.
+     */
+    public void setSignatureExecutor(Executor signatureExecutor) {
+        this.signatureExecutor = signatureExecutor;
+    }
+
     protected void cleanup() {
         if (!clonedElements.isEmpty()) {
             for (Element clonedElement : clonedElements) {
@@ -19,8 +19,11 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.nio.charset.StandardCharsets;
+
 import org.apache.wss4j.dom.WSConstants;
 
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
 import org.apache.wss4j.common.util.WSCurrentTimeSource;
@@ -48,6 +51,7 @@ public class WSSecUsernameToken extends WSSecBase {
     private boolean passwordsAreEncoded;
     private boolean precisionInMilliSeconds = true;
     private WSTimeSource wsTimeSource = new WSCurrentTimeSource();
+    private UsernameTokenKeyCache keyCache;
 
     public WSSecUsernameToken(WSSecHeader securityHeader) {
         super(securityHeader);
@@ -112,12 +116,13 @@ public class WSSecUsernameToken extends WSSecBase {
         if (ut == null || !useDerivedKey) {
             return new byte[0];
         }
+        byte[] passwordBytes;
         if (passwordsAreEncoded) {
-            return UsernameTokenUtil.generateDerivedKey(org.apache.xml.security.utils.XMLUtils.decode(password),
-                                                        saltValue, iteration);
+            passwordBytes = org.apache.xml.security.utils.XMLUtils.decode(password);
         } else {
-            return UsernameTokenUtil.generateDerivedKey(password, saltValue, iteration);
+            passwordBytes = password.getBytes(StandardCharsets.UTF_8);
         }
+        return UsernameTokenUtil.generateDerivedKey(user, passwordBytes, saltValue, iteration, keyCache);
     }
 
     /**
@@ -263,4 +268,16 @@ public class WSSecUsernameToken extends WSSecBase {
     public void setWsTimeSource(WSTimeSource wsTimeSource) {
         this.wsTimeSource = wsTimeSource;
     }
+
+    public UsernameTokenKeyCache getKeyCache() {
+        return keyCache;
+    }
+
+    /**
+     * Set a UsernameTokenKeyCache, from which the derived key is taken if the same Salt is
+     * used for more than one message.
+     */
+    public void setKeyCache(UsernameTokenKeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
 }
@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -533,20 +534,27 @@ public class DerivedKeyToken {
         principal.setOffset(getOffset());
         principal.setAlgorithm(getAlgorithm());
 
-        String basetokenId = null;
-        SecurityTokenReference securityTokenReference = getSecurityTokenReference();
-        if (securityTokenReference != null && securityTokenReference.getReference() != null) {
-            basetokenId = securityTokenReference.getReference().getURI();
-            basetokenId = XMLUtils.getIDFromReference(basetokenId);
-        } else if (securityTokenReference != null) {
-            // KeyIdentifier
-            basetokenId = securityTokenReference.getKeyIdentifierValue();
-        }
-        principal.setBasetokenId(basetokenId);
+        principal.setBasetokenId(getBasetokenId());
 
         return principal;
     }
 
+    /**
+     * Get the identifier of the token that this DerivedKeyToken refers to, which is also the identifier
+     * of its session for a DerivedKeyCache
+     */
+    private String getBasetokenId() throws WSSecurityException {
+        SecurityTokenReference securityTokenReference = getSecurityTokenReference();
+        if (securityTokenReference == null) {
+            return null;
+        }
+        String referenceURI = null;
+        if (securityTokenReference.getReference() != null) {
+            referenceURI = securityTokenReference.getReference().getURI();
+        }
+        return DerivedKeyUtils.getSessionId(referenceURI, securityTokenReference.getKeyIdentifierValue());
+    }
+
     /**
      * Set the derivation algorithm of this derived key token.
      *
@@ -566,9 +574,23 @@ public class DerivedKeyToken {
      * @throws WSSecurityException
      */
     public byte[] deriveKey(int length, byte[] secret) throws WSSecurityException {
+        return deriveKey(length, secret, null);
+    }
+
+    /**
+     * Derive a key from this DerivedKeyToken instance. The key is taken from the given DerivedKeyCache,
+     * if it was derived for the same token and input before.
+     * @param length
+     * @param secret
+     * @param keyCache The DerivedKeyCache (can be null)
+     * @throws WSSecurityException
+     */
+    public byte[] deriveKey(int length, byte[] secret, DerivedKeyCache keyCache) throws WSSecurityException {
         try {
             byte[] nonce = org.apache.xml.security.utils.XMLUtils.decode(getNonce());
-            return DerivedKeyUtils.deriveKey(getAlgorithm(), getLabel(), length, secret, nonce, getOffset());
+            String sessionId = keyCache != null ? getBasetokenId() : null;
+            return DerivedKeyUtils.deriveKey(getAlgorithm(), getLabel(), length, secret, nonce, getOffset(),
+                                             sessionId, keyCache);
         } catch (Exception e) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, e
@@ -166,7 +166,9 @@ public class EncryptedDataProcessor implements Processor {
 
         WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
                 elem.getOwnerDocument(), encryptedDataId, elem, key, symEncAlgo,
-                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer(),
+                data.getInstrumentation());
+        data.getWsDocInfo().addDecryptedElement(dataRef.getProtectedElement());
 
         WSSecurityEngineResult result =
                 new WSSecurityEngineResult(WSConstants.ENCR, Collections.singletonList(dataRef));
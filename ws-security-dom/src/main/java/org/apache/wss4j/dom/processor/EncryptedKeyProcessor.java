@@ -45,10 +45,12 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -148,7 +150,9 @@ public class EncryptedKeyProcessor implements Processor {
         STRParser.REFERENCE_TYPE referenceType = null;
         PublicKey publicKey = null;
         boolean symmetricKeyWrap = isSymmetricKeyWrap(encryptedKeyTransportMethod);
+        Instrumentation instrumentation = data.getInstrumentation();
         if (!symmetricKeyWrap) {
+            long start = instrumentation.start();
             if (SecurityTokenReference.SECURITY_TOKEN_REFERENCE.equals(keyInfoChildElement.getLocalName())
                 && WSConstants.WSSE_NS.equals(keyInfoChildElement.getNamespaceURI())) {
                 STRParserParameters parameters = new STRParserParameters();
@@ -191,6 +195,7 @@ public class EncryptedKeyProcessor implements Processor {
             if (certs != null && certs.length > 0) {
                 publicKey = certs[0].getPublicKey();
             }
+            instrumentation.stop(Instrumentation.ENCRYPTED_KEY_KEY_RESOLUTION, start);
         }
 
         // Check for compliance against the defined AlgorithmSuite
@@ -222,10 +227,23 @@ public class EncryptedKeyProcessor implements Processor {
         if (symmetricKeyWrap) {
             decryptedBytes = getSymmetricDecryptedBytes(data, data.getWsDocInfo(), keyInfoChildElement, refList);
         } else {
-            PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
-            decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
-                                                         encryptedEphemeralKey, refList,
-                                                         elem, privateKey);
+            // See if the same EncryptedKey has been decrypted before. The checks above still apply to it.
+            EncryptedKeyCache encryptedKeyCache = data.getEncryptedKeyCache();  //NOPMD
+            String encryptedKeySHA1 = null;
+            if (encryptedKeyCache != null) {
+                encryptedKeySHA1 = EncryptedKeyCache.getIdentifier(encryptedEphemeralKey);
+                decryptedBytes = encryptedKeyCache.get(encryptedKeySHA1);
+            }
+            if (decryptedBytes == null) {
+                long start = instrumentation.start();
+                PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
+                decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
+                                                             encryptedEphemeralKey, encryptedKeySHA1, refList,
+                                                             elem, privateKey);
+                instrumentation.stop(Instrumentation.ENCRYPTED_KEY_DECRYPTION, start);
+            } else {
+                LOG.debug("Using the cached secret key of EncryptedKey {}", encryptedKeySHA1);
+            }
         }
 
         List<WSDataRef> dataRefs = decryptDataRefs(refList, data.getWsDocInfo(), decryptedBytes, data);
@@ -292,6 +310,7 @@ public class EncryptedKeyProcessor implements Processor {
         WSDocInfo wsDocInfo,
         String encryptedKeyTransportMethod,
         byte[] encryptedEphemeralKey,
+        String encryptedKeySHA1,
         Element refList,
         Element encryptedKeyElement,
         PrivateKey privateKey
@@ -347,14 +366,21 @@ public class EncryptedKeyProcessor implements Processor {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         }
 
+        byte[] decryptedBytes;
         try {
             String keyAlgorithm = JCEMapper.translateURItoJCEID(encryptedKeyTransportMethod);
-            return cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            decryptedBytes = cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
             return getRandomKey(refList, wsDocInfo);
         }
+
+        // Only a successfully decrypted key is cached, never the random key from above
+        if (encryptedKeySHA1 != null) {
+            data.getEncryptedKeyCache().add(encryptedKeySHA1, decryptedBytes);
+        }
+        return decryptedBytes;
     }
 
     private static boolean isSymmetricKeyWrap(String transportAlgorithm) {
@@ -594,10 +620,12 @@ public class EncryptedKeyProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
-        return EncryptionUtils.decryptEncryptedData(
+        WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-            data.getEncryptionSerializer()
+            data.getEncryptionSerializer(), data.getInstrumentation()
         );
+        docInfo.addDecryptedElement(dataRef.getProtectedElement());
+        return dataRef;
     }
 
     /**
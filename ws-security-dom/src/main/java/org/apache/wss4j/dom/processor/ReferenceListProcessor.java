@@ -189,11 +189,13 @@ public class ReferenceListProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
-        return
+        WSDataRef dataRef =
             EncryptionUtils.decryptEncryptedData(
                 doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-                data.getEncryptionSerializer()
+                data.getEncryptionSerializer(), data.getInstrumentation()
             );
+        data.getWsDocInfo().addDecryptedElement(dataRef.getProtectedElement());
+        return dataRef;
     }
 
     /**
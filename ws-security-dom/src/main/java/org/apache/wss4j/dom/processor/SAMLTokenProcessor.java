@@ -35,6 +35,7 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.cache.SamlTrustContext;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -184,10 +185,22 @@ public class SAMLTokenProcessor implements Processor {
                     new Object[] {"cannot get certificate or key"}
                 );
             }
-            SAMLKeyInfo samlKeyInfo =
-                SAMLUtil.getCredentialFromKeyInfo(
-                    keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
-                );
+            // The signature does not need to be verified again if the Assertion was verified (and its
+            // signing credential trusted) before with the same trust configuration
+            SamlTrustContext trustContext =
+                new SamlTrustContext(data.getSigVerCrypto(), data.getSubjectCertConstraints(),
+                                     data.getIssuerDNPatterns(), data.isRevocationEnabled());
+            boolean verifiedFromCache =
+                samlAssertion.verifySignatureFromCache(data.getVerifiedSamlAssertionCache(), trustContext);
+            SAMLKeyInfo samlKeyInfo = null;
+            if (verifiedFromCache) {
+                samlKeyInfo = samlAssertion.getSignatureKeyInfo();
+            } else {
+                samlKeyInfo =
+                    SAMLUtil.getCredentialFromKeyInfo(
+                        keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
+                    );
+            }
 
             PublicKey key = null;
             if (samlKeyInfo.getCerts() != null && samlKeyInfo.getCerts()[0] != null) {
@@ -234,7 +247,9 @@ public class SAMLTokenProcessor implements Processor {
                 }
             }
 
-            samlAssertion.verifySignature(samlKeyInfo);
+            if (!verifiedFromCache) {
+                samlAssertion.verifySignature(samlKeyInfo);
+            }
 
             return xmlSignature;
         }
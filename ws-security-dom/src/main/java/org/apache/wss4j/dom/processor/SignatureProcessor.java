@@ -20,6 +20,7 @@
 package org.apache.wss4j.dom.processor;
 
 import java.security.Key;
+import java.security.MessageDigest;
 import java.security.NoSuchProviderException;
 import java.security.Principal;
 import java.security.Provider;
@@ -30,6 +31,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.xml.crypto.Data;
 import javax.xml.crypto.NodeSetData;
@@ -54,6 +57,7 @@ import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
 import org.apache.wss4j.common.principal.PublicKeyPrincipalImpl;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -77,6 +81,7 @@ import org.apache.wss4j.dom.transform.AttachmentContentSignatureTransform;
 import org.apache.wss4j.dom.transform.STRTransform;
 import org.apache.wss4j.dom.transform.STRTransformUtil;
 import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.util.X509Util;
 import org.apache.wss4j.dom.validate.Credential;
@@ -133,9 +138,12 @@ public class SignatureProcessor implements Processor {
 
         Credential credential = new Credential();
         Validator validator = data.getValidator(WSConstants.SIGNATURE);
+        Instrumentation instrumentation = data.getInstrumentation();
+        long start = instrumentation.start();
         if (keyInfoElement == null) {
             certs = getDefaultCerts(data.getSigVerCrypto());
             principal = certs[0].getSubjectX500Principal();
+            instrumentation.stop(Instrumentation.SIGNATURE_KEY_RESOLUTION, start);
         } else {
             int result = 0;
             Node node = keyInfoElement.getFirstChild();
@@ -156,11 +164,14 @@ public class SignatureProcessor implements Processor {
                 data.getBSPEnforcer().handleBSPRule(BSPRule.R5417);
 
                 publicKey = X509Util.parseKeyValue(keyInfoElement, signatureFactory);
+                instrumentation.stop(Instrumentation.SIGNATURE_KEY_RESOLUTION, start);
                 if (validator != null) {
                     credential.setPublicKey(publicKey);
                     principal = new PublicKeyPrincipalImpl(publicKey);
                     credential.setPrincipal(principal);
+                    start = instrumentation.start();
                     credential = validator.validate(credential, data);
+                    instrumentation.stop(Instrumentation.SIGNATURE_TRUST_VALIDATION, start);
                 }
             } else {
                 STRParserParameters parameters = new STRParserParameters();
@@ -177,6 +188,7 @@ public class SignatureProcessor implements Processor {
                 publicKey = parserResult.getPublicKey();
                 secretKey = parserResult.getSecretKey();
                 referenceType = parserResult.getCertificatesReferenceType();
+                instrumentation.stop(Instrumentation.SIGNATURE_KEY_RESOLUTION, start);
 
                 boolean trusted = parserResult.isTrustedCredential();
                 if (trusted) {
@@ -186,7 +198,9 @@ public class SignatureProcessor implements Processor {
                     credential.setPublicKey(publicKey);
                     credential.setCertificates(certs);
                     credential.setPrincipal(principal);
+                    start = instrumentation.start();
                     credential = validator.validate(credential, data);
+                    instrumentation.stop(Instrumentation.SIGNATURE_TRUST_VALIDATION, start);
                 }
             }
         }
@@ -361,8 +375,11 @@ public class SignatureProcessor implements Processor {
         context.setProperty(AttachmentContentSignatureTransform.ATTACHMENT_CALLBACKHANDLER,
                             data.getAttachmentCallbackHandler());
 
+        Instrumentation instrumentation = data.getInstrumentation();
         try {
+            long start = instrumentation.start();
             XMLSignature xmlSignature = signatureFactory.unmarshalXMLSignature(context);
+            instrumentation.stop(Instrumentation.SIGNATURE_UNMARSHAL, start);
             checkBSPCompliance(xmlSignature, data.getBSPEnforcer());
 
             // Check for compliance against the defined AlgorithmSuite
@@ -378,7 +395,21 @@ public class SignatureProcessor implements Processor {
 
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, data, wsDocInfo);
 
-            boolean signatureOk = xmlSignature.validate(context);
+            // Verify the SignatureValue over the SignedInfo first, as the XMLSignature does, and only
+            // then digest the References. The SignatureValue caches its validation status, so the
+            // XMLSignature only validates the References below.
+            start = instrumentation.start();
+            boolean signatureValueOk = xmlSignature.getSignatureValue().validate(context);
+            instrumentation.stop(Instrumentation.SIGNATURE_VERIFICATION, start);
+
+            start = instrumentation.start();
+            boolean signatureOk;
+            if (signatureValueOk && data.getSignatureExecutor() != null) {
+                signatureOk = validateReferences(xmlSignature, (DOMValidateContext)context, data.getSignatureExecutor());
+            } else {
+                signatureOk = xmlSignature.validate(context);
+            }
+            instrumentation.stop(Instrumentation.SIGNATURE_DIGEST, start);
             if (signatureOk) {
                 return xmlSignature;
             }
@@ -450,6 +481,59 @@ public class SignatureProcessor implements Processor {
         }
     }
 
+    /**
+     * Validate the References of a Signature, the SignatureValue of which is verified, and digest the
+     * same-document References with a single exclusive canonicalization Transform concurrently with
+     * the given Executor. The DOM is not thread-safe, even for reads, so the referenced Elements are
+     * canonicalized on the calling thread, and only the digests are computed by the Executor. The other
+     * References (e.g. with the STR or attachment Transforms) are validated one after another as
+     * before, and so are all the References if fewer than two qualify or the referenced Elements overlap.
+     * @return whether all the References are valid
+     */
+    private boolean validateReferences(
+        XMLSignature xmlSignature,
+        DOMValidateContext context,
+        Executor executor
+    ) throws Exception {
+        List<Reference> references = new ArrayList<>();
+        List<Element> elements = new ArrayList<>();
+        for (Object object : xmlSignature.getSignedInfo().getReferences()) {
+            Reference reference = (Reference)object;
+            if (!SignatureUtils.hasExclusiveCanonicalizationTransformOnly(reference)) {
+                continue;
+            }
+            Element element = context.getElementById(reference.getURI().substring(1));
+            if (element != null) {
+                references.add(reference);
+                elements.add(element);
+            }
+        }
+        if (references.size() < 2 || SignatureUtils.hasOverlappingElements(elements)) {
+            return xmlSignature.validate(context);
+        }
+
+        List<Callable<byte[]>> tasks = new ArrayList<>(references.size());
+        for (int i = 0; i < references.size(); i++) {
+            Reference reference = references.get(i);
+            byte[] canonicalizedOctets = SignatureUtils.canonicalize(elements.get(i), reference);
+            tasks.add(() -> SignatureUtils.digest(reference, canonicalizedOctets));
+        }
+        List<byte[]> digestValues =
+            SignatureUtils.runConcurrently(executor, tasks, WSSecurityException.ErrorCode.FAILED_CHECK);
+        for (int i = 0; i < references.size(); i++) {
+            if (!MessageDigest.isEqual(references.get(i).getDigestValue(), digestValues.get(i))) {
+                return false;
+            }
+        }
+
+        for (Object object : xmlSignature.getSignedInfo().getReferences()) {
+            if (!references.contains(object) && !((Reference)object).validate(context)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean isXopInclude(Element element) {
         Element elementChild =
             XMLUtils.getDirectChildElement(element, "Include", WSConstants.XOP_NS);
@@ -533,7 +617,10 @@ public class SignatureProcessor implements Processor {
                 boolean attachment = false;
                 if (se == null) {
                     Data dereferencedData = siRef.getDereferencedData();
-                    if (dereferencedData instanceof NodeSetData) {
+                    if (dereferencedData == null) {
+                        // The Reference was digested by validateReferences, without dereferencing it
+                        se = wsDocInfo.getCallbackLookup().getElement(uri, null, true);
+                    } else if (dereferencedData instanceof NodeSetData) {
                         NodeSetData data = (NodeSetData)dereferencedData;
                         java.util.Iterator<?> iter = data.iterator();
 
@@ -672,19 +759,13 @@ public class SignatureProcessor implements Processor {
         String identifier = timeStamp.getCreatedString() + "" + Arrays.hashCode(signatureValue)
             + "" + Arrays.hashCode(key.getEncoded());
 
-        if (replayCache.contains(identifier)) {
+        // Store the Timestamp/SignatureValue/Key combination in the cache, unless it is already there
+        if (!replayCache.addIfAbsent(identifier, timeStamp.getExpires())) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
                 new Object[] {"A replay attack has been detected"});
         }
-
-        // Store the Timestamp/SignatureValue/Key combination in the cache
-        if (timeStamp.getExpires() != null) {
-            replayCache.add(identifier, timeStamp.getExpires());
-        } else {
-            replayCache.add(identifier);
-        }
     }
 
     /**
@@ -71,7 +71,7 @@ public class UsernameTokenProcessor implements Processor {
                 String rawPassword =
                     UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), token.getName(),
                                                      token.getPassword(), token.getPasswordType());
-                secretKey = token.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+                secretKey = token.getDerivedKey(data.getBSPEnforcer(), rawPassword, data.getUsernameTokenKeyCache());
             }
         }
         WSSecurityEngineResult result = new WSSecurityEngineResult(action, token);
@@ -147,23 +147,21 @@ public class UsernameTokenProcessor implements Processor {
         // Test for replay attacks
         ReplayCache replayCache = data.getNonceReplayCache();   //NOPMD
         if (replayCache != null && ut.getNonce() != null) {
-            if (replayCache.contains(ut.getNonce())) {
+            // If no Created, then just cache for the default time
+            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
+            // older token will just get rejected anyway
+            Instant created = ut.getCreatedDate();
+            Instant expiry = null;
+            if (created != null && utTTL > 0) {
+                expiry = Instant.now().plusSeconds(utTTL);
+            }
+            if (!replayCache.addIfAbsent(ut.getNonce(), expiry)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badUsernameToken",
                     new Object[] {"A replay attack has been detected"}
                 );
             }
-
-            // If no Created, then just cache for the default time
-            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
-            // older token will just get rejected anyway
-            Instant created = ut.getCreatedDate();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(ut.getNonce());
-            } else {
-                replayCache.add(ut.getNonce(), Instant.now().plusSeconds(utTTL));
-            }
         }
 
         Credential credential = new Credential();
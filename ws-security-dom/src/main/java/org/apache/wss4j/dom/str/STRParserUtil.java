@@ -253,7 +253,8 @@ public final class STRParserUtil {
     }
 
     /**
-     * Get the Secret Key from a CallbackHandler
+     * Get the Secret Key from a CallbackHandler. The Secret Key of an EncryptedKeySHA1 reference
+     * is taken from the EncryptedKeyCache of the RequestData first, if it is configured.
      * @param id The id of the element
      * @param type The type of the element (may be null)
      * @param identifier The WSPasswordCallback usage identifier
@@ -268,6 +269,13 @@ public final class STRParserUtil {
         RequestData data
     ) throws WSSecurityException {
         String uri = XMLUtils.getIDFromReference(id);
+        if (SecurityTokenReference.ENC_KEY_SHA1_URI.equals(type) && data.getEncryptedKeyCache() != null) {
+            byte[] secretKey = data.getEncryptedKeyCache().get(uri);
+            if (secretKey != null) {
+                return secretKey;
+            }
+        }
+
         WSPasswordCallback pwcb =
             new WSPasswordCallback(uri, null, type, identifier);
         try {
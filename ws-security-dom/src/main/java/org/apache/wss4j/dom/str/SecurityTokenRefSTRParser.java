@@ -130,7 +130,7 @@ public class SecurityTokenRefSTRParser implements STRParser {
                 keyLength = parameters.getDerivationKeyLength();
             }
             byte[] secret = (byte[])result.get(WSSecurityEngineResult.TAG_SECRET);
-            parserResult.setSecretKey(dkt.deriveKey(keyLength, secret));
+            parserResult.setSecretKey(dkt.deriveKey(keyLength, secret, data.getDerivedKeyCache()));
             parserResult.setPrincipal(dkt.createPrincipal());
         } else if (action != null
             && (WSConstants.ST_UNSIGNED == action.intValue() || WSConstants.ST_SIGNED == action.intValue())) {
@@ -152,7 +152,8 @@ public class SecurityTokenRefSTRParser implements STRParser {
             String rawPassword =
                 UsernameTokenUtil.getRawPassword(data.getCallbackHandler(), usernameToken.getName(),
                                                  usernameToken.getPassword(), usernameToken.getPasswordType());
-            byte[] secretKey = usernameToken.getDerivedKey(data.getBSPEnforcer(), rawPassword);
+            byte[] secretKey =
+                usernameToken.getDerivedKey(data.getBSPEnforcer(), rawPassword, data.getUsernameTokenKeyCache());
             parserResult.setSecretKey(secretKey);
         }
 
@@ -294,7 +294,7 @@ public class SignatureSTRParser implements STRParser {
             Principal principal = dkt.createPrincipal();
             ((WSDerivedKeyTokenPrincipal)principal).setSecret(secret);
             parserResult.setPrincipal(principal);
-            parserResult.setSecretKey(dkt.deriveKey(keyLength, secret));
+            parserResult.setSecretKey(dkt.deriveKey(keyLength, secret, data.getDerivedKeyCache()));
         } else if (action != null
             && (WSConstants.ST_UNSIGNED == action.intValue() || WSConstants.ST_SIGNED == action.intValue())) {
             SamlAssertionWrapper samlAssertion =
@@ -23,6 +23,8 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.NoOpInstrumentation;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
@@ -126,6 +128,7 @@ public final class EncryptionUtils {
      * @param symmetricKey The SecretKey with which to decrypt EncryptedData
      * @param symEncAlgo The symmetric encryption algorithm to use
      * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer to use to parse the decrypted data
      * @throws WSSecurityException
      */
     public static WSDataRef
@@ -138,6 +141,80 @@ public final class EncryptionUtils {
         CallbackHandler attachmentCallbackHandler,
         Serializer encryptionSerializer
     ) throws WSSecurityException {
+        return decryptEncryptedData(doc, dataRefURI, encData, symmetricKey, symEncAlgo,
+                                    attachmentCallbackHandler, encryptionSerializer, NoOpInstrumentation.INSTANCE);
+    }
+
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey, and record the decryption with the
+     * given Instrumentation.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer to use to parse the decrypted data
+     * @param instrumentation The Instrumentation with which to record the decryption
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer,
+        Instrumentation instrumentation
+    ) throws WSSecurityException {
+        long start = instrumentation.start();
+        long bytes = instrumentation.isEnabled() ? getDecodedCipherValueLength(encData) : 0L;
+        WSDataRef dataRef = decryptEncryptedDataElement(doc, dataRefURI, encData, symmetricKey, symEncAlgo,
+                                                        attachmentCallbackHandler, encryptionSerializer);
+        instrumentation.stop(Instrumentation.ENCRYPTED_DATA_DECRYPTION, start, bytes);
+        return dataRef;
+    }
+
+    /**
+     * Returns the number of bytes of the Base64 encoded CipherValue of the EncryptedData, without
+     * decoding (or copying) it, or 0 if the cipher data is referenced.
+     */
+    private static long getDecodedCipherValueLength(Element encData) {
+        Element cipherValue = getCipherValueFromEncryptedData(encData);
+        if (cipherValue == null) {
+            return 0L;
+        }
+        long characters = 0L;
+        long padding = 0L;
+        for (Node node = cipherValue.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+                String text = node.getNodeValue();
+                for (int i = 0; i < text.length(); i++) {
+                    char ch = text.charAt(i);
+                    if (ch == '=') {
+                        padding++;
+                        characters++;
+                    } else if (!Character.isWhitespace(ch)) {
+                        characters++;
+                    }
+                }
+            }
+        }
+        return characters / 4 * 3 - padding;
+    }
+
+    private static WSDataRef
+    decryptEncryptedDataElement(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer
+    ) throws WSSecurityException {
 
         // See if it is an attachment, and handle that differently
         String typeStr = encData.getAttributeNS(null, "Type");
@@ -19,16 +19,35 @@
 
 package org.apache.wss4j.dom.util;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.spec.ExcC14NParameterSpec;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -134,4 +153,109 @@ public final class SignatureUtils {
         return false;
     }
 
+    /**
+     * Returns whether an Element of the given Collection is contained in, or the same as, another
+     * Element of the Collection.
+     */
+    public static boolean hasOverlappingElements(Collection<Element> elements) {
+        Set<Node> elementSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Element element : elements) {
+            if (!elementSet.add(element)) {
+                return true;
+            }
+        }
+        for (Element element : elements) {
+            Node parent = element.getParentNode();
+            while (parent != null) {
+                if (elementSet.contains(parent)) {
+                    return true;
+                }
+                parent = parent.getParentNode();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the Reference is a same-document Reference with a single exclusive
+     * canonicalization Transform, the octets of which are computed by canonicalize.
+     */
+    public static boolean hasExclusiveCanonicalizationTransformOnly(Reference reference) {
+        String uri = reference.getURI();
+        return uri != null && uri.startsWith("#") && reference.getTransforms().size() == 1
+            && WSConstants.C14N_EXCL_OMIT_COMMENTS.equals(
+                ((Transform)reference.getTransforms().get(0)).getAlgorithm());
+    }
+
+    /**
+     * Canonicalize a referenced Element in the same way as the (exclusive canonicalization)
+     * Transform of the Reference would. This reads the DOM, so it must be called on the thread that
+     * processes the document: the DOM is not thread-safe, even for reads. Only the digest of the
+     * octets may be computed by another thread.
+     */
+    public static byte[] canonicalize(Element element, Reference reference) throws WSSecurityException {
+        Transform transform = (Transform)reference.getTransforms().get(0);
+        String inclusiveNamespaces = null;
+        if (transform.getParameterSpec() instanceof ExcC14NParameterSpec) {
+            @SuppressWarnings("unchecked")
+            List<String> prefixes = ((ExcC14NParameterSpec)transform.getParameterSpec()).getPrefixList();
+            if (!prefixes.isEmpty()) {
+                inclusiveNamespaces = String.join(" ", prefixes);
+            }
+        }
+
+        try (UnsyncByteArrayOutputStream outputStream = new UnsyncByteArrayOutputStream()) {
+            Canonicalizer canonicalizer = Canonicalizer.getInstance(WSConstants.C14N_EXCL_OMIT_COMMENTS);
+            canonicalizer.canonicalizeSubtree(element, inclusiveNamespaces, outputStream);
+            return outputStream.toByteArray();
+        } catch (XMLSecurityException | IOException ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+        }
+    }
+
+    /**
+     * Digest the (canonicalized) octets of a Reference with its DigestMethod.
+     */
+    public static byte[] digest(Reference reference, byte[] octets) throws NoSuchAlgorithmException {
+        String digestAlgorithm = JCEMapper.translateURItoJCEID(reference.getDigestMethod().getAlgorithm());
+        return MessageDigest.getInstance(digestAlgorithm).digest(octets);
+    }
+
+    /**
+     * Run the tasks on the Executor, and return their results in the same order. A task which
+     * is rejected by the Executor runs on the calling thread.
+     */
+    public static <T> List<T> runConcurrently(
+        Executor executor, List<Callable<T>> tasks, WSSecurityException.ErrorCode errorCode
+    ) throws WSSecurityException {
+        List<FutureTask<T>> futureTasks = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            FutureTask<T> futureTask = new FutureTask<>(task);
+            try {
+                executor.execute(futureTask);
+            } catch (RejectedExecutionException ex) {
+                futureTask.run();
+            }
+            futureTasks.add(futureTask);
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        for (FutureTask<T> futureTask : futureTasks) {
+            try {
+                results.add(futureTask.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new WSSecurityException(errorCode, ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof WSSecurityException) {
+                    throw (WSSecurityException)ex.getCause();
+                } else if (ex.getCause() instanceof Exception) {
+                    throw new WSSecurityException(errorCode, (Exception)ex.getCause());
+                }
+                throw new WSSecurityException(errorCode, ex);
+            }
+        }
+        return results;
+    }
+
 }
@@ -26,6 +26,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.common.util.XMLUtils;
@@ -40,6 +41,8 @@ import org.w3c.dom.Text;
 
 //import com.sun.xml.internal.messaging.saaj.soap.SOAPDocumentImpl;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -48,6 +51,7 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -64,6 +68,12 @@ public final class WSSecurityUtil {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSSecurityUtil.class);
 
+    /**
+     * The number of bytes of an attachment that are Base64 encoded at a time when it is inlined
+     * (a multiple of the 57 bytes of a MIME Base64 line)
+     */
+    private static final int INLINE_CHUNK_SIZE = 57 * 144;
+
     private static final ClassValue<Method> GET_DOM_ELEMENTS_METHODS = new ClassValue<Method>() {
         @Override
         protected Method computeValue(Class<?> type) {
@@ -631,10 +641,15 @@ public final class WSSecurityUtil {
         for (Element includeElement : includeElements) {
             String xopURI = includeElement.getAttributeNS(null, "href");
             if (xopURI != null) {
-                // Retrieve the attachment bytes
-                byte[] attachmentBytes =
-                    WSSecurityUtil.getBytesFromAttachment(xopURI, attachmentCallbackHandler, removeAttachments);
-                String encodedBytes = org.apache.xml.security.utils.XMLUtils.encodeToString(attachmentBytes);
+                // Encode the attachment content while it is read, rather than reading it into a byte array first
+                Attachment attachment =
+                    AttachmentUtils.getAttachment(xopURI, attachmentCallbackHandler, removeAttachments);
+                String encodedBytes;
+                try (InputStream inputStream = attachment.getSourceStream()) {
+                    encodedBytes = encodeAttachment(inputStream);
+                } catch (IOException e) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, e);
+                }
 
                 Node encodedChild =
                     includeElement.getOwnerDocument().createTextNode(encodedBytes);
@@ -643,6 +658,27 @@ public final class WSSecurityUtil {
         }
     }
 
+    /**
+     * Base64 encode the given stream in chunks of INLINE_CHUNK_SIZE bytes. The result is the same as that
+     * of XMLUtils.encodeToString for the whole content: the chunk size is a multiple of the 57 bytes that
+     * are encoded on a (MIME) line, so a chunk is joined to the previous one with a line break, if any.
+     */
+    private static String encodeAttachment(InputStream inputStream) throws IOException {
+        String lineBreak = org.apache.xml.security.utils.XMLUtils.ignoreLineBreaks() ? "" : "\r\n";
+        StringBuilder encoded = new StringBuilder();
+        byte[] buffer = new byte[INLINE_CHUNK_SIZE];
+        int read = inputStream.readNBytes(buffer, 0, buffer.length);
+        while (read > 0) {
+            if (encoded.length() > 0) {
+                encoded.append(lineBreak);
+            }
+            byte[] chunk = read == buffer.length ? buffer : Arrays.copyOf(buffer, read);
+            encoded.append(org.apache.xml.security.utils.XMLUtils.encodeToString(chunk));
+            read = inputStream.readNBytes(buffer, 0, buffer.length);
+        }
+        return encoded.toString();
+    }
+
     /**
      * Register the jakarta.xml.soap.Node with new Cloned Dom Node with java9
      * @param doc The SOAPDocumentImpl
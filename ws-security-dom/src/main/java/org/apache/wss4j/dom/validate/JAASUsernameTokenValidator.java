@@ -26,6 +26,7 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.LoginCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
@@ -42,6 +43,7 @@ public class JAASUsernameTokenValidator implements Validator {
         org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidator.class);
 
     private String contextName;
+    private LoginCache loginCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -51,6 +53,19 @@ public class JAASUsernameTokenValidator implements Validator {
         return contextName;
     }
 
+    /**
+     * Set a LoginCache, so that a successful login is reused for the following UsernameTokens with
+     * the same username and password, instead of logging in via JAAS again. The Nonce and Created
+     * values of the UsernameToken are still checked for each message.
+     */
+    public void setLoginCache(LoginCache loginCache) {
+        this.loginCache = loginCache;
+    }
+
+    public LoginCache getLoginCache() {
+        return loginCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null UsernameToken. A
      * CallbackHandler implementation is also required to be set.
@@ -97,19 +112,27 @@ public class JAASUsernameTokenValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        try {
-            CallbackHandler handler = getCallbackHandler(user, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            Subject subject = ctx.getSubject();
-            credential.setSubject(subject);
-
-        } catch (LoginException ex) {
-            LOG.info("Authentication failed", ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
-            );
+        Subject subject = null;
+        if (loginCache != null) {
+            subject = loginCache.get(getContextName(), user, password);
+        }
+        if (subject == null) {
+            try {
+                CallbackHandler handler = getCallbackHandler(user, password);
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+            } catch (LoginException ex) {
+                LOG.info("Authentication failed", ex);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
+                );
+            }
+            if (loginCache != null) {
+                loginCache.add(getContextName(), user, password, subject);
+            }
         }
+        credential.setSubject(subject);
 
         return credential;
 
@@ -32,12 +32,15 @@ import javax.security.auth.login.LoginException;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredential;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
+import org.ietf.jgss.GSSCredential;
 
 /**
  */
@@ -52,6 +55,7 @@ public class KerberosTokenValidator implements Validator {
     private KerberosTokenDecoder kerberosTokenDecoder;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private KerberosServiceCredentialCache serviceCredentialCache;
 
     /**
      * Get the JAAS Login context name to use.
@@ -121,6 +125,24 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
 
+    /**
+     * Get the cache of the credentials of the service, which is used to avoid a JAAS login for every
+     * received token.
+     * @return the cache of the credentials of the service
+     */
+    public KerberosServiceCredentialCache getServiceCredentialCache() {
+        return serviceCredentialCache;
+    }
+
+    /**
+     * Set the cache of the credentials of the service, which is used to avoid a JAAS login for every
+     * received token. It can be null (the default), in which case a login is done for every token.
+     * @param serviceCredentialCache the cache of the credentials of the service
+     */
+    public void setServiceCredentialCache(KerberosServiceCredentialCache serviceCredentialCache) {
+        this.serviceCredentialCache = serviceCredentialCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken.
      *
@@ -149,31 +171,20 @@ public class KerberosTokenValidator implements Validator {
             }
         }
 
-        // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler != null) {
-                loginContext = new LoginContext(getContextName(), callbackHandler);
-            } else if (data.getCallbackHandler() != null) {
-                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
-            } else {
-                loginContext = new LoginContext(getContextName());
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            LOG.debug(ex.getMessage(), ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex,
-                "kerberosLoginError",
-                new Object[] {ex.getMessage()}
-            );
-        }
-        LOG.debug("Successfully authenticated to the TGT");
-
         byte[] token = binarySecurity.getToken();
 
+        // Get a TGT from the KDC using JAAS, or reuse the cached login of the service
+        KerberosServiceCredential serviceCredential = null;
+        Subject subject = null;
+        if (serviceCredentialCache != null) {
+            CallbackHandler handler = callbackHandler != null ? callbackHandler : data.getCallbackHandler();
+            serviceCredential = serviceCredentialCache.getCredential(getContextName(), handler);
+            subject = serviceCredential.getSubject();
+        } else {
+            subject = login(data);
+        }
+
         // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
         String service = serviceName;
         if (service == null) {
             Set<Principal> principals = subject.getPrincipals();
@@ -187,9 +198,13 @@ public class KerberosTokenValidator implements Validator {
         }
 
         // Validate the ticket
+        GSSCredential acceptorCredential = null;
+        if (serviceCredential != null && !spnego) {
+            acceptorCredential = serviceCredential.getAcceptorCredential(service, isUsernameServiceNameForm());
+        }
         KerberosServiceExceptionAction action =
             new KerberosServiceExceptionAction(token, service,
-                                               isUsernameServiceNameForm(), spnego);
+                                               isUsernameServiceNameForm(), spnego, acceptorCredential);
         KerberosServiceContext krbServiceCtx = null;
         try {
             krbServiceCtx = Subject.doAs(subject, action);
@@ -204,6 +219,11 @@ public class KerberosTokenValidator implements Validator {
             }
         }
 
+        // Only an accepted token is recorded for the replay detection
+        if (serviceCredentialCache != null) {
+            serviceCredentialCache.checkReplay(token);
+        }
+
         credential.setPrincipal(krbServiceCtx.getPrincipal());
         credential.setDelegationCredential(krbServiceCtx.getDelegationCredential());
 
@@ -245,6 +265,29 @@ public class KerberosTokenValidator implements Validator {
         return credential;
     }
 
+    private Subject login(RequestData data) throws WSSecurityException {
+        LoginContext loginContext = null;
+        try {
+            if (callbackHandler != null) {
+                loginContext = new LoginContext(getContextName(), callbackHandler);
+            } else if (data.getCallbackHandler() != null) {
+                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
+            } else {
+                loginContext = new LoginContext(getContextName());
+            }
+            loginContext.login();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+        LOG.debug("Successfully authenticated to the TGT");
+        return loginContext.getSubject();
+    }
+
     /**
      * SPN can be configured to be in either <b>"hostbased"</b> or <b>"username"</b> form.<br/>
      *     - <b>"hostbased"</b> - specifies that the service principal name should be interpreted as a "host-based" name as specified in GSS API Rfc, section "4.1: Host-Based Service Name Form" - The service name, as it is specified in LDAP/AD, as it is listed in the KDC.<br/>
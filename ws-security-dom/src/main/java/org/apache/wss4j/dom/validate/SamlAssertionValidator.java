@@ -23,6 +23,8 @@ import java.time.Instant;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlTrustContext;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
@@ -113,12 +115,23 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
         // Check OneTimeUse Condition
         checkOneTimeUse(samlAssertion, data);
 
-        // Validate the assertion against schemas/profiles
-        validateAssertion(samlAssertion);
-
-        // Verify trust on the signature
-        if (samlAssertion.isSigned()) {
-            verifySignedAssertion(samlAssertion, data);
+        // The profile and trust checks were done before if the signature was verified from the cache
+        if (!samlAssertion.isSignatureVerifiedFromCache()) {
+            // Validate the assertion against schemas/profiles
+            validateAssertion(samlAssertion);
+
+            // Verify trust on the signature
+            if (samlAssertion.isSigned()) {
+                verifySignedAssertion(samlAssertion, data);
+
+                VerifiedSamlAssertionCache verifiedSamlAssertionCache = data.getVerifiedSamlAssertionCache(); //NOPMD
+                if (verifiedSamlAssertionCache != null) {
+                    SamlTrustContext trustContext =
+                        new SamlTrustContext(data.getSigVerCrypto(), data.getSubjectCertConstraints(),
+                                             data.getIssuerDNPatterns(), data.isRevocationEnabled());
+                    verifiedSamlAssertionCache.add(samlAssertion, samlAssertion.getSignatureKeyInfo(), trustContext);
+                }
+            }
         }
         return credential;
     }
@@ -253,21 +266,13 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();  //NOPMD
-            if (replayCache.contains(identifier)) {
+            Instant expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            if (!replayCache.addIfAbsent(identifier, expires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            Instant expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                replayCache.add(identifier, expires);
-            } else {
-                replayCache.add(identifier);
-            }
-
-            replayCache.add(identifier);
         }
     }
 
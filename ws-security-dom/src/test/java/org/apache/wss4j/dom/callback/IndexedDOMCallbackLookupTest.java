@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some tests for the IndexedDOMCallbackLookup, making sure that it returns the same
+ * Elements as the DOMCallbackLookup, including when the document is modified.
+ */
+public class IndexedDOMCallbackLookupTest {
+
+    private static final String SOAP_MSG =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+        + "xmlns:wsu=\"" + WSConstants.WSU_NS + "\">"
+        + "<SOAP-ENV:Header>"
+        + "<header1 wsu:Id=\"header-1\" xmlns=\"urn:test\"/>"
+        + "<header2 Id=\"header-2\" xmlns=\"urn:test\"/>"
+        + "<saml2:Assertion xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_saml-1\"/>"
+        + "<dup wsu:Id=\"dup-1\" xmlns=\"urn:test\"/>"
+        + "<dup wsu:Id=\"dup-1\" xmlns=\"urn:test\"/>"
+        + "</SOAP-ENV:Header>"
+        + "<SOAP-ENV:Body wsu:Id=\"body-1\">"
+        + "<add xmlns=\"http://ws.apache.org/counter/counter_port_type\">"
+        + "<value xmlns=\"\">15</value>" + "</add>"
+        + "</SOAP-ENV:Body>"
+        + "</SOAP-ENV:Envelope>";
+
+    @Test
+    public void testSameResultsAsDOMCallbackLookup() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        CallbackLookup domLookup = new DOMCallbackLookup(doc);
+        CallbackLookup indexedLookup = new IndexedDOMCallbackLookup(doc);
+
+        String[] ids = {"#header-1", "header-2", "#_saml-1", "#body-1", "#dup-1", "#unknown"};
+        for (String id : ids) {
+            assertEquals(domLookup.getElement(id, null, true), indexedLookup.getElement(id, null, true));
+            assertEquals(domLookup.getElement(id, null, false), indexedLookup.getElement(id, null, false));
+        }
+
+        assertNotNull(indexedLookup.getElement("#header-1", null, true));
+        assertNotNull(indexedLookup.getElement("#_saml-1", WSConstants.WSS_SAML2_KI_VALUE_TYPE, true));
+        // SAML Ids are not matched if the ValueType refers to something else
+        assertNull(indexedLookup.getElement("#_saml-1", WSConstants.WSS_ENC_KEY_VALUE_TYPE, true));
+        // Duplicate Ids are rejected
+        assertNull(indexedLookup.getElement("#dup-1", null, true));
+    }
+
+    @Test
+    public void testInsertedDuplicate() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        IndexedDOMCallbackLookup indexedLookup = new IndexedDOMCallbackLookup(doc);
+
+        Element header = indexedLookup.getElement("#header-1", null, true);
+        assertNotNull(header);
+
+        // Simulate decrypting an Element with the same Id into the SOAP Body
+        Element decrypted = doc.createElementNS("urn:test", "decrypted");
+        Element child = doc.createElementNS("urn:test", "child");
+        child.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", "header-1");
+        decrypted.appendChild(child);
+        indexedLookup.getSOAPBody().appendChild(decrypted);
+        indexedLookup.updateIndex(decrypted);
+
+        assertNull(indexedLookup.getElement("#header-1", null, true));
+        assertEquals(XMLUtils.findElementById(doc.getDocumentElement(), "header-1", false),
+                     indexedLookup.getElement("#header-1", null, false));
+    }
+
+    @Test
+    public void testRemovedElement() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        CallbackLookup indexedLookup = new IndexedDOMCallbackLookup(doc);
+
+        Element header = indexedLookup.getElement("#header-2", null, true);
+        assertNotNull(header);
+
+        // Simulate replacing the Element (e.g. by decryption) without updating the index
+        Element replacement = doc.createElementNS("urn:test", "replacement");
+        replacement.setAttributeNS(null, "Id", "header-2");
+        header.getParentNode().replaceChild(replacement, header);
+
+        assertEquals(replacement, indexedLookup.getElement("#header-2", null, true));
+    }
+
+    @Test
+    public void testRepeatedMisses() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        IndexedDOMCallbackLookup indexedLookup = new IndexedDOMCallbackLookup(doc);
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(indexedLookup.getElement("#unknown-" + i, null, true));
+        }
+        // The initial build, plus a single rebuild for the first miss
+        assertEquals(2, indexedLookup.getIndexBuildCount());
+
+        // Elements that are reported are still found
+        Element decrypted = doc.createElementNS("urn:test", "decrypted");
+        decrypted.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", "decrypted-1");
+        indexedLookup.getSOAPBody().appendChild(decrypted);
+        indexedLookup.updateIndex(decrypted);
+        assertEquals(decrypted, indexedLookup.getElement("#decrypted-1", null, true));
+        assertEquals(2, indexedLookup.getIndexBuildCount());
+    }
+
+}
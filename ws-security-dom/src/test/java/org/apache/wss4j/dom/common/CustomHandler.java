@@ -23,6 +23,7 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.HandlerAction;
 import org.apache.wss4j.dom.handler.WSHandler;
+import org.apache.wss4j.dom.handler.WSHandlerConfiguration;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.w3c.dom.Document;
@@ -93,6 +94,20 @@ public class CustomHandler extends WSHandler {
         );
     }
 
+    public void send(
+        Document doc,
+        RequestData reqData,
+        WSHandlerConfiguration configuration,
+        boolean request
+    ) throws WSSecurityException {
+        doSenderAction(
+            doc,
+            reqData,
+            configuration,
+            request
+        );
+    }
+
     public void receive(
         List<Integer> actions,
         RequestData reqData
@@ -103,6 +118,16 @@ public class CustomHandler extends WSHandler {
         );
     }
 
+    public void receive(
+        WSHandlerConfiguration configuration,
+        RequestData reqData
+    ) throws WSSecurityException {
+        doReceiverAction(
+            configuration,
+            reqData
+        );
+    }
+
     public void signatureConfirmation(
         RequestData requestData,
         WSHandlerResult handlerResults
@@ -43,6 +43,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -106,6 +109,34 @@ public class CustomActionProcessorTest {
         assertTrue(found, "Unable to find result from CustomProcessor");
     }
 
+    /**
+     * Test that the default processors are shared, and that custom processor classes are
+     * instantiated for every lookup
+     */
+    @Test
+    public void
+    testProcessorLookup() throws Exception {
+        WSSConfig cfg = WSSConfig.getNewInstance();
+        WSSConfig cfg2 = WSSConfig.getNewInstance();
+
+        assertSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg2.getProcessor(WSConstants.SIGNATURE));
+        assertSame(cfg.getProcessor(WSConstants.SIGNATURE),
+                   cfg.getProcessor(WSConstants.SIG_NS, WSConstants.SIG_LN));
+        assertSame(cfg.getValidator(WSConstants.TIMESTAMP), cfg2.getValidator(WSConstants.TIMESTAMP));
+        // The SamlAssertionValidator can be configured, and so is not shared
+        assertNotSame(cfg.getValidator(WSConstants.SAML2_TOKEN), cfg2.getValidator(WSConstants.SAML2_TOKEN));
+        assertSame(cfg.getAction(WSConstants.SIGN), cfg2.getAction(WSConstants.SIGN));
+        assertNull(cfg.getProcessor("urn:unknown", WSConstants.SIG_LN));
+
+        cfg.setProcessor(WSConstants.SIGNATURE, CustomProcessor.class);
+        assertTrue(cfg.getProcessor(WSConstants.SIG_NS, WSConstants.SIG_LN) instanceof CustomProcessor);
+        assertNotSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+        // The other WSSConfig instance is not affected
+        assertSame(cfg2.getProcessor(WSConstants.SIGNATURE),
+                   cfg2.getProcessor(WSConstants.SIG_NS, WSConstants.SIG_LN));
+        assertTrue(!(cfg2.getProcessor(WSConstants.SIGNATURE) instanceof CustomProcessor));
+    }
+
     /**
      * Test to see that a custom processor (object) configured through a
      * WSSConfig instance is called
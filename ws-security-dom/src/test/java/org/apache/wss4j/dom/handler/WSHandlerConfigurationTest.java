@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.AlgorithmSuite;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Some tests for sending and receiving messages with a precompiled WSHandlerConfiguration.
+ */
+public class WSHandlerConfigurationTest {
+
+    private static final String SOAP12_MSG =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<s:Envelope xmlns:s=\"http://www.w3.org/2003/05/soap-envelope\">"
+        + "<s:Body>"
+        + "<add xmlns=\"http://ws.apache.org/counter/counter_port_type\">"
+        + "<value xmlns=\"\">15</value>"
+        + "</add>"
+        + "</s:Body>"
+        + "</s:Envelope>";
+
+    public WSHandlerConfigurationTest() throws Exception {
+        WSSConfig.init();
+    }
+
+    @Test
+    public void testSignatureAndEncryption() throws Exception {
+        CustomHandler handler = new CustomHandler();
+
+        Map<String, Object> config = new TreeMap<>();
+        config.put(WSHandlerConstants.SIG_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.ENC_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+        config.put(WSHandlerConstants.PW_CALLBACK_CLASS, KeystoreCallbackHandler.class.getName());
+        config.put(WSHandlerConstants.SIGNATURE_PARTS, "Body");
+        List<HandlerAction> actions = new ArrayList<>();
+        actions.add(new HandlerAction(WSConstants.SIGN));
+        actions.add(new HandlerAction(WSConstants.ENCR));
+        WSHandlerConfiguration senderConfiguration = handler.newSenderConfiguration(actions, config);
+
+        config = new TreeMap<>();
+        config.put(WSHandlerConstants.SIG_VER_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.DEC_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.PW_CALLBACK_REF, new KeystoreCallbackHandler());
+        WSHandlerConfiguration receiverConfiguration =
+            handler.newReceiverConfiguration(Arrays.asList(WSConstants.SIGN, WSConstants.ENCR), config);
+
+        CallbackHandler callbackHandler = null;
+        for (String message : Arrays.asList(SOAPUtil.SAMPLE_SOAP_MSG, SOAP12_MSG, SOAPUtil.SAMPLE_SOAP_MSG)) {
+            Document doc = SOAPUtil.toSOAPPart(message);
+            String envelopeURI = WSSecurityUtil.getSOAPConstants(doc.getDocumentElement()).getEnvelopeURI();
+
+            // The user is only known for the message
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(new TreeMap<String, Object>());
+            reqData.setUsername("wss40");
+            handler.send(doc, reqData, senderConfiguration, true);
+
+            // The CallbackHandler is only loaded once, and the parts are not accumulated
+            if (callbackHandler == null) {
+                callbackHandler = reqData.getCallbackHandler();
+            }
+            assertSame(callbackHandler, reqData.getCallbackHandler());
+            assertEquals("wss40", reqData.getSignatureToken().getUser());
+            assertEquals("wss40", reqData.getEncryptionToken().getUser());
+            List<WSEncryptionPart> parts = reqData.getSignatureToken().getParts();
+            assertEquals(1, parts.size());
+            assertEquals(envelopeURI, parts.get(0).getNamespace());
+
+            RequestData receiverData = new RequestData();
+            receiverData.setMsgContext(new TreeMap<String, Object>());
+            handler.receive(receiverConfiguration, receiverData);
+            WSHandlerResult results = new WSSecurityEngine().processSecurityHeader(doc, receiverData);
+
+            assertFalse(results.getActionResults().get(WSConstants.SIGN).isEmpty());
+            assertFalse(results.getActionResults().get(WSConstants.ENCR).isEmpty());
+        }
+    }
+
+    @Test
+    public void testAlgorithmSuite() throws Exception {
+        CustomHandler handler = new CustomHandler();
+
+        Map<String, Object> config = new TreeMap<>();
+        config.put(WSHandlerConstants.SIG_VER_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.SIG_ALGO, WSConstants.RSA_SHA1);
+        WSHandlerConfiguration receiverConfiguration =
+            handler.newReceiverConfiguration(Collections.singletonList(WSConstants.SIGN), config);
+
+        // The AlgorithmSuite is decoded once, and is not decoded again for the message
+        AlgorithmSuite algorithmSuite = null;
+        for (int i = 0; i < 2; i++) {
+            RequestData receiverData = new RequestData();
+            receiverData.setMsgContext(new TreeMap<String, Object>());
+            handler.receive(receiverConfiguration, receiverData);
+            handler.decodeAlgorithmSuite(receiverData);
+
+            assertNotNull(receiverData.getAlgorithmSuite());
+            assertTrue(receiverData.getAlgorithmSuite().getSignatureMethods().contains(WSConstants.RSA_SHA1));
+            if (algorithmSuite == null) {
+                algorithmSuite = receiverData.getAlgorithmSuite();
+            }
+            assertSame(algorithmSuite, receiverData.getAlgorithmSuite());
+            assertSame(receiverConfiguration.getWssConfig(), receiverData.getWssConfig());
+        }
+
+        // An AlgorithmSuite of the message is kept
+        RequestData receiverData = new RequestData();
+        AlgorithmSuite messageAlgorithmSuite = new AlgorithmSuite();
+        receiverData.setAlgorithmSuite(messageAlgorithmSuite);
+        handler.receive(receiverConfiguration, receiverData);
+        assertSame(messageAlgorithmSuite, receiverData.getAlgorithmSuite());
+    }
+
+    @Test
+    public void testUseReqSigCert() throws Exception {
+        CustomHandler handler = new CustomHandler();
+
+        // Sign the request
+        RequestData reqData = new RequestData();
+        reqData.setUsername("wss40");
+        Map<String, Object> config = new TreeMap<>();
+        config.put(WSHandlerConstants.SIG_PROP_FILE, "wss40.properties");
+        config.put(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+        config.put(WSHandlerConstants.PW_CALLBACK_REF, new KeystoreCallbackHandler());
+        reqData.setMsgContext(config);
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        handler.send(doc, reqData, Collections.singletonList(new HandlerAction(WSConstants.SIGN)), true);
+
+        RequestData receiverData = new RequestData();
+        config = new TreeMap<>();
+        config.put(WSHandlerConstants.SIG_VER_PROP_FILE, "wss40.properties");
+        receiverData.setMsgContext(config);
+        handler.receive(Collections.singletonList(WSConstants.SIGN), receiverData);
+        WSHandlerResult results = new WSSecurityEngine().processSecurityHeader(doc, receiverData);
+
+        // The results of the request are only known for the message, and not when the
+        // configuration is compiled
+        config = new TreeMap<>();
+        config.put(WSHandlerConstants.ENCRYPTION_USER, WSHandlerConstants.USE_REQ_SIG_CERT);
+        WSHandlerConfiguration responseConfiguration =
+            handler.newSenderConfiguration(Collections.singletonList(new HandlerAction(WSConstants.ENCR)), config);
+
+        RequestData responseData = new RequestData();
+        config = new TreeMap<>();
+        config.put(WSHandlerConstants.RECV_RESULTS, Collections.singletonList(results));
+        responseData.setMsgContext(config);
+        handler.send(SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG), responseData, responseConfiguration, false);
+
+        X509Certificate certificate = responseData.getEncryptionToken().getCertificate();
+        assertNotNull(certificate);
+        WSSecurityEngineResult signatureResult = results.getActionResults().get(WSConstants.SIGN).get(0);
+        assertEquals(signatureResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE), certificate);
+    }
+
+}
@@ -23,6 +23,7 @@ import org.apache.wss4j.common.util.SOAPUtil;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WsuIdAllocator;
 import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
 
 import org.apache.wss4j.dom.engine.WSSConfig;
@@ -40,6 +41,7 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -47,6 +49,8 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -587,6 +591,111 @@ public class EncryptionPartsTest {
     }
 
 
+    /**
+     * Test encrypting a SOAP header, a SOAP Body element and the content of a SOAP header concurrently.
+     * The result must be the same as the serial encryption, apart from the random IVs.
+     */
+    @Test
+    public void testParallelEncryption() throws Exception {
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Document serialDoc = encryptParts(SOAPMSG_MULTIPLE, symmetricKey, null, false);
+            Document parallelDoc = encryptParts(SOAPMSG_MULTIPLE, symmetricKey, executor, false);
+
+            String outputString = XMLUtils.prettyDocumentToString(parallelDoc);
+            assertFalse(outputString.contains("asf1"));
+            assertFalse(outputString.contains("asf2"));
+            assertTrue(outputString.contains("wsse11:EncryptedHeader"));
+
+            assertEquals(withoutCipherValues(serialDoc), withoutCipherValues(parallelDoc));
+
+            verify(parallelDoc);
+
+            outputString = XMLUtils.prettyDocumentToString(parallelDoc);
+            assertTrue(outputString.contains("asf1"));
+            assertTrue(outputString.contains("asf2"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that overlapping parts are encrypted one after another, even when an executor is set.
+     */
+    @Test
+    public void testParallelEncryptionOfOverlappingParts() throws Exception {
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Document serialDoc = encryptParts(SOAPMSG_MULTIPLE, symmetricKey, null, true);
+            Document parallelDoc = encryptParts(SOAPMSG_MULTIPLE, symmetricKey, executor, true);
+
+            assertEquals(withoutCipherValues(serialDoc), withoutCipherValues(parallelDoc));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Document encryptParts(
+        String message, SecretKey symmetricKey, ExecutorService executor, boolean overlapping
+    ) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(message);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        encrypt.setIdAllocator(new CountingIdAllocator());
+        encrypt.setEncKeyId("EK-1");
+        encrypt.setEncryptionExecutor(executor);
+
+        encrypt.getParts().add(
+            new WSEncryptionPart("testMethod", "http://axis/service/security/test6/LogTestService8", "Element")
+        );
+        if (overlapping) {
+            encrypt.getParts().add(new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, "Content"));
+        } else {
+            encrypt.getParts().add(new WSEncryptionPart("foobar", "urn:foo.bar", "Header"));
+        }
+
+        Document encryptedDoc = encrypt.build(crypto, symmetricKey);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(XMLUtils.prettyDocumentToString(encryptedDoc));
+        }
+        return encryptedDoc;
+    }
+
+    private static String withoutCipherValues(Document doc) throws Exception {
+        Document copy = (Document)doc.cloneNode(true);
+        NodeList cipherValues = copy.getElementsByTagNameNS(WSConstants.ENC_NS, "CipherValue");
+        for (int i = 0; i < cipherValues.getLength(); i++) {
+            cipherValues.item(i).setTextContent("");
+        }
+        return XMLUtils.prettyDocumentToString(copy);
+    }
+
+    /**
+     * Allocates the same Ids for the same sequence of calls.
+     */
+    private static class CountingIdAllocator implements WsuIdAllocator {
+        private int count;
+
+        public String createId(String prefix, Object o) {
+            return (prefix == null ? "_" : prefix) + count++;
+        }
+
+        public String createSecureId(String prefix, Object o) {
+            return createId(prefix, o);
+        }
+    }
+
+
     /**
      * Verifies the soap envelope
      * <p/>
@@ -22,6 +22,7 @@ package org.apache.wss4j.dom.message;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -29,6 +30,9 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.MemoryEncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
@@ -59,6 +63,7 @@ import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -731,6 +736,156 @@ public class EncryptionTest {
         newEngine.processSecurityHeader(encryptedDoc, null, keystoreCallbackHandler, regexpCrypto);
     }
 
+    /**
+     * Test that the secret key of an EncryptedKey is only decrypted once with the private key,
+     * when the same EncryptedKey is received again and an EncryptedKeyCache is configured.
+     */
+    @Test
+    public void testEncryptedKeyCache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+        String encryptedMessage = XMLUtils.prettyDocumentToString(encryptedDoc);
+
+        AtomicInteger callbacks = new AtomicInteger();
+        try (EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            RequestData requestData = new RequestData();
+            requestData.setDecCrypto(crypto);
+            requestData.setCallbackHandler(getCountingCallbackHandler(callbacks));
+            requestData.setEncryptedKeyCache(encryptedKeyCache);
+
+            for (int i = 0; i < 2; i++) {
+                Document receivedDoc = SOAPUtil.toSOAPPart(encryptedMessage);
+                WSHandlerResult results = secEngine.processSecurityHeader(receivedDoc, requestData);
+                assertTrue(XMLUtils.prettyDocumentToString(receivedDoc).contains("counter_port_type"));
+
+                WSSecurityEngineResult actionResult =
+                    results.getActionResults().get(WSConstants.ENCR).get(0);
+                assertArrayEquals(symmetricKey.getEncoded(),
+                                  (byte[])actionResult.get(WSSecurityEngineResult.TAG_SECRET));
+            }
+
+            // The private key was only required for the first message
+            assertEquals(1, callbacks.get());
+            assertArrayEquals(symmetricKey.getEncoded(), encryptedKeyCache.get(builder.getEncryptedKeySHA1()));
+        }
+    }
+
+    /**
+     * Test that an EncryptedKeySHA1 reference to a previously received EncryptedKey is resolved
+     * from the EncryptedKeyCache, without asking the CallbackHandler for the secret key.
+     */
+    @Test
+    public void testEncryptedKeySHA1Cache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+        String encryptedKeySHA1 = builder.getEncryptedKeySHA1();
+
+        AtomicInteger callbacks = new AtomicInteger();
+        try (EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            RequestData requestData = new RequestData();
+            requestData.setDecCrypto(crypto);
+            requestData.setCallbackHandler(getCountingCallbackHandler(callbacks));
+            requestData.setEncryptedKeyCache(encryptedKeyCache);
+            secEngine.processSecurityHeader(encryptedDoc, requestData);
+            assertEquals(1, callbacks.get());
+
+            // Now send a message that refers to the EncryptedKey of the first message
+            doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            builder = new WSSecEncrypt(secHeader);
+            builder.setKeyIdentifierType(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER);
+            builder.setEncryptSymmKey(false);
+            builder.setCustomReferenceValue(encryptedKeySHA1);
+            encryptedDoc = builder.build(crypto, symmetricKey);
+
+            String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+            assertTrue(outputString.contains("#EncryptedKeySHA1"));
+
+            WSHandlerResult results = secEngine.processSecurityHeader(encryptedDoc, requestData);
+            assertTrue(XMLUtils.prettyDocumentToString(encryptedDoc).contains("counter_port_type"));
+            assertNotNull(results.getActionResults().get(WSConstants.ENCR));
+            assertEquals(1, callbacks.get());
+        }
+    }
+
+    /**
+     * Test that the session key of an EncryptedKey is reused for the following messages to the same
+     * recipient when an OutboundSessionKeyCache is configured, and that the recipient resolves the
+     * EncryptedKeySHA1 references of these messages from its EncryptedKeyCache.
+     */
+    @Test
+    public void testOutboundSessionKeyCache() throws Exception {
+        AtomicInteger callbacks = new AtomicInteger();
+        try (OutboundSessionKeyCache sessionKeyCache = new OutboundSessionKeyCache(60L, 2);
+            EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            RequestData inboundData = new RequestData();
+            inboundData.setDecCrypto(crypto);
+            inboundData.setCallbackHandler(getCountingCallbackHandler(callbacks));
+            inboundData.setEncryptedKeyCache(encryptedKeyCache);
+
+            for (int i = 0; i < 3; i++) {
+                final RequestData reqData = new RequestData();
+                reqData.setWssConfig(WSSConfig.getNewInstance());
+                reqData.setUsername("wss40");
+                reqData.setOutboundSessionKeyCache(sessionKeyCache);
+
+                java.util.Map<String, Object> config = new java.util.TreeMap<>();
+                config.put(WSHandlerConstants.ENC_PROP_FILE, "wss40.properties");
+                reqData.setMsgContext(config);
+
+                final Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+                CustomHandler handler = new CustomHandler();
+                HandlerAction action = new HandlerAction(WSConstants.ENCR);
+                handler.send(
+                    doc,
+                    reqData,
+                    Collections.singletonList(action),
+                    true
+                );
+
+                String outputString = XMLUtils.prettyDocumentToString(doc);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(outputString);
+                }
+                // The second message refers to the EncryptedKey of the first one, the third message
+                // carries a new EncryptedKey as the session key was used for two messages
+                assertEquals(i == 1, outputString.contains("#EncryptedKeySHA1"));
+                assertEquals(i != 1, outputString.contains("EncryptedKey "));
+
+                WSHandlerResult results = secEngine.processSecurityHeader(doc, inboundData);
+                assertTrue(XMLUtils.prettyDocumentToString(doc).contains("counter_port_type"));
+                assertNotNull(results.getActionResults().get(WSConstants.ENCR));
+            }
+            assertEquals(2, callbacks.get());
+        }
+    }
+
+    private CallbackHandler getCountingCallbackHandler(AtomicInteger callbacks) {
+        return callbackArray -> {
+            callbacks.incrementAndGet();
+            keystoreCallbackHandler.handle(callbackArray);
+        };
+    }
+
     /**
      * Verifies the soap envelope <p/>
      *
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.dom.message;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.instrumentation.InMemoryInstrumentation;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.NoOpInstrumentation;
+import org.apache.wss4j.common.instrumentation.OperationStatistics;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test-case for recording the inbound security processing with an Instrumentation.
+ */
+public class InstrumentationTest {
+
+    private final Crypto crypto;
+
+    public InstrumentationTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    @Test
+    public void testEncryptionSigning() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("wss40");
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        encrypt.build(crypto, symmetricKey);
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("wss40", "security");
+        Document encryptedSignedDoc = sign.build(crypto);
+
+        InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new KeystoreCallbackHandler());
+        data.setSigVerCrypto(crypto);
+        data.setDecCrypto(crypto);
+        data.setInstrumentation(instrumentation);
+        new WSSecurityEngine().processSecurityHeader(encryptedSignedDoc, data);
+
+        assertCount(instrumentation, Instrumentation.SECURITY_HEADER);
+        assertCount(instrumentation, Instrumentation.PROCESSOR_PREFIX + "Signature");
+        assertCount(instrumentation, Instrumentation.PROCESSOR_PREFIX + "EncryptedKey");
+        assertCount(instrumentation, Instrumentation.SIGNATURE_UNMARSHAL);
+        assertCount(instrumentation, Instrumentation.SIGNATURE_KEY_RESOLUTION);
+        assertCount(instrumentation, Instrumentation.SIGNATURE_TRUST_VALIDATION);
+        assertCount(instrumentation, Instrumentation.SIGNATURE_DIGEST);
+        assertCount(instrumentation, Instrumentation.SIGNATURE_VERIFICATION);
+        assertCount(instrumentation, Instrumentation.ENCRYPTED_KEY_KEY_RESOLUTION);
+        assertCount(instrumentation, Instrumentation.ENCRYPTED_KEY_DECRYPTION);
+        OperationStatistics statistics = assertCount(instrumentation, Instrumentation.ENCRYPTED_DATA_DECRYPTION);
+        assertTrue(statistics.getBytes() > 0L);
+        // The decoded IV and AES-128-CBC cipher text
+        assertEquals(0L, statistics.getBytes() % 16);
+    }
+
+    @Test
+    public void testNoInstrumentation() throws Exception {
+        RequestData data = new RequestData();
+        assertSame(NoOpInstrumentation.INSTANCE, data.getInstrumentation());
+        data.setInstrumentation(null);
+        assertSame(NoOpInstrumentation.INSTANCE, data.getInstrumentation());
+    }
+
+    private static OperationStatistics assertCount(InMemoryInstrumentation instrumentation, String operation) {
+        OperationStatistics statistics = instrumentation.getStatistics(operation);
+        assertNotNull(statistics, operation);
+        assertEquals(1L, statistics.getCount(), operation);
+        return statistics;
+    }
+
+}
@@ -27,11 +27,14 @@ import org.apache.wss4j.dom.common.SecretKeyCallbackHandler;
 
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.message.token.DerivedKeyToken;
 import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 
@@ -40,7 +43,9 @@ import org.w3c.dom.Document;
 
 import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -195,6 +200,59 @@ public class SecurityContextTokenTest {
         }
     }
 
+    /**
+     * Test that the keys derived for the DerivedKeyTokens of a SecurityContextToken are cached per
+     * SecurityContextToken.
+     */
+    @Test
+    public void testSCTKDKTSignDerivedKeyCache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken(secHeader, null);
+        sctBuilder.setWscVersion(ConversationConstants.VERSION_05_12);
+        sctBuilder.prepare(crypto);
+
+        Random random = new Random();
+        byte[] tempSecret = new byte[16];
+        random.nextBytes(tempSecret);
+
+        // Store the secret
+        callbackHandler.addSecretKey(sctBuilder.getIdentifier(), tempSecret);
+
+        String tokenId = sctBuilder.getSctId();
+
+        // Derived key signature
+        WSSecDKSign sigBuilder = new WSSecDKSign(secHeader);
+        sigBuilder.setTokenIdentifier(tokenId);
+        sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+        sigBuilder.build(tempSecret);
+
+        sctBuilder.prependSCTElementToHeader();
+
+        try (MemoryDerivedKeyCache derivedKeyCache = new MemoryDerivedKeyCache()) {
+            RequestData requestData = new RequestData();
+            requestData.setCallbackHandler(callbackHandler);
+            requestData.setSigVerCrypto(crypto);
+            requestData.setDerivedKeyCache(derivedKeyCache);
+            WSHandlerResult results = secEngine.processSecurityHeader(doc, requestData);
+
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.DKT).get(0);
+            DerivedKeyToken dkt =
+                (DerivedKeyToken) actionResult.get(WSSecurityEngineResult.TAG_DERIVED_KEY_TOKEN);
+            byte[] nonce = org.apache.xml.security.utils.XMLUtils.decode(dkt.getNonce());
+            String identifier = derivedKeyCache.getIdentifier(dkt.getAlgorithm(), dkt.getLabel(), dkt.getLength(),
+                                                              tempSecret, nonce, dkt.getOffset());
+            byte[] derivedKey = derivedKeyCache.get(tokenId, identifier);
+            assertNotNull(derivedKey);
+            assertArrayEquals(dkt.deriveKey(dkt.getLength(), tempSecret), derivedKey);
+
+            assertNull(derivedKeyCache.get("other-" + tokenId, identifier));
+        }
+    }
+
     /**
      * Test for WSS-217:
      * "Add ability to specify a reference to an absolute URI in the derived key functionality".
@@ -44,6 +44,7 @@ import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.builder.SAML1Constants;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WsuIdAllocator;
 import org.apache.wss4j.dom.saml.SignedSamlTokenHOKTest;
 import org.apache.wss4j.dom.saml.WSSecSignatureSAML;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -56,6 +57,10 @@ import java.io.InputStream;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.namespace.QName;
 
@@ -628,6 +633,117 @@ public class SignaturePartsTest {
         verifySignedKeyInfoResults(results);
     }
 
+    /**
+     * Test that the References are digested and validated concurrently with the same result
+     * as when they are computed one after the other.
+     */
+    @Test
+    public void testParallelDigests() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = command -> {
+            tasks.incrementAndGet();
+            executorService.execute(command);
+        };
+        try {
+            Document serialDoc = signParts(null);
+            Document parallelDoc = signParts(executor);
+            assertEquals(XMLUtils.prettyDocumentToString(serialDoc),
+                         XMLUtils.prettyDocumentToString(parallelDoc));
+            assertEquals(2, tasks.get());
+
+            RequestData requestData = new RequestData();
+            requestData.setSigVerCrypto(crypto);
+            requestData.setSignatureExecutor(executor);
+            WSHandlerResult results = secEngine.processSecurityHeader(parallelDoc, requestData);
+            assertEquals(4, tasks.get());
+
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.SIGN).get(0);
+            @SuppressWarnings("unchecked")
+            final List<WSDataRef> refs =
+                (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+            assertEquals(2, refs.size());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * A modified part must still be detected when the References are validated concurrently.
+     */
+    @Test
+    public void testParallelDigestsModifiedPart() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Document signedDoc = signParts(executor);
+            Element foobar =
+                XMLUtils.findElement(signedDoc.getDocumentElement(), "foobar", "urn:foo.bar");
+            foobar.setTextContent("modified");
+
+            RequestData requestData = new RequestData();
+            requestData.setSigVerCrypto(crypto);
+            requestData.setSignatureExecutor(executor);
+            try {
+                secEngine.processSecurityHeader(signedDoc, requestData);
+                fail("Failure expected on a modified part");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The References must not be digested concurrently if the SignatureValue does not verify.
+     */
+    @Test
+    public void testParallelDigestsModifiedSignatureValue() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = command -> {
+            tasks.incrementAndGet();
+            command.run();
+        };
+        Document signedDoc = signParts(null);
+        Element signatureValue =
+            XMLUtils.findElement(signedDoc.getDocumentElement(), "SignatureValue", WSConstants.SIG_NS);
+        String value = signatureValue.getTextContent();
+        signatureValue.setTextContent((value.charAt(0) == 'A' ? "B" : "A") + value.substring(1));
+
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSignatureExecutor(executor);
+        try {
+            secEngine.processSecurityHeader(signedDoc, requestData);
+            fail("Failure expected on a modified SignatureValue");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+        }
+        assertEquals(0, tasks.get());
+    }
+
+    private Document signParts(Executor executor) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        sign.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        sign.setIdAllocator(new CountingIdAllocator());
+        sign.setSignatureExecutor(executor);
+
+        sign.getParts().add(new WSEncryptionPart("foobar", "urn:foo.bar", ""));
+        sign.getParts().add(new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, ""));
+
+        Document signedDoc = sign.build(crypto);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(XMLUtils.prettyDocumentToString(signedDoc));
+        }
+        return signedDoc;
+    }
+
     private void verifySignedKeyInfoResults(WSHandlerResult results) {
 
         WSSecurityEngineResult actionResult =
@@ -679,4 +795,16 @@ public class SignaturePartsTest {
         return results;
     }
 
-}
\ No newline at end of file
+    private static class CountingIdAllocator implements WsuIdAllocator {
+        private int count;
+
+        public String createId(String prefix, Object o) {
+            return (prefix == null ? "_" : prefix) + count++;
+        }
+
+        public String createSecureId(String prefix, Object o) {
+            return createId(prefix, o);
+        }
+    }
+
+}
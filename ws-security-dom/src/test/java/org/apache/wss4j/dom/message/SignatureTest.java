@@ -40,6 +40,7 @@ import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
@@ -339,6 +340,47 @@ public class SignatureTest {
         secEngine.processSecurityHeader(doc, null, callbackHandler, pkiCrypto, null);
     }
 
+    /**
+     * Test signing several messages with the private key and certificates from a
+     * SigningCredentialCache, for the key identifier types that use the cached values.
+     */
+    @Test
+    public void testSigningCredentialCache() throws Exception {
+        Crypto pkiCrypto = CryptoFactory.getInstance("wss40.properties");
+        SigningCredentialCache signingCredentialCache = new SigningCredentialCache();
+        int[] keyIdentifierTypes = new int[] {
+            WSConstants.BST_DIRECT_REFERENCE, WSConstants.X509_KEY_IDENTIFIER,
+            WSConstants.SKI_KEY_IDENTIFIER, WSConstants.THUMBPRINT_IDENTIFIER,
+        };
+
+        for (int keyIdentifierType : keyIdentifierTypes) {
+            for (int i = 0; i < 2; i++) {
+                Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+                WSSecHeader secHeader = new WSSecHeader(doc);
+                secHeader.insertSecurityHeader();
+
+                WSSecSignature builder = new WSSecSignature(secHeader);
+                builder.setUserInfo("wss40", "security");
+                builder.setKeyIdentifierType(keyIdentifierType);
+                builder.setUseSingleCertificate(false);
+                builder.setSigningCredentialCache(signingCredentialCache);
+                Document signedDoc = builder.build(pkiCrypto);
+
+                if (LOG.isDebugEnabled()) {
+                    String outputString =
+                        XMLUtils.prettyDocumentToString(signedDoc);
+                    LOG.debug(outputString);
+                }
+
+                WSHandlerResult results =
+                    secEngine.processSecurityHeader(signedDoc, null, callbackHandler, pkiCrypto, null);
+                WSSecurityEngineResult actionResult =
+                    results.getActionResults().get(WSConstants.SIGN).get(0);
+                assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
+            }
+        }
+    }
+
     /**
      * Test that signs and verifies a WS-Security envelope
      * <p/>
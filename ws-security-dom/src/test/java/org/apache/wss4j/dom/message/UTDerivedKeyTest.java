@@ -26,6 +26,8 @@ import java.util.Collections;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemoryUsernameTokenKeyCache;
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -387,6 +389,45 @@ public class UTDerivedKeyTest {
         assertTrue(principal.getName().contains("DK"));
     }
 
+    /**
+     * Test using a UsernameToken derived key for signing a SOAP body, where the derived key is
+     * cached by the sender and the recipient
+     */
+    @Test
+    public void testDerivedKeySignatureKeyCache() throws Exception {
+        byte[] password = "security".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = UsernameTokenUtil.generateSalt(true);
+
+        try (MemoryUsernameTokenKeyCache senderCache = new MemoryUsernameTokenKeyCache();
+            MemoryUsernameTokenKeyCache recipientCache = new MemoryUsernameTokenKeyCache()) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+            builder.setUserInfo("bob", "security");
+            builder.addDerivedKey(1000);
+            builder.setKeyCache(senderCache);
+            builder.prepare(salt);
+
+            byte[] derivedKey = builder.getDerivedKey(salt);
+            assertArrayEquals(UsernameTokenUtil.generateDerivedKey(password, salt, 1000), derivedKey);
+            assertArrayEquals(derivedKey, senderCache.get("bob", password, salt, 1000));
+            assertArrayEquals(derivedKey, builder.getDerivedKey(salt));
+
+            WSSecDKSign sigBuilder = new WSSecDKSign(secHeader);
+            sigBuilder.setTokenIdentifier(builder.getId());
+            sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+            sigBuilder.setCustomValueType(WSConstants.WSS_USERNAME_TOKEN_VALUE_TYPE);
+            Document signedDoc = sigBuilder.build(derivedKey);
+            builder.prependToHeader();
+
+            WSHandlerResult results = verify(signedDoc, true, recipientCache);
+            assertFalse(results.getActionResults().get(WSConstants.SIGN).isEmpty());
+            assertArrayEquals(derivedKey, recipientCache.get("bob", password, salt, 1000));
+        }
+    }
+
     /**
      * Test using a UsernameToken derived key for signing a SOAP body
      */
@@ -852,6 +893,14 @@ public class UTDerivedKeyTest {
     private WSHandlerResult verify(
         Document doc,
         boolean allowUsernameTokenDerivedKeys
+    ) throws Exception {
+        return verify(doc, allowUsernameTokenDerivedKeys, null);
+    }
+
+    private WSHandlerResult verify(
+        Document doc,
+        boolean allowUsernameTokenDerivedKeys,
+        UsernameTokenKeyCache keyCache
     ) throws Exception {
         WSSecurityEngine secEngine = new WSSecurityEngine();
 
@@ -860,6 +909,7 @@ public class UTDerivedKeyTest {
         requestData.setCallbackHandler(callbackHandler);
         requestData.setDecCrypto(crypto);
         requestData.setSigVerCrypto(crypto);
+        requestData.setUsernameTokenKeyCache(keyCache);
 
         return secEngine.processSecurityHeader(doc, requestData);
     }
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.saml;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.cache.MemoryVerifiedSamlAssertionCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.AudienceRestrictionBean;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.SAML2CallbackHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSAMLToken;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test-case for processing the same signed SAML Assertion several times with a VerifiedSamlAssertionCache.
+ */
+public class VerifiedSamlAssertionCacheTest {
+
+    private static final String AUDIENCE = "http://apache.org/one";
+
+    private final Crypto crypto;
+
+    public VerifiedSamlAssertionCacheTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("crypto.properties");
+    }
+
+    @Test
+    public void testSignatureVerifiedFromCache() throws Exception {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Document doc = createSignedAssertionDocument();
+
+            assertFalse(verify(doc, cache, AUDIENCE).isSignatureVerifiedFromCache());
+
+            SamlAssertionWrapper samlAssertion = verify(doc, cache, AUDIENCE);
+            assertTrue(samlAssertion.isSignatureVerifiedFromCache());
+            assertTrue(samlAssertion.getSignatureKeyInfo() != null);
+
+            // Without a cache the signature is always verified
+            assertFalse(verify(doc, null, AUDIENCE).isSignatureVerifiedFromCache());
+        }
+    }
+
+    @Test
+    public void testOtherTrustConfiguration() throws Exception {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Document doc = createSignedAssertionDocument();
+            verify(doc, cache, AUDIENCE);
+
+            // The signing credential is trusted again with another Crypto, or other certificate constraints
+            Crypto otherCrypto = CryptoFactory.getInstance("crypto.properties");
+            assertFalse(verify(doc, cache, AUDIENCE, otherCrypto, null).isSignatureVerifiedFromCache());
+            assertFalse(verify(doc, cache, AUDIENCE, crypto, Pattern.compile(".*")).isSignatureVerifiedFromCache());
+            assertTrue(verify(doc, cache, AUDIENCE, crypto, Pattern.compile(".*")).isSignatureVerifiedFromCache());
+
+            assertTrue(verify(doc, cache, AUDIENCE).isSignatureVerifiedFromCache());
+        }
+    }
+
+    @Test
+    public void testModifiedAssertion() throws Exception {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Document doc = createSignedAssertionDocument();
+            verify(doc, cache, AUDIENCE);
+
+            // The ID, Issuer and SignatureValue are unchanged, but the content is not
+            Element nameID =
+                (Element)doc.getElementsByTagNameNS(WSConstants.SAML2_NS, "NameID").item(0);
+            nameID.setTextContent("uid=eve");
+
+            try {
+                verify(doc, cache, AUDIENCE);
+                fail("Failure expected on a modified Assertion");
+            } catch (WSSecurityException ex) {
+                assertTrue(ex.getMessage().contains("SAML signature validation failed"));
+            }
+        }
+    }
+
+    @Test
+    public void testConditionsCheckedOnCacheHit() throws Exception {
+        try (VerifiedSamlAssertionCache cache = new MemoryVerifiedSamlAssertionCache()) {
+            Document doc = createSignedAssertionDocument();
+            verify(doc, cache, AUDIENCE);
+
+            try {
+                verify(doc, cache, "http://apache.org/three");
+                fail("Failure expected on a bad audience restriction");
+            } catch (WSSecurityException ex) {
+                assertTrue(ex.getMessage().contains("SAML token security failure"));
+            }
+        }
+    }
+
+    private Document createSignedAssertionDocument() throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+        callbackHandler.setIssuer("www.example.com");
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(5);
+        AudienceRestrictionBean audienceRestrictionBean = new AudienceRestrictionBean();
+        audienceRestrictionBean.setAudienceURIs(Collections.singletonList(AUDIENCE));
+        conditions.setAudienceRestrictions(Collections.singletonList(audienceRestrictionBean));
+        callbackHandler.setConditions(conditions);
+
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(callbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        samlAssertion.signAssertion("16c73ab6-b892-458f-abf5-2f875f74882e", "security", crypto, false);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSAMLToken wsSign = new WSSecSAMLToken(secHeader);
+        return wsSign.build(samlAssertion);
+    }
+
+    private SamlAssertionWrapper verify(
+        Document doc, VerifiedSamlAssertionCache cache, String audience
+    ) throws Exception {
+        return verify(doc, cache, audience, crypto, null);
+    }
+
+    private SamlAssertionWrapper verify(
+        Document doc, VerifiedSamlAssertionCache cache, String audience, Crypto sigVerCrypto, Pattern subjectConstraint
+    ) throws Exception {
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        RequestData data = new RequestData();
+        data.setSigVerCrypto(sigVerCrypto);
+        if (subjectConstraint != null) {
+            data.setSubjectCertConstraints(Collections.singletonList(subjectConstraint));
+        }
+        data.setAudienceRestrictions(Collections.singletonList(audience));
+        data.setValidateSamlSubjectConfirmation(false);
+        data.setVerifiedSamlAssertionCache(cache);
+
+        WSHandlerResult results = secEngine.processSecurityHeader(doc, data);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ST_SIGNED).get(0);
+        return (SamlAssertionWrapper)actionResult.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+    }
+
+}
@@ -19,13 +19,23 @@
 
 package org.apache.wss4j.dom.util;
 
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.WSS4JConstants;
+import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.handler.HandlerAction;
+import org.apache.wss4j.dom.message.AttachmentCallbackHandler;
 import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -103,4 +113,31 @@ public class WSSecurityUtilTest {
         assertEquals(WSConstants.SIGN, decodeActions.get(0).getAction());
         assertEquals(WSConstants.DKT_ENCR, decodeActions.get(1).getAction());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInlineAttachments() throws Exception {
+        // The attachment is encoded in chunks, which must give the same result as encoding it in one go
+        for (int length : new int[] {0, 100, 57 * 144, 57 * 144 + 1, 100000}) {
+            byte[] content = new byte[length];
+            new Random(length).nextBytes(content);
+
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document doc = factory.newDocumentBuilder().newDocument();
+            Element parent = doc.createElementNS("urn:test", "CipherValue");
+            doc.appendChild(parent);
+            Element include = doc.createElementNS(WSS4JConstants.XOP_NS, "xop:Include");
+            include.setAttributeNS(null, "href", "cid:attachment");
+            parent.appendChild(include);
+
+            Attachment attachment = new Attachment();
+            attachment.setId("attachment");
+            attachment.setSourceStream(new ByteArrayInputStream(content));
+            AttachmentCallbackHandler callbackHandler =
+                new AttachmentCallbackHandler(Collections.singletonList(attachment));
+
+            WSSecurityUtil.inlineAttachments(Collections.singletonList(include), callbackHandler, false);
+            assertEquals(org.apache.xml.security.utils.XMLUtils.encodeToString(content), parent.getTextContent());
+        }
+    }
+}
@@ -22,14 +22,27 @@ package org.apache.wss4j.dom.validate;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemoryLoginCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
 import org.apache.wss4j.common.saml.SAMLCallback;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -55,6 +68,7 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -181,6 +195,56 @@ public class ValidatorTest {
         verify(signedDoc, wssConfig, new UsernamePasswordCallbackHandler(), null);
     }
 
+    /**
+     * Test that a LoginCache of the JAASUsernameTokenValidator avoids the JAAS login for a
+     * UsernameToken with the same username and password, and that failed logins are not cached.
+     */
+    @Test
+    public void testJAASUsernameTokenLoginCache() throws Exception {
+        Configuration configuration = Configuration.getConfiguration();
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                return new AppConfigurationEntry[] {
+                    new AppConfigurationEntry(CountingLoginModule.class.getName(),
+                        AppConfigurationEntry.LoginModuleControlFlag.REQUIRED, Collections.emptyMap())
+                };
+            }
+        });
+        CountingLoginModule.LOGINS.set(0);
+
+        try (MemoryLoginCache loginCache = new MemoryLoginCache()) {
+            JAASUsernameTokenValidator validator = new JAASUsernameTokenValidator();
+            validator.setContextName("counting");
+            validator.setLoginCache(loginCache);
+            WSSConfig wssConfig = WSSConfig.getNewInstance();
+            wssConfig.setValidator(WSConstants.USERNAME_TOKEN, validator);
+
+            for (int i = 0; i < 2; i++) {
+                WSHandlerResult results =
+                    verify(createUsernameTokenDocument("wernerd", "verySecret"), wssConfig, null, null);
+                WSSecurityEngineResult actionResult =
+                    results.getActionResults().get(WSConstants.UT).get(0);
+                Subject subject = (Subject)actionResult.get(WSSecurityEngineResult.TAG_SUBJECT);
+                assertNotNull(subject);
+                assertEquals(1, subject.getPrincipals(CustomTokenPrincipal.class).size());
+            }
+            assertEquals(1, CountingLoginModule.LOGINS.get());
+
+            for (int i = 0; i < 2; i++) {
+                try {
+                    verify(createUsernameTokenDocument("wernerd", "verySecre"), wssConfig, null, null);
+                    fail("Failure expected on a bad password text");
+                } catch (WSSecurityException ex) {
+                    assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+                }
+            }
+            assertEquals(3, CountingLoginModule.LOGINS.get());
+        } finally {
+            Configuration.setConfiguration(configuration);
+        }
+    }
+
     /**
      * In this test, a BinarySecurityToken is added to the SOAP header. A custom processor
      * validates the BST and transforms it into a SAML Assertion.
@@ -291,6 +355,17 @@ public class ValidatorTest {
     }
 
 
+    private Document createUsernameTokenDocument(String user, String password) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+        builder.setPasswordType(WSConstants.PASSWORD_TEXT);
+        builder.setUserInfo(user, password);
+        return builder.build();
+    }
+
     /**
      * A validator for a BST token.
      */
@@ -320,5 +395,56 @@ public class ValidatorTest {
 
     }
 
+    /**
+     * A LoginModule that accepts the password "verySecret", and counts the logins.
+     */
+    public static class CountingLoginModule implements LoginModule {
+
+        static final AtomicInteger LOGINS = new AtomicInteger();
+
+        private Subject subject;
+        private CallbackHandler callbackHandler;
+        private String user;
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler,
+                               Map<String, ?> sharedState, Map<String, ?> options) {
+            this.subject = subject;
+            this.callbackHandler = callbackHandler;
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            LOGINS.incrementAndGet();
+            NameCallback nameCallback = new NameCallback("user");
+            PasswordCallback passwordCallback = new PasswordCallback("password", false);
+            try {
+                callbackHandler.handle(new Callback[] {nameCallback, passwordCallback});
+            } catch (Exception ex) {
+                throw new LoginException(ex.getMessage());
+            }
+            if (!"verySecret".equals(new String(passwordCallback.getPassword()))) {
+                throw new FailedLoginException();
+            }
+            user = nameCallback.getName();
+            return true;
+        }
+
+        @Override
+        public boolean commit() {
+            subject.getPrincipals().add(new CustomTokenPrincipal(user));
+            return true;
+        }
+
+        @Override
+        public boolean abort() {
+            return true;
+        }
+
+        @Override
+        public boolean logout() {
+            return true;
+        }
+    }
 
-}
\ No newline at end of file
+}
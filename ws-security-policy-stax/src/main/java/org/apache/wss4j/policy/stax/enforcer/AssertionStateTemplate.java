@@ -0,0 +1,242 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.enforcer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.neethi.Assertion;
+import org.apache.neethi.ExactlyOne;
+import org.apache.neethi.PolicyComponent;
+import org.apache.neethi.PolicyContainingAssertion;
+import org.apache.neethi.PolicyOperator;
+import org.apache.neethi.builders.PrimitiveAssertion;
+import org.apache.wss4j.common.WSSPolicyException;
+import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
+import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+
+/**
+ * The immutable, precompiled assertion states of an OperationPolicy. The (normalized) policy is
+ * walked once to find the assertions of every alternative, and the assertion states of every
+ * alternative are indexed by the SecurityEvent types they are interested in. The PolicyEnforcer
+ * still creates new assertion states for every message (as they are stateful), but it only has
+ * to put them into the slots of the template to dispatch the SecurityEvents to them. The templates
+ * are cached by the PolicyEnforcerFactory (see AssertionStateTemplateCache).
+ *
+ * The slots are visited in the same order as the assertion states were visited by the former
+ * per-message maps, so that the same assertion fails first and the same error message is reported.
+ */
+final class AssertionStateTemplate {
+
+    // the assertions of every alternative, in the order in which the policy is walked
+    private final AbstractSecurityAssertion[][] assertions;
+    // the number of assertion states of every assertion of every alternative
+    private final int[][] assertableCounts;
+    // the slots per SecurityEvent type and alternative
+    private final Map<SecurityEventConstants.Event, int[][]> slotsByEvent;
+    // all the slots of every alternative, ordered by SecurityEvent type and (key) assertion...
+    private final int[][] slots;
+    // ...and the (key) assertion of every entry of the above
+    private final Assertion[][] slotAssertions;
+
+    private AssertionStateTemplate(AbstractSecurityAssertion[][] assertions, int[][] assertableCounts,
+                                   Map<SecurityEventConstants.Event, int[][]> slotsByEvent,
+                                   int[][] slots, Assertion[][] slotAssertions) {
+        this.assertions = assertions;
+        this.assertableCounts = assertableCounts;
+        this.slotsByEvent = slotsByEvent;
+        this.slots = slots;
+        this.slotAssertions = slotAssertions;
+    }
+
+    /**
+     * Walks the policy and returns the assertions of every alternative.
+     * Precondition: Policy _must_ be normalized!
+     */
+    static AbstractSecurityAssertion[][] getAlternatives(PolicyComponent policyComponent) throws WSSPolicyException {
+        List<List<AbstractSecurityAssertion>> alternatives = new ArrayList<>();
+        addAlternatives(policyComponent, alternatives);
+
+        AbstractSecurityAssertion[][] result = new AbstractSecurityAssertion[alternatives.size()][];
+        for (int i = 0; i < result.length; i++) {
+            List<AbstractSecurityAssertion> alternative = alternatives.get(i);
+            result[i] = alternative.toArray(new AbstractSecurityAssertion[0]);
+        }
+        return result;
+    }
+
+    private static void addAlternatives(PolicyComponent policyComponent,
+                                        List<List<AbstractSecurityAssertion>> alternatives)
+        throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
+            int alternative = 0;
+            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
+            while (policyComponentIterator.hasNext()) {
+                PolicyComponent curPolicyComponent = policyComponentIterator.next();
+                if (policyOperator instanceof ExactlyOne) {
+                    alternatives.add(new ArrayList<>());
+                    addAssertions(curPolicyComponent, alternatives.get(alternative++));
+                } else {
+                    addAlternatives(curPolicyComponent, alternatives);
+                }
+            }
+        } else {
+            throw new WSSPolicyException("Invalid PolicyComponent: " + policyComponent
+                                         + " " + policyComponent.getType());
+        }
+    }
+
+    private static void addAssertions(PolicyComponent policyComponent,
+                                      List<AbstractSecurityAssertion> alternative) throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
+            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
+            while (policyComponentIterator.hasNext()) {
+                addAssertions(policyComponentIterator.next(), alternative);
+            }
+        } else if (policyComponent instanceof AbstractSecurityAssertion) {
+            AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
+            alternative.add(abstractSecurityAssertion);
+            if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
+                addAssertions(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(), alternative);
+            }
+        } else if (!(policyComponent instanceof PrimitiveAssertion)) {
+            throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent
+                                         + " type: " + policyComponent.getType());
+        }
+    }
+
+    /**
+     * Compiles the template from the assertions of every alternative and a set of assertion
+     * states for them.
+     *
+     * @param assertions the assertions of every alternative, as returned by getAlternatives
+     * @param assertables the assertion states of every alternative, in the order of the assertions
+     * @param assertableCounts the number of assertion states of every assertion of every alternative
+     */
+    static AssertionStateTemplate compile(AbstractSecurityAssertion[][] assertions, Assertable[][] assertables,
+                                          int[][] assertableCounts) {
+        int alternatives = assertions.length;
+        Map<SecurityEventConstants.Event, int[][]> slotsByEvent = new HashMap<>();
+        int[][] slots = new int[alternatives][];
+        Assertion[][] slotAssertions = new Assertion[alternatives][];
+
+        for (int alternative = 0; alternative < alternatives; alternative++) {
+            // Index the slots in exactly the same (hash) maps the assertion states were put into
+            // before, to keep the order in which they are visited
+            Map<SecurityEventConstants.Event, Map<Assertion, List<Integer>>> map = new HashMap<>();
+            int slot = 0;
+            for (int i = 0; i < assertions[alternative].length; i++) {
+                Assertion keyAssertion = assertions[alternative][i];
+                for (int j = 0; j < assertableCounts[alternative][i]; j++, slot++) {
+                    Assertable assertable = assertables[alternative][slot];
+                    for (SecurityEventConstants.Event event : assertable.getSecurityEventType()) {
+                        Map<Assertion, List<Integer>> slotMap = map.get(event);
+                        if (slotMap == null) {
+                            slotMap = new HashMap<>();
+                            map.put(event, slotMap);
+                        }
+                        slotMap.computeIfAbsent(keyAssertion, k -> new ArrayList<>()).add(slot);
+                    }
+                }
+            }
+
+            List<Integer> allSlots = new ArrayList<>();
+            List<Assertion> allSlotAssertions = new ArrayList<>();
+            for (Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Integer>>> entry : map.entrySet()) {
+                List<Integer> eventSlots = new ArrayList<>();
+                for (Map.Entry<Assertion, List<Integer>> slotEntry : entry.getValue().entrySet()) {
+                    for (Integer eventSlot : slotEntry.getValue()) {
+                        eventSlots.add(eventSlot);
+                        allSlotAssertions.add(slotEntry.getKey());
+                    }
+                }
+                allSlots.addAll(eventSlots);
+                slotsByEvent.computeIfAbsent(entry.getKey(), k -> new int[alternatives][])[alternative] =
+                    toArray(eventSlots);
+            }
+            slots[alternative] = toArray(allSlots);
+            slotAssertions[alternative] = allSlotAssertions.toArray(new Assertion[0]);
+        }
+
+        return new AssertionStateTemplate(assertions, assertableCounts,
+                                          slotsByEvent, slots, slotAssertions);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Returns whether the given assertion states fit into the slots of this template. Only the
+     * number of assertion states per assertion is compared, as the template is cached per
+     * initiator/recipient side and PolicyEnforcer class, which determine the classes of the
+     * assertion states.
+     */
+    boolean fits(int[][] counts) {
+        if (counts.length != assertableCounts.length) {
+            return false;
+        }
+        for (int alternative = 0; alternative < counts.length; alternative++) {
+            if (!Arrays.equals(assertableCounts[alternative], counts[alternative])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    AbstractSecurityAssertion[][] getAssertions() {
+        return assertions;
+    }
+
+    /**
+     * Returns the slots of the assertion states which are interested in the given SecurityEvent
+     * type, per alternative. Returns null (or a null entry for an alternative) if there are none.
+     */
+    int[][] getSlots(SecurityEventConstants.Event event) {
+        return slotsByEvent.get(event);
+    }
+
+    /**
+     * Returns all the slots of the given alternative. A slot is contained more than once
+     * if the assertion state is interested in more than one SecurityEvent type.
+     */
+    int[] getSlots(int alternative) {
+        return slots[alternative];
+    }
+
+    /**
+     * Returns the (key) assertion of the entries of getSlots(alternative).
+     */
+    Assertion[] getSlotAssertions(int alternative) {
+        return slotAssertions[alternative];
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.enforcer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.neethi.Policy;
+import org.apache.wss4j.policy.stax.OperationPolicy;
+
+/**
+ * The AssertionStateTemplates compiled by the PolicyEnforcers of a PolicyEnforcerFactory. A template
+ * is cached per OperationPolicy (and its current Policy), initiator/recipient side and PolicyEnforcer
+ * class, as these determine the assertion states that are created for a message. The OperationPolicy
+ * and Policy are compared by identity, so that a Policy that is set on an OperationPolicy later on is
+ * compiled again.
+ */
+final class AssertionStateTemplateCache {
+
+    private final ConcurrentMap<Key, AssertionStateTemplate> templates = new ConcurrentHashMap<>();
+
+    AssertionStateTemplate get(OperationPolicy operationPolicy, boolean initiator, Class<?> enforcerClass) {
+        return templates.get(new Key(operationPolicy, initiator, enforcerClass));
+    }
+
+    void put(OperationPolicy operationPolicy, boolean initiator, Class<?> enforcerClass,
+             AssertionStateTemplate template) {
+        templates.put(new Key(operationPolicy, initiator, enforcerClass), template);
+    }
+
+    int size() {
+        return templates.size();
+    }
+
+    private static final class Key {
+        private final OperationPolicy operationPolicy;
+        private final Policy policy;
+        private final boolean initiator;
+        private final Class<?> enforcerClass;
+
+        Key(OperationPolicy operationPolicy, boolean initiator, Class<?> enforcerClass) {
+            this.operationPolicy = operationPolicy;
+            this.policy = operationPolicy.getPolicy();
+            this.initiator = initiator;
+            this.enforcerClass = enforcerClass;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return operationPolicy == other.operationPolicy && policy == other.policy
+                && initiator == other.initiator && enforcerClass == other.enforcerClass;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashcode = 17;
+            hashcode = 31 * hashcode + System.identityHashCode(operationPolicy);
+            hashcode = 31 * hashcode + System.identityHashCode(policy);
+            hashcode = 31 * hashcode + (initiator ? 1 : 0);
+            return 31 * hashcode + enforcerClass.hashCode();
+        }
+    }
+}
@@ -18,23 +18,16 @@
  */
 package org.apache.wss4j.policy.stax.enforcer;
 
+import java.util.ArrayList;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.xml.namespace.QName;
 
 import org.apache.neethi.Assertion;
-import org.apache.neethi.ExactlyOne;
 import org.apache.neethi.Policy;
-import org.apache.neethi.PolicyComponent;
-import org.apache.neethi.PolicyContainingAssertion;
-import org.apache.neethi.PolicyOperator;
-import org.apache.neethi.builders.PrimitiveAssertion;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.policy.SPConstants;
 import org.apache.wss4j.common.WSSPolicyException;
@@ -105,7 +98,6 @@ import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
-import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
 
 /**
@@ -130,10 +122,15 @@ public class PolicyEnforcer implements SecurityEventListener {
     private static final QName SOAP11_FAULT = new QName(WSSConstants.NS_SOAP11, "Fault");
     private static final QName SOAP12_FAULT = new QName(WSSConstants.NS_SOAP12, "Fault");
 
+    // the (empty) policy of an operation without a policy. It is shared by all the messages, as the
+    // AssertionStateTemplateCache compares the OperationPolicy by identity
+    private static final OperationPolicy NO_POLICY_FOUND_FOR_OPERATION = createNoPolicyFoundForOperation();
+
     private final List<OperationPolicy> operationPolicies;
     private OperationPolicy effectivePolicy;
-    private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap;
-    private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> failedAssertionStateMap;
+    private AssertionStateTemplate assertionStateTemplate;
+    private final List<Alternative> alternatives = new ArrayList<>();
+    private final List<Alternative> failedAlternatives = new ArrayList<>();
 
     private final Deque<SecurityEvent> securityEventQueue = new LinkedList<>();
     private boolean operationSecurityEventOccured = false;
@@ -144,17 +141,24 @@ public class PolicyEnforcer implements SecurityEventListener {
     private boolean faultOccurred;
     private final PolicyAsserter policyAsserter;
     private boolean soap12;
+    private final AssertionStateTemplateCache templateCache;
 
     public PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
                           String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter, boolean soap12
+    ) throws WSSPolicyException {
+        this(operationPolicies, soapAction, initiator, actorOrRole, attachmentCount, policyAsserter, soap12, null);
+    }
+
+    PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
+                   String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter, boolean soap12,
+                   AssertionStateTemplateCache templateCache
     ) throws WSSPolicyException {
         this.operationPolicies = operationPolicies;
+        this.templateCache = templateCache;
         this.initiator = initiator;
         this.actorOrRole = actorOrRole;
         this.attachmentCount = attachmentCount;
         this.soap12 = soap12;
-        assertionStateMap = new LinkedList<>();
-        failedAssertionStateMap = new LinkedList<>();
 
         if (policyAsserter == null) {
             this.policyAsserter = new DummyPolicyAsserter();
@@ -165,11 +169,17 @@ public class PolicyEnforcer implements SecurityEventListener {
         if (soapAction != null && !soapAction.isEmpty()) {
             effectivePolicy = findPolicyBySOAPAction(operationPolicies, soapAction);
             if (effectivePolicy != null) {
-                buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                buildAssertionStates(effectivePolicy);
             }
         }
     }
 
+    private static OperationPolicy createNoPolicyFoundForOperation() {
+        OperationPolicy operationPolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
+        operationPolicy.setPolicy(new Policy());
+        return operationPolicy;
+    }
+
     private OperationPolicy findPolicyBySOAPAction(List<OperationPolicy> operationPolicies, String soapAction) {
         Iterator<OperationPolicy> operationPolicyIterator = operationPolicies.iterator();
         while (operationPolicyIterator.hasNext()) {
@@ -203,86 +213,45 @@ public class PolicyEnforcer implements SecurityEventListener {
     }
 
     /**
-     * Precondition: Policy _must_ be normalized!
+     * Creates the assertion states of the policy of the operation for this message, and puts them
+     * into the slots of the AssertionStateTemplate of the operation. The template is only walked
+     * and compiled if it is not cached by the PolicyEnforcerFactory yet.
      */
-    private void buildAssertionStateMap(
-            PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap
-    ) throws WSSPolicyException {
-        if (policyComponent instanceof PolicyOperator) {
-            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
-            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
-            int alternative = 0;
-            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
-            while (policyComponentIterator.hasNext()) {
-                PolicyComponent curPolicyComponent = policyComponentIterator.next();
-                if (policyOperator instanceof ExactlyOne) {
-                    assertionStateMap.add(new HashMap<SecurityEventConstants.Event,
-                                          Map<Assertion, List<Assertable>>>());
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative++);
-                } else {
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap);
-                }
-            }
+    private void buildAssertionStates(OperationPolicy operationPolicy) throws WSSPolicyException {
+        AssertionStateTemplate template = null;
+        if (templateCache != null) {
+            template = templateCache.get(operationPolicy, initiator, getClass());
+        }
+        AbstractSecurityAssertion[][] assertions;
+        if (template != null) {
+            assertions = template.getAssertions();
         } else {
-            throw new WSSPolicyException("Invalid PolicyComponent: " + policyComponent
-                                         + " " + policyComponent.getType());
+            assertions = AssertionStateTemplate.getAlternatives(operationPolicy.getPolicy());
         }
-    }
 
-    private void buildAssertionStateMap(
-            PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event,
-            Map<Assertion, List<Assertable>>>> assertionStateMap,
-            int alternative
-    ) throws WSSPolicyException {
-        if (policyComponent instanceof PolicyOperator) {
-            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
-            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
-            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
-            while (policyComponentIterator.hasNext()) {
-                PolicyComponent curPolicyComponent = policyComponentIterator.next();
-                buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative);
-            }
-        } else if (policyComponent instanceof AbstractSecurityAssertion) {
-            AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
-
-            List<Assertable> assertablesList = getAssertableForAssertion(abstractSecurityAssertion);
-            Iterator<Assertable> assertableIterator = assertablesList.iterator();
-            while (assertableIterator.hasNext()) {
-                Assertable assertable = assertableIterator.next();
-                final Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                    assertionStateMap.get(alternative);
-                final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
-                for (int j = 0; j < securityEventType.length; j++) {
-                    SecurityEventConstants.Event event = securityEventType[j];
-                    Map<Assertion, List<Assertable>> assertables = map.get(event);
-                    if (assertables == null) {
-                        assertables = new HashMap<>();
-                        map.put(event, assertables);
-                    }
-                    addAssertionState(assertables, abstractSecurityAssertion, assertable);
-                }
-            }
-            if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
-                buildAssertionStateMap(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(),
-                                       assertionStateMap, alternative);
+        Assertable[][] assertables = new Assertable[assertions.length][];
+        int[][] assertableCounts = new int[assertions.length][];
+        for (int alternative = 0; alternative < assertions.length; alternative++) {
+            List<Assertable> alternativeAssertables = new ArrayList<>();
+            assertableCounts[alternative] = new int[assertions[alternative].length];
+            for (int i = 0; i < assertions[alternative].length; i++) {
+                List<Assertable> assertableList = getAssertableForAssertion(assertions[alternative][i]);
+                assertableCounts[alternative][i] = assertableList.size();
+                alternativeAssertables.addAll(assertableList);
             }
-        } else if (!(policyComponent instanceof PrimitiveAssertion)) {
-            throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent
-                                         + " type: " + policyComponent.getType());
+            assertables[alternative] = alternativeAssertables.toArray(new Assertable[0]);
         }
-    }
 
-    private void addAssertionState(Map<Assertion, List<Assertable>> assertables,
-                                   Assertion keyAssertion,
-                                   Assertable assertable) {
-        List<Assertable> assertableList = assertables.get(keyAssertion);
-        if (assertableList == null) {
-            assertableList = new LinkedList<>();
-            assertables.put(keyAssertion, assertableList);
+        if (template == null || !template.fits(assertableCounts)) {
+            template = AssertionStateTemplate.compile(assertions, assertables, assertableCounts);
+            if (templateCache != null) {
+                templateCache.put(operationPolicy, initiator, getClass(), template);
+            }
+        }
+        this.assertionStateTemplate = template;
+        for (int alternative = 0; alternative < assertables.length; alternative++) {
+            this.alternatives.add(new Alternative(alternative, assertables[alternative]));
         }
-        assertableList.add(assertable);
     }
 
     // Don't return a Token that is not required
@@ -509,72 +478,47 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws WSSPolicyException
      */
     private void verifyPolicy(SecurityEvent securityEvent) throws WSSPolicyException, XMLSecurityException {
-        // We have to check the failed assertions for logging purposes firstly...
-        if (!this.failedAssertionStateMap.isEmpty()) {
-            Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator =
-                this.failedAssertionStateMap.iterator();
-            alternative:
-                while (assertionStateMapIterator.hasNext()) {
-                    Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                        assertionStateMapIterator.next();
-                    // every list entry counts as an alternative...
-                    Map<Assertion, List<Assertable>> assertionListMap = map.get(securityEvent.getSecurityEventType());
-                    if (assertionListMap != null && !assertionListMap.isEmpty()) {
-                        Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator =
-                            assertionListMap.entrySet().iterator();
-                        while (assertionStateIterator.hasNext()) {
-                            Map.Entry<Assertion, List<Assertable>> assertionStateEntry =
-                                assertionStateIterator.next();
-                            List<Assertable> assertionStates = assertionStateEntry.getValue();
-                            Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                            while (assertableIterator.hasNext()) {
-                                Assertable assertable = assertableIterator.next();
-                                boolean asserted = assertable.assertEvent(securityEvent);
-                                // ...so if one fails, continue with the next map entry and
-                                // increment the notAssertedCount
-                                if (!asserted) {
-                                    continue alternative;
-                                }
-                            }
+        int[][] eventSlots = null;
+        if (assertionStateTemplate != null) {
+            eventSlots = assertionStateTemplate.getSlots(securityEvent.getSecurityEventType());
+        }
+
+        String assertionMessage = null;
+        if (eventSlots != null) {
+            // We have to check the failed assertions for logging purposes firstly...
+            for (int i = 0; i < failedAlternatives.size(); i++) {
+                Alternative alternative = failedAlternatives.get(i);
+                int[] slots = eventSlots[alternative.index];
+                if (slots != null) {
+                    for (int slot : slots) {
+                        // ...so if one fails, continue with the next alternative
+                        if (!alternative.assertables[slot].assertEvent(securityEvent)) {
+                            break;
                         }
                     }
                 }
-        }
+            }
 
-        String assertionMessage = null;
-        //...and then check the remaining alternatives
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator =
-            this.assertionStateMap.iterator();
-        //every map entry counts as an alternative...
-        alternative:
-            while (assertionStateMapIterator.hasNext()) {
-                Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                    assertionStateMapIterator.next();
-                Map<Assertion, List<Assertable>> assertionListMap = map.get(securityEvent.getSecurityEventType());
-                if (assertionListMap != null && !assertionListMap.isEmpty()) {
-                    Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator =
-                        assertionListMap.entrySet().iterator();
-                    while (assertionStateIterator.hasNext()) {
-                        Map.Entry<Assertion, List<Assertable>> assertionStateEntry = assertionStateIterator.next();
-                        List<Assertable> assertionStates = assertionStateEntry.getValue();
-                        Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                        while (assertableIterator.hasNext()) {
-                            Assertable assertable = assertableIterator.next();
-                            boolean asserted = assertable.assertEvent(securityEvent);
-                            //...so if one fails, continue with the next map entry and increment the notAssertedCount
-                            if (!asserted) {
-                                assertionMessage = assertable.getErrorMessage();
-                                failedAssertionStateMap.add(map);
-                                assertionStateMapIterator.remove();
-                                continue alternative;
-                            }
+            //...and then check the remaining alternatives
+            for (int i = 0; i < alternatives.size(); i++) {
+                Alternative alternative = alternatives.get(i);
+                int[] slots = eventSlots[alternative.index];
+                if (slots != null) {
+                    for (int slot : slots) {
+                        Assertable assertable = alternative.assertables[slot];
+                        //...so if one fails, continue with the next alternative
+                        if (!assertable.assertEvent(securityEvent)) {
+                            assertionMessage = assertable.getErrorMessage();
+                            failedAlternatives.add(alternative);
+                            alternatives.remove(i--);
+                            break;
                         }
                     }
                 }
             }
-        //if the assertionStateMap is empty (the size of the list is equal to the alternatives)
-        //then we could not satisfy any alternative
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        }
+        //if no alternative is left then we could not satisfy any alternative
+        if (alternatives.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new PolicyViolationException(assertionMessage);
         }
@@ -588,36 +532,19 @@ public class PolicyEnforcer implements SecurityEventListener {
      */
     private void verifyPolicy() throws WSSPolicyException {
         String assertionMessage = null;
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator =
-            this.assertionStateMap.iterator();
-        alternative:
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                assertionStateMapIterator.next();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> iterator =
-                map.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> mapEntry =
-                    iterator.next();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator =
-                    mapEntry.getValue().entrySet().iterator();
-                while (assertionStateIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> assertionListEntry = assertionStateIterator.next();
-                    List<Assertable> assertableList = assertionListEntry.getValue();
-                    Iterator<Assertable> assertableIterator = assertableList.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-                        if (!assertable.isAsserted()) {
-                            assertionMessage = assertable.getErrorMessage();
-                            failedAssertionStateMap.add(map);
-                            assertionStateMapIterator.remove();
-                            continue alternative;
-                        }
-                    }
+        for (int i = 0; i < alternatives.size(); i++) {
+            Alternative alternative = alternatives.get(i);
+            for (int slot : assertionStateTemplate.getSlots(alternative.index)) {
+                Assertable assertable = alternative.assertables[slot];
+                if (!assertable.isAsserted()) {
+                    assertionMessage = assertable.getErrorMessage();
+                    failedAlternatives.add(alternative);
+                    alternatives.remove(i--);
+                    break;
                 }
             }
         }
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        if (alternatives.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new WSSPolicyException(assertionMessage);
         }
@@ -632,94 +559,56 @@ public class PolicyEnforcer implements SecurityEventListener {
      */
     private void verifyPolicyAfterOperationSecurityEvent() throws WSSPolicyException {
         String assertionMessage = null;
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator =
-            this.assertionStateMap.iterator();
-        alternative:
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                assertionStateMapIterator.next();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> iterator =
-                map.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> mapEntry =
-                    iterator.next();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator =
-                    mapEntry.getValue().entrySet().iterator();
-                while (assertionStateIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> assertionListEntry = assertionStateIterator.next();
-                    List<Assertable> assertableList = assertionListEntry.getValue();
-                    Iterator<Assertable> assertableIterator = assertableList.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-
-                        boolean doAssert = false;
-                        if (assertable instanceof TokenAssertionState) {
-                            TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
-                            AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
-                            AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
-                            //Other tokens may not be resolved yet fully therefore we skip it here
-                            if (assertion instanceof SupportingTokens
-                                || assertable instanceof HttpsTokenAssertionState
-                                || assertable instanceof RelTokenAssertionState
-                                || assertable instanceof SecurityContextTokenAssertionState
-                                || assertable instanceof SpnegoContextTokenAssertionState
-                                || assertable instanceof UsernameTokenAssertionState) {
-                                doAssert = true;
-                            }
-                        } else if (assertable instanceof TokenProtectionAssertionState
-                            || assertable instanceof SignatureConfirmationAssertionState
-                            || assertable instanceof IncludeTimeStampAssertionState
-                            || assertable instanceof RequiredPartsAssertionState
-                            || assertable instanceof SignatureProtectionAssertionState) {
-                            doAssert = true;
-                        }
-
-                        if ((doAssert || assertable.isHardFailure()) && !assertable.isAsserted()) {
-                            assertionMessage = assertable.getErrorMessage();
-                            failedAssertionStateMap.add(map);
-                            assertionStateMapIterator.remove();
-                            continue alternative;
-                        }
+        for (int i = 0; i < alternatives.size(); i++) {
+            Alternative alternative = alternatives.get(i);
+            for (int slot : assertionStateTemplate.getSlots(alternative.index)) {
+                Assertable assertable = alternative.assertables[slot];
+
+                boolean doAssert = false;
+                if (assertable instanceof TokenAssertionState) {
+                    TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
+                    AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
+                    AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
+                    //Other tokens may not be resolved yet fully therefore we skip it here
+                    if (assertion instanceof SupportingTokens
+                        || assertable instanceof HttpsTokenAssertionState
+                        || assertable instanceof RelTokenAssertionState
+                        || assertable instanceof SecurityContextTokenAssertionState
+                        || assertable instanceof SpnegoContextTokenAssertionState
+                        || assertable instanceof UsernameTokenAssertionState) {
+                        doAssert = true;
                     }
+                } else if (assertable instanceof TokenProtectionAssertionState
+                    || assertable instanceof SignatureConfirmationAssertionState
+                    || assertable instanceof IncludeTimeStampAssertionState
+                    || assertable instanceof RequiredPartsAssertionState
+                    || assertable instanceof SignatureProtectionAssertionState) {
+                    doAssert = true;
+                }
+
+                if ((doAssert || assertable.isHardFailure()) && !assertable.isAsserted()) {
+                    assertionMessage = assertable.getErrorMessage();
+                    failedAlternatives.add(alternative);
+                    alternatives.remove(i--);
+                    break;
                 }
             }
         }
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        if (alternatives.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new WSSPolicyException(assertionMessage);
         }
     }
 
     private void logFailedAssertions() {
-        if (this.failedAssertionStateMap.isEmpty()) {
-            return;
-        }
-
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator =
-            this.failedAssertionStateMap.iterator();
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                assertionStateMapIterator.next();
-            Set<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> entrySet = map.entrySet();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> entryIterator =
-                entrySet.iterator();
-            while (entryIterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> eventCollectionEntry =
-                    entryIterator.next();
-                Map<Assertion, List<Assertable>> assertionListMap = eventCollectionEntry.getValue();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateEntryIterator =
-                    assertionListMap.entrySet().iterator();
-                while (assertionStateEntryIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> entry = assertionStateEntryIterator.next();
-                    List<Assertable> assertionStates = entry.getValue();
-                    Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-                        if (!assertable.isAsserted() && !assertable.isLogged()) {
-                            LOG.error(entry.getKey().getName() + " not satisfied: " + assertable.getErrorMessage());
-                            assertable.setLogged(true);
-                        }
-                    }
+        for (Alternative alternative : failedAlternatives) {
+            int[] slots = assertionStateTemplate.getSlots(alternative.index);
+            Assertion[] slotAssertions = assertionStateTemplate.getSlotAssertions(alternative.index);
+            for (int i = 0; i < slots.length; i++) {
+                Assertable assertable = alternative.assertables[slots[i]];
+                if (!assertable.isAsserted() && !assertable.isLogged()) {
+                    LOG.error(slotAssertions[i].getName() + " not satisfied: " + assertable.getErrorMessage());
+                    assertable.setLogged(true);
                 }
             }
         }
@@ -754,11 +643,10 @@ public class PolicyEnforcer implements SecurityEventListener {
                                                                 operationSecurityEvent.getOperation());
                 if (effectivePolicy == null) {
                     //no policy to the operation given
-                    effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
-                    effectivePolicy.setPolicy(new Policy());
+                    effectivePolicy = NO_POLICY_FOUND_FOR_OPERATION;
                 }
                 try {
-                    buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                    buildAssertionStates(effectivePolicy);
                 } catch (WSSPolicyException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
                 }
@@ -793,4 +681,17 @@ public class PolicyEnforcer implements SecurityEventListener {
         verifyPolicy();
     }
 
+    /**
+     * The assertion states of a policy alternative for this message
+     */
+    private static final class Alternative {
+        private final int index;
+        private final Assertable[] assertables;
+
+        Alternative(int index, Assertable[] assertables) {
+            this.index = index;
+            this.assertables = assertables;
+        }
+    }
+
 }
@@ -106,6 +106,7 @@ public class PolicyEnforcerFactory {
     private Definition wsdlDefinition;
     private List<OperationPolicy> operationPolicies;
     private final Map<Element, Policy> elementPolicyCache;
+    private final AssertionStateTemplateCache templateCache = new AssertionStateTemplateCache();
 
     protected PolicyEnforcerFactory(List<AssertionBuilder<Element>> customAssertionBuilders) {
         elementPolicyCache = new HashMap<>();
@@ -424,6 +425,10 @@ public class PolicyEnforcerFactory {
         }
     }
 
+    AssertionStateTemplateCache getTemplateCache() {
+        return templateCache;
+    }
+
     /**
      * creates a new PolicyEnforcer instance
      * @param soapAction The requested soapAction of the actual request
@@ -438,6 +443,7 @@ public class PolicyEnforcerFactory {
     public PolicyEnforcer newPolicyEnforcer(String soapAction, boolean initiator,
                                             String roleOrActor, int attachmentCount,
                                             boolean soap12) throws WSSPolicyException {
-        return new PolicyEnforcer(this.operationPolicies, soapAction, initiator, roleOrActor, attachmentCount, null, soap12);
+        return new PolicyEnforcer(this.operationPolicies, soapAction, initiator, roleOrActor, attachmentCount, null, soap12,
+                                  templateCache);
     }
 }
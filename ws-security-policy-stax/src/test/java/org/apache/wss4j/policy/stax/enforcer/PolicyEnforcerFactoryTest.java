@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.enforcer;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.policy.stax.test.AbstractPolicyTestBase;
+import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PolicyEnforcerFactoryTest extends AbstractPolicyTestBase {
+
+    @Test
+    public void testTemplateCacheOfOperationsWithoutPolicy() throws Exception {
+        String policyString =
+                "<sp:RequiredParts xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\">\n" +
+                        "<sp:Header Name=\"a\" Namespace=\"http://example.org\"/>\n" +
+                        "</sp:RequiredParts>";
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policyString, false, null);
+
+        // the messages of the operations without a policy share one template per side, rather than
+        // adding a template for every message
+        for (int i = 0; i < 100; i++) {
+            PolicyEnforcer policyEnforcer = policyEnforcerFactory.newPolicyEnforcer("", i % 2 == 0, null, 0, false);
+
+            OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+            operationSecurityEvent.setOperation(new QName("http://example.org", "unknownOperation" + i % 3));
+            // a message of an operation without a policy is rejected, but its template is cached all the same
+            assertThrows(WSSecurityException.class, () -> policyEnforcer.registerSecurityEvent(operationSecurityEvent));
+            assertEquals(Math.min(i + 1, 2), policyEnforcerFactory.getTemplateCache().size());
+        }
+    }
+}
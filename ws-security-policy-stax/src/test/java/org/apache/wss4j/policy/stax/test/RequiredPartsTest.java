@@ -25,6 +25,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcer;
+import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcerFactory;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.RequiredPartSecurityEvent;
@@ -90,4 +91,42 @@ public class RequiredPartsTest extends AbstractPolicyTestBase {
             assertEquals(e.getMessage(), "Element {http://example.org}a must be present");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPolicyEnforcersOfTheSameOperation() throws Exception {
+        String policyString =
+                "<sp:RequiredParts xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\" xmlns:sp3=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200802\">\n" +
+                        "<sp:Header Name=\"a\" Namespace=\"http://example.org\"/>\n" +
+                        "</sp:RequiredParts>";
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policyString, false, null);
+
+        // the assertion states of the operation policy are compiled for the first message only,
+        // the state of a message must not leak into the following ones
+        // the initiator and recipient enforcers of the same operation use their own templates
+        for (int i = 0; i < 8; i++) {
+            PolicyEnforcer policyEnforcer = policyEnforcerFactory.newPolicyEnforcer("", i % 4 < 2, null, 0, false);
+
+            RequiredPartSecurityEvent requiredPartSecurityEvent = new RequiredPartSecurityEvent();
+            List<QName> headerPath = new ArrayList<>();
+            headerPath.addAll(WSSConstants.SOAP_11_HEADER_PATH);
+            headerPath.add(new QName("http://example.org", i % 2 == 0 ? "b" : "a"));
+            requiredPartSecurityEvent.setElementPath(headerPath);
+            policyEnforcer.registerSecurityEvent(requiredPartSecurityEvent);
+
+            OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+            operationSecurityEvent.setOperation(new QName("definitions"));
+
+            if (i % 2 == 0) {
+                try {
+                    policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+                    fail("Exception expected");
+                } catch (WSSecurityException e) {
+                    assertEquals(e.getMessage(), "Element {http://example.org}a must be present");
+                }
+            } else {
+                policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+                policyEnforcer.doFinal();
+            }
+        }
+    }
+}
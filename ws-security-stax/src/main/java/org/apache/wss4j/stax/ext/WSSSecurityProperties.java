@@ -38,11 +38,20 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.NoOpInstrumentation;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -108,6 +117,14 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private SigningCredentialCache signingCredentialCache;
+    private OutboundSessionKeyCache outboundSessionKeyCache;
+    private VerifiedSamlAssertionCache verifiedSamlAssertionCache;
+    private Instrumentation instrumentation = NoOpInstrumentation.INSTANCE;
+    private KerberosServiceCredentialCache kerberosServiceCredentialCache;
+    private UsernameTokenKeyCache usernameTokenKeyCache;
+    private DerivedKeyCache derivedKeyCache;
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
@@ -164,6 +181,14 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.encryptedKeyCache = wssSecurityProperties.encryptedKeyCache;
+        this.signingCredentialCache = wssSecurityProperties.signingCredentialCache;
+        this.outboundSessionKeyCache = wssSecurityProperties.outboundSessionKeyCache;
+        this.verifiedSamlAssertionCache = wssSecurityProperties.verifiedSamlAssertionCache;
+        this.instrumentation = wssSecurityProperties.instrumentation;
+        this.kerberosServiceCredentialCache = wssSecurityProperties.kerberosServiceCredentialCache;
+        this.usernameTokenKeyCache = wssSecurityProperties.usernameTokenKeyCache;
+        this.derivedKeyCache = wssSecurityProperties.derivedKeyCache;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -764,6 +789,123 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache for the secret keys of decrypted EncryptedKeys
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache newCache) {
+        encryptedKeyCache = newCache;
+    }
+
+    /**
+     * Get the cache for the secret keys of decrypted EncryptedKeys
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for the private key and certificates of the signature user
+     */
+    public void setSigningCredentialCache(SigningCredentialCache signingCredentialCache) {
+        this.signingCredentialCache = signingCredentialCache;
+    }
+
+    /**
+     * Get the cache for the private key and certificates of the signature user
+     */
+    public SigningCredentialCache getSigningCredentialCache() {
+        return signingCredentialCache;
+    }
+
+    /**
+     * Set the cache for the session keys that are reused for outbound encryption
+     */
+    public void setOutboundSessionKeyCache(OutboundSessionKeyCache outboundSessionKeyCache) {
+        this.outboundSessionKeyCache = outboundSessionKeyCache;
+    }
+
+    /**
+     * Get the cache for the session keys that are reused for outbound encryption
+     */
+    public OutboundSessionKeyCache getOutboundSessionKeyCache() {
+        return outboundSessionKeyCache;
+    }
+
+    /**
+     * Set the cache for the signed SAML Assertions whose signature has been verified
+     */
+    public void setVerifiedSamlAssertionCache(VerifiedSamlAssertionCache verifiedSamlAssertionCache) {
+        this.verifiedSamlAssertionCache = verifiedSamlAssertionCache;
+    }
+
+    /**
+     * Get the cache for the signed SAML Assertions whose signature has been verified
+     */
+    public VerifiedSamlAssertionCache getVerifiedSamlAssertionCache() {
+        return verifiedSamlAssertionCache;
+    }
+
+    /**
+     * Set the Instrumentation with which to record the security processing. A null value
+     * disables the recording.
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            this.instrumentation = NoOpInstrumentation.INSTANCE;
+        } else {
+            this.instrumentation = instrumentation;
+        }
+    }
+
+    /**
+     * Get the Instrumentation with which to record the security processing
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Set the cache of the credentials of the service that validates the received Kerberos tokens
+     */
+    public void setKerberosServiceCredentialCache(KerberosServiceCredentialCache kerberosServiceCredentialCache) {
+        this.kerberosServiceCredentialCache = kerberosServiceCredentialCache;
+    }
+
+    /**
+     * Get the cache of the credentials of the service that validates the received Kerberos tokens
+     */
+    public KerberosServiceCredentialCache getKerberosServiceCredentialCache() {
+        return kerberosServiceCredentialCache;
+    }
+
+    /**
+     * Set the cache for the keys that are derived from the password of a UsernameToken
+     */
+    public void setUsernameTokenKeyCache(UsernameTokenKeyCache usernameTokenKeyCache) {
+        this.usernameTokenKeyCache = usernameTokenKeyCache;
+    }
+
+    /**
+     * Get the cache for the keys that are derived from the password of a UsernameToken
+     */
+    public UsernameTokenKeyCache getUsernameTokenKeyCache() {
+        return usernameTokenKeyCache;
+    }
+
+    /**
+     * Set the cache for the keys that are derived for the DerivedKeyTokens of a session
+     */
+    public void setDerivedKeyCache(DerivedKeyCache derivedKeyCache) {
+        this.derivedKeyCache = derivedKeyCache;
+    }
+
+    /**
+     * Get the cache for the keys that are derived for the DerivedKeyTokens of a session
+     */
+    public DerivedKeyCache getDerivedKeyCache() {
+        return derivedKeyCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
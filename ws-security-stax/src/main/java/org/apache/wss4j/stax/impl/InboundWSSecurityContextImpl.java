@@ -22,8 +22,13 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -36,7 +41,9 @@ import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.utils.WSSUtils;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.InboundSecurityContextImpl;
+import org.apache.xml.security.stax.securityEvent.AbstractSecuredElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
@@ -57,6 +64,7 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             org.slf4j.LoggerFactory.getLogger(InboundWSSecurityContextImpl.class);
 
     private final Deque<SecurityEvent> securityEventQueue = new ArrayDeque<>();
+    private final SecurityEventIndex securityEventIndex = new SecurityEventIndex();
     private boolean operationSecurityEventOccured = false;
     private boolean messageEncryptionTokenOccured = false;
     private boolean allowRSA15KeyTransportAlgorithm = false;
@@ -100,7 +108,7 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         if (WSSecurityEventConstants.OPERATION.equals(securityEvent.getSecurityEventType())) {
             operationSecurityEventOccured = true;
 
-            identifySecurityTokenDependenciesAndUsage(securityEventQueue);
+            identifySecurityTokenDependenciesAndUsage(securityEventQueue, securityEventIndex);
 
             Iterator<SecurityEvent> securityEventIterator = securityEventQueue.descendingIterator();
             while (securityEventIterator.hasNext()) {
@@ -111,10 +119,12 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             forwardSecurityEvent(securityEvent);
 
             securityEventQueue.clear();
+            securityEventIndex.clear();
             return;
         }
 
         securityEventQueue.push(securityEvent);
+        securityEventIndex.add(securityEvent);
     }
 
     @Override
@@ -140,59 +150,59 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private void identifySecurityTokenDependenciesAndUsage(
-            Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+            Deque<SecurityEvent> securityEventDeque, SecurityEventIndex index) throws XMLSecurityException {
 
         MessageTokens messageTokens = new MessageTokens();
         HttpsTokenSecurityEvent httpsTokenSecurityEvent = null;
 
         List<TokenSecurityEvent<? extends InboundSecurityToken>> tokenSecurityEvents = new ArrayList<>();
-        Iterator<SecurityEvent> securityEventIterator = securityEventDeque.iterator();
-        while (securityEventIterator.hasNext()) {
-            SecurityEvent securityEvent = securityEventIterator.next();
-            if (securityEvent instanceof TokenSecurityEvent) {
-                @SuppressWarnings("unchecked")
-                TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
-                        (TokenSecurityEvent<? extends InboundSecurityToken>)securityEvent;
-
-                if (WSSecurityEventConstants.HTTPS_TOKEN.equals(securityEvent.getSecurityEventType())) {
-                    HttpsTokenSecurityEvent actHttpsTokenSecurityEvent = (HttpsTokenSecurityEvent) tokenSecurityEvent;
-                    actHttpsTokenSecurityEvent.getSecurityToken().getTokenUsages().clear();
-                    actHttpsTokenSecurityEvent.getSecurityToken().addTokenUsage(WSSecurityTokenConstants.TOKENUSAGE_MAIN_SIGNATURE);
-                    messageTokens.messageSignatureTokens =
-                        addTokenSecurityEvent(actHttpsTokenSecurityEvent, messageTokens.messageSignatureTokens);
-                    HttpsTokenSecurityEvent clonedHttpsTokenSecurityEvent = new HttpsTokenSecurityEvent();
-                    clonedHttpsTokenSecurityEvent.setAuthenticationType(actHttpsTokenSecurityEvent.getAuthenticationType());
-                    clonedHttpsTokenSecurityEvent.setIssuerName(actHttpsTokenSecurityEvent.getIssuerName());
-                    clonedHttpsTokenSecurityEvent.setSecurityToken(actHttpsTokenSecurityEvent.getSecurityToken());
-                    clonedHttpsTokenSecurityEvent.getSecurityToken().addTokenUsage(WSSecurityTokenConstants.TOKENUSAGE_MAIN_ENCRYPTION);
-                    messageTokens.messageEncryptionTokens =
-                        addTokenSecurityEvent(actHttpsTokenSecurityEvent, messageTokens.messageEncryptionTokens);
-                    httpsTokenSecurityEvent = clonedHttpsTokenSecurityEvent;
-                    continue;
-                }
-                tokenSecurityEvents.add(tokenSecurityEvent);
+        //the token events are indexed in the order of registration, whereas the queue holds the last event first
+        for (int i = index.tokenSecurityEvents.size() - 1; i >= 0; i--) {
+            TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = index.tokenSecurityEvents.get(i);
+
+            if (WSSecurityEventConstants.HTTPS_TOKEN.equals(tokenSecurityEvent.getSecurityEventType())) {
+                HttpsTokenSecurityEvent actHttpsTokenSecurityEvent = (HttpsTokenSecurityEvent) tokenSecurityEvent;
+                actHttpsTokenSecurityEvent.getSecurityToken().getTokenUsages().clear();
+                actHttpsTokenSecurityEvent.getSecurityToken().addTokenUsage(WSSecurityTokenConstants.TOKENUSAGE_MAIN_SIGNATURE);
+                messageTokens.messageSignatureTokens =
+                    addTokenSecurityEvent(actHttpsTokenSecurityEvent, messageTokens.messageSignatureTokens);
+                HttpsTokenSecurityEvent clonedHttpsTokenSecurityEvent = new HttpsTokenSecurityEvent();
+                clonedHttpsTokenSecurityEvent.setAuthenticationType(actHttpsTokenSecurityEvent.getAuthenticationType());
+                clonedHttpsTokenSecurityEvent.setIssuerName(actHttpsTokenSecurityEvent.getIssuerName());
+                clonedHttpsTokenSecurityEvent.setSecurityToken(actHttpsTokenSecurityEvent.getSecurityToken());
+                clonedHttpsTokenSecurityEvent.getSecurityToken().addTokenUsage(WSSecurityTokenConstants.TOKENUSAGE_MAIN_ENCRYPTION);
+                messageTokens.messageEncryptionTokens =
+                    addTokenSecurityEvent(actHttpsTokenSecurityEvent, messageTokens.messageEncryptionTokens);
+                httpsTokenSecurityEvent = clonedHttpsTokenSecurityEvent;
+                continue;
             }
+            tokenSecurityEvents.add(tokenSecurityEvent);
         }
 
         //search the root tokens and create new TokenSecurityEvents if not already there...
+        Set<String> supportingTokenIds = new HashSet<>();
+        Set<SecurityEvent> replacedTokenSecurityEvents = Collections.newSetFromMap(new IdentityHashMap<>());
         for (int i = 0; i < tokenSecurityEvents.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = tokenSecurityEvents.get(i);
             InboundSecurityToken securityToken = WSSUtils.getRootToken(tokenSecurityEvent.getSecurityToken());
 
-            if (!containsSecurityToken(messageTokens.supportingTokens, securityToken)) {
+            if (supportingTokenIds.add(securityToken.getId())) {
                 TokenSecurityEvent<? extends InboundSecurityToken> newTokenSecurityEvent =
                         WSSUtils.createTokenSecurityEvent(securityToken, tokenSecurityEvent.getCorrelationID());
                 messageTokens.supportingTokens = addTokenSecurityEvent(newTokenSecurityEvent, messageTokens.supportingTokens);
                 securityEventDeque.offer(newTokenSecurityEvent);
             }
-            //remove old TokenSecurityEvent so that only root tokens are in the queue
-            securityEventDeque.remove(tokenSecurityEvent);
+            replacedTokenSecurityEvents.add(tokenSecurityEvent);
+        }
+        //remove old TokenSecurityEvents so that only root tokens are in the queue
+        if (!replacedTokenSecurityEvents.isEmpty()) {
+            securityEventDeque.removeIf(replacedTokenSecurityEvents::contains);
         }
 
-        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, securityEventDeque);
+        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, index);
 
         if (messageTokens.messageSignatureTokens.isEmpty()) {
-            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, securityEventDeque);
+            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, index);
 
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
                     getTokenSecurityEvent(messageSignatureToken, tokenSecurityEvents);
@@ -256,43 +266,47 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private void parseSupportingTokens(MessageTokens messageTokens, HttpsTokenSecurityEvent httpsTokenSecurityEvent,
-                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                       SecurityEventIndex index) throws XMLSecurityException {
+        List<QName> securityHeader =
+            soap12 ? WSSConstants.SOAP_12_WSSE_SECURITY_HEADER_PATH : WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH;
+        List<QName> signatureElementPath = new ArrayList<>(4);
+        signatureElementPath.addAll(securityHeader);
+        signatureElementPath.add(WSSConstants.TAG_dsig_Signature);
+
+        List<QName> signatureConfirmationElementPath = new ArrayList<>(4);
+        signatureConfirmationElementPath.addAll(securityHeader);
+        signatureConfirmationElementPath.add(WSSConstants.TAG_WSSE11_SIG_CONF);
+
+        List<QName> timestampElementPath = new ArrayList<>(4);
+        timestampElementPath.addAll(securityHeader);
+        timestampElementPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
+
+        List<QName> usernameTokenElementPath = new ArrayList<>(4);
+        usernameTokenElementPath.addAll(securityHeader);
+        usernameTokenElementPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+
+        boolean transportSecurityActive = Boolean.TRUE.equals(get(WSSConstants.TRANSPORT_SECURITY_ACTIVE));
+
         Iterator<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokensIterator = messageTokens.supportingTokens.iterator();
         while (supportingTokensIterator.hasNext()) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = supportingTokensIterator.next();
             List<InboundSecurityToken> signingSecurityTokens =
-                isSignedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
-
-            List<QName> securityHeader =
-                soap12 ? WSSConstants.SOAP_12_WSSE_SECURITY_HEADER_PATH : WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH;
-            List<QName> signatureElementPath = new ArrayList<>(4);
-            signatureElementPath.addAll(securityHeader);
-            signatureElementPath.add(WSSConstants.TAG_dsig_Signature);
-            boolean signsSignature = signsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
-            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
-
-            List<QName> signatureConfirmationElementPath = new ArrayList<>(4);
-            signatureConfirmationElementPath.addAll(securityHeader);
-            signatureConfirmationElementPath.add(WSSConstants.TAG_WSSE11_SIG_CONF);
+                isSignedToken(tokenSecurityEvent, index, httpsTokenSecurityEvent);
+
+            boolean signsSignature = signsElement(tokenSecurityEvent, signatureElementPath, index);
+            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, signatureElementPath, index);
+
             boolean signsSignatureConfirmation =
-                signsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                signsElement(tokenSecurityEvent, signatureConfirmationElementPath, index);
             boolean encryptsSignatureConfirmation =
-                encryptsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                encryptsElement(tokenSecurityEvent, signatureConfirmationElementPath, index);
 
-            List<QName> timestampElementPath = new ArrayList<>(4);
-            timestampElementPath.addAll(securityHeader);
-            timestampElementPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
-            boolean signsTimestamp = signsElement(tokenSecurityEvent, timestampElementPath, securityEventDeque);
+            boolean signsTimestamp = signsElement(tokenSecurityEvent, timestampElementPath, index);
 
-            List<QName> usernameTokenElementPath = new ArrayList<>(4);
-            usernameTokenElementPath.addAll(securityHeader);
-            usernameTokenElementPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
-            boolean encryptsUsernameToken = encryptsElement(tokenSecurityEvent, usernameTokenElementPath, securityEventDeque);
-
-            boolean transportSecurityActive = Boolean.TRUE.equals(get(WSSConstants.TRANSPORT_SECURITY_ACTIVE));
+            boolean encryptsUsernameToken = encryptsElement(tokenSecurityEvent, usernameTokenElementPath, index);
 
             List<InboundSecurityToken> encryptingSecurityTokens =
-                isEncryptedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
+                isEncryptedToken(tokenSecurityEvent, index, httpsTokenSecurityEvent);
 
             boolean signatureUsage =
                 tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TokenUsage_Signature);
@@ -390,19 +404,6 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         return tokenSecurityEventList;
     }
 
-    private boolean containsSecurityToken(List<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokens,
-                                          SecurityToken securityToken) {
-        if (securityToken != null) {
-            for (int i = 0; i < supportingTokens.size(); i++) {
-                TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = supportingTokens.get(i);
-                if (tokenSecurityEvent.getSecurityToken().getId().equals(securityToken.getId())) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private TokenSecurityEvent<? extends InboundSecurityToken> getTokenSecurityEvent(
             InboundSecurityToken securityToken,
             List<TokenSecurityEvent<? extends InboundSecurityToken>> tokenSecurityEvents) throws XMLSecurityException {
@@ -419,34 +420,34 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
 
     private InboundSecurityToken getSupportingTokenSigningToken(
             MessageTokens messageTokens,
-            Deque<SecurityEvent> securityEventDeque
+            SecurityEventIndex index
     ) throws XMLSecurityException {
 
         //todo we have to check if the signingTokens also cover the other supporting tokens!
         for (int i = 0; i < messageTokens.signedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = messageTokens.signedSupportingTokens.get(i);
-            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, index);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, index);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, index);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, index);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
@@ -455,20 +456,15 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> getSigningToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                                       SecurityEventIndex index) throws XMLSecurityException {
         List<InboundSecurityToken> signingSecurityTokens = new ArrayList<>();
 
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && WSSUtils.pathMatches(
-                        signedElementSecurityEvent.getElementPath(),
-                        ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath(), false)
-                        ) {
-                    signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
+        List<SignedElementSecurityEvent> signedElementSecurityEvents =
+            index.getSignedElements(((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath());
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()) {
+                signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
             }
         }
         return signingSecurityTokens;
@@ -491,32 +487,30 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> isSignedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                              Deque<SecurityEvent> securityEventDeque,
+                                              SecurityEventIndex index,
                                               HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
         if (httpsTokenSecurityEvent != null) {
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && signedElementSecurityEvent.getXmlSecEvent() != null
-                        && signedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains(signedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<SignedElementSecurityEvent> signedElementSecurityEvents =
+            index.getSignedElements(((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()
+                    && !securityTokenList.contains(signedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private List<InboundSecurityToken> isEncryptedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                                 Deque<SecurityEvent> securityEventDeque,
+                                                 SecurityEventIndex index,
                                                  HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
 
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
@@ -524,36 +518,31 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains(encryptedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<EncryptedElementSecurityEvent> encryptedElementSecurityEvents =
+            index.getEncryptedElements(((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < encryptedElementSecurityEvents.size(); i++) {
+            EncryptedElementSecurityEvent encryptedElementSecurityEvent = encryptedElementSecurityEvents.get(i);
+            if (encryptedElementSecurityEvent.isEncrypted()
+                    && !securityTokenList.contains(encryptedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private boolean signsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                 Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
-                        signedElementSecurityEvent.getSecurityToken().getId(),
-                        SecurityTokenConstants.TokenUsage_Signature)
-                        && WSSUtils.pathMatches(elementPath, signedElementSecurityEvent.getElementPath(), false)) {
-                    return true;
-                }
+                                 SecurityEventIndex index) throws XMLSecurityException {
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = index.getSignedElements(elementPath);
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()
+                    && matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
+                    signedElementSecurityEvent.getSecurityToken().getId(),
+                    SecurityTokenConstants.TokenUsage_Signature)) {
+                return true;
             }
         }
         return false;
@@ -576,27 +565,16 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private boolean encryptsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                    Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && encryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenSecurityEvent.getSecurityToken().getId())
-                        && WSSUtils.pathMatches(elementPath, encryptedElementSecurityEvent.getElementPath(), false)) {
-                    return true;
-                }
-            } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEvent.getSecurityEventType())) {
-                ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
-                    (ContentEncryptedElementSecurityEvent) securityEvent;
-                String tokenId = tokenSecurityEvent.getSecurityToken().getId();
-                if (contentEncryptedElementSecurityEvent.isEncrypted()
-                        && contentEncryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
-                        && contentEncryptedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && WSSUtils.pathMatches(elementPath, contentEncryptedElementSecurityEvent.getElementPath(), false)) {
-                    return true;
-                }
+                                    SecurityEventIndex index) throws XMLSecurityException {
+        String tokenId = tokenSecurityEvent.getSecurityToken().getId();
+        List<AbstractSecuredElementSecurityEvent> encryptedElementSecurityEvents = index.getEncryptedElements(elementPath);
+        for (int i = 0; i < encryptedElementSecurityEvents.size(); i++) {
+            AbstractSecuredElementSecurityEvent securityEvent = encryptedElementSecurityEvents.get(i);
+            if (securityEvent.isEncrypted() && securityEvent.getSecurityToken().getId().equals(tokenId)
+                    && (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())
+                        || securityEvent.getXmlSecEvent()
+                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent())) {
+                return true;
             }
         }
         return false;
@@ -646,6 +624,83 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         this.soap12 = soap12;
     }
 
+    /**
+     * Indexes of the queued security events, which are maintained as the events are registered. The
+     * usage of the security tokens is identified with lookups in these indexes instead of searching the
+     * whole queue for every token, as the number of signed and encrypted elements can be large.
+     */
+    private static class SecurityEventIndex {
+        final List<TokenSecurityEvent<? extends InboundSecurityToken>> tokenSecurityEvents = new ArrayList<>();
+        final Map<List<QName>, List<SignedElementSecurityEvent>> signedElementsByPath = new HashMap<>();
+        final Map<XMLSecEvent, List<SignedElementSecurityEvent>> signedElementsByXMLSecEvent = new IdentityHashMap<>();
+        final Map<List<QName>, List<AbstractSecuredElementSecurityEvent>> encryptedElementsByPath = new HashMap<>();
+        final Map<XMLSecEvent, List<EncryptedElementSecurityEvent>> encryptedElementsByXMLSecEvent = new IdentityHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        void add(SecurityEvent securityEvent) {
+            SecurityEventConstants.Event securityEventType = securityEvent.getSecurityEventType();
+            if (securityEvent instanceof TokenSecurityEvent) {
+                tokenSecurityEvents.add((TokenSecurityEvent<? extends InboundSecurityToken>) securityEvent);
+            } else if (WSSecurityEventConstants.SignedElement.equals(securityEventType)) {
+                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
+                addToIndex(signedElementsByPath, signedElementSecurityEvent.getElementPath(), signedElementSecurityEvent);
+                addToIndex(signedElementsByXMLSecEvent, signedElementSecurityEvent.getXmlSecEvent(), signedElementSecurityEvent);
+            } else if (WSSecurityEventConstants.EncryptedElement.equals(securityEventType)) {
+                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
+                addToIndex(encryptedElementsByPath, encryptedElementSecurityEvent.getElementPath(), encryptedElementSecurityEvent);
+                addToIndex(encryptedElementsByXMLSecEvent, encryptedElementSecurityEvent.getXmlSecEvent(),
+                           encryptedElementSecurityEvent);
+            } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEventType)) {
+                ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+                    (ContentEncryptedElementSecurityEvent) securityEvent;
+                addToIndex(encryptedElementsByPath, contentEncryptedElementSecurityEvent.getElementPath(),
+                           contentEncryptedElementSecurityEvent);
+            }
+        }
+
+        List<SignedElementSecurityEvent> getSignedElements(List<QName> elementPath) {
+            return getFromIndex(signedElementsByPath, elementPath);
+        }
+
+        List<SignedElementSecurityEvent> getSignedElements(XMLSecEvent xmlSecEvent) {
+            return getFromIndex(signedElementsByXMLSecEvent, xmlSecEvent);
+        }
+
+        List<AbstractSecuredElementSecurityEvent> getEncryptedElements(List<QName> elementPath) {
+            return getFromIndex(encryptedElementsByPath, elementPath);
+        }
+
+        List<EncryptedElementSecurityEvent> getEncryptedElements(XMLSecEvent xmlSecEvent) {
+            return getFromIndex(encryptedElementsByXMLSecEvent, xmlSecEvent);
+        }
+
+        void clear() {
+            tokenSecurityEvents.clear();
+            signedElementsByPath.clear();
+            signedElementsByXMLSecEvent.clear();
+            encryptedElementsByPath.clear();
+            encryptedElementsByXMLSecEvent.clear();
+        }
+
+        private static <K, V> void addToIndex(Map<K, List<V>> index, K key, V securityEvent) {
+            //events without a key can never match
+            if (key != null) {
+                index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(securityEvent);
+            }
+        }
+
+        private static <K, V> List<V> getFromIndex(Map<K, List<V>> index, K key) {
+            if (key == null) {
+                return Collections.emptyList();
+            }
+            List<V> securityEvents = index.get(key);
+            if (securityEvents == null) {
+                return Collections.emptyList();
+            }
+            return securityEvents;
+        }
+    }
+
     private static class MessageTokens {
         List<TokenSecurityEvent<? extends InboundSecurityToken>> messageSignatureTokens = Collections.emptyList();
         List<TokenSecurityEvent<? extends InboundSecurityToken>> messageEncryptionTokens = Collections.emptyList();
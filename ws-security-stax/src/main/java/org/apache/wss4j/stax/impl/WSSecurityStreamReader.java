@@ -20,16 +20,22 @@ package org.apache.wss4j.stax.impl;
 
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.NoOpInstrumentation;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.impl.XMLSecurityStreamReader;
 
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
 public class WSSecurityStreamReader extends XMLSecurityStreamReader {
 
     private final boolean initiator;
     private final boolean returnSecurityError;
+    private final Instrumentation instrumentation;
+    private final long start;
 
     public WSSecurityStreamReader(InputProcessorChain inputProcessorChain,
             XMLSecurityProperties securityProperties, boolean initiator,
@@ -37,12 +43,22 @@ public class WSSecurityStreamReader extends XMLSecurityStreamReader {
         super(inputProcessorChain, securityProperties);
         this.initiator = initiator;
         this.returnSecurityError = returnSecurityError;
+        if (securityProperties instanceof WSSSecurityProperties) {
+            this.instrumentation = ((WSSSecurityProperties) securityProperties).getInstrumentation();
+        } else {
+            this.instrumentation = NoOpInstrumentation.INSTANCE;
+        }
+        this.start = instrumentation.start();
     }
 
     @Override
     public int next() throws XMLStreamException {
         try {
-            return super.next();
+            int eventType = super.next();
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                instrumentation.stop(Instrumentation.STAX_INBOUND_MESSAGE, start);
+            }
+            return eventType;
         } catch (XMLStreamException e) {
             Throwable cause = e.getCause();
 
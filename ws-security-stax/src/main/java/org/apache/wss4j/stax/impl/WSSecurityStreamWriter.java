@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl;
+
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.stax.utils.CountingOutputStream;
+import org.apache.xml.security.stax.ext.OutputProcessorChain;
+import org.apache.xml.security.stax.impl.XMLSecurityStreamWriter;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * An XMLSecurityStreamWriter that records the streaming of the outbound message with an
+ * Instrumentation when it is closed.
+ */
+public class WSSecurityStreamWriter extends XMLSecurityStreamWriter {
+
+    private final Instrumentation instrumentation;
+    private final CountingOutputStream countingOutputStream;
+    private final long start;
+    private boolean recorded;
+
+    public WSSecurityStreamWriter(OutputProcessorChain outputProcessorChain, Instrumentation instrumentation,
+                                  CountingOutputStream countingOutputStream, long start) {
+        super(outputProcessorChain);
+        this.instrumentation = instrumentation;
+        this.countingOutputStream = countingOutputStream;
+        this.start = start;
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        super.close();
+        if (!recorded) {
+            recorded = true;
+            long bytes = countingOutputStream != null ? countingOutputStream.getCount() : 0L;
+            instrumentation.stop(Instrumentation.STAX_OUTBOUND_MESSAGE, start, bytes);
+        }
+    }
+}
@@ -116,6 +116,17 @@ public class BinarySecurityTokenInputHandler extends AbstractInputSecurityHeader
         wsInboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
     }
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+        throws XMLSecurityException {
+        // Most BinarySecurityToken elements are parsed without JAXB. Anything unusual is left to JAXB
+        T structure = SecurityHeaderStructureParser.parse(eventDeque, index);
+        if (structure != null) {
+            return structure;
+        }
+        return super.parseStructure(eventDeque, index, securityProperties);
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, BinarySecurityTokenType binarySecurityTokenType)
             throws WSSecurityException {
 
@@ -26,6 +26,9 @@ import javax.crypto.spec.SecretKeySpec;
 import jakarta.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.binding.wss10.KeyIdentifierType;
+import org.apache.wss4j.binding.wss10.ReferenceType;
+import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.binding.wssc.AbstractDerivedKeyTokenType;
 import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -42,6 +45,7 @@ import org.apache.xml.security.stax.ext.AbstractInputSecurityHeaderHandler;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.securityToken.AbstractInboundSecurityToken;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
@@ -136,7 +140,9 @@ public class DerivedKeyTokenInputHandler extends AbstractInputSecurityHeaderHand
                                 derivedKeyTokenType.getLength().intValue(),
                                 secret,
                                 nonce,
-                                derivedKeyTokenType.getOffset().intValue()
+                                derivedKeyTokenType.getOffset().intValue(),
+                                getSessionId(derivedKeyTokenType.getSecurityTokenReference()),
+                                ((WSSSecurityProperties) securityProperties).getDerivedKeyCache()
                         );
                         XMLSecurityConstants.AlgorithmUsage derivedKeyAlgorithmUsage;
                         if (WSSConstants.Enc.equals(algorithmUsage)) {
@@ -183,4 +189,17 @@ public class DerivedKeyTokenInputHandler extends AbstractInputSecurityHeaderHand
         derivedKeyTokenSecurityEvent.setCorrelationID(derivedKeyTokenType.getId());
         inputProcessorChain.getSecurityContext().registerSecurityEvent(derivedKeyTokenSecurityEvent);
     }
+
+    /**
+     * Get the identifier of the session of a DerivedKeyToken for a DerivedKeyCache, in the same way as the
+     * DOM code does
+     */
+    private static String getSessionId(SecurityTokenReferenceType securityTokenReferenceType) {
+        ReferenceType referenceType =
+            XMLSecurityUtils.getQNameType(securityTokenReferenceType.getAny(), WSSConstants.TAG_WSSE_REFERENCE);
+        KeyIdentifierType keyIdentifierType =
+            XMLSecurityUtils.getQNameType(securityTokenReferenceType.getAny(), WSSConstants.TAG_WSSE_KEY_IDENTIFIER);
+        return DerivedKeyUtils.getSessionId(referenceType != null ? referenceType.getURI() : null,
+                                            keyIdentifierType != null ? keyIdentifierType.getValue() : null);
+    }
 }
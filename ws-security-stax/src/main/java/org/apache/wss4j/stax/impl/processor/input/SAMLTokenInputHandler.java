@@ -21,6 +21,7 @@ package org.apache.wss4j.stax.impl.processor.input;
 import java.security.Key;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.Iterator;
@@ -31,6 +32,7 @@ import javax.crypto.spec.SecretKeySpec;
 import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Unmarshaller;
+import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamConstants;
@@ -42,8 +44,11 @@ import javax.xml.stream.events.ProcessingInstruction;
 
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.cache.SamlTrustContext;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -117,7 +122,19 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         }
 
         //important: check the signature before we do other processing...
-        if (samlAssertionWrapper.isSigned()) {
+        //the signature does not need to be verified again if the Assertion was verified (and its signing
+        //credential trusted) before with the same trust configuration
+        final VerifiedSamlAssertionCache verifiedSamlAssertionCache = wssSecurityProperties.getVerifiedSamlAssertionCache(); //NOPMD
+        SamlTrustContext trustContext = null;
+        if (verifiedSamlAssertionCache != null) {
+            trustContext = new SamlTrustContext(wssSecurityProperties.getSignatureVerificationCrypto(),
+                                                wssSecurityProperties.getSubjectCertConstraints(),
+                                                wssSecurityProperties.getIssuerDNConstraints(),
+                                                wssSecurityProperties.isEnableRevocation());
+        }
+        SAMLKeyInfo signatureKeyInfo = null;
+        if (samlAssertionWrapper.isSigned()
+            && !samlAssertionWrapper.verifySignatureFromCache(verifiedSamlAssertionCache, trustContext)) {
             Signature signature = samlAssertionWrapper.getSignature();
             if (signature == null) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
@@ -139,8 +156,10 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             BasicCredential credential = null;
             if (sigSecurityToken.getX509Certificates() != null) {
                 credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
+                signatureKeyInfo = new SAMLKeyInfo(sigSecurityToken.getX509Certificates());
             } else if (sigSecurityToken.getPublicKey() != null) {
                 credential = new BasicCredential(sigSecurityToken.getPublicKey());
+                signatureKeyInfo = new SAMLKeyInfo(sigSecurityToken.getPublicKey());
             } else {
                 throw new WSSecurityException(
                         WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
@@ -190,6 +209,10 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         final SamlSecurityToken samlSecurityToken =
                 samlTokenValidator.validate(samlAssertionWrapper, subjectSecurityToken, tokenContext);
 
+        if (verifiedSamlAssertionCache != null && signatureKeyInfo != null) {
+            verifiedSamlAssertionCache.add(samlAssertionWrapper, signatureKeyInfo, trustContext);
+        }
+
         SecurityTokenProvider<InboundSecurityToken> subjectSecurityTokenProvider =
                 new SecurityTokenProvider<InboundSecurityToken>() {
 
@@ -415,12 +438,103 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             xmlSecEventIterator.next();
         }
 
+        buildDocument(xmlSecEventIterator, document);
+        return (T) document;
+    }
+
+    /**
+     * Build the DOM of the SAML token in a single pass over its events. OpenSAML unmarshals and verifies
+     * the token from a DOM, so it can't be skipped. But the namespaces which are in scope in the new
+     * document are tracked here, instead of being looked up in the document for every element and
+     * attribute, and adjacent character events are merged into a single text node.
+     */
+    private void buildDocument(Iterator<XMLSecEvent> xmlSecEventIterator, Document document) throws WSSecurityException {
+        // prefix / namespace URI pairs of the namespaces declared on the current element and its ancestors
+        List<String> declaredNamespaces = new ArrayList<>();
+        Deque<Integer> declaredNamespacesSizes = new ArrayDeque<>();
+        StringBuilder text = new StringBuilder();
+
         Node currentNode = document;
         while (xmlSecEventIterator.hasNext()) {
-            XMLSecEvent next = xmlSecEventIterator.next();
-            currentNode = parseXMLEvent(next, currentNode, document);
+            XMLSecEvent xmlSecEvent = xmlSecEventIterator.next();
+            int eventType = xmlSecEvent.getEventType();
+            if (eventType == XMLStreamConstants.CHARACTERS) {
+                text.append(xmlSecEvent.asCharacters().getText());
+                continue;
+            }
+            if (text.length() > 0) {
+                currentNode.appendChild(document.createTextNode(text.toString()));
+                text.setLength(0);
+            }
+
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
+                QName name = xmlSecStartElement.getName();
+                String prefix = name.getPrefix();
+                Element element = document.createElementNS(name.getNamespaceURI(),
+                        prefix.isEmpty() ? name.getLocalPart() : prefix + ":" + name.getLocalPart());
+                currentNode = currentNode.appendChild(element);
+                declaredNamespacesSizes.push(declaredNamespaces.size());
+
+                for (XMLSecNamespace xmlSecNamespace : xmlSecStartElement.getOnElementDeclaredNamespaces()) {
+                    declareNamespace(element, xmlSecNamespace.getPrefix(), xmlSecNamespace.getNamespaceURI(),
+                                     declaredNamespaces);
+                }
+                for (XMLSecAttribute xmlSecAttribute : xmlSecStartElement.getOnElementDeclaredAttributes()) {
+                    QName attributeName = xmlSecAttribute.getName();
+                    String attributePrefix = attributeName.getPrefix();
+                    if (attributePrefix.isEmpty()) {
+                        element.setAttributeNS(null, attributeName.getLocalPart(), xmlSecAttribute.getValue());
+                    } else {
+                        element.setAttributeNS(attributeName.getNamespaceURI(),
+                                attributePrefix + ":" + attributeName.getLocalPart(), xmlSecAttribute.getValue());
+                        //add namespace which is not declared on current element but must be on a parent element:
+                        if (!isNamespaceInScope(attributePrefix, attributeName.getNamespaceURI(), declaredNamespaces)) {
+                            declareNamespace(element, attributePrefix, attributeName.getNamespaceURI(), declaredNamespaces);
+                        }
+                    }
+                }
+                //add namespace which is not declared on current element but must be on a parent element:
+                if (!isNamespaceInScope(prefix, name.getNamespaceURI(), declaredNamespaces)) {
+                    declareNamespace(element, prefix, name.getNamespaceURI(), declaredNamespaces);
+                }
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                if (!declaredNamespacesSizes.isEmpty()) {
+                    int size = declaredNamespacesSizes.pop();
+                    declaredNamespaces.subList(size, declaredNamespaces.size()).clear();
+                }
+                if (currentNode.getParentNode() != null) {
+                    currentNode = currentNode.getParentNode();
+                }
+            } else {
+                currentNode = parseXMLEvent(xmlSecEvent, currentNode, document);
+            }
         }
-        return (T) document;
+        if (text.length() > 0) {
+            currentNode.appendChild(document.createTextNode(text.toString()));
+        }
+    }
+
+    private static void declareNamespace(Element element, String prefix, String namespaceURI,
+                                         List<String> declaredNamespaces) {
+        String uri = namespaceURI == null ? "" : namespaceURI;
+        if (prefix == null || prefix.isEmpty()) {
+            element.setAttributeNS(WSSConstants.NS_XML, "xmlns", uri);
+            declaredNamespaces.add("");
+        } else {
+            element.setAttributeNS(WSSConstants.NS_XML, "xmlns:" + prefix, uri);
+            declaredNamespaces.add(prefix);
+        }
+        declaredNamespaces.add(uri);
+    }
+
+    private static boolean isNamespaceInScope(String prefix, String namespaceURI, List<String> declaredNamespaces) {
+        for (int i = declaredNamespaces.size() - 2; i >= 0; i -= 2) {
+            if (declaredNamespaces.get(i).equals(prefix)) {
+                return declaredNamespaces.get(i + 1).equals(namespaceURI);
+            }
+        }
+        return prefix.isEmpty() && namespaceURI.isEmpty() || XMLConstants.XML_NS_PREFIX.equals(prefix);
     }
 
     //todo custom SAML unmarshaller directly to XMLObject?
@@ -28,6 +28,7 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -81,6 +82,9 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         boolean responsibleSecurityHeaderFound = false;
         boolean timestampFound = false;
 
+        final Instrumentation instrumentation = ((WSSSecurityProperties) getSecurityProperties()).getInstrumentation();
+        final long headerStart = instrumentation.start();
+
         XMLSecEvent xmlSecEvent;
         do {
             subInputProcessorChain.reset();
@@ -135,6 +139,7 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
                     if (documentLevel == 3 && responsibleSecurityHeaderFound
                             && xmlSecEndElement.getName().equals(WSSConstants.TAG_WSSE_SECURITY)) {
 
+                        instrumentation.stop(Instrumentation.SECURITY_HEADER, headerStart);
                         return finalizeHeaderProcessing(
                                 inputProcessorChain, subInputProcessorChain,
                                 internalSecurityHeaderBufferProcessor, xmlSecEventList);
@@ -214,9 +219,14 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
             LOG.warn("No matching handler found for " + elementName);
             return;
         }
+        Instrumentation instrumentation = ((WSSSecurityProperties) securityProperties).getInstrumentation();
         try {
             XMLSecurityHeaderHandler xmlSecurityHeaderHandler = clazz.getDeclaredConstructor().newInstance();
+            long start = instrumentation.start();
             xmlSecurityHeaderHandler.handle(inputProcessorChain, securityProperties, eventQueue, index);
+            if (instrumentation.isEnabled()) {
+                instrumentation.stop(Instrumentation.PROCESSOR_PREFIX + elementName.getLocalPart(), start);
+            }
         } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
         } catch (WSSecurityException e) {
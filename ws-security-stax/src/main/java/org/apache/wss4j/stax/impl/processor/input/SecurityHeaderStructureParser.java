@@ -0,0 +1,696 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+
+import org.apache.wss4j.binding.wss10.AttributedString;
+import org.apache.wss4j.binding.wss10.BinarySecurityTokenType;
+import org.apache.wss4j.binding.wss10.EncodedString;
+import org.apache.wss4j.binding.wss10.KeyIdentifierType;
+import org.apache.wss4j.binding.wss10.PasswordString;
+import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.binding.wss10.UsernameTokenType;
+import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.binding.wsu10.TimestampType;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
+import org.apache.xml.security.binding.xmldsig.KeyInfoType;
+import org.apache.xml.security.binding.xmldsig.X509DataType;
+import org.apache.xml.security.binding.xmldsig.X509IssuerSerialType;
+import org.apache.xml.security.binding.xmlenc.CipherDataType;
+import org.apache.xml.security.binding.xmlenc.CipherValueType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import org.apache.xml.security.binding.xmlenc.ReferenceList;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+
+/**
+ * Parses the security header elements that are processed for almost every message (Timestamp,
+ * UsernameToken, BinarySecurityToken, SecurityTokenReference and EncryptedKey) directly from the
+ * buffered XMLSecEvents into the JAXB binding types, without going through a JAXB Unmarshaller.
+ *
+ * Only the common, schema valid forms of these elements are handled. Whenever an element contains
+ * something else, e.g. a comment, an unknown child element or attribute, or a value that is not
+ * well-formed, null is returned and the caller must fall back to JAXB, which then also applies the
+ * schema validation and reports any error.
+ */
+public final class SecurityHeaderStructureParser {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SecurityHeaderStructureParser.class);
+
+    private static final org.apache.wss4j.binding.wss10.ObjectFactory WSSE_FACTORY =
+        new org.apache.wss4j.binding.wss10.ObjectFactory();
+    private static final org.apache.wss4j.binding.wsu10.ObjectFactory WSU_FACTORY =
+        new org.apache.wss4j.binding.wsu10.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmldsig.ObjectFactory DSIG_FACTORY =
+        new org.apache.xml.security.binding.xmldsig.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmlenc.ObjectFactory XENC_FACTORY =
+        new org.apache.xml.security.binding.xmlenc.ObjectFactory();
+    private static final org.apache.xml.security.binding.xmlenc11.ObjectFactory XENC11_FACTORY =
+        new org.apache.xml.security.binding.xmlenc11.ObjectFactory();
+
+    // An NCName as used for xsd:ID values, restricted to ASCII. Other values are left to JAXB
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_.\\-]*");
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?[0-9]+");
+
+    private static final UnsupportedStructureException UNSUPPORTED = new UnsupportedStructureException();
+
+    private SecurityHeaderStructureParser() {
+        // complete
+    }
+
+    /**
+     * Parse the security header element that starts at the given index of the event deque.
+     * @return the JAXBElement of the element, or null if it must be parsed with JAXB instead
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T parse(Deque<XMLSecEvent> eventDeque, int index) {
+        EventReader reader = new EventReader(eventDeque, index);
+        QName name = null;
+        try {
+            XMLSecEvent event = reader.next();
+            if (event.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                return null;
+            }
+            XMLSecStartElement startElement = event.asStartElement();
+            name = startElement.getName();
+            if (WSSConstants.TAG_WSU_TIMESTAMP.equals(name)) {
+                return (T) WSU_FACTORY.createTimestamp(parseTimestamp(reader, startElement));
+            } else if (WSSConstants.TAG_WSSE_USERNAME_TOKEN.equals(name)) {
+                return (T) WSSE_FACTORY.createUsernameToken(parseUsernameToken(reader, startElement));
+            } else if (WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN.equals(name)) {
+                return (T) WSSE_FACTORY.createBinarySecurityToken(parseBinarySecurityToken(reader, startElement));
+            } else if (WSSConstants.TAG_WSSE_SECURITY_TOKEN_REFERENCE.equals(name)) {
+                return (T) WSSE_FACTORY.createSecurityTokenReference(parseSecurityTokenReference(reader, startElement));
+            } else if (WSSConstants.TAG_xenc_EncryptedKey.equals(name)) {
+                return (T) XENC_FACTORY.createEncryptedKey(parseEncryptedKey(reader, startElement));
+            }
+            return null;
+        } catch (UnsupportedStructureException e) {
+            LOG.debug("Falling back to JAXB to parse {}", name);
+            return null;
+        }
+    }
+
+    private static TimestampType parseTimestamp(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        TimestampType timestampType = new TimestampType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            if (WSSConstants.ATT_WSU_ID.equals(attribute.getName())) {
+                timestampType.setId(getId(attribute));
+            } else {
+                addOtherAttribute(timestampType.getOtherAttributes(), attribute, WSSConstants.NS_WSU10);
+            }
+        }
+
+        XMLSecStartElement child = reader.nextChildElement();
+        if (child != null && WSSConstants.TAG_WSU_CREATED.equals(child.getName())) {
+            timestampType.setCreated(parseAttributedDateTime(reader, child));
+            child = reader.nextChildElement();
+        }
+        if (child != null && WSSConstants.TAG_WSU_EXPIRES.equals(child.getName())) {
+            timestampType.setExpires(parseAttributedDateTime(reader, child));
+            child = reader.nextChildElement();
+        }
+        if (child != null) {
+            throw UNSUPPORTED;
+        }
+        return timestampType;
+    }
+
+    private static AttributedDateTime parseAttributedDateTime(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        AttributedDateTime attributedDateTime = new AttributedDateTime();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            if (WSSConstants.ATT_WSU_ID.equals(attribute.getName())) {
+                attributedDateTime.setId(getId(attribute));
+            } else {
+                addOtherAttribute(attributedDateTime.getOtherAttributes(), attribute, WSSConstants.NS_WSU10);
+            }
+        }
+        attributedDateTime.setValue(reader.readText());
+        return attributedDateTime;
+    }
+
+    private static UsernameTokenType parseUsernameToken(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        UsernameTokenType usernameTokenType = new UsernameTokenType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            if (WSSConstants.ATT_WSU_ID.equals(attribute.getName())) {
+                usernameTokenType.setId(getId(attribute));
+            } else {
+                addOtherAttribute(usernameTokenType.getOtherAttributes(), attribute, WSSConstants.NS_WSSE10);
+            }
+        }
+
+        XMLSecStartElement child = reader.nextChildElement();
+        if (child == null || !WSSConstants.TAG_WSSE_USERNAME.equals(child.getName())) {
+            throw UNSUPPORTED;
+        }
+        AttributedString username = new AttributedString();
+        parseAttributedString(reader, child, username);
+        usernameTokenType.setUsername(username);
+
+        while ((child = reader.nextChildElement()) != null) {
+            QName name = child.getName();
+            if (WSSConstants.TAG_WSSE_PASSWORD.equals(name)) {
+                PasswordString password = new PasswordString();
+                parseAttributedString(reader, child, password);
+                usernameTokenType.getAny().add(WSSE_FACTORY.createPassword(password));
+            } else if (WSSConstants.TAG_WSSE_NONCE.equals(name)) {
+                EncodedString nonce = new EncodedString();
+                parseAttributedString(reader, child, nonce);
+                usernameTokenType.getAny().add(WSSE_FACTORY.createNonce(nonce));
+            } else if (WSSConstants.TAG_WSU_CREATED.equals(name)) {
+                usernameTokenType.getAny().add(WSU_FACTORY.createCreated(parseAttributedDateTime(reader, child)));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        return usernameTokenType;
+    }
+
+    /**
+     * Parse an AttributedString, or one of its subtypes PasswordString, EncodedString and KeyIdentifierType
+     */
+    private static void parseAttributedString(EventReader reader, XMLSecStartElement startElement,
+                                              AttributedString attributedString) throws UnsupportedStructureException {
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            QName name = attribute.getName();
+            if (WSSConstants.ATT_WSU_ID.equals(name)) {
+                attributedString.setId(getId(attribute));
+            } else if (attributedString instanceof PasswordString && WSSConstants.ATT_NULL_Type.equals(name)) {
+                ((PasswordString) attributedString).setType(attribute.getValue());
+            } else if (attributedString instanceof EncodedString && WSSConstants.ATT_NULL_ENCODING_TYPE.equals(name)) {
+                ((EncodedString) attributedString).setEncodingType(attribute.getValue());
+            } else if (attributedString instanceof KeyIdentifierType && WSSConstants.ATT_NULL_VALUE_TYPE.equals(name)) {
+                ((KeyIdentifierType) attributedString).setValueType(attribute.getValue());
+            } else {
+                addOtherAttribute(attributedString.getOtherAttributes(), attribute, WSSConstants.NS_WSSE10);
+            }
+        }
+        attributedString.setValue(reader.readText());
+    }
+
+    private static BinarySecurityTokenType parseBinarySecurityToken(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        BinarySecurityTokenType binarySecurityTokenType = new BinarySecurityTokenType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            QName name = attribute.getName();
+            if (WSSConstants.ATT_WSU_ID.equals(name)) {
+                binarySecurityTokenType.setId(getId(attribute));
+            } else if (WSSConstants.ATT_NULL_VALUE_TYPE.equals(name)) {
+                binarySecurityTokenType.setValueType(attribute.getValue());
+            } else if (WSSConstants.ATT_NULL_ENCODING_TYPE.equals(name)) {
+                binarySecurityTokenType.setEncodingType(attribute.getValue());
+            } else {
+                addOtherAttribute(binarySecurityTokenType.getOtherAttributes(), attribute, WSSConstants.NS_WSSE10);
+            }
+        }
+        String value = reader.readText();
+        if (!value.isEmpty()) {
+            binarySecurityTokenType.getContent().add(value);
+        }
+        return binarySecurityTokenType;
+    }
+
+    private static SecurityTokenReferenceType parseSecurityTokenReference(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        SecurityTokenReferenceType securityTokenReferenceType = new SecurityTokenReferenceType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            QName name = attribute.getName();
+            if (WSSConstants.ATT_WSU_ID.equals(name)) {
+                securityTokenReferenceType.setId(getId(attribute));
+            } else if (WSSConstants.ATT_WSSE_USAGE.equals(name)) {
+                for (String usage : attribute.getValue().trim().split("\\s+")) {
+                    if (!usage.isEmpty()) {
+                        securityTokenReferenceType.getUsage().add(usage);
+                    }
+                }
+            } else {
+                addOtherAttribute(securityTokenReferenceType.getOtherAttributes(), attribute, WSSConstants.NS_WSSE10);
+            }
+        }
+
+        XMLSecStartElement child;
+        while ((child = reader.nextChildElement()) != null) {
+            QName name = child.getName();
+            if (WSSConstants.TAG_WSSE_KEY_IDENTIFIER.equals(name)) {
+                KeyIdentifierType keyIdentifierType = new KeyIdentifierType();
+                parseAttributedString(reader, child, keyIdentifierType);
+                securityTokenReferenceType.getAny().add(WSSE_FACTORY.createKeyIdentifier(keyIdentifierType));
+            } else if (WSSConstants.TAG_WSSE_REFERENCE.equals(name)) {
+                securityTokenReferenceType.getAny().add(WSSE_FACTORY.createReference(parseReference(reader, child)));
+            } else if (WSSConstants.TAG_dsig_X509Data.equals(name)) {
+                securityTokenReferenceType.getAny().add(DSIG_FACTORY.createX509Data(parseX509Data(reader, child)));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        return securityTokenReferenceType;
+    }
+
+    private static org.apache.wss4j.binding.wss10.ReferenceType parseReference(EventReader reader,
+                                                                               XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        org.apache.wss4j.binding.wss10.ReferenceType referenceType = new org.apache.wss4j.binding.wss10.ReferenceType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            QName name = attribute.getName();
+            if (WSSConstants.ATT_NULL_URI.equals(name)) {
+                referenceType.setURI(attribute.getValue());
+            } else if (WSSConstants.ATT_NULL_VALUE_TYPE.equals(name)) {
+                referenceType.setValueType(attribute.getValue());
+            } else {
+                addOtherAttribute(referenceType.getOtherAttributes(), attribute, WSSConstants.NS_WSSE10);
+            }
+        }
+        if (reader.nextChildElement() != null) {
+            throw UNSUPPORTED;
+        }
+        return referenceType;
+    }
+
+    private static X509DataType parseX509Data(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        checkNoAttributes(startElement);
+        X509DataType x509DataType = new X509DataType();
+        List<Object> content = x509DataType.getX509IssuerSerialOrX509SKIOrX509SubjectName();
+
+        XMLSecStartElement child;
+        while ((child = reader.nextChildElement()) != null) {
+            checkNoAttributes(child);
+            QName name = child.getName();
+            if (WSSConstants.TAG_dsig_X509IssuerSerial.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509IssuerSerial(parseX509IssuerSerial(reader)));
+            } else if (WSSConstants.TAG_dsig_X509SKI.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SKI(decodeBase64(reader.readText())));
+            } else if (WSSConstants.TAG_dsig_X509Certificate.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509Certificate(decodeBase64(reader.readText())));
+            } else if (WSSConstants.TAG_dsig_X509SubjectName.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SubjectName(reader.readText()));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        if (content.isEmpty()) {
+            throw UNSUPPORTED;
+        }
+        return x509DataType;
+    }
+
+    private static X509IssuerSerialType parseX509IssuerSerial(EventReader reader) throws UnsupportedStructureException {
+        X509IssuerSerialType x509IssuerSerialType = new X509IssuerSerialType();
+        XMLSecStartElement child = reader.nextChildElement();
+        if (child == null || !WSSConstants.TAG_dsig_X509IssuerName.equals(child.getName())) {
+            throw UNSUPPORTED;
+        }
+        checkNoAttributes(child);
+        x509IssuerSerialType.setX509IssuerName(reader.readText());
+
+        child = reader.nextChildElement();
+        if (child == null || !WSSConstants.TAG_dsig_X509SerialNumber.equals(child.getName())) {
+            throw UNSUPPORTED;
+        }
+        checkNoAttributes(child);
+        String serialNumber = trim(reader.readText());
+        if (!INTEGER_PATTERN.matcher(serialNumber).matches()) {
+            throw UNSUPPORTED;
+        }
+        x509IssuerSerialType.setX509SerialNumber(new BigInteger(serialNumber));
+
+        if (reader.nextChildElement() != null) {
+            throw UNSUPPORTED;
+        }
+        return x509IssuerSerialType;
+    }
+
+    private static EncryptedKeyType parseEncryptedKey(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        EncryptedKeyType encryptedKeyType = new EncryptedKeyType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            QName name = attribute.getName();
+            if (WSSConstants.ATT_NULL_Id.equals(name)) {
+                encryptedKeyType.setId(getId(attribute));
+            } else if (WSSConstants.ATT_NULL_Type.equals(name)) {
+                encryptedKeyType.setType(attribute.getValue());
+            } else if (WSSConstants.ATT_NULL_MimeType.equals(name)) {
+                encryptedKeyType.setMimeType(attribute.getValue());
+            } else if (WSSConstants.ATT_NULL_Encoding.equals(name)) {
+                encryptedKeyType.setEncoding(attribute.getValue());
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+
+        XMLSecStartElement child = reader.nextChildElement();
+        if (child != null && WSSConstants.TAG_xenc_EncryptionMethod.equals(child.getName())) {
+            encryptedKeyType.setEncryptionMethod(parseEncryptionMethod(reader, child));
+            child = reader.nextChildElement();
+        }
+        if (child != null && WSSConstants.TAG_dsig_KeyInfo.equals(child.getName())) {
+            encryptedKeyType.setKeyInfo(parseKeyInfo(reader, child));
+            child = reader.nextChildElement();
+        }
+        if (child == null || !WSSConstants.TAG_xenc_CipherData.equals(child.getName())) {
+            throw UNSUPPORTED;
+        }
+        encryptedKeyType.setCipherData(parseCipherData(reader, child));
+        child = reader.nextChildElement();
+        if (child != null && WSSConstants.TAG_xenc_ReferenceList.equals(child.getName())) {
+            encryptedKeyType.setReferenceList(parseReferenceList(reader, child));
+            child = reader.nextChildElement();
+        }
+        if (child != null) {
+            throw UNSUPPORTED;
+        }
+        return encryptedKeyType;
+    }
+
+    private static EncryptionMethodType parseEncryptionMethod(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        EncryptionMethodType encryptionMethodType = new EncryptionMethodType();
+        encryptionMethodType.setAlgorithm(getAlgorithm(startElement));
+        List<Object> content = encryptionMethodType.getContent();
+
+        XMLSecStartElement child;
+        while ((child = reader.nextChildElement(content)) != null) {
+            QName name = child.getName();
+            if (WSSConstants.TAG_xenc_OAEPparams.equals(name)) {
+                checkNoAttributes(child);
+                content.add(XENC_FACTORY.createEncryptionMethodTypeOAEPparams(decodeBase64(reader.readText())));
+            } else if (WSSConstants.TAG_dsig_DigestMethod.equals(name)) {
+                DigestMethodType digestMethodType = new DigestMethodType();
+                digestMethodType.setAlgorithm(getAlgorithm(child));
+                if (reader.nextChildElement(digestMethodType.getContent()) != null) {
+                    throw UNSUPPORTED;
+                }
+                content.add(DSIG_FACTORY.createDigestMethod(digestMethodType));
+            } else if (WSSConstants.TAG_xenc11_MGF.equals(name)) {
+                MGFType mgfType = new MGFType();
+                mgfType.setAlgorithm(getAlgorithm(child));
+                if (reader.nextChildElement() != null) {
+                    throw UNSUPPORTED;
+                }
+                content.add(XENC11_FACTORY.createMGF(mgfType));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        return encryptionMethodType;
+    }
+
+    private static KeyInfoType parseKeyInfo(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        KeyInfoType keyInfoType = new KeyInfoType();
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            if (WSSConstants.ATT_NULL_Id.equals(attribute.getName())) {
+                keyInfoType.setId(getId(attribute));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        List<Object> content = keyInfoType.getContent();
+
+        XMLSecStartElement child;
+        while ((child = reader.nextChildElement(content)) != null) {
+            QName name = child.getName();
+            if (WSSConstants.TAG_WSSE_SECURITY_TOKEN_REFERENCE.equals(name)) {
+                content.add(WSSE_FACTORY.createSecurityTokenReference(parseSecurityTokenReference(reader, child)));
+            } else if (WSSConstants.TAG_dsig_X509Data.equals(name)) {
+                content.add(DSIG_FACTORY.createX509Data(parseX509Data(reader, child)));
+            } else if (WSSConstants.TAG_dsig_KeyName.equals(name)) {
+                checkNoAttributes(child);
+                content.add(DSIG_FACTORY.createKeyName(reader.readText()));
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        return keyInfoType;
+    }
+
+    private static CipherDataType parseCipherData(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        checkNoAttributes(startElement);
+        XMLSecStartElement child = reader.nextChildElement();
+        if (child == null || !WSSConstants.TAG_xenc_CipherValue.equals(child.getName())) {
+            throw UNSUPPORTED;
+        }
+        checkNoAttributes(child);
+        CipherValueType cipherValueType = new CipherValueType();
+        String value = reader.readText();
+        if (!value.isEmpty()) {
+            cipherValueType.getContent().add(value);
+        }
+        if (reader.nextChildElement() != null) {
+            throw UNSUPPORTED;
+        }
+        CipherDataType cipherDataType = new CipherDataType();
+        cipherDataType.setCipherValue(cipherValueType);
+        return cipherDataType;
+    }
+
+    private static ReferenceList parseReferenceList(EventReader reader, XMLSecStartElement startElement)
+        throws UnsupportedStructureException {
+        checkNoAttributes(startElement);
+        ReferenceList referenceList = new ReferenceList();
+
+        XMLSecStartElement child;
+        while ((child = reader.nextChildElement()) != null) {
+            if (!WSSConstants.TAG_xenc_DataReference.equals(child.getName())) {
+                throw UNSUPPORTED;
+            }
+            org.apache.xml.security.binding.xmlenc.ReferenceType referenceType =
+                new org.apache.xml.security.binding.xmlenc.ReferenceType();
+            for (XMLSecAttribute attribute : child.getOnElementDeclaredAttributes()) {
+                if (WSSConstants.ATT_NULL_URI.equals(attribute.getName())) {
+                    referenceType.setURI(attribute.getValue());
+                } else {
+                    throw UNSUPPORTED;
+                }
+            }
+            if (referenceType.getURI() == null || reader.nextChildElement() != null) {
+                throw UNSUPPORTED;
+            }
+            referenceList.getDataReferenceOrKeyReference().add(XENC_FACTORY.createReferenceListDataReference(referenceType));
+        }
+        if (referenceList.getDataReferenceOrKeyReference().isEmpty()) {
+            throw UNSUPPORTED;
+        }
+        return referenceList;
+    }
+
+    private static String getAlgorithm(XMLSecStartElement startElement) throws UnsupportedStructureException {
+        String algorithm = null;
+        for (XMLSecAttribute attribute : startElement.getOnElementDeclaredAttributes()) {
+            if (WSSConstants.ATT_NULL_Algorithm.equals(attribute.getName())) {
+                algorithm = attribute.getValue();
+            } else {
+                throw UNSUPPORTED;
+            }
+        }
+        if (algorithm == null) {
+            throw UNSUPPORTED;
+        }
+        return algorithm;
+    }
+
+    private static String getId(XMLSecAttribute attribute) throws UnsupportedStructureException {
+        String id = attribute.getValue();
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw UNSUPPORTED;
+        }
+        return id;
+    }
+
+    /**
+     * Add an attribute that is matched by an xsd:anyAttribute namespace="##other" wildcard
+     */
+    private static void addOtherAttribute(Map<QName, String> otherAttributes, XMLSecAttribute attribute,
+                                          String targetNamespace) throws UnsupportedStructureException {
+        String namespace = attribute.getName().getNamespaceURI();
+        if (namespace == null || namespace.isEmpty() || namespace.equals(targetNamespace)) {
+            throw UNSUPPORTED;
+        }
+        otherAttributes.put(attribute.getName(), attribute.getValue());
+    }
+
+    private static void checkNoAttributes(XMLSecStartElement startElement) throws UnsupportedStructureException {
+        if (!startElement.getOnElementDeclaredAttributes().isEmpty()) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private static byte[] decodeBase64(String value) throws UnsupportedStructureException {
+        StringBuilder stringBuilder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!isWhitespace(c)) {
+                stringBuilder.append(c);
+            }
+        }
+        try {
+            return Base64.getDecoder().decode(stringBuilder.toString());
+        } catch (IllegalArgumentException e) {
+            throw UNSUPPORTED;
+        }
+    }
+
+    private static String trim(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Reads the events of the element in document order, starting at the given index of the event deque
+     */
+    private static final class EventReader {
+
+        private final Iterator<XMLSecEvent> iterator;
+
+        EventReader(Deque<XMLSecEvent> eventDeque, int index) {
+            iterator = eventDeque.descendingIterator();
+            for (int i = 0; i < index && iterator.hasNext(); i++) {
+                iterator.next();
+            }
+        }
+
+        XMLSecEvent next() throws UnsupportedStructureException {
+            if (!iterator.hasNext()) {
+                throw UNSUPPORTED;
+            }
+            return iterator.next();
+        }
+
+        /**
+         * Return the next child element of the current element, or null if the end of the current element
+         * is reached. Only whitespace is allowed between the child elements.
+         */
+        XMLSecStartElement nextChildElement() throws UnsupportedStructureException {
+            return nextChildElement(null);
+        }
+
+        /**
+         * Return the next child element of the current element, or null if the end of the current element
+         * is reached. The text before the child element is added to the given mixed content, if any.
+         */
+        XMLSecStartElement nextChildElement(List<Object> mixedContent) throws UnsupportedStructureException {
+            StringBuilder text = null;
+            while (true) {
+                XMLSecEvent event = next();
+                switch (event.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                case XMLStreamConstants.END_ELEMENT:
+                    if (text != null) {
+                        mixedContent.add(text.toString());
+                    }
+                    return event.getEventType() == XMLStreamConstants.START_ELEMENT ? event.asStartElement() : null;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    char[] characters = event.asCharacters().getText();
+                    if (mixedContent != null) {
+                        if (text == null) {
+                            text = new StringBuilder();
+                        }
+                        text.append(characters);
+                    } else {
+                        for (char c : characters) {
+                            if (!isWhitespace(c)) {
+                                throw UNSUPPORTED;
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    throw UNSUPPORTED;
+                }
+            }
+        }
+
+        /**
+         * Return the text content of the current element, which must not contain child elements
+         */
+        String readText() throws UnsupportedStructureException {
+            String text = null;
+            StringBuilder stringBuilder = null;
+            while (true) {
+                XMLSecEvent event = next();
+                switch (event.getEventType()) {
+                case XMLStreamConstants.END_ELEMENT:
+                    if (stringBuilder != null) {
+                        return stringBuilder.toString();
+                    }
+                    return text != null ? text : "";
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    String value = new String(event.asCharacters().getText());
+                    if (text == null) {
+                        text = value;
+                    } else {
+                        if (stringBuilder == null) {
+                            stringBuilder = new StringBuilder(text);
+                        }
+                        stringBuilder.append(value);
+                    }
+                    break;
+                default:
+                    throw UNSUPPORTED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Signals that a structure is not handled by this parser. It is thrown often enough on unusual
+     * messages that it is preallocated and carries no stack trace.
+     */
+    private static final class UnsupportedStructureException extends Exception {
+
+        private static final long serialVersionUID = 4530513717282839286L;
+
+        UnsupportedStructureException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -98,6 +98,17 @@ public class SecurityTokenReferenceInputHandler extends AbstractInputSecurityHea
         }
     }
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+        throws XMLSecurityException {
+        // Most SecurityTokenReference elements are parsed without JAXB. Anything unusual is left to JAXB
+        T structure = SecurityHeaderStructureParser.parse(eventDeque, index);
+        if (structure != null) {
+            return structure;
+        }
+        return super.parseStructure(eventDeque, index, securityProperties);
+    }
+
     static class InternalSecurityTokenReferenceInputProcessor extends AbstractInputProcessor {
 
         private final String securityTokenReferenceId;
@@ -107,6 +107,17 @@ public class TimestampInputHandler extends AbstractInputSecurityHeaderHandler {
         wssecurityContextInbound.put(WSSConstants.PROP_TIMESTAMP_SECURITYEVENT, timestampSecurityEvent);
     }
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+        throws XMLSecurityException {
+        // Most Timestamp elements are parsed without JAXB. Anything unusual is left to JAXB
+        T structure = SecurityHeaderStructureParser.parse(eventDeque, index);
+        if (structure != null) {
+            return structure;
+        }
+        return super.parseStructure(eventDeque, index, securityProperties);
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, TimestampType timestampType,
                                     List<XMLSecEvent> xmlSecEvents) throws WSSecurityException {
         final WSInboundSecurityContext securityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
@@ -29,6 +29,7 @@ import org.apache.wss4j.common.util.DateUtil;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.securityToken.UsernameSecurityTokenImpl;
 import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
 import org.apache.wss4j.stax.securityEvent.UsernameTokenSecurityEvent;
 import org.apache.wss4j.stax.validate.TokenContext;
@@ -82,18 +83,17 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         if (encodedNonce != null && replayCache != null) {
             // Check for replay attacks
             String nonce = encodedNonce.getValue();
-            if (replayCache.contains(nonce)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
 
             // If no Created, then just cache for the default time
             // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
             // older token will just get rejected anyway
             int utTTL = wssSecurityProperties.getUtTTL();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(nonce);
-            } else {
-                replayCache.add(nonce, Instant.now().plusSeconds(utTTL));
+            Instant expiry = null;
+            if (created != null && utTTL > 0) {
+                expiry = Instant.now().plusSeconds(utTTL);
+            }
+            if (!replayCache.addIfAbsent(nonce, expiry)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         }
 
@@ -111,6 +111,9 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         }
         final UsernameSecurityToken usernameSecurityToken =
                 usernameTokenValidator.validate(usernameTokenType, tokenContext);
+        if (usernameSecurityToken instanceof UsernameSecurityTokenImpl) {
+            ((UsernameSecurityTokenImpl)usernameSecurityToken).setKeyCache(wssSecurityProperties.getUsernameTokenKeyCache());
+        }
 
         SecurityTokenProvider<InboundSecurityToken> securityTokenProvider =
                 new SecurityTokenProvider<InboundSecurityToken>() {
@@ -135,6 +138,17 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         inputProcessorChain.getSecurityContext().registerSecurityEvent(usernameTokenSecurityEvent);
     }
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+        throws XMLSecurityException {
+        // Most UsernameToken elements are parsed without JAXB. Anything unusual is left to JAXB
+        T structure = SecurityHeaderStructureParser.parse(eventDeque, index);
+        if (structure != null) {
+            return structure;
+        }
+        return super.parseStructure(eventDeque, index, securityProperties);
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, UsernameTokenType usernameTokenType,
                                     List<XMLSecEvent> xmlSecEvents) throws WSSecurityException {
 
@@ -18,21 +18,53 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.securityToken.AbstractInboundSecurityToken;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.EncryptedKeyTokenSecurityEvent;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
@@ -63,9 +95,277 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
             }
         }
 
+        // See if the same EncryptedKey has been decrypted before
+        EncryptedKeyCache encryptedKeyCache = ((WSSSecurityProperties) securityProperties).getEncryptedKeyCache(); //NOPMD
+        byte[] cipherValue = null;
+        if (encryptedKeyCache != null) {
+            cipherValue = getCipherValue(encryptedKeyType);
+        }
+        if (cipherValue != null) {
+            handleCacheableKey(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent,
+                               securityProperties, encryptedKeyCache, cipherValue);
+            return;
+        }
+
         super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
     }
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+        throws XMLSecurityException {
+        // Most EncryptedKey elements are parsed without JAXB. Anything unusual is left to JAXB
+        T structure = SecurityHeaderStructureParser.parse(eventDeque, index);
+        if (structure != null) {
+            return structure;
+        }
+        return super.parseStructure(eventDeque, index, securityProperties);
+    }
+
+    /**
+     * Returns the (decoded) CipherValue of the given EncryptedKey, or null if it is not contained
+     * in the message itself
+     */
+    private static byte[] getCipherValue(EncryptedKeyType encryptedKeyType) {
+        byte[] cipherValue = null;
+        if (encryptedKeyType.getCipherData() != null && encryptedKeyType.getCipherData().getCipherValue() != null) {
+            StringBuilder sb = new StringBuilder();
+            boolean inline = true;
+            for (Object obj : encryptedKeyType.getCipherData().getCipherValue().getContent()) {
+                if (!(obj instanceof String)) {
+                    // e.g. a xop:Include of an attachment
+                    inline = false;
+                    break;
+                }
+                sb.append((String) obj);
+            }
+            if (inline && sb.length() != 0) {
+                cipherValue = Base64.getMimeDecoder().decode(sb.toString());
+            }
+        }
+        return cipherValue;
+    }
+
+    /**
+     * Registers a CachingEncryptedKeySecurityToken for the EncryptedKey, instead of the token of
+     * the super class, and fires its tokenSecurityEvent.
+     */
+    private void handleCacheableKey(final InputProcessorChain inputProcessorChain, final EncryptedKeyType encryptedKeyType,
+                                    final XMLSecEvent responsibleXMLSecStartXMLEvent,
+                                    final XMLSecurityProperties securityProperties,
+                                    final EncryptedKeyCache encryptedKeyCache,
+                                    final byte[] cipherValue) throws XMLSecurityException {
+        final EncryptionMethodType encryptionMethodType = encryptedKeyType.getEncryptionMethod();
+        if (encryptionMethodType == null) {
+            throw new XMLSecurityException("stax.encryption.noEncAlgo");
+        }
+        if (encryptedKeyType.getId() == null) {
+            encryptedKeyType.setId(IDGenerator.generateID(null));
+        }
+
+        final InboundSecurityContext inboundSecurityContext = inputProcessorChain.getSecurityContext();
+
+        SecurityTokenProvider<InboundSecurityToken> securityTokenProvider = new SecurityTokenProvider<InboundSecurityToken>() {
+
+            private CachingEncryptedKeySecurityToken encryptedKeySecurityToken;
+
+            @Override
+            public InboundSecurityToken getSecurityToken() throws XMLSecurityException {
+
+                if (this.encryptedKeySecurityToken != null) {
+                    return this.encryptedKeySecurityToken;
+                }
+
+                this.encryptedKeySecurityToken = new CachingEncryptedKeySecurityToken(
+                    inboundSecurityContext, encryptedKeyType, securityProperties, encryptedKeyCache, cipherValue);
+                this.encryptedKeySecurityToken.setElementPath(responsibleXMLSecStartXMLEvent.getElementPath());
+                this.encryptedKeySecurityToken.setXMLSecEvent(responsibleXMLSecStartXMLEvent);
+                return this.encryptedKeySecurityToken;
+            }
+
+            @Override
+            public String getId() {
+                return encryptedKeyType.getId();
+            }
+        };
+        inboundSecurityContext.registerSecurityTokenProvider(encryptedKeyType.getId(), securityTokenProvider);
+
+        //fire a tokenSecurityEvent
+        EncryptedKeyTokenSecurityEvent tokenSecurityEvent = new EncryptedKeyTokenSecurityEvent();
+        tokenSecurityEvent.setSecurityToken(securityTokenProvider.getSecurityToken());
+        tokenSecurityEvent.setCorrelationID(encryptedKeyType.getId());
+        inboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
+
+        if (encryptedKeyType.getReferenceList() != null) {
+            handleReferenceList(inputProcessorChain, encryptedKeyType, securityProperties);
+        }
+    }
+
+    /**
+     * The EncryptedKey token that is used if an EncryptedKeyCache is configured. The secret key is
+     * taken from the cache, or else it is unwrapped (as by the token of the super class) and added
+     * to the cache. If the unwrapping fails, a faked key is returned to mitigate timing attacks,
+     * which is never cached.
+     */
+    private static final class CachingEncryptedKeySecurityToken extends AbstractInboundSecurityToken {
+
+        private final InboundSecurityContext inboundSecurityContext;
+        private final EncryptedKeyType encryptedKeyType;
+        private final XMLSecurityProperties securityProperties;
+        private final EncryptedKeyCache encryptedKeyCache;
+        private final byte[] cipherValue;
+        private final String encryptedKeySHA1;
+        private InboundSecurityToken wrappingSecurityToken;
+        private byte[] secret;
+
+        CachingEncryptedKeySecurityToken(InboundSecurityContext inboundSecurityContext, EncryptedKeyType encryptedKeyType,
+                                         XMLSecurityProperties securityProperties,
+                                         EncryptedKeyCache encryptedKeyCache, byte[] cipherValue)
+            throws XMLSecurityException {
+            super(inboundSecurityContext, encryptedKeyType.getId(), SecurityTokenConstants.KeyIdentifier_EncryptedKey, true);
+            this.inboundSecurityContext = inboundSecurityContext;
+            this.encryptedKeyType = encryptedKeyType;
+            this.securityProperties = securityProperties;
+            this.encryptedKeyCache = encryptedKeyCache;
+            this.cipherValue = cipherValue;
+            this.encryptedKeySHA1 = EncryptedKeyCache.getIdentifier(cipherValue);
+            setSha1Identifier(encryptedKeySHA1);
+        }
+
+        @Override
+        protected Key getKey(String algorithmURI, XMLSecurityConstants.AlgorithmUsage algorithmUsage,
+                             String correlationID) throws XMLSecurityException {
+            Key key = getSecretKey().get(algorithmURI);
+            if (key != null) {
+                return key;
+            }
+
+            String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
+            key = new SecretKeySpec(getSecret(algorithmURI, correlationID), keyAlgorithm);
+            setSecretKey(algorithmURI, key);
+            return key;
+        }
+
+        private byte[] getSecret(String symmetricAlgorithmURI, String correlationID) throws XMLSecurityException {
+            if (this.secret != null) {
+                return this.secret;
+            }
+
+            String keyWrappingAlgorithm = encryptedKeyType.getEncryptionMethod().getAlgorithm();
+            if (keyWrappingAlgorithm == null) {
+                throw new XMLSecurityException("stax.encryption.noEncAlgo");
+            }
+            String jceName = JCEAlgorithmMapper.translateURItoJCEID(keyWrappingAlgorithm);
+            if (jceName == null) {
+                throw new XMLSecurityException("algorithms.NoSuchMap", new Object[] {keyWrappingAlgorithm});
+            }
+            InboundSecurityToken wrappingSecurityToken = getKeyWrappingToken();
+            XMLSecurityConstants.AlgorithmUsage algorithmUsage =
+                wrappingSecurityToken.isAsymmetric() ? XMLSecurityConstants.Asym_Key_Wrap : XMLSecurityConstants.Sym_Key_Wrap;
+            AlgorithmParameterSpec parameterSpec = getOAEPParameterSpec(keyWrappingAlgorithm, correlationID);
+
+            byte[] cachedSecret = encryptedKeyCache.get(encryptedKeySHA1);
+            if (cachedSecret != null) {
+                LOG.debug("Using the cached secret key of EncryptedKey {}", encryptedKeySHA1);
+                // Report the key wrapping algorithm and key length as if the key was decrypted,
+                // but don't use the private key
+                if (wrappingSecurityToken.isAsymmetric()) {
+                    wrappingSecurityToken.getPublicKey(keyWrappingAlgorithm, algorithmUsage, correlationID);
+                } else {
+                    wrappingSecurityToken.getSecretKey(keyWrappingAlgorithm, algorithmUsage, correlationID);
+                }
+                this.secret = cachedSecret;
+                return this.secret;
+            }
+
+            Cipher cipher;
+            try {
+                String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(keyWrappingAlgorithm);
+                if (jceProvider == null) {
+                    cipher = Cipher.getInstance(jceName);
+                } else {
+                    cipher = Cipher.getInstance(jceName, jceProvider);
+                }
+                Key wrappingKey = wrappingSecurityToken.getSecretKey(keyWrappingAlgorithm, algorithmUsage, correlationID);
+                if (parameterSpec == null) {
+                    cipher.init(Cipher.UNWRAP_MODE, wrappingKey);
+                } else {
+                    cipher.init(Cipher.UNWRAP_MODE, wrappingKey, parameterSpec);
+                }
+            } catch (NoSuchPaddingException | NoSuchAlgorithmException | InvalidAlgorithmParameterException
+                | InvalidKeyException | NoSuchProviderException e) {
+                throw new XMLSecurityException(e);
+            }
+
+            try {
+                String jceKeyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(symmetricAlgorithmURI);
+                this.secret = cipher.unwrap(cipherValue, jceKeyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            } catch (IllegalStateException e) {
+                throw new XMLSecurityException(e);
+            } catch (Exception e) {
+                LOG.warn("Unwrapping of the encrypted key failed with error: " + e.getMessage() + ". "
+                    + "Generating a faked one to mitigate timing attacks.");
+                int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(symmetricAlgorithmURI);
+                this.secret = XMLSecurityConstants.generateBytes(keyLength / 8);
+                return this.secret;
+            }
+
+            // Only a successfully unwrapped key is cached, never the faked key from above
+            encryptedKeyCache.add(encryptedKeySHA1, this.secret);
+            return this.secret;
+        }
+
+        private AlgorithmParameterSpec getOAEPParameterSpec(String keyWrappingAlgorithm, String correlationID)
+            throws XMLSecurityException {
+            if (!(WSSConstants.NS_XENC11_RSAOAEP.equals(keyWrappingAlgorithm)
+                || WSSConstants.NS_XENC_RSAOAEPMGF1P.equals(keyWrappingAlgorithm))) {
+                return null;
+            }
+            List<Object> content = encryptedKeyType.getEncryptionMethod().getContent();
+
+            String jceDigestAlgorithm = "SHA-1";
+            DigestMethodType digestMethodType = XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_dsig_DigestMethod);
+            if (digestMethodType != null) {
+                AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+                algorithmSuiteSecurityEvent.setAlgorithmURI(digestMethodType.getAlgorithm());
+                algorithmSuiteSecurityEvent.setAlgorithmUsage(XMLSecurityConstants.EncDig);
+                algorithmSuiteSecurityEvent.setCorrelationID(correlationID);
+                inboundSecurityContext.registerSecurityEvent(algorithmSuiteSecurityEvent);
+
+                jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(digestMethodType.getAlgorithm());
+            }
+
+            PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
+            byte[] oaepParams = XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_xenc_OAEPparams);
+            if (oaepParams != null) {
+                pSource = new PSource.PSpecified(oaepParams);
+            }
+
+            MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
+            MGFType mgfType = XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_xenc11_MGF);
+            if (mgfType != null) {
+                String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(mgfType.getAlgorithm());
+                mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
+            }
+            return new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
+        }
+
+        @Override
+        public InboundSecurityToken getKeyWrappingToken() throws XMLSecurityException {
+            if (this.wrappingSecurityToken == null) {
+                this.wrappingSecurityToken = SecurityTokenFactory.getInstance().getSecurityToken(
+                    encryptedKeyType.getKeyInfo(), SecurityTokenConstants.KeyUsage_Decryption,
+                    securityProperties, inboundSecurityContext);
+                this.wrappingSecurityToken.addWrappedToken(this);
+            }
+            return this.wrappingSecurityToken;
+        }
+
+        @Override
+        public SecurityTokenConstants.TokenType getTokenType() {
+            return SecurityTokenConstants.EncryptedKeyToken;
+        }
+    }
+
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
     //and add it to the chain
     @Override
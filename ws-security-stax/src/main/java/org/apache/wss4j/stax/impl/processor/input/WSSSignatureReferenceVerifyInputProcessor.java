@@ -313,16 +313,11 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             final String cacheKey =
                     timestampSecurityEvent.getCreated().get(ChronoField.MILLI_OF_SECOND)
                     + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
-            }
 
-            // Store the Timestamp/SignatureValue combination in the cache
+            // Store the Timestamp/SignatureValue combination in the cache, unless it is already there
             Instant expires = timestampSecurityEvent.getExpires();
-            if (expires != null) {
-                replayCache.add(cacheKey, expires);
-            } else {
-                replayCache.add(cacheKey);
+            if (!replayCache.addIfAbsent(cacheKey, expires)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
         }
     }
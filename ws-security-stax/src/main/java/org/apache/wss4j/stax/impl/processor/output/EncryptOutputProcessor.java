@@ -389,6 +389,11 @@ public class EncryptOutputProcessor extends AbstractEncryptOutputProcessor {
             }
 
             KeyIdentifier keyIdentifier = ((WSSSecurityProperties) getSecurityProperties()).getEncryptionKeyIdentifier();
+            if (WSSecurityTokenConstants.EncryptedKeyToken.equals(securityToken.getTokenType())
+                && securityToken.getSha1Identifier() != null && securityToken.getKeyWrappingToken() == null) {
+                // The session key of an EncryptedKey that was sent with an earlier message
+                keyIdentifier = WSSecurityTokenConstants.KEYIDENTIFIER_ENCRYPTED_KEY_SHA1_IDENTIFIER;
+            }
             if (WSSecurityTokenConstants.KEYIDENTIFIER_ENCRYPTED_KEY_SHA1_IDENTIFIER.equals(keyIdentifier)) {
                 List<XMLSecAttribute> attributes = new ArrayList<>(1);
                 attributes.add(createAttribute(WSSConstants.ATT_WSSE11_TOKEN_TYPE, WSSConstants.NS_WSS_ENC_KEY_VALUE_TYPE));
@@ -40,6 +40,8 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -318,6 +320,16 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                     }
                     byte[] encryptedEphemeralKey = cipher.wrap(secretKey);
 
+                    OutboundSessionKeyCache sessionKeyCache = //NOPMD
+                        ((WSSSecurityProperties)getSecurityProperties()).getOutboundSessionKeyCache();
+                    X509Certificate[] x509Certificates = securityToken.getKeyWrappingToken().getX509Certificates();
+                    if (sessionKeyCache != null && outputReferenceList && WSSConstants.ENCRYPTION.equals(getAction())
+                        && x509Certificates != null && x509Certificates.length > 0) {
+                        // The following messages to this recipient can reuse the session key
+                        sessionKeyCache.add(x509Certificates[0], getSecurityProperties().getEncryptionSymAlgorithm(),
+                                            secretKey.getEncoded(), EncryptedKeyCache.getIdentifier(encryptedEphemeralKey));
+                    }
+
                     if (((WSSSecurityProperties)getSecurityProperties()).getCallbackHandler() != null) {
                         // Store the Encrypted Key in the CallbackHandler for processing on the inbound side
                         WSPasswordCallback callback =
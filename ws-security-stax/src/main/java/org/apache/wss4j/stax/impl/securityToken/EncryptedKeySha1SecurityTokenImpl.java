@@ -23,6 +23,7 @@ import java.security.Key;
 import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.callback.CallbackHandler;
 
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -40,13 +41,21 @@ public class EncryptedKeySha1SecurityTokenImpl
         extends AbstractInboundSecurityToken implements EncryptedKeySha1SecurityToken {
 
     private CallbackHandler callbackHandler;
+    private EncryptedKeyCache encryptedKeyCache;
 
     public EncryptedKeySha1SecurityTokenImpl(
             WSInboundSecurityContext inboundSecurityContext, CallbackHandler callbackHandler,
             String sha1Identifier, String id) {
+        this(inboundSecurityContext, callbackHandler, sha1Identifier, id, null);
+    }
+
+    public EncryptedKeySha1SecurityTokenImpl(
+            WSInboundSecurityContext inboundSecurityContext, CallbackHandler callbackHandler,
+            String sha1Identifier, String id, EncryptedKeyCache encryptedKeyCache) {
 
         super(inboundSecurityContext, id, WSSecurityTokenConstants.KEYIDENTIFIER_ENCRYPTED_KEY_SHA1_IDENTIFIER, false);
         this.callbackHandler = callbackHandler;
+        this.encryptedKeyCache = encryptedKeyCache;
         setSha1Identifier(sha1Identifier);
     }
 
@@ -64,17 +73,24 @@ public class EncryptedKeySha1SecurityTokenImpl
             return key;
         }
 
-        WSPasswordCallback secretKeyCallback =
-                new WSPasswordCallback(getSha1Identifier(), null,
-                        WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.SECRET_KEY);
-        WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback);
-        if (secretKeyCallback.getKey() == null) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noKey",
-                                          new Object[] {getSha1Identifier()});
+        byte[] secret = null;
+        if (encryptedKeyCache != null) {
+            secret = encryptedKeyCache.get(getSha1Identifier());
+        }
+        if (secret == null) {
+            WSPasswordCallback secretKeyCallback =
+                    new WSPasswordCallback(getSha1Identifier(), null,
+                            WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.SECRET_KEY);
+            WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback);
+            if (secretKeyCallback.getKey() == null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noKey",
+                                              new Object[] {getSha1Identifier()});
+            }
+            secret = secretKeyCallback.getKey();
         }
 
         String keyAlgorithm = JCEMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
-        key = new SecretKeySpec(secretKeyCallback.getKey(), keyAlgorithm);
+        key = new SecretKeySpec(secret, keyAlgorithm);
         setSecretKey(algorithmURI, key);
         return key;
     }
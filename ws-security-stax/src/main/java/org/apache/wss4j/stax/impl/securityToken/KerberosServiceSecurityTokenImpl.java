@@ -35,6 +35,8 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredential;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
@@ -45,6 +47,7 @@ import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.impl.securityToken.AbstractInboundSecurityToken;
+import org.ietf.jgss.GSSCredential;
 
 public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityToken implements KerberosServiceSecurityToken {
 
@@ -53,6 +56,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     private String kerberosTokenValueType;
 
     private KerberosTokenDecoder kerberosTokenDecoder;
+    private KerberosServiceCredentialCache serviceCredentialCache;
     private Subject subject;
     private Principal principal;
     private byte[] sessionKey;
@@ -91,11 +95,19 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
-            LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
-            loginContext.login();
+            // Login using JAAS, or reuse the cached login of the service
+            KerberosServiceCredential serviceCredential = null;
+            if (serviceCredentialCache != null) {
+                serviceCredential =
+                    serviceCredentialCache.getCredential(contextAndServiceNameCallback.getContextName(), callbackHandler);
+                this.subject = serviceCredential.getSubject();
+            } else {
+                LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
+                loginContext.login();
+                this.subject = loginContext.getSubject();
+            }
 
             // Get the service name to use - fall back on the principal
-            this.subject = loginContext.getSubject();
 
             String service = contextAndServiceNameCallback.getServiceName();
             if (service == null) {
@@ -110,11 +122,16 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 service = principals.iterator().next().getName();
             }
 
+            GSSCredential acceptorCredential = null;
+            if (serviceCredential != null) {
+                acceptorCredential =
+                    serviceCredential.getAcceptorCredential(service, contextAndServiceNameCallback.isUsernameServiceNameForm());
+            }
             KerberosServiceExceptionAction action =
                 new KerberosServiceExceptionAction(binaryContent,
                                                    service,
                                                    contextAndServiceNameCallback.isUsernameServiceNameForm(),
-                                                   false);
+                                                   false, acceptorCredential);
             KerberosServiceContext krbServiceCtx = null;
             try {
                 krbServiceCtx = Subject.doAs(subject, action);
@@ -129,6 +146,11 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 }
             }
 
+            // Only an accepted token is recorded for the replay detection
+            if (serviceCredentialCache != null) {
+                serviceCredentialCache.checkReplay(binaryContent);
+            }
+
             this.principal = krbServiceCtx.getPrincipal();
 
             Key key = krbServiceCtx.getSessionKey();
@@ -200,4 +222,22 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     public void setKerberosTokenDecoder(KerberosTokenDecoder kerberosTokenDecoder) {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
+
+    /**
+     * Get the cache of the credentials of the service, which is used to avoid a JAAS login for every
+     * received token.
+     * @return the cache of the credentials of the service
+     */
+    public KerberosServiceCredentialCache getServiceCredentialCache() {
+        return serviceCredentialCache;
+    }
+
+    /**
+     * Set the cache of the credentials of the service, which is used to avoid a JAAS login for every
+     * received token. It can be null, in which case a login is done for every token.
+     * @param serviceCredentialCache the cache of the credentials of the service
+     */
+    public void setServiceCredentialCache(KerberosServiceCredentialCache serviceCredentialCache) {
+        this.serviceCredentialCache = serviceCredentialCache;
+    }
 }
@@ -305,7 +305,7 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         } else if (WSSConstants.NS_ENCRYPTED_KEY_SHA1.equals(valueType)) {
             return new EncryptedKeySha1SecurityTokenImpl(
                     (WSInboundSecurityContext) inboundSecurityContext, callbackHandler, keyIdentifierType.getValue(),
-                    securityTokenReferenceId);
+                    securityTokenReferenceId, securityProperties != null ? securityProperties.getEncryptedKeyCache() : null);
         } else if (WSSConstants.NS_SAML10_TYPE.equals(valueType) || WSSConstants.NS_SAML20_TYPE.equals(valueType)) {
             if (WSSConstants.NS_SAML20_TYPE.equals(valueType) && !WSSConstants.NS_SAML20_TOKEN_PROFILE_TYPE.equals(tokenType)) {
                 ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R6617);
@@ -31,12 +31,20 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.DerivedKeyCache;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.UsernameTokenKeyCache;
+import org.apache.wss4j.common.cache.VerifiedSamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialCache;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSConstants.UsernameTokenPasswordType;
@@ -594,6 +602,54 @@ public final class ConfigurationConverter {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        EncryptedKeyCache encryptedKeyCache = //NOPMD
+            (EncryptedKeyCache)config.get(ConfigurationConstants.ENCRYPTED_KEY_CACHE_INSTANCE);
+        if (encryptedKeyCache != null) {
+            properties.setEncryptedKeyCache(encryptedKeyCache);
+        }
+
+        VerifiedSamlAssertionCache verifiedSamlAssertionCache = //NOPMD
+            (VerifiedSamlAssertionCache)config.get(ConfigurationConstants.VERIFIED_SAML_ASSERTION_CACHE_INSTANCE);
+        if (verifiedSamlAssertionCache != null) {
+            properties.setVerifiedSamlAssertionCache(verifiedSamlAssertionCache);
+        }
+
+        SigningCredentialCache signingCredentialCache =
+            (SigningCredentialCache)config.get(ConfigurationConstants.SIGNING_CREDENTIAL_CACHE_INSTANCE);
+        if (signingCredentialCache != null) {
+            properties.setSigningCredentialCache(signingCredentialCache);
+        }
+
+        OutboundSessionKeyCache outboundSessionKeyCache = //NOPMD
+            (OutboundSessionKeyCache)config.get(ConfigurationConstants.OUTBOUND_SESSION_KEY_CACHE_INSTANCE);
+        if (outboundSessionKeyCache != null) {
+            properties.setOutboundSessionKeyCache(outboundSessionKeyCache);
+        }
+
+        Instrumentation instrumentation =
+            (Instrumentation)config.get(ConfigurationConstants.INSTRUMENTATION_INSTANCE);
+        if (instrumentation != null) {
+            properties.setInstrumentation(instrumentation);
+        }
+
+        KerberosServiceCredentialCache kerberosServiceCredentialCache = //NOPMD
+            (KerberosServiceCredentialCache)config.get(ConfigurationConstants.KERBEROS_SERVICE_CREDENTIAL_CACHE_INSTANCE);
+        if (kerberosServiceCredentialCache != null) {
+            properties.setKerberosServiceCredentialCache(kerberosServiceCredentialCache);
+        }
+
+        UsernameTokenKeyCache usernameTokenKeyCache = //NOPMD
+            (UsernameTokenKeyCache)config.get(ConfigurationConstants.USERNAME_TOKEN_KEY_CACHE_INSTANCE);
+        if (usernameTokenKeyCache != null) {
+            properties.setUsernameTokenKeyCache(usernameTokenKeyCache);
+        }
+
+        DerivedKeyCache derivedKeyCache = //NOPMD
+            (DerivedKeyCache)config.get(ConfigurationConstants.DERIVED_KEY_CACHE_INSTANCE);
+        if (derivedKeyCache != null) {
+            properties.setDerivedKeyCache(derivedKeyCache);
+        }
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
@@ -30,13 +30,17 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.SigningCredential;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
 import org.apache.wss4j.stax.ext.DocumentCreatorImpl;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.WSSecurityStreamWriter;
 import org.apache.wss4j.stax.impl.processor.output.BinarySecurityTokenOutputProcessor;
 import org.apache.wss4j.stax.impl.processor.output.CustomTokenOutputProcessor;
 import org.apache.wss4j.stax.impl.processor.output.DerivedKeyTokenOutputProcessor;
@@ -54,6 +58,7 @@ import org.apache.wss4j.stax.impl.processor.output.UsernameTokenOutputProcessor;
 import org.apache.wss4j.stax.impl.processor.output.WSSSignatureOutputProcessor;
 import org.apache.wss4j.stax.impl.securityToken.KerberosClientSecurityToken;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.utils.CountingOutputStream;
 import org.apache.wss4j.stax.utils.WSSUtils;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
@@ -168,6 +173,10 @@ public class OutboundWSSec {
             Object output, String encoding, OutboundSecurityContext outboundSecurityContext
         ) throws WSSecurityException {
 
+        final Instrumentation instrumentation = securityProperties.getInstrumentation();
+        final long start = instrumentation.start();
+        CountingOutputStream countingOutputStream = null; //NOPMD
+
         final DocumentContextImpl documentContext = new DocumentContextImpl();
         documentContext.setEncoding(encoding);
 
@@ -184,7 +193,7 @@ public class OutboundWSSec {
                 setupSignatureKey(outputProcessorChain, securityProperties, configuredAction.signedSAML);
             }
             if (configuredAction.encryptionAction) {
-                setupEncryptionKey(outputProcessorChain, securityProperties);
+                setupEncryptionKey(outputProcessorChain, securityProperties, configuredAction.encryptionSessionKey);
             }
             if (configuredAction.kerberos) {
                 setupKerberosKey(outputProcessorChain, securityProperties,
@@ -209,7 +218,12 @@ public class OutboundWSSec {
             initializeOutputProcessor(outputProcessorChain, securityHeaderReorderProcessor, null, -1);
 
             if (output instanceof OutputStream) {
-                final FinalOutputProcessor finalOutputProcessor = new FinalOutputProcessor((OutputStream) output, encoding);
+                OutputStream outputStream = (OutputStream) output; //NOPMD
+                if (instrumentation.isEnabled()) {
+                    countingOutputStream = new CountingOutputStream(outputStream);
+                    outputStream = countingOutputStream;
+                }
+                final FinalOutputProcessor finalOutputProcessor = new FinalOutputProcessor(outputStream, encoding);
                 initializeOutputProcessor(outputProcessorChain, finalOutputProcessor, null, -1);
 
             } else if (output instanceof XMLStreamWriter) {
@@ -222,6 +236,9 @@ public class OutboundWSSec {
         } catch (XMLSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
         }
+        if (instrumentation.isEnabled()) {
+            return new WSSecurityStreamWriter(outputProcessorChain, instrumentation, countingOutputStream, start);
+        }
         return new XMLSecurityStreamWriter(outputProcessorChain);
     }
 
@@ -281,7 +298,15 @@ public class OutboundWSSec {
         Key key = null;
         X509Certificate[] x509Certificates = null;
         try {
-            if (password != null && securityProperties.getSignatureCrypto() != null) {
+            if (password != null && securityProperties.getSignatureCrypto() != null
+                && securityProperties.getSigningCredentialCache() != null) {
+                SigningCredential signingCredential =
+                    securityProperties.getSigningCredentialCache().getCredential(
+                        securityProperties.getSignatureCrypto(), alias, password
+                    );
+                key = signingCredential.getPrivateKey();
+                x509Certificates = signingCredential.getCertificates();
+            } else if (password != null && securityProperties.getSignatureCrypto() != null) {
                 key = securityProperties.getSignatureCrypto().getPrivateKey(alias, password);
                 CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
                 cryptoType.setAlias(alias);
@@ -332,10 +357,39 @@ public class OutboundWSSec {
 
     private void setupEncryptionKey(
         OutputProcessorChainImpl outputProcessorChain,
-        WSSSecurityProperties securityProperties
+        WSSSecurityProperties securityProperties,
+        OutboundSessionKeyCache.SessionKey sessionKey
     ) throws XMLSecurityException {
         final String symmetricEncryptionAlgorithm = securityProperties.getEncryptionSymAlgorithm();
 
+        if (sessionKey != null) {
+            // Reuse the session key of an EncryptedKey that was sent with an earlier message. The
+            // EncryptedData refer to it via the EncryptedKeySHA1 identifier of the EncryptedKey
+            String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(symmetricEncryptionAlgorithm);
+            final String symmId = IDGenerator.generateID(null);
+            final GenericOutboundSecurityToken sessionKeySecurityToken =
+                new GenericOutboundSecurityToken(symmId, WSSecurityTokenConstants.EncryptedKeyToken,
+                                                 new SecretKeySpec(sessionKey.getSecret(), keyAlgorithm));
+            sessionKeySecurityToken.setSha1Identifier(sessionKey.getEncryptedKeySHA1());
+            final SecurityTokenProvider<OutboundSecurityToken> securityTokenProvider =
+                new SecurityTokenProvider<OutboundSecurityToken>() {
+
+                @Override
+                public OutboundSecurityToken getSecurityToken() throws XMLSecurityException {
+                    return sessionKeySecurityToken;
+                }
+
+                @Override
+                public String getId() {
+                    return symmId;
+                }
+            };
+
+            outputProcessorChain.getSecurityContext().registerSecurityTokenProvider(symmId, securityTokenProvider);
+            outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION, symmId);
+            return;
+        }
+
         // First check to see if a Symmetric key is available
         GenericOutboundSecurityToken securityToken =
             getOutboundSecurityToken(outputProcessorChain, WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION);
@@ -534,6 +588,41 @@ public class OutboundWSSec {
         return null;
     }
 
+    /**
+     * Return the session key of an EncryptedKey that was sent to the encryption recipient with an
+     * earlier message, if an OutboundSessionKeyCache is configured and the session key can be reused
+     */
+    private OutboundSessionKeyCache.SessionKey getEncryptionSessionKey(
+        OutputProcessorChainImpl outputProcessorChain
+    ) throws XMLSecurityException {
+        OutboundSessionKeyCache sessionKeyCache = securityProperties.getOutboundSessionKeyCache(); //NOPMD
+        if (sessionKeyCache == null || !securityProperties.isEncryptSymmetricEncryptionKey()
+            || outputProcessorChain.getSecurityContext().get(WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION) != null) {
+            return null;
+        }
+
+        X509Certificate x509Certificate = null;
+        if (securityProperties.isUseReqSigCertForEncryption()) {
+            x509Certificate = getReqSigCert(outputProcessorChain.getSecurityContext());
+        } else if (securityProperties.getEncryptionUseThisCertificate() != null) {
+            x509Certificate = securityProperties.getEncryptionUseThisCertificate();
+        } else if (securityProperties.getEncryptionCrypto() != null) {
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+            cryptoType.setAlias(securityProperties.getEncryptionUser());
+            X509Certificate[] x509Certificates = securityProperties.getEncryptionCrypto().getX509Certificates(cryptoType);
+            if (x509Certificates != null && x509Certificates.length > 0) {
+                x509Certificate = x509Certificates[0];
+            }
+        }
+
+        OutboundSessionKeyCache.SessionKey sessionKey =
+            sessionKeyCache.get(x509Certificate, securityProperties.getEncryptionSymAlgorithm());
+        if (sessionKey != null && securityProperties.isEnableRevocation()) {
+            securityProperties.getEncryptionCrypto().verifyTrust(new X509Certificate[] {x509Certificate}, true, null, null);
+        }
+        return sessionKey;
+    }
+
     private PublicKey getReqSigPublicKey(SecurityContext securityContext) throws XMLSecurityException {
         List<SecurityEvent> securityEventList = securityContext.getAsList(SecurityEvent.class);
         if (securityEventList != null) {
@@ -611,9 +700,10 @@ public class OutboundWSSec {
 
             } else if (WSSConstants.ENCRYPTION.equals(action)) {
                 configuredAction.encryptionAction = true;
+                configuredAction.encryptionSessionKey = getEncryptionSessionKey(outputProcessorChain);
                 EncryptedKeyOutputProcessor encryptedKeyOutputProcessor = null;
                 ++actionOrder;
-                if (securityProperties.isEncryptSymmetricEncryptionKey()) {
+                if (securityProperties.isEncryptSymmetricEncryptionKey() && configuredAction.encryptionSessionKey == null) {
                     final BinarySecurityTokenOutputProcessor binarySecurityTokenOutputProcessor =
                         new BinarySecurityTokenOutputProcessor();
                     initializeOutputProcessor(outputProcessorChain, binarySecurityTokenOutputProcessor, action, -1);
@@ -775,5 +865,6 @@ public class OutboundWSSec {
         boolean encryptionKerberos = false;
         boolean derivedSignature = false;
         boolean derivedEncryption = false;
+        OutboundSessionKeyCache.SessionKey encryptionSessionKey;
     }
 }
@@ -92,6 +92,8 @@ public class BinarySecurityTokenValidatorImpl implements BinarySecurityTokenVali
                         binarySecurityTokenType.getId(),
                         WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE
                 );
+                kerberosServiceSecurityToken.setServiceCredentialCache(
+                        tokenContext.getWssSecurityProperties().getKerberosServiceCredentialCache());
                 kerberosServiceSecurityToken.setElementPath(tokenContext.getElementPath());
                 kerberosServiceSecurityToken.setXMLSecEvent(tokenContext.getFirstXMLSecEvent());
                 return kerberosServiceSecurityToken;
@@ -28,6 +28,7 @@ import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.LoginCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
@@ -47,6 +48,7 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidatorImpl.class);
 
     private String contextName;
+    private LoginCache loginCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -56,6 +58,18 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
         return contextName;
     }
 
+    /**
+     * Set a LoginCache, so that a successful login is reused for the following UsernameTokens with
+     * the same username and password, instead of logging in via JAAS again.
+     */
+    public void setLoginCache(LoginCache loginCache) {
+        this.loginCache = loginCache;
+    }
+
+    public LoginCache getLoginCache() {
+        return loginCache;
+    }
+
     @Override
     public <T extends UsernameSecurityToken & InboundSecurityToken> T validate(
             UsernameTokenType usernameTokenType, TokenContext tokenContext) throws WSSecurityException {
@@ -86,17 +100,25 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        Subject subject;
-        try {
-            CallbackHandler handler = getCallbackHandler(username, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            subject = ctx.getSubject();
-        } catch (LoginException ex) {
-            LOG.info("Authentication failed", ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
-            );
+        Subject subject = null;
+        if (loginCache != null) {
+            subject = loginCache.get(getContextName(), username, password);
+        }
+        if (subject == null) {
+            try {
+                CallbackHandler handler = getCallbackHandler(username, password);
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+            } catch (LoginException ex) {
+                LOG.info("Authentication failed", ex);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
+                );
+            }
+            if (loginCache != null) {
+                loginCache.add(getContextName(), username, password, subject);
+            }
         }
 
         final EncodedString encodedNonce =
@@ -124,8 +124,10 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
         checkOneTimeUse(samlAssertionWrapper,
                         tokenContext.getWssSecurityProperties().getSamlOneTimeUseReplayCache());
 
-        // Validate the assertion against schemas/profiles
-        validateAssertion(samlAssertionWrapper);
+        // Validate the assertion against schemas/profiles, unless this was done before for the same Assertion
+        if (!samlAssertionWrapper.isSignatureVerifiedFromCache()) {
+            validateAssertion(samlAssertionWrapper);
+        }
 
         Crypto sigVerCrypto = null;
         if (samlAssertionWrapper.isSigned()) {
@@ -251,19 +253,13 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
             && samlAssertion.getSaml2().getConditions().getOneTimeUse() != null) {
             String identifier = samlAssertion.getId();
 
-            if (replayCache.contains(identifier)) {
+            Instant expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            if (!replayCache.addIfAbsent(identifier, expires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            Instant expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                replayCache.add(identifier, expires);
-            } else {
-                replayCache.add(identifier);
-            }
         }
     }
 
@@ -27,13 +27,16 @@ import java.security.KeyStore;
 import java.security.Security;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -51,6 +54,9 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.MemoryEncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundSessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -89,6 +95,7 @@ import org.w3c.dom.NodeList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
@@ -1116,6 +1123,132 @@ public class EncDecryptionTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testEncDecryptionEncryptedKeyCacheInbound() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.ENCRYPTION;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        //the same EncryptedKey is decrypted twice, but the private key is only used once
+        final AtomicInteger callbacks = new AtomicInteger();
+        final CallbackHandler callbackHandler = new CallbackHandlerImpl();
+        try (EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            for (int i = 0; i < 2; i++) {
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                securityProperties.setCallbackHandler(callbackArray -> {
+                    callbacks.incrementAndGet();
+                    callbackHandler.handle(callbackArray);
+                });
+                securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+                Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+                //no encrypted content
+                NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+                assertEquals(nodeList.getLength(), 0);
+            }
+        }
+        assertEquals(1, callbacks.get());
+    }
+
+    @Test
+    public void testEncDecryptionEncryptedKeyCacheFailedUnwrap() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] encryptedKey;
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.ENCRYPTION;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            //modify the CipherValue of the EncryptedKey, so that it can't be unwrapped
+            Element encryptedKeyElement = (Element) securedDocument.getElementsByTagNameNS(
+                WSSConstants.TAG_xenc_EncryptedKey.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedKey.getLocalPart()).item(0);
+            Element cipherValue = (Element) encryptedKeyElement.getElementsByTagNameNS(
+                WSSConstants.TAG_xenc_CipherValue.getNamespaceURI(), WSSConstants.TAG_xenc_CipherValue.getLocalPart()).item(0);
+            encryptedKey = Base64.getMimeDecoder().decode(cipherValue.getTextContent());
+            encryptedKey[encryptedKey.length / 2] ^= 1;
+            cipherValue.setTextContent(Base64.getEncoder().encodeToString(encryptedKey));
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        //the faked key of the failed unwrapping must not be cached, so the private key is used every time
+        final AtomicInteger callbacks = new AtomicInteger();
+        final CallbackHandler callbackHandler = new CallbackHandlerImpl();
+        try (EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            for (int i = 0; i < 2; i++) {
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                securityProperties.setCallbackHandler(callbackArray -> {
+                    callbacks.incrementAndGet();
+                    callbackHandler.handle(callbackArray);
+                });
+                securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+                try {
+                    doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+                } catch (XMLStreamException e) {
+                    //the content is decrypted with the faked key
+                }
+                assertNull(encryptedKeyCache.get(EncryptedKeyCache.getIdentifier(encryptedKey)));
+            }
+        }
+        assertEquals(2, callbacks.get());
+    }
+
+    @Test
+    public void testEncDecryptionOutboundSessionKeyCache() throws Exception {
+
+        final AtomicInteger callbacks = new AtomicInteger();
+        final CallbackHandler callbackHandler = new CallbackHandlerImpl();
+        try (OutboundSessionKeyCache sessionKeyCache = new OutboundSessionKeyCache(60L, 2);
+            EncryptedKeyCache encryptedKeyCache = new MemoryEncryptedKeyCache()) {
+            for (int i = 0; i < 3; i++) {
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                List<WSSConstants.Action> actions = new ArrayList<>();
+                actions.add(WSSConstants.ENCRYPTION);
+                securityProperties.setActions(actions);
+                securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+                securityProperties.setEncryptionUser("receiver");
+                securityProperties.setOutboundSessionKeyCache(sessionKeyCache);
+
+                InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+                ByteArrayOutputStream baos = doOutboundSecurity(securityProperties, sourceDocument);
+
+                // The second message refers to the EncryptedKey of the first one, the third message
+                // carries a new EncryptedKey as the session key was used for two messages
+                Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+                NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedKey.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedKey.getLocalPart());
+                assertEquals(i == 1 ? 0 : 1, nodeList.getLength());
+                nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_WSSE_KEY_IDENTIFIER.getNamespaceURI(), WSSConstants.TAG_WSSE_KEY_IDENTIFIER.getLocalPart());
+                assertEquals(i == 1 ? 1 : 0, nodeList.getLength());
+
+                WSSSecurityProperties inboundProperties = new WSSSecurityProperties();
+                inboundProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                inboundProperties.setCallbackHandler(callbackArray -> {
+                    callbacks.incrementAndGet();
+                    callbackHandler.handle(callbackArray);
+                });
+                inboundProperties.setEncryptedKeyCache(encryptedKeyCache);
+                document = doInboundSecurity(inboundProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+                //no encrypted content
+                nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+                assertEquals(nodeList.getLength(), 0);
+            }
+        }
+        // The private key was only used for the two EncryptedKeys
+        assertEquals(2, callbacks.get());
+    }
+
     @Test
     public void testEncDecryptionKeyIdentifierBinarySecurityTokenDirectReferenceOutbound() throws Exception {
 
@@ -728,6 +728,137 @@ public class InboundWSSecurityContextImplTest {
         return securityEventList;
     }
 
+    @Test
+    public void testTokenIdentificationManySignedElements() throws Exception {
+
+        final int signedElements = 500;
+        final int supportingTokens = 100;
+        final List<SecurityEvent> securityEventList = generateManySignedElementsSecurityEvents(signedElements, supportingTokens);
+
+        assertEquals(securityEventList.size(), 3 + signedElements + 2 * supportingTokens + 3);
+
+        int signedElementCount = 0;
+        int usernameTokenCount = 0;
+        boolean mainSignatureTokenOccured = false;
+        for (SecurityEvent securityEvent : securityEventList) {
+            if (securityEvent instanceof SignedElementSecurityEvent) {
+                signedElementCount++;
+            } else if (securityEvent instanceof X509TokenSecurityEvent) {
+                X509TokenSecurityEvent tokenSecurityEvent = (X509TokenSecurityEvent) securityEvent;
+                assertEquals(tokenSecurityEvent.getSecurityToken().getTokenUsages().size(), 1);
+                assertTrue(tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TOKENUSAGE_MAIN_SIGNATURE));
+                mainSignatureTokenOccured = true;
+            } else if (securityEvent instanceof UsernameTokenSecurityEvent) {
+                UsernameTokenSecurityEvent tokenSecurityEvent = (UsernameTokenSecurityEvent) securityEvent;
+                assertEquals(tokenSecurityEvent.getSecurityToken().getTokenUsages().size(), 1);
+                assertTrue(tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TOKENUSAGE_SIGNED_SUPPORTING_TOKENS));
+                usernameTokenCount++;
+            }
+        }
+
+        assertTrue(mainSignatureTokenOccured);
+        assertEquals(signedElementCount, signedElements + supportingTokens + 1);
+        assertEquals(usernameTokenCount, supportingTokens);
+    }
+
+    public List<SecurityEvent> generateManySignedElementsSecurityEvents(int signedElements, int supportingTokens) throws Exception {
+        final List<SecurityEvent> securityEventList = new LinkedList<>();
+
+        SecurityEventListener securityEventListener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+                securityEventList.add(securityEvent);
+            }
+        };
+
+        InboundWSSecurityContextImpl inboundWSSecurityContext = new InboundWSSecurityContextImpl();
+        inboundWSSecurityContext.addSecurityEventListener(securityEventListener);
+
+        TimestampSecurityEvent timestampSecurityEvent = new TimestampSecurityEvent();
+        inboundWSSecurityContext.registerSecurityEvent(timestampSecurityEvent);
+
+        List<QName> timestampPath = new LinkedList<>();
+        timestampPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        timestampPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
+
+        List<QName> usernameTokenPath = new LinkedList<>();
+        usernameTokenPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        usernameTokenPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String created = DateUtil.getDateTimeFormatter(true).format(now);
+        List<XMLSecEvent> usernameTokenXmlEvents = new LinkedList<>();
+        for (int i = 0; i < supportingTokens; i++) {
+            XMLSecEvent usernameTokenXmlEvent = XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_USERNAME_TOKEN, null, null);
+            usernameTokenXmlEvents.add(usernameTokenXmlEvent);
+
+            UsernameTokenSecurityEvent usernameTokenSecurityEvent = new UsernameTokenSecurityEvent();
+            UsernameSecurityTokenImpl usernameSecurityToken = new UsernameSecurityTokenImpl(
+                    WSSConstants.UsernameTokenPasswordType.PASSWORD_TEXT,
+                    "username" + i, "password", created, null, new byte[10], 10L,
+                    null, IDGenerator.generateID(null), WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+            usernameSecurityToken.setElementPath(usernameTokenPath);
+            usernameSecurityToken.setXMLSecEvent(usernameTokenXmlEvent);
+            usernameTokenSecurityEvent.setSecurityToken(usernameSecurityToken);
+            inboundWSSecurityContext.registerSecurityEvent(usernameTokenSecurityEvent);
+        }
+
+        List<QName> bstPath = new LinkedList<>();
+        bstPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        bstPath.add(WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN);
+
+        XMLSecEvent initiatorTokenXmlEvent = XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, null, null);
+
+        X509TokenSecurityEvent initiator509TokenSecurityEvent = new X509TokenSecurityEvent();
+        X509SecurityTokenImpl initiatorToken = getX509Token(WSSecurityTokenConstants.X509V3Token);
+        initiator509TokenSecurityEvent.setSecurityToken(initiatorToken);
+        initiatorToken.setElementPath(bstPath);
+        initiatorToken.setXMLSecEvent(initiatorTokenXmlEvent);
+        initiatorToken.addTokenUsage(WSSecurityTokenConstants.TokenUsage_Signature);
+        inboundWSSecurityContext.registerSecurityEvent(initiator509TokenSecurityEvent);
+
+        SignatureValueSecurityEvent signatureValueSecurityEvent = new SignatureValueSecurityEvent();
+        inboundWSSecurityContext.registerSecurityEvent(signatureValueSecurityEvent);
+
+        List<XMLSecurityConstants.ContentType> protectionOrder = new LinkedList<>();
+        protectionOrder.add(XMLSecurityConstants.ContentType.SIGNATURE);
+
+        SignedElementSecurityEvent signedTimestampElementSecurityEvent = new SignedElementSecurityEvent(initiatorToken, true, protectionOrder);
+        signedTimestampElementSecurityEvent.setElementPath(timestampPath);
+        inboundWSSecurityContext.registerSecurityEvent(signedTimestampElementSecurityEvent);
+
+        for (XMLSecEvent usernameTokenXmlEvent : usernameTokenXmlEvents) {
+            SignedElementSecurityEvent signedUsernameTokenElementSecurityEvent =
+                new SignedElementSecurityEvent(initiatorToken, true, protectionOrder);
+            signedUsernameTokenElementSecurityEvent.setElementPath(usernameTokenPath);
+            signedUsernameTokenElementSecurityEvent.setXmlSecEvent(usernameTokenXmlEvent);
+            inboundWSSecurityContext.registerSecurityEvent(signedUsernameTokenElementSecurityEvent);
+        }
+
+        for (int i = 0; i < signedElements; i++) {
+            List<QName> elementPath = new LinkedList<>();
+            elementPath.addAll(WSSConstants.SOAP_11_BODY_PATH);
+            elementPath.add(new QName("x", "Element" + i, "x"));
+
+            SignedElementSecurityEvent signedElementSecurityEvent = new SignedElementSecurityEvent(initiatorToken, true, protectionOrder);
+            signedElementSecurityEvent.setElementPath(elementPath);
+            signedElementSecurityEvent.setXmlSecEvent(XMLSecEventFactory.createXmlSecStartElement(elementPath.get(2), null, null));
+            inboundWSSecurityContext.registerSecurityEvent(signedElementSecurityEvent);
+        }
+
+        List<QName> bodyPath = new LinkedList<>();
+        bodyPath.addAll(WSSConstants.SOAP_11_BODY_PATH);
+
+        SignedPartSecurityEvent bodySignedPartSecurityEvent = new SignedPartSecurityEvent(initiatorToken, true, protectionOrder);
+        bodySignedPartSecurityEvent.setElementPath(bodyPath);
+        inboundWSSecurityContext.registerSecurityEvent(bodySignedPartSecurityEvent);
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        inboundWSSecurityContext.registerSecurityEvent(operationSecurityEvent);
+        return securityEventList;
+    }
+
     private X509SecurityTokenImpl getX509Token(WSSecurityTokenConstants.TokenType tokenType) throws Exception {
 
         final KeyStore keyStore = KeyStore.getInstance("jks");
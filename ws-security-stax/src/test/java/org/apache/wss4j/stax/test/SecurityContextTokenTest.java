@@ -34,6 +34,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.apache.wss4j.binding.wssc.AbstractSecurityContextTokenType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.MemoryDerivedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
@@ -569,6 +570,73 @@ public class SecurityContextTokenTest extends AbstractTestBase {
         }
     }
 
+    /**
+     * Test that the session of the keys derived for a DerivedKeyToken is identified in the same way as
+     * by the DOM code, for a relative and an absolute reference to the SecurityContextToken.
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testSCTKDKTSignInboundDerivedKeyCache(boolean absoluteReference) throws Exception {
+
+        byte[] tempSecret = XMLSecurityConstants.generateBytes(16);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        String sessionId;
+        {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken(secHeader, null);
+            sctBuilder.setWscVersion(ConversationConstants.VERSION_05_12);
+            Crypto crypto = CryptoFactory.getInstance("transmitter-crypto.properties");
+            sctBuilder.prepare(crypto);
+
+            // Derived key signature
+            WSSecDKSign sigBuilder = new WSSecDKSign(secHeader);
+            sigBuilder.setWscVersion(ConversationConstants.VERSION_05_12);
+            if (absoluteReference) {
+                sigBuilder.setTokenIdDirectId(true);
+                sigBuilder.setTokenIdentifier(sctBuilder.getIdentifier());
+                sessionId = sctBuilder.getIdentifier();
+            } else {
+                sigBuilder.setTokenIdentifier(sctBuilder.getSctId());
+                sessionId = sctBuilder.getSctId();
+            }
+            sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+            sigBuilder.build(tempSecret);
+
+            sctBuilder.prependSCTElementToHeader();
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(doc), new StreamResult(baos));
+        }
+
+        {
+            List<String> sessionIds = new ArrayList<>();
+            try (MemoryDerivedKeyCache derivedKeyCache = new MemoryDerivedKeyCache() {
+                @Override
+                public void add(String sessionId, String identifier, byte[] derivedKey) {
+                    sessionIds.add(sessionId);
+                    super.add(sessionId, identifier, derivedKey);
+                }
+            }) {
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                CallbackHandlerImpl callbackHandler = new CallbackHandlerImpl(tempSecret);
+                securityProperties.setCallbackHandler(callbackHandler);
+                securityProperties.addIgnoreBSPRule(BSPRule.R5204);
+                securityProperties.setDerivedKeyCache(derivedKeyCache);
+                InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+                XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+                StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+            }
+            assertEquals(1, sessionIds.size());
+            assertEquals(sessionId, sessionIds.get(0));
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {ConversationConstants.VERSION_05_02, ConversationConstants.VERSION_05_12})
     public void testSCTKDKTSignEncrypt(int version) throws Exception {
@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.Marshaller;
+import org.apache.wss4j.stax.impl.processor.input.SecurityHeaderStructureParser;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the SecurityHeaderStructureParser produces the same binding objects as JAXB, and that it
+ * leaves the elements that it does not handle to JAXB.
+ */
+public class SecurityHeaderStructureParserTest {
+
+    private static final String WSSE =
+        "xmlns:wsse=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd\"";
+    private static final String WSU =
+        "xmlns:wsu=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd\"";
+    private static final String WSSE11 =
+        "xmlns:wsse11=\"http://docs.oasis-open.org/wss/oasis-wss-wssecurity-secext-1.1.xsd\"";
+    private static final String DS = "xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"";
+    private static final String XENC = "xmlns:xenc=\"http://www.w3.org/2001/04/xmlenc#\"";
+    private static final String X509_VALUE_TYPE =
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-x509-token-profile-1.0#X509v3";
+    private static final String BASE64_ENCODING_TYPE =
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-soap-message-security-1.0#Base64Binary";
+
+    private static JAXBContext jaxbContext;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        WSSec.init();
+        jaxbContext = JAXBContext.newInstance(
+            org.apache.wss4j.binding.wss10.ObjectFactory.class,
+            org.apache.wss4j.binding.wss11.ObjectFactory.class,
+            org.apache.wss4j.binding.wsu10.ObjectFactory.class,
+            org.apache.xml.security.binding.xmlenc.ObjectFactory.class,
+            org.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
+            org.apache.xml.security.binding.xmldsig.ObjectFactory.class,
+            org.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
+            org.apache.xml.security.binding.xop.ObjectFactory.class
+        );
+    }
+
+    @Test
+    public void testTimestamp() throws Exception {
+        assertSameAsJaxb(
+            "<wsu:Timestamp " + WSU + " wsu:Id=\"TS-1\">\n"
+            + "  <wsu:Created>2026-10-18T10:00:00.000Z</wsu:Created>\n"
+            + "  <wsu:Expires wsu:Id=\"E-1\">2026-10-18T10:05:00.000Z</wsu:Expires>\n"
+            + "</wsu:Timestamp>"
+        );
+        assertSameAsJaxb("<wsu:Timestamp " + WSU + "><wsu:Created>2026-10-18T10:00:00Z</wsu:Created></wsu:Timestamp>");
+    }
+
+    @Test
+    public void testUsernameToken() throws Exception {
+        assertSameAsJaxb(
+            "<wsse:UsernameToken " + WSSE + " " + WSU + " wsu:Id=\"UsernameToken-1\">"
+            + "<wsse:Username>wernerd</wsse:Username>"
+            + "<wsse:Password Type=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-username-token-profile-1.0"
+            + "#PasswordDigest\">Dn5rTJpIdtMzmkhKp2OB44Hsyfs=</wsse:Password>"
+            + "<wsse:Nonce EncodingType=\"" + BASE64_ENCODING_TYPE + "\">rmlmfFhWD2wQLBwTyh16Hg==</wsse:Nonce>"
+            + "<wsu:Created>2026-10-18T10:00:00.000Z</wsu:Created>"
+            + "</wsse:UsernameToken>"
+        );
+        assertSameAsJaxb(
+            "<wsse:UsernameToken " + WSSE + "><wsse:Username>a &amp; b</wsse:Username>"
+            + "<wsse:Password><![CDATA[se<cret]]></wsse:Password></wsse:UsernameToken>"
+        );
+    }
+
+    @Test
+    public void testBinarySecurityToken() throws Exception {
+        assertSameAsJaxb(
+            "<wsse:BinarySecurityToken " + WSSE + " " + WSU + " EncodingType=\"" + BASE64_ENCODING_TYPE + "\" "
+            + "ValueType=\"" + X509_VALUE_TYPE + "\" wsu:Id=\"X509-1\">MIIC\nXjCCAcegAwIBAgI=</wsse:BinarySecurityToken>"
+        );
+    }
+
+    @Test
+    public void testSecurityTokenReference() throws Exception {
+        assertSameAsJaxb(
+            "<wsse:SecurityTokenReference " + WSSE + " " + WSU + " " + WSSE11 + " wsu:Id=\"STR-1\" "
+            + "wsse11:TokenType=\"http://docs.oasis-open.org/wss/oasis-wss-soap-message-security-1.1#EncryptedKey\">"
+            + "<wsse:Reference URI=\"#X509-1\" ValueType=\"" + X509_VALUE_TYPE + "\"/>"
+            + "</wsse:SecurityTokenReference>"
+        );
+        assertSameAsJaxb(
+            "<wsse:SecurityTokenReference " + WSSE + "><wsse:KeyIdentifier EncodingType=\"" + BASE64_ENCODING_TYPE + "\" "
+            + "ValueType=\"http://docs.oasis-open.org/wss/oasis-wss-soap-message-security-1.1#ThumbprintSHA1\">"
+            + "NLRi0Jh/MrkJRhE8XdQYLC2ZsJ8=</wsse:KeyIdentifier></wsse:SecurityTokenReference>"
+        );
+        assertSameAsJaxb(
+            "<wsse:SecurityTokenReference " + WSSE + " " + DS + "><ds:X509Data><ds:X509IssuerSerial>"
+            + "<ds:X509IssuerName>CN=Werner,OU=WSS4J,O=Apache,C=DE</ds:X509IssuerName>"
+            + "<ds:X509SerialNumber> 1234567890123456789 </ds:X509SerialNumber>"
+            + "</ds:X509IssuerSerial></ds:X509Data></wsse:SecurityTokenReference>"
+        );
+    }
+
+    @Test
+    public void testEncryptedKey() throws Exception {
+        assertSameAsJaxb(
+            "<xenc:EncryptedKey " + XENC + " Id=\"EK-1\">\n"
+            + "  <xenc:EncryptionMethod Algorithm=\"http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p\">\n"
+            + "    <ds:DigestMethod " + DS + " Algorithm=\"http://www.w3.org/2000/09/xmldsig#sha1\"/>\n"
+            + "  </xenc:EncryptionMethod>\n"
+            + "  <ds:KeyInfo " + DS + ">\n"
+            + "    <wsse:SecurityTokenReference " + WSSE + ">\n"
+            + "      <wsse:KeyIdentifier EncodingType=\"" + BASE64_ENCODING_TYPE + "\" "
+            + "ValueType=\"http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-x509-token-profile-1.0"
+            + "#X509SubjectKeyIdentifier\">Gz8MtAXcq8bFBjnDOTv+8LeafVI=</wsse:KeyIdentifier>\n"
+            + "    </wsse:SecurityTokenReference>\n"
+            + "  </ds:KeyInfo>\n"
+            + "  <xenc:CipherData>\n"
+            + "    <xenc:CipherValue>c2Vzc2lvbktleQ==</xenc:CipherValue>\n"
+            + "  </xenc:CipherData>\n"
+            + "  <xenc:ReferenceList>\n"
+            + "    <xenc:DataReference URI=\"#ED-1\"/>\n"
+            + "    <xenc:DataReference URI=\"#ED-2\"/>\n"
+            + "  </xenc:ReferenceList>\n"
+            + "</xenc:EncryptedKey>"
+        );
+    }
+
+    @Test
+    public void testFallbackToJaxb() throws Exception {
+        // A comment
+        assertNull(parse("<wsu:Timestamp " + WSU + "><!-- comment --><wsu:Created>2026-10-18T10:00:00Z</wsu:Created>"
+            + "</wsu:Timestamp>"));
+        // An element that is not known to the parser
+        assertNull(parse("<wsse:SecurityTokenReference " + WSSE + "><wsse:Embedded/></wsse:SecurityTokenReference>"));
+        // The wrong order of the child elements
+        assertNull(parse("<wsu:Timestamp " + WSU + "><wsu:Expires>2026-10-18T10:05:00Z</wsu:Expires>"
+            + "<wsu:Created>2026-10-18T10:00:00Z</wsu:Created></wsu:Timestamp>"));
+        // An unqualified attribute that is not declared in the schema
+        assertNull(parse("<wsse:BinarySecurityToken " + WSSE + " Unknown=\"1\">AAAA</wsse:BinarySecurityToken>"));
+        // An invalid Base64 value
+        assertNull(parse("<wsse:SecurityTokenReference " + WSSE + " " + DS + "><ds:X509Data>"
+            + "<ds:X509Certificate>!invalid!</ds:X509Certificate></ds:X509Data></wsse:SecurityTokenReference>"));
+        // An Id that is not an NCName
+        assertNull(parse("<wsu:Timestamp " + WSU + " wsu:Id=\"1 2\"></wsu:Timestamp>"));
+        // Another element
+        assertNull(parse("<ds:Signature " + DS + "/>"));
+    }
+
+    private static void assertSameAsJaxb(String xml) throws Exception {
+        Deque<XMLSecEvent> eventDeque = getEvents(xml);
+        JAXBElement<?> parsed = SecurityHeaderStructureParser.parse(eventDeque, 0);
+        assertNotNull(parsed);
+
+        Object unmarshalled =
+            XMLSecurityConstants.getJaxbUnmarshaller(false).unmarshal(new XMLSecurityEventReader(eventDeque, 0));
+        assertEquals(marshal(unmarshalled), marshal(parsed));
+    }
+
+    private static JAXBElement<?> parse(String xml) throws Exception {
+        return SecurityHeaderStructureParser.parse(getEvents(xml), 0);
+    }
+
+    private static String marshal(Object object) throws Exception {
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        StringWriter stringWriter = new StringWriter();
+        marshaller.marshal(object, stringWriter);
+        return stringWriter.toString();
+    }
+
+    /**
+     * Return the events of the given XML in the same order as the InputProcessorChain buffers them
+     */
+    private static Deque<XMLSecEvent> getEvents(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+
+        Deque<XMLSecEvent> eventDeque = new ArrayDeque<>();
+        XMLSecStartElement parent = null;
+        while (xmlStreamReader.hasNext()) {
+            int eventType = xmlStreamReader.next();
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                break;
+            }
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parent);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                parent = xmlSecEvent.asStartElement();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                parent = parent.getParentXMLSecStartElement();
+            }
+            eventDeque.push(xmlSecEvent);
+        }
+        xmlStreamReader.close();
+        return eventDeque;
+    }
+}
@@ -23,12 +23,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
 import java.security.Security;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -47,8 +50,13 @@ import javax.xml.xpath.XPathExpression;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.crypto.SigningCredentialCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.instrumentation.InMemoryInstrumentation;
+import org.apache.wss4j.common.instrumentation.Instrumentation;
+import org.apache.wss4j.common.instrumentation.OperationStatistics;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.message.WSSecHeader;
@@ -128,6 +136,48 @@ public class SignatureTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testSignatureSigningCredentialCacheOutbound() throws Exception {
+
+        final AtomicInteger privateKeyLookups = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            public PrivateKey getPrivateKey(String identifier, String password) throws WSSecurityException {
+                privateKeyLookups.incrementAndGet();
+                return super.getPrivateKey(identifier, password);
+            }
+        };
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("transmitter.jks")) {
+            keyStore.load(inputStream, "default".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actions = new ArrayList<>();
+        actions.add(WSSConstants.SIGNATURE);
+        securityProperties.setActions(actions);
+        securityProperties.setSignatureCrypto(crypto);
+        securityProperties.setSignatureUser("transmitter");
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+        securityProperties.setSigningCredentialCache(new SigningCredentialCache());
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            OutboundWSSec wsSecOut = WSSec.getOutboundWSSec(securityProperties);
+            XMLStreamWriter xmlStreamWriter = wsSecOut.processOutMessage(baos, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>());
+            XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml"));
+            XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+            xmlStreamWriter.close();
+
+            String action = WSHandlerConstants.SIGNATURE;
+            doInboundSecurityWithWSS4J(documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray())), action);
+        }
+
+        // The private key was only loaded from the keystore for the first message
+        assertEquals(1, privateKeyLookups.get());
+    }
+
     @Test
     public void testSignatureDefaultConfigurationInbound() throws Exception {
 
@@ -161,6 +211,46 @@ public class SignatureTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testSignatureInstrumentation() throws Exception {
+
+        InMemoryInstrumentation instrumentation = new InMemoryInstrumentation();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            List<WSSConstants.Action> actions = new ArrayList<>();
+            actions.add(WSSConstants.SIGNATURE);
+            securityProperties.setActions(actions);
+            securityProperties.loadSignatureKeyStore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+            securityProperties.setSignatureUser("transmitter");
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setInstrumentation(instrumentation);
+
+            OutboundWSSec wsSecOut = WSSec.getOutboundWSSec(securityProperties);
+            XMLStreamWriter xmlStreamWriter = wsSecOut.processOutMessage(baos, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>());
+            XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml"));
+            XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+            xmlStreamWriter.close();
+
+            OperationStatistics statistics = instrumentation.getStatistics(Instrumentation.STAX_OUTBOUND_MESSAGE);
+            assertEquals(1L, statistics.getCount());
+            assertEquals(baos.size(), statistics.getBytes());
+        }
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setInstrumentation(instrumentation);
+            InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+            XMLStreamReader xmlStreamReader = wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+            StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+
+            assertEquals(1L, instrumentation.getStatistics(Instrumentation.STAX_INBOUND_MESSAGE).getCount());
+            assertEquals(1L, instrumentation.getStatistics(Instrumentation.SECURITY_HEADER).getCount());
+            assertEquals(1L, instrumentation.getStatistics(Instrumentation.PROCESSOR_PREFIX + "Signature").getCount());
+        }
+    }
+
     @Test
     public void testSignatureCryptoPropertiesOutbound() throws Exception {
 
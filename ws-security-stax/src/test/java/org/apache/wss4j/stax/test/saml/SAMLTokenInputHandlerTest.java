@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test.saml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.stax.ext.DocumentCreatorImpl;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.processor.input.SAMLTokenInputHandler;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that the DOM which the SAMLTokenInputHandler builds from the events of a SAML token has the
+ * same canonical form as the DOM of the original token, in particular with regard to the namespaces
+ * that are in scope.
+ */
+public class SAMLTokenInputHandlerTest {
+
+    private static final String SAML2 = "xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\"";
+    private static final String XSI = "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"";
+    private static final String XS = "xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"";
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        WSSec.init();
+    }
+
+    @Test
+    public void testDefaultNamespaceUndeclaration() throws Exception {
+        assertSameCanonicalForm(
+            "<Assertion xmlns=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_1\">"
+            + "<Issuer>www.example.com</Issuer>"
+            + "<Advice><Extension xmlns=\"\"><Value>1</Value></Extension><Other/></Advice>"
+            + "</Assertion>"
+        );
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " xmlns=\"urn:default\" ID=\"_1\">"
+            + "<Extension><Inner xmlns=\"\"><Value/></Inner><Sibling/></Extension>"
+            + "</saml2:Assertion>"
+        );
+    }
+
+    @Test
+    public void testNestedPrefixRedeclaration() throws Exception {
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " ID=\"_1\">"
+            + "<saml2:Advice><p:Extension xmlns:p=\"urn:first\">"
+            + "<p:Value xmlns:p=\"urn:second\"><p:Inner/></p:Value>"
+            + "<p:Value/>"
+            + "</p:Extension></saml2:Advice>"
+            + "<saml2:Issuer>www.example.com</saml2:Issuer>"
+            + "</saml2:Assertion>"
+        );
+        // The prefix of the assertion itself is redeclared
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " ID=\"_1\">"
+            + "<saml2:Advice xmlns:saml2=\"urn:other\"><saml2:Value/></saml2:Advice>"
+            + "<saml2:Issuer>www.example.com</saml2:Issuer>"
+            + "</saml2:Assertion>"
+        );
+    }
+
+    @Test
+    public void testAttributeOnlyPrefixes() throws Exception {
+        // The xsi and a prefixes are only used by attributes, and the xs prefix only in an attribute value
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " " + XSI + " " + XS + " xmlns:a=\"urn:attributes\" ID=\"_1\">"
+            + "<saml2:AttributeStatement><saml2:Attribute Name=\"role\" a:extra=\"1\">"
+            + "<saml2:AttributeValue xsi:type=\"xs:string\">admin</saml2:AttributeValue>"
+            + "<saml2:AttributeValue a:extra=\"2\" xsi:type=\"xs:string\">user</saml2:AttributeValue>"
+            + "</saml2:Attribute></saml2:AttributeStatement>"
+            + "</saml2:Assertion>"
+        );
+        // The prefix of an attribute is declared on the element of the attribute itself
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " ID=\"_1\">"
+            + "<saml2:Subject><saml2:NameID b:format=\"x\" xmlns:b=\"urn:b\">alice</saml2:NameID>"
+            + "<saml2:SubjectConfirmation b:method=\"y\" xmlns:b=\"urn:other-b\"/></saml2:Subject>"
+            + "</saml2:Assertion>"
+        );
+    }
+
+    @Test
+    public void testNamespacesDeclaredOutsideOfTheToken() throws Exception {
+        // The namespaces of the element and attribute prefixes, and the default namespace, are only
+        // declared on the ancestors of the token in the message
+        assertSameCanonicalForm(
+            "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " + SAML2 + " " + XSI
+            + " xmlns:p=\"urn:first\" xmlns=\"urn:default\"><soap:Header>"
+            + "<saml2:Assertion " + XS + " ID=\"_1\">"
+            + "<saml2:Advice><p:Extension xsi:type=\"xs:string\"><Value/>"
+            + "<p:Value xmlns:p=\"urn:second\"><p:Inner xmlns=\"\"/></p:Value><p:Value/>"
+            + "</p:Extension></saml2:Advice>"
+            + "<saml2:Issuer>www.example.com</saml2:Issuer>"
+            + "</saml2:Assertion>"
+            + "</soap:Header></soap:Envelope>"
+        );
+    }
+
+    @Test
+    public void testTextAndComments() throws Exception {
+        assertSameCanonicalForm(
+            "<saml2:Assertion " + SAML2 + " ID=\"_1\">\n"
+            + "  <saml2:Issuer>www.<!-- comment -->example.com &amp; <![CDATA[<co>]]></saml2:Issuer>\n"
+            + "</saml2:Assertion>"
+        );
+    }
+
+    private static void assertSameCanonicalForm(String xml) throws Exception {
+        Document original =
+            XMLUtils.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), false);
+        Element assertion = (Element) original.getElementsByTagNameNS("*", "Assertion").item(0);
+
+        // The events of the message up to the end of the token, and the index of its first event
+        List<XMLSecEvent> events = getEvents(xml);
+        int index = 0;
+        while (!isAssertionStart(events.get(index))) {
+            index++;
+        }
+        int end = index + 1;
+        int depth = 1;
+        while (depth > 0) {
+            XMLSecEvent event = events.get(end++);
+            if (event.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event.getEventType() == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        Deque<XMLSecEvent> eventDeque = new ArrayDeque<>();
+        for (XMLSecEvent event : events.subList(0, end)) {
+            eventDeque.push(event);
+        }
+
+        Document rebuilt = new DocumentBuildingHandler().buildDocument(eventDeque, index);
+        assertEquals(canonicalize(assertion), canonicalize(rebuilt.getDocumentElement()));
+        // The canonical form is based on the namespace declarations, so check the names of the nodes as well
+        assertSameNames(assertion, rebuilt.getDocumentElement());
+    }
+
+    private static boolean isAssertionStart(XMLSecEvent event) {
+        return event.getEventType() == XMLStreamConstants.START_ELEMENT
+            && "Assertion".equals(event.asStartElement().getName().getLocalPart());
+    }
+
+    private static String canonicalize(Element element) throws Exception {
+        // The xs prefix is only used in attribute values
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS)
+            .canonicalizeSubtree(element, "xs", outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static List<XMLSecEvent> getEvents(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+
+        List<XMLSecEvent> events = new ArrayList<>();
+        XMLSecStartElement parent = null;
+        while (xmlStreamReader.hasNext()) {
+            int eventType = xmlStreamReader.next();
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                break;
+            }
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parent);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                parent = xmlSecEvent.asStartElement();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                parent = parent.getParentXMLSecStartElement();
+            }
+            events.add(xmlSecEvent);
+        }
+        xmlStreamReader.close();
+        return events;
+    }
+
+    private static void assertSameNames(Element expected, Element actual) {
+        assertEquals(expected.getNamespaceURI(), actual.getNamespaceURI());
+        assertEquals(expected.getLocalName(), actual.getLocalName());
+        NamedNodeMap expectedAttributes = expected.getAttributes();
+        for (int i = 0; i < expectedAttributes.getLength(); i++) {
+            Node attribute = expectedAttributes.item(i);
+            assertNotNull(actual.getAttributeNodeNS(attribute.getNamespaceURI(), attribute.getLocalName()));
+        }
+        Element expectedChild = XMLUtils.getNextElement(expected.getFirstChild());
+        Element actualChild = XMLUtils.getNextElement(actual.getFirstChild());
+        while (expectedChild != null) {
+            assertNotNull(actualChild);
+            assertSameNames(expectedChild, actualChild);
+            expectedChild = XMLUtils.getNextElement(expectedChild.getNextSibling());
+            actualChild = XMLUtils.getNextElement(actualChild.getNextSibling());
+        }
+        assertNull(actualChild);
+    }
+
+    private static final class DocumentBuildingHandler extends SAMLTokenInputHandler {
+
+        Document buildDocument(Deque<XMLSecEvent> eventDeque, int index) throws Exception {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setDocumentCreator(new DocumentCreatorImpl());
+            Node node = parseStructure(eventDeque, index, securityProperties);
+            return (Document) node;
+        }
+    }
+}
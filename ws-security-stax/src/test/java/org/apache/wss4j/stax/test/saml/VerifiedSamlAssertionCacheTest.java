@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test.saml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.cache.MemoryVerifiedSamlAssertionCache;
+import org.apache.wss4j.common.cache.SamlTrustContext;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.AudienceRestrictionBean;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.apache.wss4j.common.util.SOAPUtil;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSAMLToken;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.wss4j.stax.test.AbstractTestBase;
+import org.apache.wss4j.stax.test.utils.StAX2DOM;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test-case for processing the same signed SAML Assertion several times with a VerifiedSamlAssertionCache.
+ */
+public class VerifiedSamlAssertionCacheTest extends AbstractTestBase {
+
+    private static final String AUDIENCE = "http://apache.org/one";
+
+    private final Crypto sigVerCrypto;
+
+    public VerifiedSamlAssertionCacheTest() throws Exception {
+        sigVerCrypto = CryptoFactory.getInstance("receiver-crypto.properties");
+    }
+
+    @Test
+    public void testSignatureVerifiedFromCache() throws Exception {
+        byte[] message = createSignedAssertionMessage();
+
+        try (CountingVerifiedSamlAssertionCache cache = new CountingVerifiedSamlAssertionCache()) {
+            verify(message, cache, AUDIENCE);
+            assertEquals(0, cache.hits);
+
+            verify(message, cache, AUDIENCE);
+            verify(message, cache, AUDIENCE);
+            assertEquals(2, cache.hits);
+        }
+    }
+
+    @Test
+    public void testOtherSignatureVerificationCrypto() throws Exception {
+        byte[] message = createSignedAssertionMessage();
+
+        try (CountingVerifiedSamlAssertionCache cache = new CountingVerifiedSamlAssertionCache()) {
+            verify(message, cache, AUDIENCE);
+
+            // The signing credential is trusted again with another Crypto
+            verify(message, cache, AUDIENCE, CryptoFactory.getInstance("receiver-crypto.properties"));
+            assertEquals(0, cache.hits);
+
+            verify(message, cache, AUDIENCE);
+            assertEquals(1, cache.hits);
+        }
+    }
+
+    @Test
+    public void testModifiedAssertion() throws Exception {
+        byte[] message = createSignedAssertionMessage();
+
+        try (CountingVerifiedSamlAssertionCache cache = new CountingVerifiedSamlAssertionCache()) {
+            verify(message, cache, AUDIENCE);
+
+            // The ID, Issuer and SignatureValue are unchanged, but the content is not
+            String modifiedMessage = new String(message, StandardCharsets.UTF_8).replace("uid=joe", "uid=eve");
+            try {
+                verify(modifiedMessage.getBytes(StandardCharsets.UTF_8), cache, AUDIENCE);
+                fail("Failure expected on a modified Assertion");
+            } catch (XMLStreamException e) {
+                assertTrue(e.getCause() instanceof XMLSecurityException);
+            }
+            assertEquals(0, cache.hits);
+        }
+    }
+
+    @Test
+    public void testConditionsCheckedOnCacheHit() throws Exception {
+        byte[] message = createSignedAssertionMessage();
+
+        try (CountingVerifiedSamlAssertionCache cache = new CountingVerifiedSamlAssertionCache()) {
+            verify(message, cache, AUDIENCE);
+
+            try {
+                verify(message, cache, "http://apache.org/three");
+                fail("Failure expected on a bad audience restriction");
+            } catch (XMLStreamException e) {
+                assertTrue(e.getCause() instanceof XMLSecurityException);
+            }
+            assertEquals(1, cache.hits);
+        }
+    }
+
+    private byte[] createSignedAssertionMessage() throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+        callbackHandler.setIssuer("www.example.com");
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(5);
+        AudienceRestrictionBean audienceRestrictionBean = new AudienceRestrictionBean();
+        audienceRestrictionBean.setAudienceURIs(Collections.singletonList(AUDIENCE));
+        conditions.setAudienceRestrictions(Collections.singletonList(audienceRestrictionBean));
+        callbackHandler.setConditions(conditions);
+
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(callbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+
+        Crypto crypto = CryptoFactory.getInstance("saml/saml-signed.properties");
+        samlAssertion.signAssertion("transmitter", "default", crypto, false);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSAMLToken wsSign = new WSSecSAMLToken(secHeader);
+        Document securedDocument = wsSign.build(samlAssertion);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+        transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        return baos.toByteArray();
+    }
+
+    private void verify(byte[] message, CountingVerifiedSamlAssertionCache cache, String audience) throws Exception {
+        verify(message, cache, audience, sigVerCrypto);
+    }
+
+    private void verify(
+        byte[] message, CountingVerifiedSamlAssertionCache cache, String audience, Crypto crypto
+    ) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setSignatureVerificationCrypto(crypto);
+        securityProperties.setValidateSamlSubjectConfirmation(false);
+        securityProperties.setAudienceRestrictions(Collections.singletonList(audience));
+        securityProperties.setVerifiedSamlAssertionCache(cache);
+        InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+        XMLStreamReader xmlStreamReader =
+            wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message)));
+
+        Document document = StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+
+        NodeList nodeList = document.getElementsByTagNameNS(
+            WSSConstants.TAG_dsig_Signature.getNamespaceURI(), WSSConstants.TAG_dsig_Signature.getLocalPart());
+        assertEquals(nodeList.getLength(), 1);
+        assertEquals(nodeList.item(0).getParentNode().getLocalName(), WSSConstants.TAG_SAML2_ASSERTION.getLocalPart());
+    }
+
+    private static final class CountingVerifiedSamlAssertionCache extends MemoryVerifiedSamlAssertionCache {
+        private int hits;
+
+        @Override
+        public SAMLKeyInfo get(SamlAssertionWrapper samlAssertion, SamlTrustContext trustContext)
+            throws WSSecurityException {
+            SAMLKeyInfo samlKeyInfo = super.get(samlAssertion, trustContext);
+            if (samlKeyInfo != null) {
+                hits++;
+            }
+            return samlKeyInfo;
+        }
+    }
+
+}